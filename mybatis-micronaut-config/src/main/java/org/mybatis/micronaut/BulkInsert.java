@@ -0,0 +1,56 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotation that indicates the insert statement for a single row is expanded into the multi-row insert
+ * statement({@code INSERT ... VALUES (...), (...)}) for each chunk of the collection parameter.
+ * <p>
+ * The method should have only one parameter that is a {@link java.util.Collection}, and the statement should be an
+ * {@code INSERT ... VALUES (...)} statement that refers the properties of an element. The generated keys are set into
+ * elements when the {@code useGeneratedKeys} is enabled. The method returns the total number of inserted rows.
+ *
+ * <pre>
+ * &#64;Insert("INSERT INTO city (name, state) VALUES (#{name}, #{state})")
+ * &#64;Options(useGeneratedKeys = true, keyProperty = "id")
+ * &#64;BulkInsert(chunkSize = 500)
+ * int insertAll(Collection&lt;City&gt; cities);
+ * </pre>
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface BulkInsert {
+
+  /**
+   * Return the maximum number of rows per statement.
+   * <p>
+   * Please specify it so that the number of bind parameters per statement does not exceed the limit of the database.
+   *
+   * @return The maximum number of rows per statement
+   */
+  int chunkSize() default 1000;
+
+}
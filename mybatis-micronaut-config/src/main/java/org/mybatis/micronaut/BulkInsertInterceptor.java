@@ -0,0 +1,278 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+
+/**
+ * The plugin interceptor that executes the insert statements of the methods annotated with the {@link BulkInsert} as
+ * the multi-row insert statements per chunk.
+ * <p>
+ * The statement of the annotated method is written for a single row, and the derived statement expands the
+ * {@code VALUES} row for each element of the collection parameter. The generated keys are set into elements by the
+ * key generator of the original statement.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Intercepts(@Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class }))
+final class BulkInsertInterceptor implements Interceptor {
+
+  /**
+   * The suffix of the statement id that derived from the insert statement for a bulk insert method.
+   */
+  static final String STATEMENT_SUFFIX = "!bulk";
+
+  private static final Pattern VALUES_PATTERN = Pattern.compile("^(.*\\bvalues\\s*)(\\(.*\\))\\s*$",
+      Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  private static final String PARAMETER_PREFIX = "__bulk_";
+
+  private final Map<String, BulkStatement> statements;
+
+  private BulkInsertInterceptor(Map<String, BulkStatement> statements) {
+    this.statements = statements;
+  }
+
+  /**
+   * Add the statements that derived from the insert statements for the methods annotated with the {@link BulkInsert},
+   * and add this interceptor if there are them.
+   * <p>
+   * The derived statements that already exist(such as the statements shared from the template) are reused.
+   *
+   * @param configuration
+   *          The MyBatis's core configuration that mappers have been added
+   */
+  static void install(Configuration configuration) {
+    Map<String, BulkStatement> statements = new HashMap<>();
+    for (Class<?> mapperType : configuration.getMapperRegistry().getMappers()) {
+      for (Method method : mapperType.getMethods()) {
+        BulkInsert bulkInsert = method.getAnnotation(BulkInsert.class);
+        if (bulkInsert == null) {
+          continue;
+        }
+        MappedStatement statement = MapperStatements.findStatementId(configuration, mapperType, method)
+            .map(id -> configuration.getMappedStatement(id, false))
+            .filter(s -> s.getSqlCommandType() == SqlCommandType.INSERT)
+            .orElseThrow(
+                () -> new BuilderException("The bulk insert method " + method + " requires an insert statement."));
+        if (method.getParameterCount() != 1 || !Collection.class.isAssignableFrom(method.getParameterTypes()[0])) {
+          throw new BuilderException(
+              "The bulk insert method " + method + " should have only one Collection parameter.");
+        }
+        if (bulkInsert.chunkSize() <= 0) {
+          throw new BuilderException("The chunk size of bulk insert method " + method + " should be greater than 0.");
+        }
+        String derivedId = statement.getId() + STATEMENT_SUFFIX;
+        if (!configuration.hasStatement(derivedId, false)) {
+          configuration.addMappedStatement(deriveStatement(configuration, statement));
+        }
+        statements.put(statement.getId(),
+            new BulkStatement(configuration.getMappedStatement(derivedId, false), bulkInsert.chunkSize()));
+      }
+    }
+    if (!statements.isEmpty()) {
+      configuration.addInterceptor(new BulkInsertInterceptor(statements));
+    }
+  }
+
+  private static MappedStatement deriveStatement(Configuration configuration, MappedStatement statement) {
+    MappedStatement.Builder builder = new MappedStatement.Builder(configuration,
+        statement.getId() + STATEMENT_SUFFIX,
+        new BulkInsertSqlSource(configuration, statement.getId(), statement.getSqlSource()),
+        statement.getSqlCommandType()).resource(statement.getResource()).timeout(statement.getTimeout())
+            .statementType(statement.getStatementType()).parameterMap(statement.getParameterMap())
+            .cache(statement.getCache()).flushCacheRequired(statement.isFlushCacheRequired())
+            .useCache(statement.isUseCache()).keyGenerator(statement.getKeyGenerator())
+            .databaseId(statement.getDatabaseId()).lang(statement.getLang());
+    if (statement.getKeyProperties() != null) {
+      builder.keyProperty(String.join(",", statement.getKeyProperties()));
+    }
+    if (statement.getKeyColumns() != null) {
+      builder.keyColumn(String.join(",", statement.getKeyColumns()));
+    }
+    return builder.build();
+  }
+
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+    BulkStatement bulkStatement = statements.get(statement.getId());
+    if (bulkStatement == null) {
+      return invocation.proceed();
+    }
+    Object parameter = invocation.getArgs()[1];
+    List<?> rows = new ArrayList<>(findRows(parameter));
+    Executor executor = (Executor) invocation.getTarget();
+    int updateCount = 0;
+    boolean batched = false;
+    for (int from = 0; from < rows.size(); from += bulkStatement.chunkSize) {
+      List<?> chunk = rows.subList(from, Math.min(from + bulkStatement.chunkSize, rows.size()));
+      int count = executor.update(bulkStatement.statement, toChunkParameter(parameter, chunk));
+      if (count == BatchExecutor.BATCH_UPDATE_RETURN_VALUE) {
+        batched = true;
+      } else {
+        updateCount += count;
+      }
+    }
+    return batched ? BatchExecutor.BATCH_UPDATE_RETURN_VALUE : updateCount;
+  }
+
+  private static Collection<?> findRows(Object parameter) {
+    if (parameter instanceof Collection) {
+      return (Collection<?>) parameter;
+    }
+    if (parameter instanceof Map) {
+      // The collection is wrapped by the SqlSession(as 'collection' and 'list') or the mapper(as '{name}' and 'param1')
+      Set<Object> values = Collections.newSetFromMap(new IdentityHashMap<>());
+      values.addAll(((Map<?, ?>) parameter).values());
+      if (values.size() == 1 && values.iterator().next() instanceof Collection) {
+        return (Collection<?>) values.iterator().next();
+      }
+    }
+    throw new BuilderException("The parameter of bulk insert should be a Collection, but it is " + parameter + ".");
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object toChunkParameter(Object parameter, List<?> chunk) {
+    if (!(parameter instanceof Map)) {
+      return chunk;
+    }
+    // Keep the type of map because the key generator assigns keys to the collection in it
+    Map<String, Object> chunkParameter = parameter instanceof DefaultSqlSession.StrictMap
+        ? new DefaultSqlSession.StrictMap<>()
+        : new MapperMethod.ParamMap<>();
+    ((Map<String, Object>) parameter).keySet().forEach(key -> chunkParameter.put(key, chunk));
+    return chunkParameter;
+  }
+
+  @Override
+  public Object plugin(Object target) {
+    return Plugin.wrap(target, this);
+  }
+
+  @Override
+  public void setProperties(Properties properties) {
+    // NOP
+  }
+
+  private static class BulkStatement {
+
+    private final MappedStatement statement;
+    private final int chunkSize;
+
+    private BulkStatement(MappedStatement statement, int chunkSize) {
+      this.statement = statement;
+      this.chunkSize = chunkSize;
+    }
+
+  }
+
+  /**
+   * The {@link SqlSource} that concatenates the {@code VALUES} rows that built from the original {@link SqlSource} for
+   * each element.
+   * <p>
+   * The bind values are resolved for each element, and bound as the additional parameters.
+   */
+  private static class BulkInsertSqlSource implements SqlSource {
+
+    private final Configuration configuration;
+    private final String statementId;
+    private final SqlSource rowSqlSource;
+
+    private BulkInsertSqlSource(Configuration configuration, String statementId, SqlSource rowSqlSource) {
+      this.configuration = configuration;
+      this.statementId = statementId;
+      this.rowSqlSource = rowSqlSource;
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+      StringBuilder sql = new StringBuilder();
+      String prefix = null;
+      List<ParameterMapping> parameterMappings = new ArrayList<>();
+      Map<String, Object> values = new HashMap<>();
+      for (Object row : findRows(parameterObject)) {
+        BoundSql rowBoundSql = rowSqlSource.getBoundSql(row);
+        Matcher matcher = VALUES_PATTERN.matcher(rowBoundSql.getSql());
+        if (!matcher.matches() || (prefix != null && !prefix.equals(matcher.group(1)))) {
+          throw new BuilderException("The statement '" + statementId
+              + "' for bulk insert should be an INSERT ... VALUES (...) statement with the same columns for all rows.");
+        }
+        if (prefix == null) {
+          prefix = matcher.group(1);
+          sql.append(prefix);
+        } else {
+          sql.append(", ");
+        }
+        sql.append(matcher.group(2));
+        for (ParameterMapping parameterMapping : rowBoundSql.getParameterMappings()) {
+          String property = PARAMETER_PREFIX + parameterMappings.size();
+          values.put(property, resolveValue(rowBoundSql, parameterMapping.getProperty(), row));
+          parameterMappings.add(new ParameterMapping.Builder(configuration, property, parameterMapping.getTypeHandler())
+              .javaType(parameterMapping.getJavaType()).jdbcType(parameterMapping.getJdbcType())
+              .numericScale(parameterMapping.getNumericScale()).build());
+        }
+      }
+      BoundSql boundSql = new BoundSql(configuration, sql.toString(), parameterMappings, parameterObject);
+      values.forEach(boundSql::setAdditionalParameter);
+      return boundSql;
+    }
+
+    private Object resolveValue(BoundSql rowBoundSql, String property, Object row) {
+      // Same as the DefaultParameterHandler
+      if (rowBoundSql.hasAdditionalParameter(property)) {
+        return rowBoundSql.getAdditionalParameter(property);
+      }
+      if (row == null) {
+        return null;
+      }
+      if (configuration.getTypeHandlerRegistry().hasTypeHandler(row.getClass())) {
+        return row;
+      }
+      return configuration.newMetaObject(row).getValue(property);
+    }
+
+  }
+
+}
@@ -0,0 +1,216 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The bus that propagates the invalidation of second level caches between nodes.
+ * <p>
+ * The caches of each {@code SqlSessionFactory} are decorated by the {@link InvalidatingCache}. When a cache is
+ * flushed, its region is published after the batch interval, and the regions that flushed within the interval are
+ * coalesced into one message. When a message is received from other nodes, the caches of its regions are cleared.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class CacheInvalidationBus implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+  private final String nodeId = UUID.randomUUID().toString();
+  private final CacheInvalidationTransport transport;
+  private final long batchIntervalNanos;
+  private final ScheduledExecutorService scheduler;
+  private final Map<String, List<InvalidatingCache>> caches = new ConcurrentHashMap<>();
+  private final Set<String> pendingRegions = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final LongAdder publishedMessageCount = new LongAdder();
+  private final LongAdder receivedMessageCount = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param transport
+   *          The transport that delivers messages between nodes
+   * @param batchInterval
+   *          The interval that coalesces flushed regions into one message(if zero, a message is published
+   *          immediately)
+   */
+  public CacheInvalidationBus(CacheInvalidationTransport transport, Duration batchInterval) {
+    this.transport = transport;
+    this.batchIntervalNanos = batchInterval.toNanos();
+    this.scheduler = batchIntervalNanos > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-cache-invalidation-publisher");
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+    transport.subscribe(this::receive);
+  }
+
+  /**
+   * Return the id of this node.
+   *
+   * @return The id of this node
+   */
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Return the number of messages that published to other nodes.
+   *
+   * @return The number of published messages
+   */
+  public long getPublishedMessageCount() {
+    return publishedMessageCount.sum();
+  }
+
+  /**
+   * Return the number of messages that received from other nodes.
+   *
+   * @return The number of received messages
+   */
+  public long getReceivedMessageCount() {
+    return receivedMessageCount.sum();
+  }
+
+  /**
+   * Publish the pending regions, and release resources that held by this bus and the transport.
+   */
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    flush();
+    transport.close();
+  }
+
+  /**
+   * Decorate all caches of the MyBatis's core configuration by the {@link InvalidatingCache}, and replace the caches
+   * that held by mapped statements.
+   *
+   * @param name
+   *          The MyBatis configuration name
+   * @param configuration
+   *          The MyBatis's core configuration
+   */
+  void install(String name, Configuration configuration) {
+    // The collections of configuration may contain the ambiguous short names and duplicates
+    Map<Cache, Cache> decorated = new IdentityHashMap<>();
+    for (Object cache : new ArrayList<Object>(configuration.getCaches())) {
+      if (cache instanceof Cache && !(cache instanceof InvalidatingCache)) {
+        decorated.computeIfAbsent((Cache) cache, x -> register(name, x));
+      }
+    }
+    if (decorated.isEmpty()) {
+      return;
+    }
+    for (Iterator<?> iterator = configuration.getCaches().iterator(); iterator.hasNext();) {
+      if (decorated.containsKey(iterator.next())) {
+        iterator.remove();
+      }
+    }
+    decorated.values().forEach(configuration::addCache);
+    for (Object statement : new ArrayList<Object>(configuration.getMappedStatements())) {
+      if (statement instanceof MappedStatement) {
+        Cache cache = decorated.get(((MappedStatement) statement).getCache());
+        if (cache != null) {
+          SystemMetaObject.forObject(statement).setValue("cache", cache);
+        }
+      }
+    }
+  }
+
+  /**
+   * Publish a region that flushed.
+   *
+   * @param region
+   *          The region
+   */
+  void publish(String region) {
+    pendingRegions.add(region);
+    if (scheduler == null) {
+      flush();
+    } else if (flushScheduled.compareAndSet(false, true)) {
+      scheduler.schedule(this::flush, batchIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Publish the pending regions as one message.
+   */
+  void flush() {
+    flushScheduled.set(false);
+    Set<String> regions = new LinkedHashSet<>();
+    for (Iterator<String> iterator = pendingRegions.iterator(); iterator.hasNext();) {
+      regions.add(iterator.next());
+      iterator.remove();
+    }
+    if (regions.isEmpty()) {
+      return;
+    }
+    try {
+      transport.send(new CacheInvalidationMessage(nodeId, regions));
+      publishedMessageCount.increment();
+    } catch (RuntimeException e) {
+      logger.warn("Failed to publish the cache invalidation for {}.", regions, e);
+    }
+  }
+
+  private InvalidatingCache register(String name, Cache cache) {
+    InvalidatingCache invalidatingCache = new InvalidatingCache(cache, this, name + ":" + cache.getId());
+    caches.computeIfAbsent(invalidatingCache.getRegion(), region -> new CopyOnWriteArrayList<>())
+        .add(invalidatingCache);
+    return invalidatingCache;
+  }
+
+  private void receive(CacheInvalidationMessage message) {
+    if (nodeId.equals(message.getNodeId())) {
+      return;
+    }
+    receivedMessageCount.increment();
+    for (String region : message.getRegions()) {
+      caches.getOrDefault(region, Collections.emptyList()).forEach(InvalidatingCache::invalidate);
+    }
+  }
+
+}
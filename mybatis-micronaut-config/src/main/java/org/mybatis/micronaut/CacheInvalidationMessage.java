@@ -0,0 +1,72 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The message that notifies the second level caches to invalidate to other nodes.
+ * <p>
+ * Each cache is identified by the region that concatenated the MyBatis configuration name and the cache id(such as
+ * {@code default:com.example.mapper.CityMapper}).
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class CacheInvalidationMessage {
+
+  private final String nodeId;
+  private final Set<String> regions;
+
+  /**
+   * Constructor.
+   *
+   * @param nodeId
+   *          The id of node that published this message
+   * @param regions
+   *          The regions to invalidate
+   */
+  public CacheInvalidationMessage(String nodeId, Set<String> regions) {
+    this.nodeId = nodeId;
+    this.regions = Collections.unmodifiableSet(new LinkedHashSet<>(regions));
+  }
+
+  /**
+   * Return the id of node that published this message.
+   *
+   * @return The id of node that published this message
+   */
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Return the regions to invalidate.
+   *
+   * @return The regions to invalidate
+   */
+  public Set<String> getRegions() {
+    return regions;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheInvalidationMessage{nodeId=" + nodeId + ", regions=" + regions + "}";
+  }
+
+}
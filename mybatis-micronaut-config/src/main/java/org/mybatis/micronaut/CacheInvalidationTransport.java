@@ -0,0 +1,56 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+/**
+ * The transport that delivers the {@link CacheInvalidationMessage} between nodes.
+ * <p>
+ * If a bean of this type exists in the application context, it is used instead of the built-in transports
+ * ({@link LoopbackCacheInvalidationTransport} and {@link UdpCacheInvalidationTransport}).
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public interface CacheInvalidationTransport extends Closeable {
+
+  /**
+   * Send a message to other nodes.
+   *
+   * @param message
+   *          The message
+   */
+  void send(CacheInvalidationMessage message);
+
+  /**
+   * Add a listener that receives messages. The messages that published by own node may be received too.
+   *
+   * @param listener
+   *          The listener
+   */
+  void subscribe(Consumer<CacheInvalidationMessage> listener);
+
+  /**
+   * Release resources that held by this transport.
+   */
+  @Override
+  default void close() {
+    // NOP
+  }
+
+}
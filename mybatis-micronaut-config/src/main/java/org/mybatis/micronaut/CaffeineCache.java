@@ -0,0 +1,146 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * The second level cache implementation backed by the Caffeine(W-TinyLFU eviction policy).
+ * <p>
+ * This cache can be accessed concurrently without the synchronized decorators of MyBatis, and it holds the cached
+ * objects as is(without the serialization). Therefore the cached objects should be treated as read-only.
+ * <p>
+ * The hit, miss and eviction statistics are recorded, and they can be retrieved via {@link #getStats()}.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class CaffeineCache implements Cache {
+
+  static final long DEFAULT_MAXIMUM_SIZE = 1024;
+
+  private final String id;
+  private final com.github.benmanes.caffeine.cache.Cache<Object, Object> cache;
+
+  /**
+   * Constructor for the {@code implementation} of {@code @CacheNamespace} and {@code <cache/>}.
+   * <p>
+   * The maximum size is 1024 and entries do not expire.
+   *
+   * @param id
+   *          The cache id(namespace)
+   */
+  public CaffeineCache(String id) {
+    this(id, DEFAULT_MAXIMUM_SIZE, null, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param id
+   *          The cache id(namespace)
+   * @param maximumSize
+   *          The maximum number of entries
+   * @param expireAfterWrite
+   *          The duration that entries expire after written(if {@code null}, entries do not expire)
+   * @param expireAfterAccess
+   *          The duration that entries expire after accessed(if {@code null}, entries do not expire)
+   */
+  public CaffeineCache(String id, long maximumSize, Duration expireAfterWrite, Duration expireAfterAccess) {
+    this.id = id;
+    this.cache = newBuilder(maximumSize, expireAfterWrite, expireAfterAccess).build();
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    // The TransactionalCache puts null for the entry that missed in the cache
+    if (value == null) {
+      cache.invalidate(key);
+    } else {
+      cache.put(key, value);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return cache.getIfPresent(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return cache.asMap().remove(key);
+  }
+
+  @Override
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  @Override
+  public int getSize() {
+    return (int) Math.min(cache.estimatedSize(), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Return the snapshot of the statistics(hit, miss, eviction, etc...).
+   *
+   * @return The snapshot of the statistics
+   */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Perform the pending maintenance operations such as the eviction.
+   */
+  void cleanUp() {
+    cache.cleanUp();
+  }
+
+  /**
+   * Create a builder of the Caffeine cache that records statistics.
+   *
+   * @param maximumSize
+   *          The maximum number of entries
+   * @param expireAfterWrite
+   *          The duration that entries expire after written(if {@code null}, entries do not expire)
+   * @param expireAfterAccess
+   *          The duration that entries expire after accessed(if {@code null}, entries do not expire)
+   * @return The builder of the Caffeine cache
+   */
+  static Caffeine<Object, Object> newBuilder(long maximumSize, Duration expireAfterWrite, Duration expireAfterAccess) {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(maximumSize).recordStats();
+    if (expireAfterWrite != null) {
+      builder.expireAfterWrite(expireAfterWrite.toNanos(), TimeUnit.NANOSECONDS);
+    }
+    if (expireAfterAccess != null) {
+      builder.expireAfterAccess(expireAfterAccess.toNanos(), TimeUnit.NANOSECONDS);
+    }
+    return builder;
+  }
+
+}
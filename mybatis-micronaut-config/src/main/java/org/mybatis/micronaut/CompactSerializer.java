@@ -0,0 +1,469 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.core.beans.BeanIntrospection;
+import io.micronaut.core.beans.BeanIntrospector;
+import io.micronaut.core.beans.BeanProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * The compact binary serializer for the objects that stored into the off-heap tier of {@link TieredCache}.
+ * <p>
+ * The basic types(such as the {@link String}, the number, the date/time and the {@code byte[]}), the {@link List},
+ * the {@link Set}, the {@link Map} and the types that have the {@link BeanIntrospection} with default constructor are
+ * written as type tag and values without class descriptors, and integers are written as variable length. The class
+ * name of an enum or an introspected type is written only once per stream, and an object that appears repeatedly
+ * (including the circular reference) is written as back reference. Other types should implement the
+ * {@link Serializable}, and they are written via the Java serialization.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class CompactSerializer {
+
+  private static final int NULL = 0;
+  private static final int STRING = 1;
+  private static final int INTEGER = 2;
+  private static final int LONG = 3;
+  private static final int SHORT = 4;
+  private static final int BYTE = 5;
+  private static final int DOUBLE = 6;
+  private static final int FLOAT = 7;
+  private static final int TRUE = 8;
+  private static final int FALSE = 9;
+  private static final int CHARACTER = 10;
+  private static final int BIG_DECIMAL = 11;
+  private static final int BIG_INTEGER = 12;
+  private static final int BYTES = 13;
+  private static final int DATE = 14;
+  private static final int SQL_DATE = 15;
+  private static final int SQL_TIME = 16;
+  private static final int SQL_TIMESTAMP = 17;
+  private static final int LOCAL_DATE = 18;
+  private static final int LOCAL_TIME = 19;
+  private static final int LOCAL_DATE_TIME = 20;
+  private static final int ENUM = 21;
+  private static final int LIST = 22;
+  private static final int SET = 23;
+  private static final int MAP = 24;
+  private static final int INTROSPECTED = 25;
+  private static final int REFERENCE = 26;
+  private static final int SERIALIZABLE = 27;
+
+  private CompactSerializer() {
+    // NOP
+  }
+
+  /**
+   * Serialize an object.
+   *
+   * @param value
+   *          The object
+   * @return The serialized bytes
+   */
+  static byte[] serialize(Object value) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+        new Writer(out).write(value);
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new CacheException("Error serializing object.  Cause: " + e, e);
+    }
+  }
+
+  /**
+   * Deserialize an object.
+   *
+   * @param bytes
+   *          The serialized bytes
+   * @return The object
+   */
+  static Object deserialize(byte[] bytes) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      return new Reader(in).read();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    }
+  }
+
+  private static Optional<BeanIntrospection<Object>> findIntrospection(Class<?> type) {
+    @SuppressWarnings("unchecked")
+    Optional<BeanIntrospection<Object>> introspection = BeanIntrospector.SHARED
+        .findIntrospection((Class<Object>) type);
+    return introspection.filter(x -> x.getConstructorArguments().length == 0);
+  }
+
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    // ZigZag encoding for keeping small negative values short
+    long zigZag = (value << 1) ^ (value >> 63);
+    while ((zigZag & ~0x7FL) != 0) {
+      out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+      zigZag >>>= 7;
+    }
+    out.writeByte((int) zigZag);
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long zigZag = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      zigZag |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+      }
+    }
+    throw new StreamCorruptedException("Malformed variable length integer.");
+  }
+
+  private static class Writer {
+
+    private final DataOutputStream out;
+    private final Map<Class<?>, Integer> classes = new IdentityHashMap<>();
+    private final Map<Object, Integer> references = new IdentityHashMap<>();
+
+    private Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    private void write(Object value) throws IOException {
+      if (value == null) {
+        out.writeByte(NULL);
+      } else if (value instanceof String) {
+        out.writeByte(STRING);
+        writeString((String) value);
+      } else if (value instanceof Number && writeNumber((Number) value)) {
+        return;
+      } else if (value instanceof Boolean) {
+        out.writeByte((Boolean) value ? TRUE : FALSE);
+      } else if (value instanceof Character) {
+        out.writeByte(CHARACTER);
+        out.writeChar((Character) value);
+      } else if (value instanceof byte[]) {
+        out.writeByte(BYTES);
+        writeBytes((byte[]) value);
+      } else if (value instanceof Date && writeDate((Date) value)) {
+        return;
+      } else if (value instanceof LocalDate) {
+        out.writeByte(LOCAL_DATE);
+        writeVarLong(out, ((LocalDate) value).toEpochDay());
+      } else if (value instanceof LocalTime) {
+        out.writeByte(LOCAL_TIME);
+        writeVarLong(out, ((LocalTime) value).toNanoOfDay());
+      } else if (value instanceof LocalDateTime) {
+        out.writeByte(LOCAL_DATE_TIME);
+        writeVarLong(out, ((LocalDateTime) value).toLocalDate().toEpochDay());
+        writeVarLong(out, ((LocalDateTime) value).toLocalTime().toNanoOfDay());
+      } else if (value instanceof Enum) {
+        out.writeByte(ENUM);
+        writeClass(((Enum<?>) value).getDeclaringClass());
+        writeString(((Enum<?>) value).name());
+      } else {
+        writeObject(value);
+      }
+    }
+
+    private boolean writeNumber(Number value) throws IOException {
+      Class<?> type = value.getClass();
+      if (type == Integer.class) {
+        out.writeByte(INTEGER);
+        writeVarLong(out, value.intValue());
+      } else if (type == Long.class) {
+        out.writeByte(LONG);
+        writeVarLong(out, value.longValue());
+      } else if (type == Short.class) {
+        out.writeByte(SHORT);
+        writeVarLong(out, value.shortValue());
+      } else if (type == Byte.class) {
+        out.writeByte(BYTE);
+        out.writeByte(value.byteValue());
+      } else if (type == Double.class) {
+        out.writeByte(DOUBLE);
+        out.writeDouble(value.doubleValue());
+      } else if (type == Float.class) {
+        out.writeByte(FLOAT);
+        out.writeFloat(value.floatValue());
+      } else if (type == BigDecimal.class) {
+        out.writeByte(BIG_DECIMAL);
+        writeVarLong(out, ((BigDecimal) value).scale());
+        writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+      } else if (type == BigInteger.class) {
+        out.writeByte(BIG_INTEGER);
+        writeBytes(((BigInteger) value).toByteArray());
+      } else {
+        return false;
+      }
+      return true;
+    }
+
+    private boolean writeDate(Date value) throws IOException {
+      Class<?> type = value.getClass();
+      if (type == Date.class) {
+        out.writeByte(DATE);
+      } else if (type == java.sql.Date.class) {
+        out.writeByte(SQL_DATE);
+      } else if (type == java.sql.Time.class) {
+        out.writeByte(SQL_TIME);
+      } else if (type == java.sql.Timestamp.class) {
+        out.writeByte(SQL_TIMESTAMP);
+        writeVarLong(out, value.getTime());
+        writeVarLong(out, ((java.sql.Timestamp) value).getNanos());
+        return true;
+      } else {
+        return false;
+      }
+      writeVarLong(out, value.getTime());
+      return true;
+    }
+
+    private void writeObject(Object value) throws IOException {
+      Integer reference = references.get(value);
+      if (reference != null) {
+        out.writeByte(REFERENCE);
+        writeVarLong(out, reference);
+        return;
+      }
+      if (value instanceof List || value instanceof Set) {
+        references.put(value, references.size());
+        out.writeByte(value instanceof List ? LIST : SET);
+        Collection<?> collection = (Collection<?>) value;
+        writeVarLong(out, collection.size());
+        for (Object element : collection) {
+          write(element);
+        }
+        return;
+      }
+      if (value instanceof Map) {
+        references.put(value, references.size());
+        out.writeByte(MAP);
+        Map<?, ?> map = (Map<?, ?>) value;
+        writeVarLong(out, map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          write(entry.getKey());
+          write(entry.getValue());
+        }
+        return;
+      }
+      Optional<BeanIntrospection<Object>> introspection = findIntrospection(value.getClass());
+      if (introspection.isPresent()) {
+        references.put(value, references.size());
+        out.writeByte(INTROSPECTED);
+        writeClass(value.getClass());
+        for (BeanProperty<Object, Object> property : introspection.get().getBeanProperties()) {
+          if (!property.isReadOnly()) {
+            write(property.get(value));
+          }
+        }
+        return;
+      }
+      if (!(value instanceof Serializable)) {
+        throw new NotSerializableException(value.getClass().getName());
+      }
+      references.put(value, references.size());
+      out.writeByte(SERIALIZABLE);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+        objectOut.writeObject(value);
+      }
+      writeBytes(bytes.toByteArray());
+    }
+
+    private void writeClass(Class<?> type) throws IOException {
+      Integer index = classes.get(type);
+      if (index != null) {
+        writeVarLong(out, index);
+        return;
+      }
+      // The new class is written with its name
+      writeVarLong(out, classes.size());
+      classes.put(type, classes.size());
+      writeString(type.getName());
+    }
+
+    private void writeString(String value) throws IOException {
+      writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(byte[] value) throws IOException {
+      writeVarLong(out, value.length);
+      out.write(value);
+    }
+
+  }
+
+  private static class Reader {
+
+    private final DataInputStream in;
+    private final List<Class<?>> classes = new ArrayList<>();
+    private final List<Object> references = new ArrayList<>();
+
+    private Reader(DataInputStream in) {
+      this.in = in;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object read() throws IOException, ClassNotFoundException {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+      case NULL:
+        return null;
+      case STRING:
+        return readString();
+      case INTEGER:
+        return (int) readVarLong(in);
+      case LONG:
+        return readVarLong(in);
+      case SHORT:
+        return (short) readVarLong(in);
+      case BYTE:
+        return in.readByte();
+      case DOUBLE:
+        return in.readDouble();
+      case FLOAT:
+        return in.readFloat();
+      case TRUE:
+        return Boolean.TRUE;
+      case FALSE:
+        return Boolean.FALSE;
+      case CHARACTER:
+        return in.readChar();
+      case BIG_DECIMAL:
+        int scale = (int) readVarLong(in);
+        return new BigDecimal(new BigInteger(readBytes()), scale);
+      case BIG_INTEGER:
+        return new BigInteger(readBytes());
+      case BYTES:
+        return readBytes();
+      case DATE:
+        return new Date(readVarLong(in));
+      case SQL_DATE:
+        return new java.sql.Date(readVarLong(in));
+      case SQL_TIME:
+        return new java.sql.Time(readVarLong(in));
+      case SQL_TIMESTAMP:
+        java.sql.Timestamp timestamp = new java.sql.Timestamp(readVarLong(in));
+        timestamp.setNanos((int) readVarLong(in));
+        return timestamp;
+      case LOCAL_DATE:
+        return LocalDate.ofEpochDay(readVarLong(in));
+      case LOCAL_TIME:
+        return LocalTime.ofNanoOfDay(readVarLong(in));
+      case LOCAL_DATE_TIME:
+        return LocalDateTime.of(LocalDate.ofEpochDay(readVarLong(in)), LocalTime.ofNanoOfDay(readVarLong(in)));
+      case ENUM:
+        return Enum.valueOf((Class) readClass(), readString());
+      case LIST:
+      case SET:
+        int size = (int) readVarLong(in);
+        Collection<Object> collection = tag == LIST ? new ArrayList<>(size) : new LinkedHashSet<>();
+        references.add(collection);
+        for (int i = 0; i < size; i++) {
+          collection.add(read());
+        }
+        return collection;
+      case MAP:
+        int entries = (int) readVarLong(in);
+        Map<Object, Object> map = new LinkedHashMap<>();
+        references.add(map);
+        for (int i = 0; i < entries; i++) {
+          map.put(read(), read());
+        }
+        return map;
+      case INTROSPECTED:
+        return readIntrospected();
+      case REFERENCE:
+        return references.get((int) readVarLong(in));
+      case SERIALIZABLE:
+        int index = references.size();
+        references.add(null);
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(readBytes()))) {
+          Object value = objectIn.readObject();
+          references.set(index, value);
+          return value;
+        }
+      default:
+        throw new StreamCorruptedException("Unknown type tag: " + tag);
+      }
+    }
+
+    private Object readIntrospected() throws IOException, ClassNotFoundException {
+      Class<?> type = readClass();
+      BeanIntrospection<Object> introspection = findIntrospection(type)
+          .orElseThrow(() -> new StreamCorruptedException("The bean introspection is not found for " + type));
+      Object bean = introspection.instantiate();
+      references.add(bean);
+      for (BeanProperty<Object, Object> property : introspection.getBeanProperties()) {
+        if (!property.isReadOnly()) {
+          property.set(bean, read());
+        }
+      }
+      return bean;
+    }
+
+    private Class<?> readClass() throws IOException, ClassNotFoundException {
+      int index = (int) readVarLong(in);
+      if (index < classes.size()) {
+        return classes.get(index);
+      }
+      Class<?> type = Resources.classForName(readString());
+      classes.add(type);
+      return type;
+    }
+
+    private String readString() throws IOException {
+      return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes() throws IOException {
+      byte[] bytes = new byte[(int) readVarLong(in)];
+      in.readFully(bytes);
+      return bytes;
+    }
+
+  }
+
+}
@@ -0,0 +1,148 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * The intercepted invocation of {@code Executor#query} that evaluates the {@link BoundSql} and the {@link CacheKey}
+ * at most once.
+ * <p>
+ * When they are evaluated for the query without them, the query is proceeded as the query with them, so the plugins
+ * and the {@code CachingExecutor} that follow reuse them instead of evaluating the dynamic SQL again(the plugins that
+ * follow receive only the query with them in this case).
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class ExecutorQuery {
+
+  private final Invocation invocation;
+  private MappedStatement statement;
+  private BoundSql boundSql;
+  private CacheKey cacheKey;
+
+  /**
+   * Constructor.
+   *
+   * @param invocation
+   *          The invocation of {@code Executor#query} with or without the {@link CacheKey} and the {@link BoundSql}
+   */
+  ExecutorQuery(Invocation invocation) {
+    this.invocation = invocation;
+    Object[] args = invocation.getArgs();
+    this.statement = (MappedStatement) args[0];
+    if (args.length == 6) {
+      this.cacheKey = (CacheKey) args[4];
+      this.boundSql = (BoundSql) args[5];
+    }
+  }
+
+  /**
+   * Return the statement to execute.
+   *
+   * @return The statement to execute
+   */
+  MappedStatement getStatement() {
+    return statement;
+  }
+
+  /**
+   * Replace the statement to execute.
+   *
+   * @param statement
+   *          The statement that has the same id and sql source as the original
+   */
+  void setStatement(MappedStatement statement) {
+    this.statement = statement;
+  }
+
+  /**
+   * Return the parameter object of query.
+   *
+   * @return The parameter object
+   */
+  Object getParameter() {
+    return invocation.getArgs()[1];
+  }
+
+  /**
+   * Return the row bounds of query.
+   *
+   * @return The row bounds
+   */
+  RowBounds getRowBounds() {
+    return (RowBounds) invocation.getArgs()[2];
+  }
+
+  /**
+   * Return the result handler of query.
+   *
+   * @return The result handler(if {@code null}, the result is returned as list)
+   */
+  ResultHandler<?> getResultHandler() {
+    return (ResultHandler<?>) invocation.getArgs()[3];
+  }
+
+  /**
+   * Return the {@link BoundSql} of query, evaluating it on first call.
+   *
+   * @return The {@link BoundSql}
+   */
+  BoundSql getBoundSql() {
+    if (boundSql == null) {
+      boundSql = statement.getBoundSql(getParameter());
+    }
+    return boundSql;
+  }
+
+  /**
+   * Return the {@link CacheKey} of query, creating it on first call.
+   *
+   * @return The {@link CacheKey}
+   */
+  CacheKey getCacheKey() {
+    if (cacheKey == null) {
+      cacheKey = ((Executor) invocation.getTarget()).createCacheKey(statement, getParameter(), getRowBounds(),
+          getBoundSql());
+    }
+    return cacheKey;
+  }
+
+  /**
+   * Proceed the query with the evaluated {@link CacheKey} and {@link BoundSql}.
+   *
+   * @return The result of query
+   * @throws Throwable
+   *           If the query fails
+   */
+  Object proceed() throws Throwable {
+    Object[] args = invocation.getArgs();
+    if (args.length == 6 || boundSql == null) {
+      args[0] = statement;
+      return invocation.proceed();
+    }
+    return ((Executor) invocation.getTarget()).query(statement, getParameter(), getRowBounds(), getResultHandler(),
+        getCacheKey(), boundSql);
+  }
+
+}
@@ -0,0 +1,177 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.reflection.ParamNameResolver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+
+/**
+ * The support class for the mapper implementation generated by the {@code MyBatisIndexProcessor}.
+ * <p>
+ * This class is designed for using from the generated code, and should not be used from the application code.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class GeneratedMapperSupport {
+
+  private static final String IMPLEMENTATION_SUFFIX = "$MyBatisMapper";
+  private static final String GENERIC_NAME_PREFIX = "param";
+
+  private static final ConcurrentMap<Class<?>, Optional<Constructor<?>>> implementationConstructors =
+      new ConcurrentHashMap<>();
+
+  private GeneratedMapperSupport() {
+    // NOP
+  }
+
+  /**
+   * Return a mapper object for specified mapper interface.
+   * <p>
+   * If the generated mapper implementation exists, return an instance of it, otherwise return the MyBatis's mapper
+   * proxy.
+   *
+   * @param mapperType
+   *          The mapper interface
+   * @param sqlSession
+   *          The {@link SqlSession} that used by the mapper object
+   * @param <T>
+   *          The type of mapper
+   * @return The mapper object
+   */
+  public static <T> T getMapper(Class<T> mapperType, SqlSession sqlSession) {
+    Optional<Constructor<?>> constructor = implementationConstructors.get(mapperType);
+    if (constructor == null) {
+      constructor = implementationConstructors.computeIfAbsent(mapperType,
+          GeneratedMapperSupport::findImplementationConstructor);
+    }
+    if (!constructor.isPresent()) {
+      return sqlSession.getConfiguration().getMapper(mapperType, sqlSession);
+    }
+    try {
+      return mapperType.cast(constructor.get().newInstance(sqlSession));
+    } catch (InvocationTargetException e) {
+      throw new BindingException("Error creating the mapper implementation for " + mapperType.getName() + ".",
+          e.getTargetException());
+    } catch (ReflectiveOperationException e) {
+      throw new BindingException("Error creating the mapper implementation for " + mapperType.getName() + ".", e);
+    }
+  }
+
+  private static Optional<Constructor<?>> findImplementationConstructor(Class<?> mapperType) {
+    try {
+      Class<?> implementationType = Class.forName(mapperType.getName() + IMPLEMENTATION_SUFFIX, false,
+          mapperType.getClassLoader());
+      return mapperType.isAssignableFrom(implementationType)
+          ? Optional.of(implementationType.getConstructor(SqlSession.class))
+          : Optional.empty();
+    } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Resolve the parameter names and the generic parameter names of specified mapper method.
+   * <p>
+   * The returned array contains the parameter names at first half and the generic parameter names(such as
+   * {@code param1}) at second half. The generic parameter name is {@code null} when it conflicts with the parameter
+   * names.
+   *
+   * @param configuration
+   *          The MyBatis's core configuration
+   * @param mapperType
+   *          The mapper interface
+   * @param methodName
+   *          The method name
+   * @param parameterTypes
+   *          The parameter types of method
+   * @return The parameter names and the generic parameter names
+   */
+  public static String[] getParamNames(Configuration configuration, Class<?> mapperType, String methodName,
+      Class<?>... parameterTypes) {
+    Method method;
+    try {
+      method = mapperType.getMethod(methodName, parameterTypes);
+    } catch (NoSuchMethodException e) {
+      throw new BindingException("Mapper method '" + mapperType.getName() + "." + methodName + "' was not found.", e);
+    }
+    String[] names = new ParamNameResolver(configuration, method).getNames();
+    String[] paramNames = Arrays.copyOf(names, names.length * 2);
+    for (int i = 0; i < names.length; i++) {
+      String genericName = GENERIC_NAME_PREFIX + (i + 1);
+      paramNames[names.length + i] = Arrays.asList(names).contains(genericName) ? null : genericName;
+    }
+    return paramNames;
+  }
+
+  /**
+   * Convert method arguments to the parameter object for the {@link SqlSession}.
+   * <p>
+   * This method creates the same parameter object with the MyBatis's mapper proxy.
+   *
+   * @param paramNames
+   *          The parameter names that resolved by {@link #getParamNames(Configuration, Class, String, Class[])}
+   * @param args
+   *          The method arguments
+   * @return The parameter object
+   */
+  public static Object toParamMap(String[] paramNames, Object... args) {
+    MapperMethod.ParamMap<Object> param = new MapperMethod.ParamMap<>();
+    for (int i = 0; i < args.length; i++) {
+      param.put(paramNames[i], args[i]);
+    }
+    for (int i = 0; i < args.length; i++) {
+      String genericName = paramNames[args.length + i];
+      if (genericName != null) {
+        param.put(genericName, args[i]);
+      }
+    }
+    return param;
+  }
+
+  /**
+   * Verify that the result of the method with a primitive return type is not {@code null}.
+   *
+   * @param result
+   *          The result
+   * @param statement
+   *          The statement id
+   * @param returnType
+   *          The return type of method
+   * @param <T>
+   *          The type of result
+   * @return The result
+   */
+  public static <T> T requireNonNullResult(T result, String statement, Class<?> returnType) {
+    if (result == null) {
+      throw new BindingException("Mapper method '" + statement
+          + " attempted to return null from a method with a primitive return type (" + returnType + ").");
+    }
+    return result;
+  }
+
+}
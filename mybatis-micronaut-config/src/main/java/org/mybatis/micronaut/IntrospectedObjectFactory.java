@@ -0,0 +1,66 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.core.beans.BeanIntrospection;
+import io.micronaut.core.beans.BeanIntrospector;
+import io.micronaut.core.type.Argument;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+
+/**
+ * The {@link ObjectFactory} that creates objects via the Micronaut's {@link BeanIntrospection}.
+ * <p>
+ * The types annotated with {@code @io.micronaut.core.annotation.Introspected} are instantiated via the
+ * {@link BeanIntrospection} generated at compile time, and other types are instantiated via the reflection as same
+ * as the {@link DefaultObjectFactory}.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public class IntrospectedObjectFactory extends DefaultObjectFactory {
+
+  private static final long serialVersionUID = 1L;
+
+  @Override
+  public <T> T create(Class<T> type, List<Class<?>> constructorArgTypes, List<Object> constructorArgs) {
+    Class<?> classToCreate = resolveInterface(type);
+    Optional<? extends BeanIntrospection<?>> introspection = BeanIntrospector.SHARED.findIntrospection(classToCreate);
+    if (introspection.isPresent() && matches(introspection.get().getConstructorArguments(), constructorArgTypes)) {
+      Object[] args = constructorArgs == null ? new Object[0] : constructorArgs.toArray();
+      return type.cast(introspection.get().instantiate(args));
+    }
+    return super.create(type, constructorArgTypes, constructorArgs);
+  }
+
+  private static boolean matches(Argument<?>[] arguments, List<Class<?>> argTypes) {
+    int size = argTypes == null ? 0 : argTypes.size();
+    if (arguments.length != size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (!arguments[i].getType().equals(argTypes.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,218 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.core.beans.BeanIntrospection;
+import io.micronaut.core.beans.BeanIntrospector;
+import io.micronaut.core.beans.BeanProperty;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+
+/**
+ * The {@link ReflectorFactory} that accesses properties via the Micronaut's {@link BeanIntrospection}.
+ * <p>
+ * For the types annotated with {@code @io.micronaut.core.annotation.Introspected}, the getter and setter of bean
+ * properties are invoked via the {@link BeanIntrospection} generated at compile time instead of the reflection, and
+ * the type is not analyzed via the reflection until a member that is not covered by the introspection(such as the
+ * field access and the default constructor) is requested. For other types, properties are accessed via the reflection
+ * as same as the {@link DefaultReflectorFactory}.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public class IntrospectedReflectorFactory extends DefaultReflectorFactory {
+
+  private final ConcurrentMap<Class<?>, Reflector> reflectors = new ConcurrentHashMap<>();
+
+  @Override
+  public Reflector findForClass(Class<?> type) {
+    if (!isClassCacheEnabled()) {
+      return newReflector(type);
+    }
+    Reflector reflector = reflectors.get(type);
+    return reflector != null ? reflector : reflectors.computeIfAbsent(type, this::newReflector);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Reflector newReflector(Class<?> type) {
+    Optional<BeanIntrospection<Object>> introspection = BeanIntrospector.SHARED
+        .findIntrospection((Class<Object>) type);
+    return introspection.isPresent() ? new IntrospectedReflector(type, introspection.get()) : new Reflector(type);
+  }
+
+  private static class IntrospectedReflector extends Reflector {
+
+    private final Class<?> type;
+    private final Map<String, Invoker> getInvokers = new HashMap<>();
+    private final Map<String, Invoker> setInvokers = new HashMap<>();
+    private final Map<String, String> caseInsensitivePropertyMap = new HashMap<>();
+    private volatile Reflector reflectiveReflector;
+
+    private IntrospectedReflector(Class<?> type, BeanIntrospection<Object> introspection) {
+      // The Reflector analyzes the specified type via the reflection on construction, so the Object is passed instead
+      // and all methods are overridden
+      super(Object.class);
+      this.type = type;
+      for (BeanProperty<Object, Object> property : introspection.getBeanProperties()) {
+        String name = property.getName();
+        if (!property.isWriteOnly()) {
+          getInvokers.put(name, new GetInvoker(property, property.getType()));
+        }
+        if (!property.isReadOnly()) {
+          setInvokers.put(name, new SetInvoker(property, property.getType()));
+        }
+        caseInsensitivePropertyMap.put(name.toUpperCase(Locale.ENGLISH), name);
+      }
+    }
+
+    private Reflector reflect() {
+      Reflector reflector = reflectiveReflector;
+      if (reflector == null) {
+        synchronized (this) {
+          reflector = reflectiveReflector;
+          if (reflector == null) {
+            reflector = new Reflector(type);
+            reflectiveReflector = reflector;
+          }
+        }
+      }
+      return reflector;
+    }
+
+    @Override
+    public Class<?> getType() {
+      return type;
+    }
+
+    @Override
+    public Constructor<?> getDefaultConstructor() {
+      return reflect().getDefaultConstructor();
+    }
+
+    @Override
+    public boolean hasDefaultConstructor() {
+      return reflect().hasDefaultConstructor();
+    }
+
+    @Override
+    public Invoker getGetInvoker(String propertyName) {
+      Invoker invoker = getInvokers.get(propertyName);
+      return invoker != null ? invoker : reflect().getGetInvoker(propertyName);
+    }
+
+    @Override
+    public Invoker getSetInvoker(String propertyName) {
+      Invoker invoker = setInvokers.get(propertyName);
+      return invoker != null ? invoker : reflect().getSetInvoker(propertyName);
+    }
+
+    @Override
+    public Class<?> getGetterType(String propertyName) {
+      Invoker invoker = getInvokers.get(propertyName);
+      return invoker != null ? invoker.getType() : reflect().getGetterType(propertyName);
+    }
+
+    @Override
+    public Class<?> getSetterType(String propertyName) {
+      Invoker invoker = setInvokers.get(propertyName);
+      return invoker != null ? invoker.getType() : reflect().getSetterType(propertyName);
+    }
+
+    @Override
+    public String[] getGetablePropertyNames() {
+      return reflect().getGetablePropertyNames();
+    }
+
+    @Override
+    public String[] getSetablePropertyNames() {
+      return reflect().getSetablePropertyNames();
+    }
+
+    @Override
+    public boolean hasGetter(String propertyName) {
+      return getInvokers.containsKey(propertyName) || reflect().hasGetter(propertyName);
+    }
+
+    @Override
+    public boolean hasSetter(String propertyName) {
+      return setInvokers.containsKey(propertyName) || reflect().hasSetter(propertyName);
+    }
+
+    @Override
+    public String findPropertyName(String name) {
+      String propertyName = caseInsensitivePropertyMap.get(name.toUpperCase(Locale.ENGLISH));
+      return propertyName != null ? propertyName : reflect().findPropertyName(name);
+    }
+
+  }
+
+  private static class GetInvoker implements Invoker {
+
+    private final BeanProperty<Object, Object> property;
+    private final Class<?> type;
+
+    private GetInvoker(BeanProperty<Object, Object> property, Class<?> type) {
+      this.property = property;
+      this.type = type;
+    }
+
+    @Override
+    public Object invoke(Object target, Object[] args) {
+      return property.get(target);
+    }
+
+    @Override
+    public Class<?> getType() {
+      return type;
+    }
+
+  }
+
+  private static class SetInvoker implements Invoker {
+
+    private final BeanProperty<Object, Object> property;
+    private final Class<?> type;
+
+    private SetInvoker(BeanProperty<Object, Object> property, Class<?> type) {
+      this.property = property;
+      this.type = type;
+    }
+
+    @Override
+    public Object invoke(Object target, Object[] args) {
+      property.set(target, args[0]);
+      return null;
+    }
+
+    @Override
+    public Class<?> getType() {
+      return type;
+    }
+
+  }
+
+}
@@ -0,0 +1,114 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * The {@link Cache} decorator that publishes the flush of cache to other nodes via the {@link CacheInvalidationBus}.
+ * <p>
+ * MyBatis clears the cache of namespace when a statement that flushes the cache(such as {@code INSERT},
+ * {@code UPDATE} and {@code DELETE}) is committed. This decorator publishes it, and the same cache on other nodes is
+ * cleared.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class InvalidatingCache implements Cache {
+
+  private final Cache delegate;
+  private final CacheInvalidationBus bus;
+  private final String region;
+
+  InvalidatingCache(Cache delegate, CacheInvalidationBus bus, String region) {
+    this.delegate = delegate;
+    this.bus = bus;
+    this.region = region;
+  }
+
+  /**
+   * Return the decorated cache.
+   *
+   * @return The decorated cache
+   */
+  public Cache getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * Return the region that identifies this cache between nodes.
+   *
+   * @return The region
+   */
+  public String getRegion() {
+    return region;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    bus.publish(region);
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return delegate.getReadWriteLock();
+  }
+
+  /**
+   * Clear the decorated cache without publishing.
+   */
+  void invalidate() {
+    delegate.clear();
+  }
+
+  /**
+   * Publish the flush of this cache to other nodes without clearing it.
+   * <p>
+   * It is used when a part of entries has been removed, and the same cache on other nodes is cleared.
+   */
+  void publish() {
+    bus.publish(region);
+  }
+
+}
@@ -0,0 +1,271 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+
+/**
+ * The {@link SqlSessionFactory} that defers building the actual {@link SqlSessionFactory} until first use.
+ * <p>
+ * The actual {@link SqlSessionFactory} is built only once on first method invocation. After it has been built, each
+ * invocation is delegated to it without acquiring a lock.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class LazySqlSessionFactory implements SqlSessionFactory {
+
+  private final MyBatisConfiguration configuration;
+  private final MyBatisConfiguration mappingConfiguration;
+  private final Initializer initializer;
+  private final Object lock = new Object();
+  private volatile SqlSessionFactory delegate;
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          The configuration bean for MyBatis
+   * @param mappingConfiguration
+   *          The configuration bean that defines mapper interfaces(the template when the template-name is specified)
+   * @param initializer
+   *          The initializer that builds the actual {@link SqlSessionFactory}
+   */
+  LazySqlSessionFactory(MyBatisConfiguration configuration, MyBatisConfiguration mappingConfiguration,
+      Initializer initializer) {
+    this.configuration = configuration;
+    this.mappingConfiguration = mappingConfiguration;
+    this.initializer = initializer;
+  }
+
+  /**
+   * Return whether the actual {@link SqlSessionFactory} has been built.
+   *
+   * @return If the actual {@link SqlSessionFactory} has been built, return {@code true}
+   */
+  boolean isInitialized() {
+    return delegate != null;
+  }
+
+  /**
+   * Return the mapper interfaces that will be registered into the actual {@link SqlSessionFactory}.
+   * <p>
+   * This method does not build the actual {@link SqlSessionFactory}. The mapper interfaces are resolved from the
+   * index that generated at compile time (the classpath is scanned only when it does not exist), and the mapper
+   * interfaces bound via the namespace of mapper xml files are resolved by reading only their root element.
+   *
+   * @return The mapper interfaces
+   */
+  List<Class<?>> getMapperTypes() {
+    Set<Class<?>> mapperTypes = new LinkedHashSet<>(mappingConfiguration.findMappers());
+    mappingConfiguration.findMapperXmlFiles().forEach(mapperXmlFile -> MapperXmlDocument.readNamespace(mapperXmlFile)
+        .flatMap(LazySqlSessionFactory::findBoundType).ifPresent(mapperTypes::add));
+    return mapperTypes.stream().filter(Class::isInterface).collect(Collectors.toList());
+  }
+
+  private static Optional<Class<?>> findBoundType(String namespace) {
+    // Same as the XMLMapperBuilder, the namespace that is not a class name is ignored
+    try {
+      return Optional.of(Resources.classForName(namespace));
+    } catch (ClassNotFoundException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Return the default executor type of the actual {@link SqlSessionFactory}.
+   * <p>
+   * This method does not build the actual {@link SqlSessionFactory}.
+   *
+   * @return The default executor type
+   */
+  ExecutorType getDefaultExecutorType() {
+    return configuration.getConfiguration().getDefaultExecutorType();
+  }
+
+  /**
+   * Return the actual {@link SqlSessionFactory}. If it has not been built yet, build it.
+   *
+   * @return The actual {@link SqlSessionFactory}
+   */
+  SqlSessionFactory getDelegate() {
+    SqlSessionFactory result = delegate;
+    if (result == null) {
+      synchronized (lock) {
+        result = delegate;
+        if (result == null) {
+          try {
+            result = initializer.initialize();
+          } catch (SQLException | IOException e) {
+            throw ExceptionFactory.wrapException("Error building SqlSessionFactory.", e);
+          }
+          delegate = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public SqlSession openSession() {
+    return getDelegate().openSession();
+  }
+
+  @Override
+  public SqlSession openSession(boolean autoCommit) {
+    return getDelegate().openSession(autoCommit);
+  }
+
+  @Override
+  public SqlSession openSession(Connection connection) {
+    return getDelegate().openSession(connection);
+  }
+
+  @Override
+  public SqlSession openSession(TransactionIsolationLevel level) {
+    return getDelegate().openSession(level);
+  }
+
+  @Override
+  public SqlSession openSession(ExecutorType execType) {
+    return getDelegate().openSession(execType);
+  }
+
+  @Override
+  public SqlSession openSession(ExecutorType execType, boolean autoCommit) {
+    return getDelegate().openSession(execType, autoCommit);
+  }
+
+  @Override
+  public SqlSession openSession(ExecutorType execType, TransactionIsolationLevel level) {
+    return getDelegate().openSession(execType, level);
+  }
+
+  @Override
+  public SqlSession openSession(ExecutorType execType, Connection connection) {
+    return getDelegate().openSession(execType, connection);
+  }
+
+  @Override
+  public Configuration getConfiguration() {
+    return getDelegate().getConfiguration();
+  }
+
+  /**
+   * Create a mapper proxy that retrieves the actual mapper object from specified {@link SqlSession} on first method
+   * invocation.
+   *
+   * @param mapperType
+   *          The mapper interface
+   * @param sqlSession
+   *          The {@link SqlSession} to retrieve the actual mapper object
+   * @param <T>
+   *          The type of mapper
+   * @return The mapper proxy
+   */
+  static <T> T newLazyMapper(Class<T> mapperType, SqlSession sqlSession) {
+    return mapperType.cast(Proxy.newProxyInstance(mapperType.getClassLoader(), new Class<?>[] { mapperType },
+        new LazyMapperHandler(mapperType, sqlSession)));
+  }
+
+  /**
+   * The initializer that builds the actual {@link SqlSessionFactory}.
+   */
+  @FunctionalInterface
+  interface Initializer {
+
+    /**
+     * Build the actual {@link SqlSessionFactory}.
+     *
+     * @return The actual {@link SqlSessionFactory}
+     * @throws SQLException
+     *           If fail to get the database id via {@link org.apache.ibatis.mapping.DatabaseIdProvider}
+     * @throws IOException
+     *           If fail to open mapper xml file
+     */
+    SqlSessionFactory initialize() throws SQLException, IOException;
+
+  }
+
+  private static class LazyMapperHandler implements InvocationHandler {
+
+    private final Class<?> mapperType;
+    private final SqlSession sqlSession;
+    private final Object lock = new Object();
+    private volatile Object delegate;
+
+    private LazyMapperHandler(Class<?> mapperType, SqlSession sqlSession) {
+      this.mapperType = mapperType;
+      this.sqlSession = sqlSession;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getDeclaringClass() == Object.class) {
+        switch (method.getName()) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Lazy mapper proxy for " + mapperType.getName();
+        default:
+          return method.invoke(this, args);
+        }
+      }
+      try {
+        return method.invoke(getDelegate(), args);
+      } catch (InvocationTargetException e) {
+        throw e.getTargetException();
+      }
+    }
+
+    private Object getDelegate() {
+      Object result = delegate;
+      if (result == null) {
+        synchronized (lock) {
+          result = delegate;
+          if (result == null) {
+            result = GeneratedMapperSupport.getMapper(mapperType, sqlSession);
+            delegate = result;
+          }
+        }
+      }
+      return result;
+    }
+
+  }
+
+}
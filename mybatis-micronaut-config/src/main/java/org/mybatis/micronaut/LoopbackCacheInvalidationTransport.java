@@ -0,0 +1,46 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The {@link CacheInvalidationTransport} that delivers messages to listeners subscribed to the same instance within
+ * the JVM.
+ * <p>
+ * This transport is useful for the single node and for testing(multiple {@link CacheInvalidationBus}es that share an
+ * instance behave as separate nodes).
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public class LoopbackCacheInvalidationTransport implements CacheInvalidationTransport {
+
+  private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+
+  @Override
+  public void send(CacheInvalidationMessage message) {
+    listeners.forEach(listener -> listener.accept(message));
+  }
+
+  @Override
+  public void subscribe(Consumer<CacheInvalidationMessage> listener) {
+    listeners.add(listener);
+  }
+
+}
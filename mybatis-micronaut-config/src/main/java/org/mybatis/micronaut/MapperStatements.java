@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * The support class for finding the mapped statements that correspond to mapper methods.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class MapperStatements {
+
+  private MapperStatements() {
+    // NOP
+  }
+
+  /**
+   * Find the id of statement that corresponds to specified mapper method.
+   *
+   * @param configuration
+   *          The MyBatis's core configuration
+   * @param mapperType
+   *          The mapper interface
+   * @param method
+   *          The mapper method(it may be declared in the super interface)
+   * @return The statement id
+   */
+  static Optional<String> findStatementId(Configuration configuration, Class<?> mapperType, Method method) {
+    return Arrays.asList(mapperType.getName(), method.getDeclaringClass().getName()).stream()
+        .map(namespace -> namespace + "." + method.getName()).filter(id -> configuration.hasStatement(id, false))
+        .findFirst();
+  }
+
+}
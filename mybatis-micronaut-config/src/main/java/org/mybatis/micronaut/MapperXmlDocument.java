@@ -0,0 +1,470 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperEntityResolver;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * The mapper xml document that loaded from the pre-parsed binary form or the xml file.
+ * <p>
+ * The pre-parsed binary form is generated at build time by the {@link MapperXmlPrecompiler} and stored beside the
+ * mapper xml file with the {@value #PREPARSED_EXTENSION} extension. It holds the validated DOM tree of the mapper
+ * xml file and the checksum of the source xml. When the checksum does not match, the xml file is parsed as usual.
+ * <p>
+ * Only the xml parsing is skipped, and the mapped statements, result maps and sql fragments are still built from the
+ * DOM tree by the MyBatis's {@link XMLMapperBuilder}. The DOM tree is passed to the {@link XMLMapperBuilder} via its
+ * private constructor that takes the {@link XPathParser}, so when that constructor is not available on the current
+ * MyBatis version, the xml file is parsed by the public constructor that takes the {@link InputStream} as usual.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class MapperXmlDocument {
+
+  static final String PREPARSED_EXTENSION = ".mbin";
+
+  private static final Logger logger = LoggerFactory.getLogger(MapperXmlDocument.class);
+
+  private static final int MAGIC = 0x4D42584D;
+  private static final int VERSION = 1;
+  private static final byte ELEMENT_NODE = 1;
+  private static final byte TEXT_NODE = 2;
+  private static final byte CDATA_NODE = 3;
+
+  private static final Constructor<XMLMapperBuilder> PARSER_CONSTRUCTOR = findParserConstructor();
+
+  private final String resource;
+  private final byte[] xml;
+  private final Document document;
+  private final boolean preparsed;
+
+  private MapperXmlDocument(String resource, byte[] xml, Document document, boolean preparsed) {
+    this.resource = resource;
+    this.xml = xml;
+    this.document = document;
+    this.preparsed = preparsed;
+  }
+
+  /**
+   * Load a mapper xml document. If an up-to-date pre-parsed binary form exists, it is used instead of the xml file.
+   *
+   * @param mapperXmlFile
+   *          The URL of mapper xml file
+   * @return The mapper xml document
+   * @throws IOException
+   *           If fail to read the mapper xml file
+   */
+  static MapperXmlDocument load(URL mapperXmlFile) throws IOException {
+    return load(mapperXmlFile, mapperXmlFile.toString());
+  }
+
+  /**
+   * Load a mapper xml document. If an up-to-date pre-parsed binary form exists, it is used instead of the xml file.
+   *
+   * @param mapperXmlFile
+   *          The URL of mapper xml file
+   * @param resource
+   *          The resource name of mapper xml file
+   * @return The mapper xml document
+   * @throws IOException
+   *           If fail to read the mapper xml file
+   */
+  static MapperXmlDocument load(URL mapperXmlFile, String resource) throws IOException {
+    byte[] xml = readAllBytes(mapperXmlFile);
+    Document document = openPreparsed(mapperXmlFile).flatMap(in -> readPreparsed(mapperXmlFile, in, xml))
+        .orElse(null);
+    return new MapperXmlDocument(resource, xml, document, document != null);
+  }
+
+  /**
+   * Load a mapper xml document only when an up-to-date pre-parsed binary form exists.
+   *
+   * @param mapperXmlFile
+   *          The URL of mapper xml file
+   * @param resource
+   *          The resource name of mapper xml file
+   * @return The mapper xml document. If an up-to-date pre-parsed binary form does not exist, return empty
+   * @throws IOException
+   *           If fail to read the mapper xml file
+   */
+  static Optional<MapperXmlDocument> loadPreparsed(URL mapperXmlFile, String resource) throws IOException {
+    Optional<InputStream> preparsed = openPreparsed(mapperXmlFile);
+    if (!preparsed.isPresent()) {
+      return Optional.empty();
+    }
+    byte[] xml;
+    try {
+      xml = readAllBytes(mapperXmlFile);
+    } catch (IOException e) {
+      preparsed.get().close();
+      throw e;
+    }
+    return readPreparsed(mapperXmlFile, preparsed.get(), xml)
+        .map(document -> new MapperXmlDocument(resource, xml, document, true));
+  }
+
+  /**
+   * Return whether this document is loaded from the pre-parsed binary form.
+   *
+   * @return If loaded from the pre-parsed binary form, return {@code true}
+   */
+  boolean isPreparsed() {
+    return preparsed;
+  }
+
+  /**
+   * Parse the mapper xml file into a DOM tree in advance if not loaded from the pre-parsed binary form.
+   * <p>
+   * This method does not touch the MyBatis's core configuration, so it can be called on any thread.
+   *
+   * @return The mapper xml document that holds the DOM tree
+   */
+  MapperXmlDocument parseDocument() {
+    if (document != null || PARSER_CONSTRUCTOR == null) {
+      return this;
+    }
+    try {
+      return new MapperXmlDocument(resource, xml, parseXml(xml), false);
+    } catch (IOException | SAXException e) {
+      throw new BuilderException("Error creating document instance for " + resource + ". Cause: " + e, e);
+    }
+  }
+
+  /**
+   * Parse this document and apply mapped statements, result maps and sql fragments to the configuration.
+   *
+   * @param configuration
+   *          The MyBatis's core configuration
+   */
+  void parse(Configuration configuration) {
+    XMLMapperBuilder builder = document == null || PARSER_CONSTRUCTOR == null ? newStreamBuilder(configuration)
+        : newPreparsedBuilder(configuration);
+    builder.parse();
+  }
+
+  private XMLMapperBuilder newStreamBuilder(Configuration configuration) {
+    return new XMLMapperBuilder(new ByteArrayInputStream(xml), configuration, resource,
+        configuration.getSqlFragments());
+  }
+
+  private XMLMapperBuilder newPreparsedBuilder(Configuration configuration) {
+    XPathParser parser = new XPathParser(document, false, configuration.getVariables(),
+        new XMLMapperEntityResolver());
+    try {
+      return PARSER_CONSTRUCTOR.newInstance(parser, configuration, resource, configuration.getSqlFragments());
+    } catch (InvocationTargetException e) {
+      throw new BuilderException("Error creating XMLMapperBuilder for " + resource + ".", e.getTargetException());
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // e.g. the access to the private constructor is denied
+      logger.debug("Cannot use the DOM tree of {}, so parse the xml file as usual.", resource, e);
+      return newStreamBuilder(configuration);
+    }
+  }
+
+  /**
+   * Parse the mapper xml file into a DOM tree with the same settings as the MyBatis's {@link XPathParser}.
+   *
+   * @param xml
+   *          The content of mapper xml file
+   * @return The validated DOM tree
+   * @throws IOException
+   *           If fail to read the xml
+   * @throws SAXException
+   *           If the xml is invalid
+   */
+  static Document parseXml(byte[] xml) throws IOException, SAXException {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setValidating(true);
+    factory.setNamespaceAware(false);
+    factory.setIgnoringComments(true);
+    factory.setIgnoringElementContentWhitespace(false);
+    factory.setCoalescing(false);
+    factory.setExpandEntityReferences(true);
+    DocumentBuilder builder = newDocumentBuilder(factory);
+    builder.setEntityResolver(new XMLMapperEntityResolver());
+    builder.setErrorHandler(new ErrorHandler() {
+      @Override
+      public void warning(SAXParseException exception) {
+        // NOP
+      }
+
+      @Override
+      public void error(SAXParseException exception) throws SAXException {
+        throw exception;
+      }
+
+      @Override
+      public void fatalError(SAXParseException exception) throws SAXException {
+        throw exception;
+      }
+    });
+    return builder.parse(new ByteArrayInputStream(xml));
+  }
+
+  /**
+   * Write the pre-parsed binary form.
+   *
+   * @param xml
+   *          The content of mapper xml file
+   * @param document
+   *          The validated DOM tree of mapper xml file
+   * @param out
+   *          The output stream to write
+   * @throws IOException
+   *           If fail to write
+   */
+  static void writePreparsed(byte[] xml, Document document, OutputStream out) throws IOException {
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    collectStrings(document.getDocumentElement(), strings);
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    data.writeInt(xml.length);
+    data.writeLong(checksum(xml));
+    data.writeInt(strings.size());
+    for (String value : strings.keySet()) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      data.writeInt(bytes.length);
+      data.write(bytes);
+    }
+    writeElement(data, document.getDocumentElement(), strings);
+    data.flush();
+  }
+
+  private static Optional<InputStream> openPreparsed(URL mapperXmlFile) {
+    if (PARSER_CONSTRUCTOR == null) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(new URL(mapperXmlFile.toExternalForm() + PREPARSED_EXTENSION).openStream());
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static Optional<Document> readPreparsed(URL mapperXmlFile, InputStream in, byte[] xml) {
+    try (DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+      if (data.readInt() != MAGIC || data.readInt() != VERSION || data.readInt() != xml.length
+          || data.readLong() != checksum(xml)) {
+        logger.debug("The pre-parsed mapper xml for '{}' is stale. Parse the mapper xml file instead.", mapperXmlFile);
+        return Optional.empty();
+      }
+      String[] strings = new String[data.readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+      Document document = newDocumentBuilder(DocumentBuilderFactory.newInstance()).newDocument();
+      if (data.readByte() != ELEMENT_NODE) {
+        throw new IOException("The root node is not an element.");
+      }
+      document.appendChild(readElement(data, document, strings));
+      logger.debug("Load the pre-parsed mapper xml for '{}'.", mapperXmlFile);
+      return Optional.of(document);
+    } catch (IOException e) {
+      logger.warn("Fail to read the pre-parsed mapper xml for '{}'. Parse the mapper xml file instead.", mapperXmlFile,
+          e);
+      return Optional.empty();
+    }
+  }
+
+  private static void collectStrings(Node node, Map<String, Integer> strings) {
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      strings.computeIfAbsent(node.getNodeName(), key -> strings.size());
+      NamedNodeMap attributes = node.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        strings.computeIfAbsent(attributes.item(i).getNodeName(), key -> strings.size());
+        strings.computeIfAbsent(attributes.item(i).getNodeValue(), key -> strings.size());
+      }
+      NodeList children = node.getChildNodes();
+      for (int i = 0; i < children.getLength(); i++) {
+        collectStrings(children.item(i), strings);
+      }
+    } else if (isTextNode(node)) {
+      strings.computeIfAbsent(node.getNodeValue(), key -> strings.size());
+    }
+  }
+
+  private static void writeElement(DataOutputStream data, Node element, Map<String, Integer> strings)
+      throws IOException {
+    data.writeByte(ELEMENT_NODE);
+    data.writeInt(strings.get(element.getNodeName()));
+    NamedNodeMap attributes = element.getAttributes();
+    data.writeInt(attributes.getLength());
+    for (int i = 0; i < attributes.getLength(); i++) {
+      data.writeInt(strings.get(attributes.item(i).getNodeName()));
+      data.writeInt(strings.get(attributes.item(i).getNodeValue()));
+    }
+    NodeList children = element.getChildNodes();
+    int count = 0;
+    for (int i = 0; i < children.getLength(); i++) {
+      if (children.item(i).getNodeType() == Node.ELEMENT_NODE || isTextNode(children.item(i))) {
+        count++;
+      }
+    }
+    data.writeInt(count);
+    for (int i = 0; i < children.getLength(); i++) {
+      Node child = children.item(i);
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        writeElement(data, child, strings);
+      } else if (isTextNode(child)) {
+        data.writeByte(child.getNodeType() == Node.CDATA_SECTION_NODE ? CDATA_NODE : TEXT_NODE);
+        data.writeInt(strings.get(child.getNodeValue()));
+      }
+    }
+  }
+
+  private static Element readElement(DataInputStream data, Document document, String[] strings)
+      throws IOException {
+    Element element = document.createElement(strings[data.readInt()]);
+    int attributeCount = data.readInt();
+    for (int i = 0; i < attributeCount; i++) {
+      element.setAttribute(strings[data.readInt()], strings[data.readInt()]);
+    }
+    int childCount = data.readInt();
+    for (int i = 0; i < childCount; i++) {
+      byte type = data.readByte();
+      switch (type) {
+        case ELEMENT_NODE:
+          element.appendChild(readElement(data, document, strings));
+          break;
+        case TEXT_NODE:
+          element.appendChild(document.createTextNode(strings[data.readInt()]));
+          break;
+        case CDATA_NODE:
+          element.appendChild(document.createCDATASection(strings[data.readInt()]));
+          break;
+        default:
+          throw new IOException("Unknown node type: " + type);
+      }
+    }
+    return element;
+  }
+
+  /**
+   * Read the namespace of a mapper xml file without parsing the whole document.
+   * <p>
+   * This method reads only the root element using the StAX and does not resolve the DTD.
+   *
+   * @param mapperXmlFile
+   *          The URL of mapper xml file
+   * @return The namespace. If the root element does not have it, return empty
+   */
+  static Optional<String> readNamespace(URL mapperXmlFile) {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try (InputStream in = mapperXmlFile.openStream()) {
+      XMLStreamReader reader = factory.createXMLStreamReader(in);
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+            return Optional.ofNullable(reader.getAttributeValue(null, "namespace"))
+                .filter(namespace -> !namespace.isEmpty());
+          }
+        }
+        return Optional.empty();
+      } finally {
+        reader.close();
+      }
+    } catch (IOException | XMLStreamException e) {
+      throw new BuilderException("Error reading the namespace of mapper xml [" + mapperXmlFile + "]. Cause: " + e, e);
+    }
+  }
+
+  private static boolean isTextNode(Node node) {
+    return node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE;
+  }
+
+  private static long checksum(byte[] xml) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(xml, 0, xml.length);
+    return crc32.getValue();
+  }
+
+  private static byte[] readAllBytes(URL url) throws IOException {
+    try (InputStream in = url.openStream()) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int length;
+      while ((length = in.read(buffer)) != -1) {
+        out.write(buffer, 0, length);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  private static DocumentBuilder newDocumentBuilder(DocumentBuilderFactory factory) {
+    try {
+      return factory.newDocumentBuilder();
+    } catch (ParserConfigurationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Constructor<XMLMapperBuilder> findParserConstructor() {
+    try {
+      Constructor<XMLMapperBuilder> constructor = XMLMapperBuilder.class.getDeclaredConstructor(XPathParser.class,
+          Configuration.class, String.class, Map.class);
+      constructor.setAccessible(true);
+      return constructor;
+    } catch (NoSuchMethodException | RuntimeException e) {
+      logger.debug("The pre-parsed mapper xml is not supported on the current MyBatis version.", e);
+      return null;
+    }
+  }
+
+}
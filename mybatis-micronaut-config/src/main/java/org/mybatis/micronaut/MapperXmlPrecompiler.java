@@ -0,0 +1,136 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * The build tool that pre-parses mapper xml files into the binary form.
+ * <p>
+ * This tool scans mapper xml files under specified directories (typically the {@code target/classes}), validates
+ * them and writes the pre-parsed binary form beside each mapper xml file. It can be run by the
+ * {@code exec-maven-plugin} on the {@code process-classes} phase as follow:
+ *
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *   &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *   &lt;executions&gt;
+ *     &lt;execution&gt;
+ *       &lt;phase&gt;process-classes&lt;/phase&gt;
+ *       &lt;goals&gt;
+ *         &lt;goal&gt;java&lt;/goal&gt;
+ *       &lt;/goals&gt;
+ *       &lt;configuration&gt;
+ *         &lt;mainClass&gt;org.mybatis.micronaut.MapperXmlPrecompiler&lt;/mainClass&gt;
+ *         &lt;arguments&gt;
+ *           &lt;argument&gt;${project.build.outputDirectory}&lt;/argument&gt;
+ *         &lt;/arguments&gt;
+ *       &lt;/configuration&gt;
+ *     &lt;/execution&gt;
+ *   &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class MapperXmlPrecompiler {
+
+  private static final Logger logger = LoggerFactory.getLogger(MapperXmlPrecompiler.class);
+  private static final String MAPPER_DTD_PUBLIC_ID = "-//mybatis.org//DTD Mapper 3.0//EN";
+  private static final int DOCTYPE_SEARCH_LENGTH = 4096;
+
+  private MapperXmlPrecompiler() {
+    // NOP
+  }
+
+  /**
+   * Pre-parse mapper xml files under specified directories.
+   *
+   * @param args
+   *          The directories to scan mapper xml files
+   * @throws IOException
+   *           If fail to read or write files
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      throw new IllegalArgumentException("Usage: MapperXmlPrecompiler <directory>...");
+    }
+    for (String directory : args) {
+      int count = precompile(Paths.get(directory));
+      logger.info("Pre-parsed {} mapper xml file(s) under {}.", count, directory);
+    }
+  }
+
+  /**
+   * Pre-parse mapper xml files under specified directory.
+   *
+   * @param directory
+   *          The directory to scan mapper xml files
+   * @return The number of pre-parsed mapper xml files
+   * @throws IOException
+   *           If fail to read or write files
+   */
+  static int precompile(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return 0;
+    }
+    List<Path> xmlFiles;
+    try (Stream<Path> paths = Files.walk(directory)) {
+      xmlFiles = paths.filter(path -> path.getFileName().toString().endsWith(".xml"))
+          .filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    int count = 0;
+    for (Path xmlFile : xmlFiles) {
+      byte[] xml = Files.readAllBytes(xmlFile);
+      if (!isMapperXml(xml)) {
+        continue;
+      }
+      Document document;
+      try {
+        document = MapperXmlDocument.parseXml(xml);
+      } catch (SAXException e) {
+        throw new IllegalArgumentException("The mapper xml file [" + xmlFile + "] is invalid. Cause: " + e, e);
+      }
+      try (OutputStream out = Files.newOutputStream(
+          xmlFile.resolveSibling(xmlFile.getFileName() + MapperXmlDocument.PREPARSED_EXTENSION))) {
+        MapperXmlDocument.writePreparsed(xml, document, out);
+      }
+      count++;
+    }
+    return count;
+  }
+
+  private static boolean isMapperXml(byte[] xml) {
+    return new String(xml, 0, Math.min(xml.length, DOCTYPE_SEARCH_LENGTH), StandardCharsets.UTF_8)
+        .contains(MAPPER_DTD_PUBLIC_ID);
+  }
+
+}
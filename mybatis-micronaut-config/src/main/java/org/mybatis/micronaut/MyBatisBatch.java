@@ -0,0 +1,66 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.aop.Around;
+import io.micronaut.context.annotation.Type;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotation that executes the write statements via mapper beans with the
+ * {@link org.apache.ibatis.session.ExecutorType#BATCH} within the method.
+ * <p>
+ * The queued statements are flushed when the number of them reaches the {@link #flushEvery()}, before executing a
+ * {@code SELECT} statement and when the method completes normally. The results of flushed statements can be
+ * retrieved via the {@link MyBatisBatchScope#current()}. The batch joins the transaction that is active when the method
+ * is invoked(the {@link MyBatisTransactional} or the Spring based transaction). With the JDBC based transaction, the
+ * method is executed within a transaction of the {@link MyBatisTransactionManager}.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Around
+@Type(MyBatisBatchInterceptor.class)
+public @interface MyBatisBatch {
+
+  /**
+   * Return the name of {@link org.apache.ibatis.session.SqlSessionFactory} that used by the batch.
+   * <p>
+   * If omit, the unique(or primary) one is used.
+   *
+   * @return The name of {@link org.apache.ibatis.session.SqlSessionFactory}
+   */
+  String value() default "";
+
+  /**
+   * Return the number of queued statements that triggers the flush.
+   * <p>
+   * If omit, the queued statements are flushed only before executing a {@code SELECT} statement and when the method
+   * completes.
+   *
+   * @return The number of queued statements that triggers the flush
+   */
+  int flushEvery() default 0;
+
+}
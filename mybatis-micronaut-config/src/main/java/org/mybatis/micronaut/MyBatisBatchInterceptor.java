@@ -0,0 +1,109 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.aop.MethodInterceptor;
+import io.micronaut.aop.MethodInvocationContext;
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.core.order.Ordered;
+import io.micronaut.inject.qualifiers.Qualifiers;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.inject.Singleton;
+
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.managed.ManagedTransaction;
+
+/**
+ * The interceptor for the {@link MyBatisBatch}.
+ * <p>
+ * This interceptor is applied after other interceptors(such as the transaction interceptor) so that the queued
+ * statements are flushed within the transaction.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Singleton
+public final class MyBatisBatchInterceptor implements MethodInterceptor<Object, Object> {
+
+  private final ApplicationContext applicationContext;
+  private final Map<String, Optional<MyBatisTransactionManager>> transactionManagers = new ConcurrentHashMap<>();
+  private final Map<String, SqlSessionFactory> sqlSessionFactories = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param applicationContext
+   *          The application context of Micronaut
+   */
+  MyBatisBatchInterceptor(ApplicationContext applicationContext) {
+    this.applicationContext = applicationContext;
+  }
+
+  @Override
+  public int getOrder() {
+    return Ordered.LOWEST_PRECEDENCE;
+  }
+
+  @Override
+  public Object intercept(MethodInvocationContext<Object, Object> context) {
+    String name = context.getValue(MyBatisBatch.class, String.class).orElse("");
+    int flushEvery = context.getValue(MyBatisBatch.class, "flushEvery", Integer.class).orElse(0);
+    Optional<MyBatisTransactionManager> transactionManager = transactionManagers.computeIfAbsent(name,
+        this::findTransactionManager);
+    if (transactionManager.isPresent()) {
+      // JDBC based transaction: share the connection with the session bound to the transaction
+      MyBatisTransactionManager manager = transactionManager.get();
+      return manager.executeInTransaction(() -> {
+        SqlSession transactionalSqlSession = manager.getCurrentSqlSession().orElseThrow(IllegalStateException::new);
+        try {
+          return MyBatisBatchScope.execute(manager.getSqlSessionFactory(),
+              () -> openBatchSqlSession(transactionalSqlSession), flushEvery, context::proceed);
+        } finally {
+          // Discard the results cached before the batch updates
+          transactionalSqlSession.clearCache();
+        }
+      });
+    }
+    // Spring based transaction: the batch session participates in the transaction via the SpringManagedTransaction
+    SqlSessionFactory sqlSessionFactory = sqlSessionFactories.computeIfAbsent(name, this::findSqlSessionFactory);
+    return MyBatisBatchScope.execute(sqlSessionFactory, () -> sqlSessionFactory.openSession(ExecutorType.BATCH),
+        flushEvery, context::proceed);
+  }
+
+  private static SqlSession openBatchSqlSession(SqlSession transactionalSqlSession) {
+    Configuration configuration = transactionalSqlSession.getConfiguration();
+    return new DefaultSqlSession(configuration, configuration.newExecutor(
+        new ManagedTransaction(transactionalSqlSession.getConnection(), false), ExecutorType.BATCH), false);
+  }
+
+  private Optional<MyBatisTransactionManager> findTransactionManager(String name) {
+    return name.isEmpty() ? applicationContext.findBean(MyBatisTransactionManager.class)
+        : applicationContext.findBean(MyBatisTransactionManager.class, Qualifiers.byName(name));
+  }
+
+  private SqlSessionFactory findSqlSessionFactory(String name) {
+    return name.isEmpty() ? applicationContext.getBean(SqlSessionFactory.class)
+        : applicationContext.getBean(SqlSessionFactory.class, Qualifiers.byName(name));
+  }
+
+}
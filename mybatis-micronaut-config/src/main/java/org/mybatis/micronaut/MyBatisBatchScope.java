@@ -0,0 +1,213 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+/**
+ * The scope that executes write statements via an {@link SqlSession} with the
+ * {@link org.apache.ibatis.session.ExecutorType#BATCH}.
+ * <p>
+ * The scope is bound to the current thread per {@link SqlSessionFactory} while executing a method annotated with the
+ * {@link MyBatisBatch}, and the mapper beans route the statements to the batch {@link SqlSession} of it. The queued
+ * statements are flushed when the number of them reaches the threshold, before executing a {@code SELECT} statement
+ * and at the end of scope. The generated keys are set into the parameter objects on flush.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class MyBatisBatchScope {
+
+  private static final ThreadLocal<Deque<MyBatisBatchScope>> SCOPES = new ThreadLocal<>();
+
+  private final SqlSessionFactory sqlSessionFactory;
+  private final SqlSession sqlSession;
+  private final int flushEvery;
+  private final List<BatchResult> batchResults = new ArrayList<>();
+  private int queuedStatements;
+
+  private MyBatisBatchScope(SqlSessionFactory sqlSessionFactory, SqlSession sqlSession, int flushEvery) {
+    this.sqlSessionFactory = sqlSessionFactory;
+    this.sqlSession = sqlSession;
+    this.flushEvery = flushEvery;
+  }
+
+  /**
+   * Return the innermost scope that bound to the current thread.
+   *
+   * @return The current scope
+   */
+  public static Optional<MyBatisBatchScope> current() {
+    Deque<MyBatisBatchScope> scopes = SCOPES.get();
+    return scopes == null ? Optional.empty() : Optional.of(scopes.peek());
+  }
+
+  /**
+   * Flush the queued statements.
+   *
+   * @return The results of flushed statements
+   */
+  public List<BatchResult> flushStatements() {
+    List<BatchResult> results = sqlSession.flushStatements();
+    batchResults.addAll(results);
+    queuedStatements = 0;
+    return results;
+  }
+
+  /**
+   * Return the results of all statements that have been flushed within this scope.
+   * <p>
+   * Each {@link BatchResult} holds the update counts and the parameter objects(that the generated keys are set) per
+   * statement.
+   *
+   * @return The results of flushed statements
+   */
+  public List<BatchResult> getBatchResults() {
+    return Collections.unmodifiableList(batchResults);
+  }
+
+  /**
+   * Execute the action within a scope for specified {@link SqlSessionFactory}.
+   * <p>
+   * If a scope for the same {@link SqlSessionFactory} is already bound to the current thread, the action joins it.
+   * Otherwise, this method binds a new scope, and flushes the queued statements and closes the batch
+   * {@link SqlSession} at the end of scope.
+   *
+   * @param sqlSessionFactory
+   *          The {@link SqlSessionFactory} that the mapper beans belong to
+   * @param sqlSessionOpener
+   *          The function that opens the batch {@link SqlSession}
+   * @param flushEvery
+   *          The number of queued statements that triggers the flush({@code 0} or less means no threshold)
+   * @param action
+   *          The action
+   * @param <T>
+   *          The type of result
+   * @return The result of action
+   */
+  static <T> T execute(SqlSessionFactory sqlSessionFactory, Supplier<SqlSession> sqlSessionOpener, int flushEvery,
+      Supplier<T> action) {
+    if (find(sqlSessionFactory) != null) {
+      return action.get();
+    }
+    Deque<MyBatisBatchScope> scopes = SCOPES.get();
+    if (scopes == null) {
+      scopes = new ArrayDeque<>();
+      SCOPES.set(scopes);
+    }
+    MyBatisBatchScope scope = new MyBatisBatchScope(sqlSessionFactory, sqlSessionOpener.get(), flushEvery);
+    scopes.push(scope);
+    try {
+      T result = action.get();
+      scope.flushStatements();
+      scope.sqlSession.commit();
+      return result;
+    } finally {
+      scopes.pop();
+      if (scopes.isEmpty()) {
+        SCOPES.remove();
+      }
+      scope.sqlSession.close();
+    }
+  }
+
+  /**
+   * Create an {@link SqlSession} proxy that routes method invocations to the batch {@link SqlSession} while a scope
+   * for specified {@link SqlSessionFactory} is bound to the current thread.
+   *
+   * @param sqlSession
+   *          The {@link SqlSession} that used outside of a scope
+   * @param sqlSessionFactory
+   *          The {@link SqlSessionFactory} that the {@link SqlSession} belongs to
+   * @return The {@link SqlSession} proxy
+   */
+  static SqlSession wrap(SqlSession sqlSession, SqlSessionFactory sqlSessionFactory) {
+    return (SqlSession) Proxy.newProxyInstance(SqlSession.class.getClassLoader(), new Class<?>[] { SqlSession.class },
+        new BatchRoutingHandler(sqlSession, sqlSessionFactory));
+  }
+
+  private static MyBatisBatchScope find(SqlSessionFactory sqlSessionFactory) {
+    Deque<MyBatisBatchScope> scopes = SCOPES.get();
+    if (scopes != null) {
+      for (MyBatisBatchScope scope : scopes) {
+        if (scope.sqlSessionFactory == sqlSessionFactory) {
+          return scope;
+        }
+      }
+    }
+    return null;
+  }
+
+  private Object invoke(Method method, Object[] args) throws Throwable {
+    String name = method.getName();
+    if (name.startsWith("select")) {
+      flushStatements();
+    } else if (name.equals("flushStatements")) {
+      return flushStatements();
+    }
+    Object result = method.invoke(sqlSession, args);
+    if ((name.equals("insert") || name.equals("update") || name.equals("delete")) && flushEvery > 0
+        && ++queuedStatements >= flushEvery) {
+      flushStatements();
+    }
+    return result;
+  }
+
+  private static class BatchRoutingHandler implements InvocationHandler {
+
+    private final SqlSession sqlSession;
+    private final SqlSessionFactory sqlSessionFactory;
+
+    private BatchRoutingHandler(SqlSession sqlSession, SqlSessionFactory sqlSessionFactory) {
+      this.sqlSession = sqlSession;
+      this.sqlSessionFactory = sqlSessionFactory;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      MyBatisBatchScope scope = method.getDeclaringClass() == SqlSession.class ? find(sqlSessionFactory) : null;
+      try {
+        switch (method.getName()) {
+        case "commit":
+        case "rollback":
+        case "close":
+          // The end of transaction is managed by the scope and the outer transaction
+          return method.invoke(sqlSession, args);
+        default:
+          return scope == null ? method.invoke(sqlSession, args) : scope.invoke(method, args);
+        }
+      } catch (InvocationTargetException e) {
+        throw e.getTargetException();
+      }
+    }
+
+  }
+
+}
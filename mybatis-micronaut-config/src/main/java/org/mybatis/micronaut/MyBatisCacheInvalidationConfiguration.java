@@ -0,0 +1,169 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.context.annotation.Requires;
+
+import java.time.Duration;
+
+/**
+ * The configuration properties for the invalidation of second level caches between nodes.
+ * <p>
+ * The following is an example that uses the UDP multicast.
+ *
+ * <pre>
+ * mybatis-cache-invalidation:
+ *   enabled: true
+ *   port: 45588
+ *   targets:
+ *     - 239.255.27.1:45588
+ * </pre>
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@ConfigurationProperties(MyBatisCacheInvalidationConfiguration.PREFIX)
+@Requires(property = MyBatisCacheInvalidationConfiguration.PREFIX + ".enabled", value = "true")
+public class MyBatisCacheInvalidationConfiguration {
+
+  static final String PREFIX = "mybatis-cache-invalidation";
+
+  private boolean enabled;
+  private String transport = "udp";
+  private String bindAddress = "0.0.0.0";
+  private int port = 45588;
+  private String[] targets = { "239.255.27.1:45588" };
+  private Duration batchInterval = Duration.ofMillis(100);
+
+  /**
+   * Set whether enable the invalidation of second level caches between nodes.
+   *
+   * @param enabled
+   *          If enable, set {@code true}
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Return whether enable the invalidation of second level caches between nodes.
+   *
+   * @return If enable, return {@code true}
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Set the built-in transport. The {@code udp} and the {@code loopback}(within the JVM) are supported.
+   * <p>
+   * This property is ignored when a {@link CacheInvalidationTransport} bean exists.
+   *
+   * @param transport
+   *          The built-in transport
+   */
+  public void setTransport(String transport) {
+    this.transport = transport;
+  }
+
+  /**
+   * Return the built-in transport.
+   *
+   * @return The built-in transport
+   */
+  public String getTransport() {
+    return transport;
+  }
+
+  /**
+   * Set the address that receives messages via the UDP.
+   *
+   * @param bindAddress
+   *          The address that receives messages
+   */
+  public void setBindAddress(String bindAddress) {
+    this.bindAddress = bindAddress;
+  }
+
+  /**
+   * Return the address that receives messages via the UDP.
+   *
+   * @return The address that receives messages
+   */
+  public String getBindAddress() {
+    return bindAddress;
+  }
+
+  /**
+   * Set the port that receives messages via the UDP.
+   *
+   * @param port
+   *          The port that receives messages
+   */
+  public void setPort(int port) {
+    this.port = port;
+  }
+
+  /**
+   * Return the port that receives messages via the UDP.
+   *
+   * @return The port that receives messages
+   */
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * Set the addresses({@code host:port}) that messages are sent via the UDP. A multicast group address or the
+   * addresses of other nodes can be specified.
+   *
+   * @param targets
+   *          The addresses that messages are sent
+   */
+  public void setTargets(String... targets) {
+    this.targets = targets;
+  }
+
+  /**
+   * Return the addresses that messages are sent via the UDP.
+   *
+   * @return The addresses that messages are sent
+   */
+  public String[] getTargets() {
+    return targets;
+  }
+
+  /**
+   * Set the interval that coalesces flushed caches into one message.
+   *
+   * @param batchInterval
+   *          The interval that coalesces flushed caches(if zero, a message is published immediately)
+   */
+  public void setBatchInterval(Duration batchInterval) {
+    this.batchInterval = batchInterval;
+  }
+
+  /**
+   * Return the interval that coalesces flushed caches into one message.
+   *
+   * @return The interval that coalesces flushed caches
+   */
+  public Duration getBatchInterval() {
+    return batchInterval;
+  }
+
+}
@@ -0,0 +1,97 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.context.annotation.Factory;
+import io.micronaut.context.annotation.Requires;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The factory bean for the invalidation of second level caches between nodes.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Factory
+@Requires(beans = MyBatisCacheInvalidationConfiguration.class)
+class MyBatisCacheInvalidationFactoryBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(MyBatisCacheInvalidationFactoryBean.class);
+
+  /**
+   * Configure a built-in {@link CacheInvalidationTransport}.
+   *
+   * @param configuration
+   *          The configuration bean for the invalidation of second level caches
+   * @return The {@link CacheInvalidationTransport} bean
+   * @throws IOException
+   *           If fail to open the socket for the UDP
+   */
+  @Singleton
+  @Requires(missingBeans = CacheInvalidationTransport.class)
+  CacheInvalidationTransport cacheInvalidationTransport(MyBatisCacheInvalidationConfiguration configuration)
+      throws IOException {
+    switch (configuration.getTransport()) {
+    case "loopback":
+      return new LoopbackCacheInvalidationTransport();
+    case "udp":
+      List<InetSocketAddress> targets = Arrays.stream(configuration.getTargets())
+          .map(MyBatisCacheInvalidationFactoryBean::toSocketAddress).collect(Collectors.toList());
+      logger.info("Configure a UDP transport for the cache invalidation. port: {}, targets: {}",
+          configuration.getPort(), targets);
+      return new UdpCacheInvalidationTransport(
+          new InetSocketAddress(configuration.getBindAddress(), configuration.getPort()), targets);
+    default:
+      throw new IllegalArgumentException(
+          "The transport '" + configuration.getTransport() + "' is not supported. It should be udp or loopback.");
+    }
+  }
+
+  /**
+   * Configure a {@link CacheInvalidationBus}.
+   *
+   * @param transport
+   *          The transport that delivers messages between nodes
+   * @param configuration
+   *          The configuration bean for the invalidation of second level caches
+   * @return The {@link CacheInvalidationBus} bean
+   */
+  @Singleton
+  @Bean(preDestroy = "close")
+  CacheInvalidationBus cacheInvalidationBus(CacheInvalidationTransport transport,
+      MyBatisCacheInvalidationConfiguration configuration) {
+    return new CacheInvalidationBus(transport, configuration.getBatchInterval());
+  }
+
+  private static InetSocketAddress toSocketAddress(String address) {
+    int index = address.lastIndexOf(':');
+    if (index <= 0) {
+      throw new IllegalArgumentException("The target address should be 'host:port'. value: " + address);
+    }
+    return new InetSocketAddress(address.substring(0, index), Integer.parseInt(address.substring(index + 1)));
+  }
+
+}
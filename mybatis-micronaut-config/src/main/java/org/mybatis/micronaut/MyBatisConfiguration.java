@@ -22,19 +22,26 @@ import io.micronaut.core.io.ResourceLoader;
 import io.micronaut.core.util.ArrayUtils;
 
 import java.net.URL;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.ObjLongConsumer;
 import java.util.stream.Collectors;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.type.TypeHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The configuration properties for MyBatis integration.
@@ -47,10 +54,13 @@ public class MyBatisConfiguration {
 
   static final String PREFIX = "mybatis";
 
+  private static final Logger logger = LoggerFactory.getLogger(MyBatisConfiguration.class);
+
   private final Environment environment;
 
   private Class<?>[] mappers;
   private String[] mapperPackages;
+  private boolean scanUnindexedMapperPackages;
   private String[] mapperXmlBasePaths;
   private String[] mapperXmlFiles;
   private String[] typeAliasPackages;
@@ -61,6 +71,17 @@ public class MyBatisConfiguration {
   private Class<? extends LanguageDriver>[] scriptingLanguageDrivers;
   private Class<? extends LanguageDriver> defaultScriptingLanguageDriver;
   private String dataSourceName;
+  private boolean parallelMapperXmlParsing;
+  private boolean lazyInit;
+  private String templateName;
+  private String[] replicaDataSourceNames;
+  private Duration replicaEjectionDuration = Duration.ofSeconds(30);
+  private Integer reactiveExecutorSize;
+  private Integer streamFetchSize;
+  private ExecutorType[] executorTypes;
+  private Map<String, Object> caches = Collections.emptyMap();
+  private boolean tableBasedCacheInvalidation;
+  private boolean singleFlight;
 
   @ConfigurationBuilder(configurationPrefix = "configuration", excludes = { "environment", "proxyFactory",
       "reflectorFactory", "objectFactory", "objectWrapperFactory", "defaultScriptingLanguage" })
@@ -114,6 +135,29 @@ public class MyBatisConfiguration {
     return mapperPackages;
   }
 
+  /**
+   * Sets whether scan the classpath for the mapper packages that the index does not contain any mapper.
+   * <p>
+   * When the index that generated at compile time exists on the classpath, it is authoritative and the classpath is
+   * not scanned by default. When enabled, the packages specified by the {@code mapper-packages} that the index does not
+   * cover are scanned(e.g. the mappers in a jar compiled without the annotation processor).
+   *
+   * @param scanUnindexedMapperPackages
+   *          Whether scan the classpath for the mapper packages that the index does not contain any mapper
+   */
+  public void setScanUnindexedMapperPackages(boolean scanUnindexedMapperPackages) {
+    this.scanUnindexedMapperPackages = scanUnindexedMapperPackages;
+  }
+
+  /**
+   * Return whether scan the classpath for the mapper packages that the index does not contain any mapper.
+   *
+   * @return Whether scan the classpath for the mapper packages that the index does not contain any mapper
+   */
+  public boolean isScanUnindexedMapperPackages() {
+    return scanUnindexedMapperPackages;
+  }
+
   /**
    * Sets the base paths to load mapper xml file.
    *
@@ -304,6 +348,257 @@ public class MyBatisConfiguration {
     return dataSourceName;
   }
 
+  /**
+   * Sets whether parse mapper xml files in parallel.
+   * <p>
+   * When enabled, mapper xml files are read and parsed into DOM trees on the dedicated threads(bounded by the number of
+   * processors). Only the xml parsing runs in parallel, and building statements and result maps from the DOM trees (and
+   * from the mapper annotations) still runs on the current thread because the MyBatis's core configuration is not
+   * thread-safe. The cross namespace references are resolved after all namespaces are built, and an unresolvable
+   * reference fails at startup.
+   *
+   * @param parallelMapperXmlParsing
+   *          Whether parse mapper xml files in parallel
+   */
+  public void setParallelMapperXmlParsing(boolean parallelMapperXmlParsing) {
+    this.parallelMapperXmlParsing = parallelMapperXmlParsing;
+  }
+
+  /**
+   * Return whether parse mapper xml files in parallel.
+   *
+   * @return Whether parse mapper xml files in parallel
+   */
+  public boolean isParallelMapperXmlParsing() {
+    return parallelMapperXmlParsing;
+  }
+
+  /**
+   * Sets whether initialize the {@link org.apache.ibatis.session.SqlSessionFactory} on first use.
+   * <p>
+   * When enabled, the data source lookup and the MyBatis's core configuration building are deferred until the
+   * {@link org.apache.ibatis.session.SqlSessionFactory}, the {@code SqlSessionTemplate} or a mapper bean is used first.
+   *
+   * @param lazyInit
+   *          Whether initialize the {@link org.apache.ibatis.session.SqlSessionFactory} on first use
+   */
+  public void setLazyInit(boolean lazyInit) {
+    this.lazyInit = lazyInit;
+  }
+
+  /**
+   * Return whether initialize the {@link org.apache.ibatis.session.SqlSessionFactory} on first use.
+   *
+   * @return Whether initialize the {@link org.apache.ibatis.session.SqlSessionFactory} on first use
+   */
+  public boolean isLazyInit() {
+    return lazyInit;
+  }
+
+  /**
+   * Sets the name of the template configuration that shares the mapping model.
+   * <p>
+   * When specified, mapper interfaces and mapper xml files are not scanned and parsed for this configuration, and the
+   * mapping model(such as mapped statements and result maps) parsed by the template is shared. The mapped statements
+   * are bound to this configuration, so they are executed with the settings, plugins, object factories and data source
+   * of this configuration. The type aliases and type handlers referenced by the mappings are resolved with the
+   * template's because they are resolved on parsing.
+   *
+   * @param templateName
+   *          The name of the template configuration
+   */
+  public void setTemplateName(String templateName) {
+    this.templateName = templateName;
+  }
+
+  /**
+   * Return the name of the template configuration that shares the mapping model.
+   *
+   * @return The name of the template configuration
+   */
+  public String getTemplateName() {
+    return templateName;
+  }
+
+  /**
+   * Sets the replica data source names.
+   * <p>
+   * When specified, read-only statements that executed outside of a read-write transaction are routed to the replica
+   * that has the least outstanding requests, and other statements are routed to the primary data source(that
+   * specified by the data source name).
+   *
+   * @param replicaDataSourceNames
+   *          The replica data source names
+   */
+  public void setReplicaDataSourceNames(String[] replicaDataSourceNames) {
+    this.replicaDataSourceNames = replicaDataSourceNames;
+  }
+
+  /**
+   * Return the replica data source names.
+   *
+   * @return The replica data source names
+   */
+  public String[] getReplicaDataSourceNames() {
+    return replicaDataSourceNames;
+  }
+
+  /**
+   * Sets the duration for ejecting a replica that fails to get a connection. Default is 30 seconds.
+   *
+   * @param replicaEjectionDuration
+   *          The duration for ejecting a replica
+   */
+  public void setReplicaEjectionDuration(Duration replicaEjectionDuration) {
+    this.replicaEjectionDuration = replicaEjectionDuration;
+  }
+
+  /**
+   * Return the duration for ejecting a replica that fails to get a connection.
+   *
+   * @return The duration for ejecting a replica
+   */
+  public Duration getReplicaEjectionDuration() {
+    return replicaEjectionDuration;
+  }
+
+  /**
+   * Sets the number of threads for executing the mapper methods that return a reactive type.
+   * <p>
+   * Default is the maximum pool size of the data source(such as {@code maximumPoolSize} of HikariCP).
+   *
+   * @param reactiveExecutorSize
+   *          The number of threads for executing the mapper methods that return a reactive type
+   */
+  public void setReactiveExecutorSize(Integer reactiveExecutorSize) {
+    this.reactiveExecutorSize = reactiveExecutorSize;
+  }
+
+  /**
+   * Return the number of threads for executing the mapper methods that return a reactive type.
+   *
+   * @return The number of threads for executing the mapper methods that return a reactive type
+   */
+  public Integer getReactiveExecutorSize() {
+    return reactiveExecutorSize;
+  }
+
+  /**
+   * Sets the JDBC fetch size for streaming the rows of the mapper methods that return a multi-valued reactive type(such
+   * as {@code Flowable}). This is applied to the select statement that does not specify the fetch size.
+   *
+   * @param streamFetchSize
+   *          The JDBC fetch size for streaming
+   */
+  public void setStreamFetchSize(Integer streamFetchSize) {
+    this.streamFetchSize = streamFetchSize;
+  }
+
+  /**
+   * Return the JDBC fetch size for streaming the rows of the mapper methods that return a multi-valued reactive type.
+   *
+   * @return The JDBC fetch size for streaming
+   */
+  public Integer getStreamFetchSize() {
+    return streamFetchSize;
+  }
+
+  /**
+   * Sets the executor types that use in addition to the default executor type.
+   * <p>
+   * When using the Spring based transaction, an {@code SqlSessionTemplate} and mapper beans are registered per executor
+   * type, and they are qualified by the name that concatenated the configuration name and the executor type in lower
+   * case(such as {@code default-batch}).
+   *
+   * @param executorTypes
+   *          The executor types that use in addition to the default executor type
+   */
+  public void setExecutorTypes(ExecutorType... executorTypes) {
+    this.executorTypes = executorTypes;
+  }
+
+  /**
+   * Return the executor types that use in addition to the default executor type.
+   *
+   * @return The executor types that use in addition to the default executor type
+   */
+  public ExecutorType[] getExecutorTypes() {
+    return executorTypes;
+  }
+
+  /**
+   * Sets the settings of the second level caches per namespace.
+   * <p>
+   * A {@link CaffeineCache}(or a {@link TieredCache} when the {@code off-heap-size} is specified, a
+   * {@link RefreshingCache} when the {@code hard-ttl} is specified) is registered for each namespace, and the mapper
+   * uses it by referring its own namespace(such as {@code @CacheNamespaceRef} or
+   * {@code <cache-ref namespace="..."/>}). The supported settings are {@code maximum-size},
+   * {@code expire-after-write}, {@code expire-after-access}, {@code off-heap-size}, {@code soft-ttl},
+   * {@code hard-ttl} and {@code negative-ttl}.
+   *
+   * @param caches
+   *          The settings of the second level caches per namespace
+   */
+  public void setCaches(Map<String, Object> caches) {
+    this.caches = caches;
+  }
+
+  /**
+   * Return the settings of the second level caches per namespace.
+   *
+   * @return The settings of the second level caches per namespace
+   */
+  public Map<String, Object> getCaches() {
+    return caches;
+  }
+
+  /**
+   * Sets whether invalidate the second level cache entries per table instead of per namespace.
+   * <p>
+   * When enabled, the tables that each statement reads or writes are extracted from the SQL(or declared by the
+   * {@link StatementTables}), and a committed write statement removes only the cache entries that depend on the
+   * written tables from caches of all namespaces. When the template-name is specified, it should be same as the
+   * template.
+   *
+   * @param tableBasedCacheInvalidation
+   *          Whether invalidate the second level cache entries per table
+   */
+  public void setTableBasedCacheInvalidation(boolean tableBasedCacheInvalidation) {
+    this.tableBasedCacheInvalidation = tableBasedCacheInvalidation;
+  }
+
+  /**
+   * Return whether invalidate the second level cache entries per table instead of per namespace.
+   *
+   * @return Whether invalidate the second level cache entries per table
+   */
+  public boolean isTableBasedCacheInvalidation() {
+    return tableBasedCacheInvalidation;
+  }
+
+  /**
+   * Sets whether coalesce the identical queries that are executing concurrently.
+   * <p>
+   * When enabled, the following queries wait for the result of the first query instead of executing it(except
+   * within a write transaction). The number of leaders and followers are exposed as the
+   * {@code mybatis.single.flight.queries} metric when the Micrometer is available.
+   *
+   * @param singleFlight
+   *          Whether coalesce the identical queries that are executing concurrently
+   */
+  public void setSingleFlight(boolean singleFlight) {
+    this.singleFlight = singleFlight;
+  }
+
+  /**
+   * Return whether coalesce the identical queries that are executing concurrently.
+   *
+   * @return Whether coalesce the identical queries that are executing concurrently
+   */
+  public boolean isSingleFlight() {
+    return singleFlight;
+  }
+
   /**
    * Sets the MyBatis's core component configuration.
    *
@@ -328,15 +623,54 @@ public class MyBatisConfiguration {
 
   /**
    * Find mapper interface classes for the current configuration.
+   * <p>
+   * The mapper interfaces are resolved from the index that generated at compile time if it exists on the classpath,
+   * otherwise resolved by scanning the classpath. The index is authoritative, so the classpath is not scanned when it
+   * exists unless the {@code scan-unindexed-mapper-packages} is enabled. In that case, only the packages specified by
+   * the {@code mapper-packages} that the index does not contain any mapper are scanned.
    *
    * @return The mapper interface classes
    */
   Collection<Class<?>> findMappers() {
+    return findMappers((mapperPackage, elapsedNanos) -> {
+    });
+  }
+
+  /**
+   * Find mapper interface classes for the current configuration with reporting the elapsed time of each package.
+   *
+   * @param packageTimingListener
+   *          The listener that receives the package name and the elapsed time in nanoseconds for resolving mappers
+   * @return The mapper interface classes
+   */
+  Collection<Class<?>> findMappers(ObjLongConsumer<String> packageTimingListener) {
     Collection<Class<?>> mappers = new HashSet<>(
         ArrayUtils.isEmpty(getMappers()) ? Collections.emptySet() : Arrays.asList(getMappers()));
-    Collection<String> packageNamesToScan = ArrayUtils.isEmpty(getMapperPackages()) ? environment.getPackages()
-        : Arrays.asList(getMapperPackages());
-    packageNamesToScan.forEach(mapperPackage -> environment.scan(Mapper.class, mapperPackage).forEach(mappers::add));
+    boolean packagesConfigured = ArrayUtils.isNotEmpty(getMapperPackages());
+    Collection<String> packageNamesToScan = packagesConfigured ? Arrays.asList(getMapperPackages())
+        : environment.getPackages();
+    Optional<MyBatisIndex> index = MyBatisIndex.load(environment);
+    packageNamesToScan.forEach(mapperPackage -> {
+      long startNanos = System.nanoTime();
+      if (!index.isPresent()) {
+        environment.scan(Mapper.class, mapperPackage).forEach(mappers::add);
+      } else {
+        Optional<Collection<Class<?>>> indexedMappers = index.get().findMappers(mapperPackage);
+        if (indexedMappers.isPresent()) {
+          mappers.addAll(indexedMappers.get());
+        } else if (packagesConfigured && isScanUnindexedMapperPackages()) {
+          Set<Class<?>> scannedMappers = environment.scan(Mapper.class, mapperPackage).collect(Collectors.toSet());
+          logger.debug("Found mappers {} by scanning the package [{}] that is not covered by the MyBatis index.",
+              scannedMappers, mapperPackage);
+          mappers.addAll(scannedMappers);
+        } else if (packagesConfigured) {
+          logger.warn("The mapper package [{}] is not covered by the MyBatis index, so no mapper is registered from it."
+              + " Please compile its mappers with the MyBatis index processor, or enable the"
+              + " scan-unindexed-mapper-packages.", mapperPackage);
+        }
+      }
+      packageTimingListener.accept(mapperPackage, System.nanoTime() - startNanos);
+    });
     return Collections.unmodifiableCollection(mappers);
   }
 
@@ -358,7 +692,7 @@ public class MyBatisConfiguration {
               resolvedXmlFiles.add(xmlFile);
             }
             return url.orElse(null);
-          }).filter(Objects::nonNull)).collect(Collectors.toSet());
+          }).filter(Objects::nonNull)).collect(Collectors.toCollection(LinkedHashSet::new));
       if (getMapperXmlFiles().length != resolvedXmlFiles.size()) {
         throw new IllegalArgumentException(
             "Does not exists "
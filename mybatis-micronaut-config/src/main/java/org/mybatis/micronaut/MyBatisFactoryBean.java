@@ -26,14 +26,27 @@ import io.micronaut.core.util.ArrayUtils;
 import io.micronaut.inject.qualifiers.Qualifiers;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 import javax.inject.Singleton;
 import javax.sql.DataSource;
 
-import org.apache.ibatis.builder.xml.XMLMapperBuilder;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.mapping.DatabaseIdProvider;
@@ -44,11 +57,15 @@ import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.reflection.wrapper.ObjectWrapperFactory;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
 import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.apache.ibatis.type.TypeAliasRegistry;
 import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
 import org.mybatis.spring.SqlSessionTemplate;
 import org.mybatis.spring.transaction.SpringManagedTransaction;
 import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
@@ -71,16 +88,20 @@ class MyBatisFactoryBean {
   private static final Logger logger = LoggerFactory.getLogger(MyBatisFactoryBean.class);
 
   private final ApplicationContext applicationContext;
+  private final MyBatisStartupReport startupReport;
 
   /**
    * Constructor.
    *
    * @param applicationContext
    *          The application context of Micronaut
+   * @param startupReport
+   *          The startup report that records the elapsed time of each configuring phase
    */
   @SuppressWarnings("unused")
-  MyBatisFactoryBean(ApplicationContext applicationContext) {
+  MyBatisFactoryBean(ApplicationContext applicationContext, MyBatisStartupReport startupReport) {
     this.applicationContext = applicationContext;
+    this.startupReport = startupReport;
   }
 
   /**
@@ -102,11 +123,15 @@ class MyBatisFactoryBean {
   @SuppressWarnings("unused")
   SqlSessionFactory sqlSessionFactoryWithJdbcBasedTx(@Parameter String name, MyBatisConfiguration configuration)
       throws SQLException, IOException {
-    logger.info("Configure an SqlSessionFactory with JDBC based transaction for '{}'.", name);
-    DataSource dataSource = decideDataSource(name, configuration);
-    TransactionFactory transactionFactory = new JdbcTransactionFactory();
-    Configuration coreConfiguration = newCoreConfiguration(name, configuration, transactionFactory, dataSource);
-    return new SqlSessionFactoryBuilder().build(coreConfiguration);
+    return newSqlSessionFactory(name, configuration, () -> {
+      logger.info("Configure an SqlSessionFactory with JDBC based transaction for '{}'.", name);
+      DataSource dataSource = decideDataSource(name, configuration);
+      // The session that opened with auto-commit mode can use replicas
+      TransactionFactory transactionFactory = decideTransactionFactory(configuration, new JdbcTransactionFactory(),
+          UnaryOperator.identity(), autoCommit -> autoCommit);
+      Configuration coreConfiguration = newCoreConfiguration(name, configuration, transactionFactory, dataSource);
+      return new SqlSessionFactoryBuilder().build(coreConfiguration);
+    });
   }
 
   /**
@@ -130,18 +155,40 @@ class MyBatisFactoryBean {
   @SuppressWarnings("unused")
   SqlSessionFactory sqlSessionFactoryWithSpringManagedTx(@Parameter String name, MyBatisConfiguration configuration)
       throws SQLException, IOException {
-    logger.info("Configure an SqlSessionFactory with Spring based transaction for '{}'.", name);
-    DataSource dataSource = decideDataSource(name, configuration);
-    if (dataSource instanceof TransactionAwareDataSourceProxy) {
-      dataSource = ((TransactionAwareDataSourceProxy) dataSource).getTargetDataSource();
-    }
-    TransactionFactory transactionFactory = new SpringManagedTransactionFactory();
-    Configuration coreConfiguration = newCoreConfiguration(name, configuration, transactionFactory, dataSource);
-    return new SqlSessionFactoryBuilder().build(coreConfiguration);
+    return newSqlSessionFactory(name, configuration, () -> {
+      logger.info("Configure an SqlSessionFactory with Spring based transaction for '{}'.", name);
+      DataSource dataSource = unwrapDataSource(decideDataSource(name, configuration));
+      // The session that executed outside of a read-write transaction can use replicas
+      TransactionFactory transactionFactory = decideTransactionFactory(configuration,
+          new SpringManagedTransactionFactory(), MyBatisFactoryBean::unwrapDataSource,
+          autoCommit -> !TransactionSynchronizationManager.isActualTransactionActive()
+              || TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+      Configuration coreConfiguration = newCoreConfiguration(name, configuration, transactionFactory, dataSource);
+      return new SqlSessionFactoryBuilder().build(coreConfiguration);
+    });
   }
 
   /**
-   * Configure an {@link SqlSessionTemplate}.
+   * Configure a {@link MyBatisTransactionManager} for the {@link SqlSessionFactory} with JDBC based transaction.
+   *
+   * @param name
+   *          The qualify of bean
+   * @param sqlSessionFactory
+   *          The {@link SqlSessionFactory} bean
+   * @return The {@link MyBatisTransactionManager} bean
+   */
+  @Singleton
+  @Requires(missingBeans = DataSourceTransactionManager.class)
+  @EachBean(SqlSessionFactory.class)
+  @SuppressWarnings("unused")
+  MyBatisTransactionManager transactionManager(@Parameter String name, SqlSessionFactory sqlSessionFactory) {
+    logger.info("Configure a MyBatisTransactionManager for '{}'.", name);
+    return new MyBatisTransactionManager(name, sqlSessionFactory);
+  }
+
+  /**
+   * Configure an {@link SqlSessionTemplate} and mapper beans. Also, configure them per additional executor type that
+   * specified by the {@link MyBatisConfiguration#getExecutorTypes()}.
    *
    * @param name
    *          The qualify of bean
@@ -154,19 +201,152 @@ class MyBatisFactoryBean {
       TransactionSynchronizationManager.class }, beans = DataSourceTransactionManager.class)
   @EachBean(SqlSessionFactory.class)
   @Bean(preDestroy = "destroy")
-  @SuppressWarnings({ "unchecked", "unused" })
+  @SuppressWarnings("unused")
   SqlSessionTemplate sqlSessionTemplate(@Parameter String name, SqlSessionFactory sqlSessionFactory) {
     logger.info("Configure an SqlSessionTemplate for '{}'.", name);
-    Configuration configuration = sqlSessionFactory.getConfiguration();
-    SqlSessionTemplate sqlSession = new SqlSessionTemplate(sqlSessionFactory, configuration.getDefaultExecutorType(),
+    SqlSessionTemplate sqlSession = new SqlSessionTemplate(sqlSessionFactory, getDefaultExecutorType(sqlSessionFactory),
         null);
-    sqlSession.getConfiguration().getMapperRegistry().getMappers()
-        .forEach(mapperType -> applicationContext.registerSingleton((Class<Object>) mapperType,
-            configuration.getMapper(mapperType, sqlSession),
-            Qualifiers.byName(configuration.getEnvironment().getId())));
+    registerMappers(name, name, sqlSessionFactory, sqlSession);
+    findExecutorTypes(name).ifPresent(executorTypes -> Arrays.stream(executorTypes).distinct().forEach(executorType -> {
+      // Register an additional template and mapper beans per executor type(such as 'default-batch')
+      String qualifier = name + "-" + executorType.name().toLowerCase(Locale.ENGLISH);
+      logger.info("Configure an SqlSessionTemplate for '{}'.", qualifier);
+      SqlSessionTemplate additionalSqlSession = new SqlSessionTemplate(sqlSessionFactory, executorType, null);
+      applicationContext.registerSingleton(SqlSessionTemplate.class, additionalSqlSession,
+          Qualifiers.byName(qualifier));
+      registerMappers(name, qualifier, sqlSessionFactory, additionalSqlSession);
+    }));
+    return sqlSession;
+  }
+
+  /**
+   * Configure a {@link TransactionalSqlSession} and mapper beans for the {@link SqlSessionFactory} with JDBC based
+   * transaction.
+   *
+   * @param name
+   *          The qualify of bean
+   * @param transactionManager
+   *          The {@link MyBatisTransactionManager} bean
+   * @return The {@link TransactionalSqlSession} bean
+   */
+  @Context
+  @Requires(missingBeans = DataSourceTransactionManager.class)
+  @EachBean(MyBatisTransactionManager.class)
+  @SuppressWarnings("unused")
+  TransactionalSqlSession transactionalSqlSession(@Parameter String name,
+      MyBatisTransactionManager transactionManager) {
+    logger.info("Configure a TransactionalSqlSession for '{}'.", name);
+    if (findExecutorTypes(name).isPresent()) {
+      logger.warn("The executor-types for '{}' is ignored because it requires the Spring based transaction.", name);
+    }
+    TransactionalSqlSession sqlSession = new TransactionalSqlSession(transactionManager);
+    registerMappers(name, name, transactionManager.getSqlSessionFactory(), sqlSession);
     return sqlSession;
   }
 
+  @SuppressWarnings("unchecked")
+  private void registerMappers(String name, String qualifier, SqlSessionFactory sqlSessionFactory,
+      SqlSession transactionalSqlSession) {
+    // Route the statements to the batch session while executing a method annotated with the @MyBatisBatch
+    SqlSession sqlSession = MyBatisBatchScope.wrap(transactionalSqlSession, sqlSessionFactory);
+    if (sqlSessionFactory instanceof LazySqlSessionFactory) {
+      // Register mapper proxies that retrieve the actual mapper object on first use
+      ((LazySqlSessionFactory) sqlSessionFactory).getMapperTypes()
+          .forEach(mapperType -> applicationContext.registerSingleton((Class<Object>) mapperType,
+              ReactiveMapperHandler.wrap((Class<Object>) mapperType,
+                  LazySqlSessionFactory.newLazyMapper(mapperType, sqlSession), sqlSession, sqlSessionFactory,
+                  reactiveExecutor(name)),
+              Qualifiers.byName(qualifier)));
+      return;
+    }
+    sqlSessionFactory.getConfiguration().getMapperRegistry().getMappers()
+        .forEach(mapperType -> applicationContext.registerSingleton((Class<Object>) mapperType,
+            ReactiveMapperHandler.wrap((Class<Object>) mapperType,
+                GeneratedMapperSupport.getMapper(mapperType, sqlSession), sqlSession, sqlSessionFactory,
+                reactiveExecutor(name)),
+            Qualifiers.byName(qualifier)));
+  }
+
+  private Optional<ExecutorType[]> findExecutorTypes(String name) {
+    return applicationContext.findBean(MyBatisConfiguration.class, Qualifiers.byName(name))
+        .map(MyBatisConfiguration::getExecutorTypes);
+  }
+
+  private static ExecutorType getDefaultExecutorType(SqlSessionFactory sqlSessionFactory) {
+    return sqlSessionFactory instanceof LazySqlSessionFactory
+        ? ((LazySqlSessionFactory) sqlSessionFactory).getDefaultExecutorType()
+        : sqlSessionFactory.getConfiguration().getDefaultExecutorType();
+  }
+
+  /**
+   * Configure a {@link ReactiveExecutor} for executing the mapper methods that return a reactive type.
+   *
+   * @param name
+   *          The qualify of bean
+   * @param configuration
+   *          The configuration bean for MyBatis
+   * @return The {@link ReactiveExecutor} bean
+   */
+  @EachBean(MyBatisConfiguration.class)
+  @Bean(preDestroy = "shutdown")
+  @SuppressWarnings("unused")
+  ReactiveExecutor reactiveExecutor(@Parameter String name, MyBatisConfiguration configuration) {
+    int size = Optional.ofNullable(configuration.getReactiveExecutorSize())
+        .orElseGet(() -> ReactiveExecutor.decideSize(decideDataSource(name, configuration)));
+    logger.info("Configure a ReactiveExecutor with {} threads for '{}'.", size, name);
+    return new ReactiveExecutor(name, size);
+  }
+
+  private Supplier<Executor> reactiveExecutor(String name) {
+    // Retrieve the executor on first use because it is not necessary for most applications
+    return () -> applicationContext.getBean(ReactiveExecutor.class, Qualifiers.byName(name));
+  }
+
+  private SqlSessionFactory newSqlSessionFactory(String name, MyBatisConfiguration configuration,
+      LazySqlSessionFactory.Initializer initializer) throws SQLException, IOException {
+    if (configuration.isLazyInit()) {
+      logger.info("Defer configuring an SqlSessionFactory for '{}' until first use.", name);
+      return new LazySqlSessionFactory(configuration, findMappingConfiguration(name, configuration), initializer);
+    }
+    return initializer.initialize();
+  }
+
+  private static DataSource unwrapDataSource(DataSource dataSource) {
+    if (dataSource instanceof TransactionAwareDataSourceProxy) {
+      return ((TransactionAwareDataSourceProxy) dataSource).getTargetDataSource();
+    }
+    return dataSource;
+  }
+
+  private TransactionFactory decideTransactionFactory(MyBatisConfiguration configuration,
+      TransactionFactory transactionFactory, UnaryOperator<DataSource> dataSourceResolver,
+      ReplicaRoutingTransactionFactory.ReplicaPolicy replicaPolicy) {
+    if (ArrayUtils.isEmpty(configuration.getReplicaDataSourceNames())) {
+      return transactionFactory;
+    }
+    List<DataSource> replicas = Arrays.stream(configuration.getReplicaDataSourceNames())
+        .map(replicaName -> applicationContext.getBean(DataSource.class, Qualifiers.byName(replicaName)))
+        .map(dataSourceResolver).collect(Collectors.toList());
+    return new ReplicaRoutingTransactionFactory(transactionFactory,
+        new ReplicaLoadBalancer(replicas, configuration.getReplicaEjectionDuration()), replicaPolicy);
+  }
+
+  private SqlSessionFactory findTemplateSqlSessionFactory(String name, MyBatisConfiguration configuration) {
+    if (configuration.getTemplateName().equals(name)) {
+      throw new IllegalArgumentException("The template-name cannot specify itself for '" + name + "'.");
+    }
+    return applicationContext.getBean(SqlSessionFactory.class, Qualifiers.byName(configuration.getTemplateName()));
+  }
+
+  private MyBatisConfiguration findMappingConfiguration(String name, MyBatisConfiguration configuration) {
+    if (configuration.getTemplateName() == null || configuration.getTemplateName().equals(name)) {
+      return configuration;
+    }
+    // The mapping model is parsed by the template
+    return findMappingConfiguration(configuration.getTemplateName(), applicationContext
+        .getBean(MyBatisConfiguration.class, Qualifiers.byName(configuration.getTemplateName())));
+  }
+
   private DataSource decideDataSource(String name, MyBatisConfiguration configuration) {
     return applicationContext.getBean(DataSource.class,
         Qualifiers.byName(Optional.ofNullable(configuration.getDataSourceName()).orElse(name)));
@@ -174,36 +354,92 @@ class MyBatisFactoryBean {
 
   private Configuration newCoreConfiguration(String name, MyBatisConfiguration configuration,
       TransactionFactory transactionFactory, DataSource dataSource) throws SQLException, IOException {
+    MyBatisStartupReport.FactoryReport report = startupReport.start(name);
     Configuration coreConfiguration = configuration.getConfiguration();
     Environment mybatisEnvironment = new Environment(name, transactionFactory, dataSource);
     coreConfiguration.setEnvironment(mybatisEnvironment);
-    configureTypeAliases(configuration, coreConfiguration);
-    configureTypeHandlers(configuration, coreConfiguration);
-    configureFactories(coreConfiguration);
-    configurePluginInterceptors(coreConfiguration);
-    configureScriptingLanguageDrivers(configuration, coreConfiguration);
-    configureCaches(coreConfiguration);
-    configureDatabaseIdProvider(dataSource, coreConfiguration);
-    applyConfigurationCustomizers(coreConfiguration);
-    configureMappers(configuration, coreConfiguration);
+    Optional<MyBatisIndex> index = MyBatisIndex.load(applicationContext.getEnvironment());
+    runPhase(report, "type-aliases", phase -> configureTypeAliases(configuration, coreConfiguration, index, phase));
+    runPhase(report, "type-handlers", phase -> configureTypeHandlers(configuration, coreConfiguration, index, phase));
+    runPhase(report, "factories", phase -> configureFactories(coreConfiguration));
+    runPhase(report, "interceptors", phase -> configurePluginInterceptors(name, configuration, coreConfiguration));
+    runPhase(report, "language-drivers", phase -> configureScriptingLanguageDrivers(configuration, coreConfiguration));
+    runPhase(report, "caches", phase -> configureCaches(configuration, coreConfiguration));
+    runPhase(report, "database-id", phase -> configureDatabaseIdProvider(dataSource, coreConfiguration));
+    runPhase(report, "customizers", phase -> applyConfigurationCustomizers(coreConfiguration));
+    if (configuration.getTemplateName() == null) {
+      configureMappers(configuration, coreConfiguration, report);
+      runPhase(report, "reactive-statements", phase -> ReactiveMapperHandler.addReactiveStatements(coreConfiguration,
+          configuration.getStreamFetchSize()));
+    } else {
+      runPhase(report, "shared-mappers", phase -> SharedMappingModel.share(
+          findTemplateSqlSessionFactory(name, configuration).getConfiguration(), coreConfiguration));
+    }
+    runPhase(report, "bulk-insert-statements", phase -> BulkInsertInterceptor.install(coreConfiguration));
+    runPhase(report, "stale-while-revalidate-statements", phase -> StaleWhileRevalidateInterceptor
+        .install(coreConfiguration, applicationContext.getEnvironment()));
+    if (configuration.isTableBasedCacheInvalidation()) {
+      runPhase(report, "table-dependencies", phase -> TableDependencyInterceptor.install(coreConfiguration));
+    }
+    runPhase(report, "cache-invalidation", phase -> configureCacheInvalidation(name, coreConfiguration));
+    if (transactionFactory instanceof ReplicaRoutingTransactionFactory) {
+      // Apply as the outermost plugin for detecting the statement type before other plugins, so it should be added
+      // after all phases that add plugins(such as bulk insert statements)
+      coreConfiguration.addInterceptor(new ReplicaRoutingInterceptor());
+    }
+    startupReport.complete(report);
     return coreConfiguration;
 
   }
 
-  private void configureTypeAliases(MyBatisConfiguration configuration, Configuration coreConfiguration) {
+  private static void runPhase(MyBatisStartupReport.FactoryReport report, String phaseName, Phase phase)
+      throws SQLException, IOException {
+    MyBatisStartupReport.PhaseReport phaseReport = report.startPhase(phaseName);
+    phase.run(phaseReport);
+    phaseReport.complete();
+  }
+
+  private static void runTimed(MyBatisStartupReport.PhaseReport phaseReport, String detail, Runnable action) {
+    long startNanos = System.nanoTime();
+    action.run();
+    phaseReport.record(detail, System.nanoTime() - startNanos);
+  }
+
+  private void configureTypeAliases(MyBatisConfiguration configuration, Configuration coreConfiguration,
+      Optional<MyBatisIndex> index, MyBatisStartupReport.PhaseReport phaseReport) {
     if (ArrayUtils.isNotEmpty(configuration.getTypeAliasPackages())) {
-      Arrays.stream(configuration.getTypeAliasPackages()).forEach(packageName -> coreConfiguration
-          .getTypeAliasRegistry().registerAliases(packageName, configuration.getTypeAliasSuperType()));
+      TypeAliasRegistry registry = coreConfiguration.getTypeAliasRegistry();
+      Class<?> superType = configuration.getTypeAliasSuperType();
+      Arrays.stream(configuration.getTypeAliasPackages())
+          .forEach(packageName -> runTimed(phaseReport, "package:" + packageName, () -> {
+            Optional<Collection<Class<?>>> types = index.flatMap(i -> i.findTypeAliases(packageName, superType));
+            if (types.isPresent()) {
+              types.get().forEach(registry::registerAlias);
+            } else {
+              // Fall back to scanning the classpath via the VFS
+              registry.registerAliases(packageName, superType);
+            }
+          }));
     }
     if (ArrayUtils.isNotEmpty(configuration.getTypeAliases())) {
       Arrays.stream(configuration.getTypeAliases()).forEach(coreConfiguration.getTypeAliasRegistry()::registerAlias);
     }
   }
 
-  private void configureTypeHandlers(MyBatisConfiguration configuration, Configuration coreConfiguration) {
+  private void configureTypeHandlers(MyBatisConfiguration configuration, Configuration coreConfiguration,
+      Optional<MyBatisIndex> index, MyBatisStartupReport.PhaseReport phaseReport) {
     if (ArrayUtils.isNotEmpty(configuration.getTypeHandlerPackages())) {
+      TypeHandlerRegistry registry = coreConfiguration.getTypeHandlerRegistry();
       Arrays.stream(configuration.getTypeHandlerPackages())
-          .forEach(coreConfiguration.getTypeHandlerRegistry()::register);
+          .forEach(packageName -> runTimed(phaseReport, "package:" + packageName, () -> {
+            Optional<Collection<Class<?>>> types = index.flatMap(i -> i.findTypeHandlers(packageName));
+            if (types.isPresent()) {
+              types.get().forEach(registry::register);
+            } else {
+              // Fall back to scanning the classpath via the VFS
+              registry.register(packageName);
+            }
+          }));
     }
     if (ArrayUtils.isNotEmpty(configuration.getTypeHandlers())) {
       Arrays.stream(configuration.getTypeHandlers()).forEach(coreConfiguration.getTypeHandlerRegistry()::register);
@@ -214,20 +450,30 @@ class MyBatisFactoryBean {
   private void configureFactories(Configuration coreConfiguration) {
     if (applicationContext.containsBean(ObjectFactory.class)) {
       coreConfiguration.setObjectFactory(applicationContext.getBean(ObjectFactory.class));
+    } else {
+      coreConfiguration.setObjectFactory(new IntrospectedObjectFactory());
     }
     if (applicationContext.containsBean(ObjectWrapperFactory.class)) {
       coreConfiguration.setObjectWrapperFactory(applicationContext.getBean(ObjectWrapperFactory.class));
     }
     if (applicationContext.containsBean(ReflectorFactory.class)) {
       coreConfiguration.setReflectorFactory(applicationContext.getBean(ReflectorFactory.class));
+    } else {
+      coreConfiguration.setReflectorFactory(new IntrospectedReflectorFactory());
     }
     if (applicationContext.containsBean(ProxyFactory.class)) {
       coreConfiguration.setProxyFactory(applicationContext.getBean(ProxyFactory.class));
     }
   }
 
-  private void configurePluginInterceptors(Configuration coreConfiguration) {
+  private void configurePluginInterceptors(String name, MyBatisConfiguration configuration,
+      Configuration coreConfiguration) {
     applicationContext.getBeansOfType(Interceptor.class).forEach(coreConfiguration::addInterceptor);
+    if (configuration.isSingleFlight()) {
+      SingleFlightInterceptor singleFlightInterceptor = new SingleFlightInterceptor();
+      coreConfiguration.addInterceptor(singleFlightInterceptor);
+      applicationContext.getBean(SingleFlightRegistry.class).register(name, singleFlightInterceptor);
+    }
   }
 
   private void configureScriptingLanguageDrivers(MyBatisConfiguration configuration, Configuration coreConfiguration) {
@@ -240,8 +486,15 @@ class MyBatisFactoryBean {
         .ifPresent(coreConfiguration::setDefaultScriptingLanguage);
   }
 
-  private void configureCaches(Configuration coreConfiguration) {
+  private void configureCaches(MyBatisConfiguration configuration, Configuration coreConfiguration) {
     applicationContext.getBeansOfType(Cache.class).forEach(coreConfiguration::addCache);
+    if (!configuration.getCaches().isEmpty()) {
+      NamespaceCaches.install(coreConfiguration, configuration.getCaches(), applicationContext.getEnvironment());
+    }
+  }
+
+  private void configureCacheInvalidation(String name, Configuration coreConfiguration) {
+    applicationContext.findBean(CacheInvalidationBus.class).ifPresent(bus -> bus.install(name, coreConfiguration));
   }
 
   private void configureDatabaseIdProvider(DataSource dataSource, Configuration mybatisConfiguration)
@@ -256,14 +509,149 @@ class MyBatisFactoryBean {
     applicationContext.getBeansOfType(ConfigurationCustomizer.class).forEach(c -> c.customize(coreConfiguration));
   }
 
-  private void configureMappers(MyBatisConfiguration configuration, Configuration coreConfiguration)
+  private void configureMappers(MyBatisConfiguration configuration, Configuration coreConfiguration,
+      MyBatisStartupReport.FactoryReport report) throws IOException {
+    MyBatisStartupReport.PhaseReport mappersPhase = report.startPhase("mappers");
+    List<Class<?>> mappers = configuration
+        .findMappers((mapperPackage, elapsedNanos) -> mappersPhase.record("package:" + mapperPackage, elapsedNanos))
+        .stream().filter(Class::isInterface).collect(Collectors.toList());
+    Collection<URL> mapperXmlFiles = configuration.findMapperXmlFiles();
+    if (configuration.isParallelMapperXmlParsing()) {
+      configureMappersWithParallelXmlParsing(mappers, mapperXmlFiles, coreConfiguration, report, mappersPhase);
+      return;
+    }
+    for (Class<?> mapper : mappers) {
+      if (!coreConfiguration.hasMapper(mapper)) {
+        long startNanos = System.nanoTime();
+        addMapper(mapper, loadBoundMapperXml(mapper, false).orElse(null), coreConfiguration);
+        mappersPhase.record("mapper:" + mapper.getName(), System.nanoTime() - startNanos);
+      }
+    }
+    mappersPhase.complete();
+    MyBatisStartupReport.PhaseReport mapperXmlFilesPhase = report.startPhase("mapper-xml-files");
+    for (URL mapperXmlFile : mapperXmlFiles) {
+      long startNanos = System.nanoTime();
+      MapperXmlDocument.load(mapperXmlFile).parse(coreConfiguration);
+      mapperXmlFilesPhase.record("xml:" + mapperXmlFile, System.nanoTime() - startNanos);
+    }
+    mapperXmlFilesPhase.complete();
+  }
+
+  private void configureMappersWithParallelXmlParsing(List<Class<?>> mappers, Collection<URL> mapperXmlFiles,
+      Configuration coreConfiguration, MyBatisStartupReport.FactoryReport report,
+      MyBatisStartupReport.PhaseReport mappersPhase) throws IOException {
+    // Read and parse xml documents on the dedicated threads that bounded by the number of processors because reading
+    // resources blocks(should not run on the common fork-join pool)
+    int size = Math.max(1,
+        Math.min(Runtime.getRuntime().availableProcessors(), mappers.size() + mapperXmlFiles.size()));
+    AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(size, runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-xml-parser-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<CompletableFuture<Optional<MapperXmlDocument>>> boundMapperXmls = mappers.stream()
+          .map(mapper -> CompletableFuture.supplyAsync(() -> {
+            try {
+              return loadBoundMapperXml(mapper, true).map(MapperXmlDocument::parseDocument);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }, executor)).collect(Collectors.toList());
+      List<CompletableFuture<MapperXmlDocument>> mapperXmls = mapperXmlFiles.stream()
+          .map(mapperXmlFile -> CompletableFuture.supplyAsync(() -> {
+            try {
+              return MapperXmlDocument.load(mapperXmlFile).parseDocument();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }, executor)).collect(Collectors.toList());
+      // Build statements into the core configuration on the current thread in declared order because the
+      // configuration is not thread-safe. The cross namespace references (cache-ref, include and extends) that cannot
+      // resolve yet are kept as incomplete elements by MyBatis and retried when subsequent namespaces are built.
+      // The elapsed time of each detail includes the waiting time for parsing.
+      for (int i = 0; i < mappers.size(); i++) {
+        long startNanos = System.nanoTime();
+        Optional<MapperXmlDocument> document = join(boundMapperXmls.get(i));
+        if (!coreConfiguration.hasMapper(mappers.get(i))) {
+          addMapper(mappers.get(i), document.orElse(null), coreConfiguration);
+          mappersPhase.record("mapper:" + mappers.get(i).getName(), System.nanoTime() - startNanos);
+        }
+      }
+      mappersPhase.complete();
+      MyBatisStartupReport.PhaseReport mapperXmlFilesPhase = report.startPhase("mapper-xml-files");
+      Iterator<URL> mapperXmlFileIterator = mapperXmlFiles.iterator();
+      for (CompletableFuture<MapperXmlDocument> mapperXml : mapperXmls) {
+        long startNanos = System.nanoTime();
+        join(mapperXml).parse(coreConfiguration);
+        mapperXmlFilesPhase.record("xml:" + mapperXmlFileIterator.next(), System.nanoTime() - startNanos);
+      }
+      // Resolve the remaining incomplete elements now, so an unresolvable reference fails at startup instead of on
+      // first use of the statement
+      long startNanos = System.nanoTime();
+      coreConfiguration.getMappedStatementNames();
+      mapperXmlFilesPhase.record("resolve-references", System.nanoTime() - startNanos);
+      mapperXmlFilesPhase.complete();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private Optional<MapperXmlDocument> loadBoundMapperXml(Class<?> mapper, boolean includeNotPreparsed)
       throws IOException {
-    configuration.findMappers().stream().filter(Class::isInterface).forEach(coreConfiguration::addMapper);
-    for (URL mapperXmlFile : configuration.findMapperXmlFiles()) {
-      XMLMapperBuilder builder = new XMLMapperBuilder(mapperXmlFile.openStream(), coreConfiguration,
-          mapperXmlFile.toString(), coreConfiguration.getSqlFragments());
-      builder.parse();
+    String xmlResource = mapper.getName().replace('.', '/') + ".xml";
+    URL mapperXmlFile = Optional.ofNullable(mapper.getClassLoader()).map(loader -> loader.getResource(xmlResource))
+        .orElse(null);
+    if (mapperXmlFile == null) {
+      return Optional.empty();
+    }
+    return includeNotPreparsed ? Optional.of(MapperXmlDocument.load(mapperXmlFile, xmlResource))
+        : MapperXmlDocument.loadPreparsed(mapperXmlFile, xmlResource);
+  }
+
+  private void addMapper(Class<?> mapper, MapperXmlDocument boundMapperXml, Configuration coreConfiguration) {
+    if (boundMapperXml != null) {
+      // The mapper interface is bound by the namespace of mapper xml
+      boundMapperXml.parse(coreConfiguration);
+    }
+    if (!coreConfiguration.hasMapper(mapper)) {
+      coreConfiguration.addMapper(mapper);
+    }
+  }
+
+  private static <T> T join(CompletableFuture<T> future) throws IOException {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
     }
   }
 
+  /**
+   * The configuring phase that reports the elapsed time of each detail.
+   */
+  @FunctionalInterface
+  private interface Phase {
+
+    /**
+     * Run this phase.
+     *
+     * @param phaseReport
+     *          The phase report to record the elapsed time of each detail
+     * @throws SQLException
+     *           If fail to get the database id via {@link DatabaseIdProvider}
+     * @throws IOException
+     *           If fail to open mapper xml file
+     */
+    void run(MyBatisStartupReport.PhaseReport phaseReport) throws SQLException, IOException;
+
+  }
+
 }
@@ -0,0 +1,224 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.context.env.Environment;
+import io.micronaut.core.reflect.ClassUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.mybatis.micronaut.processor.MyBatisIndexProcessor;
+
+/**
+ * The index of MyBatis components that generated at compile time by the {@link MyBatisIndexProcessor}.
+ * <p>
+ * The index is loaded once per {@link Environment}(i.e. per application context) and shared by all
+ * {@code SqlSessionFactory}, and the type index is parsed on first use because it is used only when the type alias
+ * packages or the type handler packages are specified.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class MyBatisIndex {
+
+  private static final String TYPE_HANDLER = "org.apache.ibatis.type.TypeHandler";
+  private static final Map<Environment, Optional<MyBatisIndex>> LOADED_INDEXES = Collections
+      .synchronizedMap(new WeakHashMap<>());
+
+  private final ClassLoader classLoader;
+  private final Set<String> mapperNames;
+  private final List<URL> typeIndexes;
+  private volatile Map<String, TypeEntry> typeEntries;
+
+  private MyBatisIndex(ClassLoader classLoader, Set<String> mapperNames, List<URL> typeIndexes) {
+    this.classLoader = classLoader;
+    this.mapperNames = mapperNames;
+    this.typeIndexes = typeIndexes;
+  }
+
+  /**
+   * Load the index from all index resources on the classpath.
+   * <p>
+   * The loaded index is cached per environment, so the index resources are read only once.
+   *
+   * @param environment
+   *          The environment of the Micronaut
+   * @return The index. If index resource does not exist, return empty
+   */
+  static Optional<MyBatisIndex> load(Environment environment) {
+    return LOADED_INDEXES.computeIfAbsent(environment, MyBatisIndex::read);
+  }
+
+  private static Optional<MyBatisIndex> read(Environment environment) {
+    List<URL> mapperIndexes = environment.getResources(MyBatisIndexProcessor.MAPPER_INDEX)
+        .collect(Collectors.toList());
+    List<URL> typeIndexes = environment.getResources(MyBatisIndexProcessor.TYPE_INDEX).collect(Collectors.toList());
+    if (mapperIndexes.isEmpty() && typeIndexes.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(new MyBatisIndex(environment.getClassLoader(), readEntries(mapperIndexes), typeIndexes));
+  }
+
+  private Map<String, TypeEntry> getTypeEntries() {
+    Map<String, TypeEntry> entries = typeEntries;
+    if (entries == null) {
+      synchronized (this) {
+        entries = typeEntries;
+        if (entries == null) {
+          Map<String, TypeEntry> parsedEntries = new TreeMap<>();
+          readEntries(typeIndexes).forEach(entry -> {
+            String[] fields = entry.split(":", -1);
+            parsedEntries.put(fields[0], new TypeEntry(fields[0], fields[1], fields[2]));
+          });
+          entries = parsedEntries;
+          typeEntries = entries;
+        }
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Find mapper interface classes under the specified package (includes sub packages).
+   *
+   * @param packageName
+   *          The base package name
+   * @return The mapper interface classes. If the index does not contain any mapper under the specified package, return
+   *         empty
+   */
+  Optional<Collection<Class<?>>> findMappers(String packageName) {
+    String prefix = packageName.isEmpty() ? "" : packageName + ".";
+    List<String> names = mapperNames.stream().filter(name -> name.startsWith(prefix)).collect(Collectors.toList());
+    if (names.isEmpty()) {
+      return Optional.empty();
+    }
+    Collection<Class<?>> mappers = names.stream()
+        .map(name -> ClassUtils.forName(name, classLoader).orElseThrow(
+            () -> new IllegalStateException("The mapper [" + name + "] in the MyBatis index is not found.")))
+        .collect(Collectors.toList());
+    return Optional.of(Collections.unmodifiableCollection(mappers));
+  }
+
+  /**
+   * Find type alias classes under the specified package (includes sub packages).
+   * <p>
+   * This method applies the same filter as the {@code TypeAliasRegistry#registerAliases(String, Class)} using the
+   * flags and super types that recorded at compile time, and loads only matched classes.
+   *
+   * @param packageName
+   *          The base package name
+   * @param superType
+   *          The super type of type alias classes
+   * @return The type alias classes. If the index does not contain the specified package, return empty
+   */
+  Optional<Collection<Class<?>>> findTypeAliases(String packageName, Class<?> superType) {
+    return findTypes(packageName,
+        entry -> !entry.isInterface() && !entry.isMemberClass() && entry.isSubTypeOf(superType.getName()));
+  }
+
+  /**
+   * Find type handler classes under the specified package (includes sub packages).
+   * <p>
+   * This method applies the same filter as the {@code TypeHandlerRegistry#register(String)} using the flags and super
+   * types that recorded at compile time, and loads only matched classes.
+   *
+   * @param packageName
+   *          The base package name
+   * @return The type handler classes. If the index does not contain the specified package, return empty
+   */
+  Optional<Collection<Class<?>>> findTypeHandlers(String packageName) {
+    return findTypes(packageName,
+        entry -> !entry.isInterface() && !entry.isAbstract() && entry.isSubTypeOf(TYPE_HANDLER));
+  }
+
+  private Optional<Collection<Class<?>>> findTypes(String packageName, Predicate<TypeEntry> filter) {
+    String prefix = packageName.isEmpty() ? "" : packageName + ".";
+    List<TypeEntry> entries = getTypeEntries().values().stream().filter(entry -> entry.name.startsWith(prefix))
+        .collect(Collectors.toList());
+    if (entries.isEmpty()) {
+      return Optional.empty();
+    }
+    Collection<Class<?>> types = entries.stream().filter(filter)
+        .map(entry -> ClassUtils.forName(entry.name, classLoader).orElseThrow(
+            () -> new IllegalStateException("The type [" + entry.name + "] in the MyBatis index is not found.")))
+        .collect(Collectors.toList());
+    return Optional.of(Collections.unmodifiableCollection(types));
+  }
+
+  private static Set<String> readEntries(List<URL> indexes) {
+    Set<String> entries = new TreeSet<>();
+    for (URL index : indexes) {
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+        reader.lines().map(String::trim).filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .forEach(entries::add);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Fail to read the MyBatis index [" + index + "].", e);
+      }
+    }
+    return entries;
+  }
+
+  private static class TypeEntry {
+
+    private final String name;
+    private final String flags;
+    private final Set<String> superTypeNames;
+
+    private TypeEntry(String name, String flags, String superTypeNames) {
+      this.name = name;
+      this.flags = flags;
+      this.superTypeNames = superTypeNames.isEmpty() ? Collections.emptySet()
+          : new HashSet<>(Arrays.asList(superTypeNames.split(",")));
+    }
+
+    private boolean isInterface() {
+      return flags.indexOf('I') != -1;
+    }
+
+    private boolean isAbstract() {
+      return flags.indexOf('A') != -1;
+    }
+
+    private boolean isMemberClass() {
+      return flags.indexOf('M') != -1;
+    }
+
+    private boolean isSubTypeOf(String typeName) {
+      return typeName.equals(Object.class.getName()) || typeName.equals(name) || superTypeNames.contains(typeName);
+    }
+
+  }
+
+}
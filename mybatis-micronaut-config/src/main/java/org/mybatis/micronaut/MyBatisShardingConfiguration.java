@@ -0,0 +1,63 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.context.annotation.EachProperty;
+
+/**
+ * The configuration properties for the sharding of MyBatis integration.
+ * <p>
+ * The sharded mapper beans that qualified by the group name are registered for mapper interfaces that registered
+ * into all shards.
+ *
+ * <pre>
+ * mybatis-sharding:
+ *   cities:
+ *     shards:
+ *       - shard1
+ *       - shard2
+ * </pre>
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@EachProperty(MyBatisShardingConfiguration.PREFIX)
+public class MyBatisShardingConfiguration {
+
+  static final String PREFIX = "mybatis-sharding";
+
+  private String[] shards;
+
+  /**
+   * Sets the shard names. Each name should be the name of MyBatis configuration(the {@code mybatis.<name>}).
+   *
+   * @param shards
+   *          The shard names
+   */
+  public void setShards(String[] shards) {
+    this.shards = shards;
+  }
+
+  /**
+   * Return the shard names.
+   *
+   * @return The shard names
+   */
+  public String[] getShards() {
+    return shards;
+  }
+
+}
@@ -0,0 +1,151 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.context.annotation.Context;
+import io.micronaut.context.annotation.EachBean;
+import io.micronaut.context.annotation.Factory;
+import io.micronaut.context.annotation.Parameter;
+import io.micronaut.core.util.ArrayUtils;
+import io.micronaut.inject.qualifiers.Qualifiers;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The factory bean for the sharding of MyBatis integration.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Factory
+class MyBatisShardingFactoryBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(MyBatisShardingFactoryBean.class);
+
+  private final ApplicationContext applicationContext;
+
+  /**
+   * Constructor.
+   *
+   * @param applicationContext
+   *          The application context of Micronaut
+   */
+  @SuppressWarnings("unused")
+  MyBatisShardingFactoryBean(ApplicationContext applicationContext) {
+    this.applicationContext = applicationContext;
+  }
+
+  /**
+   * Configure a {@link ShardRouter} and register sharded mapper beans that qualified by the sharding group name.
+   *
+   * @param name
+   *          The sharding group name
+   * @param configuration
+   *          The configuration bean for the sharding
+   * @return The {@link ShardRouter} bean
+   */
+  @Context
+  @EachBean(MyBatisShardingConfiguration.class)
+  @SuppressWarnings({ "unchecked", "unused" })
+  ShardRouter shardRouter(@Parameter String name, MyBatisShardingConfiguration configuration) {
+    logger.info("Configure a ShardRouter for '{}'.", name);
+    if (ArrayUtils.isEmpty(configuration.getShards())) {
+      throw new IllegalArgumentException("The shards is required for '" + name + "'.");
+    }
+    List<String> shardNames = Arrays.asList(configuration.getShards());
+    if (shardNames.contains(name)) {
+      throw new IllegalArgumentException("The shards cannot contain the sharding group name '" + name + "'.");
+    }
+    Map<String, SqlSessionFactory> sqlSessionFactories = shardNames.stream().collect(Collectors.toMap(
+        shardName -> shardName,
+        shardName -> applicationContext.getBean(SqlSessionFactory.class, Qualifiers.byName(shardName))));
+    ShardRouter router = new ShardRouter(name, shardNames);
+    // Invoke on each shard via the ReactiveExecutor of the shard that bounded by the pool size of its data source
+    Map<String, Executor> shardExecutors = new ConcurrentHashMap<>();
+    Function<String, Executor> executors = shardName -> shardExecutors.computeIfAbsent(shardName,
+        key -> applicationContext.getBean(ReactiveExecutor.class, Qualifiers.byName(key)));
+    // Register sharded mappers for the mapper interfaces that common to all shards
+    SqlSessionFactory firstSqlSessionFactory = sqlSessionFactories.get(shardNames.get(0));
+    Set<Class<?>> mapperTypes = new HashSet<>(getMapperTypes(firstSqlSessionFactory));
+    sqlSessionFactories.values().forEach(factory -> mapperTypes.retainAll(getMapperTypes(factory)));
+    mapperTypes.forEach(mapperType -> applicationContext.registerSingleton((Class<Object>) mapperType,
+        ShardedMapperHandler.newMapper(mapperType, router, firstSqlSessionFactory, executors,
+            new ShardMapperInvoker(mapperType, sqlSessionFactories)),
+        Qualifiers.byName(name)));
+    return router;
+  }
+
+  private static Collection<Class<?>> getMapperTypes(SqlSessionFactory sqlSessionFactory) {
+    if (sqlSessionFactory instanceof LazySqlSessionFactory) {
+      // Does not build the actual SqlSessionFactory at this point
+      return ((LazySqlSessionFactory) sqlSessionFactory).getMapperTypes();
+    }
+    return sqlSessionFactory.getConfiguration().getMapperRegistry().getMappers();
+  }
+
+  private class ShardMapperInvoker implements ShardedMapperHandler.ShardInvoker {
+
+    private final Class<?> mapperType;
+    private final Map<String, SqlSessionFactory> sqlSessionFactories;
+    private final Map<String, Optional<?>> mappers = new ConcurrentHashMap<>();
+
+    private ShardMapperInvoker(Class<?> mapperType, Map<String, SqlSessionFactory> sqlSessionFactories) {
+      this.mapperType = mapperType;
+      this.sqlSessionFactories = sqlSessionFactories;
+    }
+
+    @Override
+    public Object invoke(String shardName, Method method, Object[] args) throws Throwable {
+      // Use the mapper bean of the shard if exists, otherwise use a mapper on a new auto-commit session
+      Optional<?> mapper = mappers.computeIfAbsent(shardName,
+          key -> applicationContext.findBean(mapperType, Qualifiers.byName(key)));
+      if (mapper.isPresent()) {
+        return invoke(mapper.get(), method, args);
+      }
+      try (SqlSession sqlSession = sqlSessionFactories.get(shardName).openSession(true)) {
+        return invoke(sqlSession.getMapper(mapperType), method, args);
+      }
+    }
+
+    private Object invoke(Object mapper, Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(mapper, args);
+      } catch (InvocationTargetException e) {
+        throw e.getTargetException();
+      }
+    }
+
+  }
+
+}
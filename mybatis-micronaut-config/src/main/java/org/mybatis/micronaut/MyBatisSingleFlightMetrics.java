@@ -0,0 +1,69 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micronaut.context.annotation.Requires;
+
+import javax.inject.Singleton;
+
+/**
+ * The meter binder that exposes the statistics of the single-flight queries of each {@code SqlSessionFactory} as
+ * Micrometer counters.
+ * <p>
+ * The number of leaders and followers are exposed as the {@code mybatis.single.flight.queries} counter tagged with the
+ * {@code factory} and the {@code role}({@code leader} or {@code follower}).
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Singleton
+@Requires(classes = MeterBinder.class)
+class MyBatisSingleFlightMetrics implements MeterBinder {
+
+  static final String METRIC_NAME = "mybatis.single.flight.queries";
+
+  private final SingleFlightRegistry registry;
+
+  /**
+   * Constructor.
+   *
+   * @param registry
+   *          The registry of the single-flight interceptors
+   */
+  @SuppressWarnings("unused")
+  MyBatisSingleFlightMetrics(SingleFlightRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry meterRegistry) {
+    // The SqlSessionFactory that initialized lazily is bound when it has been configured
+    registry.addListener((name, interceptor) -> {
+      Tags tags = Tags.of("factory", name);
+      FunctionCounter.builder(METRIC_NAME, interceptor, SingleFlightInterceptor::getLeaderCount)
+          .tags(tags.and("role", "leader")).description("The number of queries that executed as the leader")
+          .register(meterRegistry);
+      FunctionCounter.builder(METRIC_NAME, interceptor, SingleFlightInterceptor::getFollowerCount)
+          .tags(tags.and("role", "follower")).description("The number of queries that received the result of leader")
+          .register(meterRegistry);
+    });
+  }
+
+}
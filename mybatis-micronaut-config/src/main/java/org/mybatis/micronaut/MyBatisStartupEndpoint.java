@@ -0,0 +1,60 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.management.endpoint.annotation.Endpoint;
+import io.micronaut.management.endpoint.annotation.Read;
+
+import java.util.Collection;
+
+/**
+ * The management endpoint that exposes the startup report of each {@code SqlSessionFactory}.
+ * <p>
+ * This endpoint is available at {@code /mybatis-startup} when the {@code micronaut-management} module is on the
+ * classpath.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Endpoint("mybatis-startup")
+@Requires(classes = Endpoint.class)
+class MyBatisStartupEndpoint {
+
+  private final MyBatisStartupReport startupReport;
+
+  /**
+   * Constructor.
+   *
+   * @param startupReport
+   *          The startup report
+   */
+  @SuppressWarnings("unused")
+  MyBatisStartupEndpoint(MyBatisStartupReport startupReport) {
+    this.startupReport = startupReport;
+  }
+
+  /**
+   * Return the startup reports of each {@code SqlSessionFactory}.
+   *
+   * @return The startup reports of each {@code SqlSessionFactory}
+   */
+  @Read
+  public Collection<MyBatisStartupReport.FactoryReport> getFactoryReports() {
+    return startupReport.getFactoryReports();
+  }
+
+}
@@ -0,0 +1,71 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micronaut.context.annotation.Requires;
+
+import java.util.concurrent.TimeUnit;
+import javax.inject.Singleton;
+
+/**
+ * The meter binder that exposes the startup report of each {@code SqlSessionFactory} as Micrometer gauges.
+ * <p>
+ * The elapsed time of each phase is exposed as the {@code mybatis.startup} time gauge tagged with the {@code factory}
+ * and the {@code phase}(the total elapsed time is tagged with {@code phase=total}).
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Singleton
+@Requires(classes = MeterBinder.class)
+class MyBatisStartupMetrics implements MeterBinder {
+
+  static final String METRIC_NAME = "mybatis.startup";
+
+  private final MyBatisStartupReport startupReport;
+
+  /**
+   * Constructor.
+   *
+   * @param startupReport
+   *          The startup report
+   */
+  @SuppressWarnings("unused")
+  MyBatisStartupMetrics(MyBatisStartupReport startupReport) {
+    this.startupReport = startupReport;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    // The SqlSessionFactory that initialized lazily is bound when it has been configured
+    startupReport.addListener(report -> {
+      Tags tags = Tags.of("factory", report.getName());
+      TimeGauge.builder(METRIC_NAME, report, TimeUnit.NANOSECONDS, MyBatisStartupReport.FactoryReport::getTotalNanos)
+          .tags(tags.and("phase", "total")).description("The elapsed time for configuring an SqlSessionFactory")
+          .register(registry);
+      report.getPhases()
+          .forEach(phase -> TimeGauge
+              .builder(METRIC_NAME, phase, TimeUnit.NANOSECONDS, MyBatisStartupReport.PhaseReport::getNanos)
+              .tags(tags.and("phase", phase.getName()))
+              .description("The elapsed time for configuring an SqlSessionFactory").register(registry));
+    });
+  }
+
+}
@@ -0,0 +1,232 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The startup report that holds the elapsed time of each phase for configuring the {@code SqlSessionFactory}.
+ * <p>
+ * The report is recorded per named {@code SqlSessionFactory} and contains the elapsed time of each phase(such as
+ * type aliases, type handlers and mappers) and their details(such as per package scan and per mapper xml file).
+ * When configuring an {@code SqlSessionFactory} has been completed, the summary is written to the log.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Singleton
+public class MyBatisStartupReport {
+
+  private static final Logger logger = LoggerFactory.getLogger(MyBatisStartupReport.class);
+
+  private final Map<String, FactoryReport> factoryReports = Collections.synchronizedMap(new LinkedHashMap<>());
+  private final List<Consumer<FactoryReport>> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Return the reports of completed {@code SqlSessionFactory}.
+   *
+   * @return The reports of completed {@code SqlSessionFactory}
+   */
+  public Collection<FactoryReport> getFactoryReports() {
+    synchronized (factoryReports) {
+      return Collections.unmodifiableList(new ArrayList<>(factoryReports.values()));
+    }
+  }
+
+  /**
+   * Add a listener that notified when configuring an {@code SqlSessionFactory} has been completed.
+   * <p>
+   * The listener is also notified for the reports that have already been completed.
+   *
+   * @param listener
+   *          The listener
+   */
+  public void addListener(Consumer<FactoryReport> listener) {
+    listeners.add(listener);
+    getFactoryReports().forEach(listener);
+  }
+
+  /**
+   * Start recording the report for specified {@code SqlSessionFactory}.
+   *
+   * @param name
+   *          The name of {@code SqlSessionFactory}
+   * @return The report for specified {@code SqlSessionFactory}
+   */
+  FactoryReport start(String name) {
+    return new FactoryReport(name, System.nanoTime());
+  }
+
+  /**
+   * Complete recording the report for specified {@code SqlSessionFactory}.
+   *
+   * @param report
+   *          The report for specified {@code SqlSessionFactory}
+   */
+  void complete(FactoryReport report) {
+    report.totalNanos = System.nanoTime() - report.startNanos;
+    factoryReports.put(report.getName(), report);
+    if (logger.isInfoEnabled()) {
+      String phases = report.getPhases().stream()
+          .map(phase -> phase.getName() + "=" + toMillis(phase.getNanos()) + "ms").collect(Collectors.joining(", "));
+      logger.info("Configured an SqlSessionFactory for '{}' in {} ms ({}).", report.getName(),
+          toMillis(report.getTotalNanos()), phases);
+    }
+    if (logger.isDebugEnabled()) {
+      report.getPhases().forEach(phase -> phase.getDetails().forEach((detail, nanos) -> logger
+          .debug("  [{}] {} {}: {} ms", report.getName(), phase.getName(), detail, toMillis(nanos))));
+    }
+    listeners.forEach(listener -> listener.accept(report));
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * The startup report of an {@code SqlSessionFactory}.
+   */
+  public static class FactoryReport {
+
+    private final String name;
+    private final long startNanos;
+    private final List<PhaseReport> phases = new ArrayList<>();
+    private volatile long totalNanos;
+
+    private FactoryReport(String name, long startNanos) {
+      this.name = name;
+      this.startNanos = startNanos;
+    }
+
+    /**
+     * Return the name of {@code SqlSessionFactory}.
+     *
+     * @return The name of {@code SqlSessionFactory}
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Return the total elapsed time in nanoseconds.
+     *
+     * @return The total elapsed time in nanoseconds
+     */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * Return the phase reports in executed order.
+     *
+     * @return The phase reports
+     */
+    public List<PhaseReport> getPhases() {
+      return Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * Start recording the specified phase.
+     *
+     * @param phaseName
+     *          The phase name
+     * @return The phase report
+     */
+    PhaseReport startPhase(String phaseName) {
+      PhaseReport phase = new PhaseReport(phaseName, System.nanoTime());
+      phases.add(phase);
+      return phase;
+    }
+
+  }
+
+  /**
+   * The report of a phase for configuring an {@code SqlSessionFactory}.
+   */
+  public static class PhaseReport {
+
+    private final String name;
+    private final long startNanos;
+    private final Map<String, Long> details = new LinkedHashMap<>();
+    private long nanos;
+
+    private PhaseReport(String name, long startNanos) {
+      this.name = name;
+      this.startNanos = startNanos;
+    }
+
+    /**
+     * Return the phase name.
+     *
+     * @return The phase name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Return the elapsed time in nanoseconds.
+     *
+     * @return The elapsed time in nanoseconds
+     */
+    public long getNanos() {
+      return nanos;
+    }
+
+    /**
+     * Return the elapsed time of each detail(such as per package scan and per mapper xml file) in nanoseconds.
+     *
+     * @return The elapsed time of each detail in nanoseconds
+     */
+    public Map<String, Long> getDetails() {
+      return Collections.unmodifiableMap(details);
+    }
+
+    /**
+     * Record the elapsed time of specified detail.
+     *
+     * @param detail
+     *          The detail name
+     * @param elapsedNanos
+     *          The elapsed time in nanoseconds
+     */
+    void record(String detail, long elapsedNanos) {
+      details.merge(detail, elapsedNanos, Long::sum);
+    }
+
+    /**
+     * Complete recording this phase.
+     */
+    void complete() {
+      nanos = System.nanoTime() - startNanos;
+    }
+
+  }
+
+}
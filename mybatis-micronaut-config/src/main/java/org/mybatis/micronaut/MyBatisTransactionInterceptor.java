@@ -0,0 +1,62 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.aop.MethodInterceptor;
+import io.micronaut.aop.MethodInvocationContext;
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.inject.qualifiers.Qualifiers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.inject.Singleton;
+
+/**
+ * The interceptor for the {@link MyBatisTransactional}.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Singleton
+public final class MyBatisTransactionInterceptor implements MethodInterceptor<Object, Object> {
+
+  private final ApplicationContext applicationContext;
+  private final Map<String, MyBatisTransactionManager> transactionManagers = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param applicationContext
+   *          The application context of Micronaut
+   */
+  MyBatisTransactionInterceptor(ApplicationContext applicationContext) {
+    this.applicationContext = applicationContext;
+  }
+
+  @Override
+  public Object intercept(MethodInvocationContext<Object, Object> context) {
+    String name = context.getValue(MyBatisTransactional.class, String.class).orElse("");
+    boolean readOnly = context.getValue(MyBatisTransactional.class, "readOnly", Boolean.class).orElse(false);
+    return transactionManagers.computeIfAbsent(name, this::findTransactionManager)
+        .executeInTransaction(readOnly, context::proceed);
+  }
+
+  private MyBatisTransactionManager findTransactionManager(String name) {
+    return name.isEmpty() ? applicationContext.getBean(MyBatisTransactionManager.class)
+        : applicationContext.getBean(MyBatisTransactionManager.class, Qualifiers.byName(name));
+  }
+
+}
@@ -0,0 +1,230 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The transaction manager that binds an {@link SqlSession} to the current thread per transaction.
+ * <p>
+ * This transaction manager is configured per {@link SqlSessionFactory} with JDBC based transaction, and is used by
+ * the {@link MyBatisTransactional}. The transaction uses one {@link SqlSession} and one connection from start to end,
+ * and joins the transaction that already started on the current thread.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class MyBatisTransactionManager {
+
+  private static final Logger logger = LoggerFactory.getLogger(MyBatisTransactionManager.class);
+  private static final ThreadLocal<Boolean> READ_ONLY_STARTING = new ThreadLocal<>();
+
+  private final String name;
+  private final SqlSessionFactory sqlSessionFactory;
+  private final ThreadLocal<SqlSession> currentSqlSession = new ThreadLocal<>();
+
+  /**
+   * Constructor.
+   *
+   * @param name
+   *          The name of {@link SqlSessionFactory}
+   * @param sqlSessionFactory
+   *          The {@link SqlSessionFactory}
+   */
+  MyBatisTransactionManager(String name, SqlSessionFactory sqlSessionFactory) {
+    this.name = name;
+    this.sqlSessionFactory = sqlSessionFactory;
+  }
+
+  /**
+   * Return the name of {@link SqlSessionFactory}.
+   *
+   * @return The name of {@link SqlSessionFactory}
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Return the {@link SqlSessionFactory} that opens an {@link SqlSession} per transaction.
+   *
+   * @return The {@link SqlSessionFactory}
+   */
+  public SqlSessionFactory getSqlSessionFactory() {
+    return sqlSessionFactory;
+  }
+
+  /**
+   * Return whether a transaction is active on the current thread.
+   *
+   * @return If a transaction is active on the current thread, return {@code true}
+   */
+  public boolean isTransactionActive() {
+    return currentSqlSession.get() != null;
+  }
+
+  /**
+   * Return the {@link SqlSession} that bound to the transaction on the current thread.
+   *
+   * @return The {@link SqlSession} that bound to the current transaction
+   */
+  public Optional<SqlSession> getCurrentSqlSession() {
+    return Optional.ofNullable(currentSqlSession.get());
+  }
+
+  /**
+   * Execute specified action within a transaction.
+   * <p>
+   * If a transaction is active on the current thread, the action joins it. Otherwise, a new transaction is started,
+   * and it is committed when the action completes normally or rolled back when the action throws an exception.
+   *
+   * @param action
+   *          The action to execute
+   * @param <T>
+   *          The type of result
+   * @return The result of action
+   */
+  public <T> T executeInTransaction(Supplier<T> action) {
+    return executeInTransaction(false, action);
+  }
+
+  /**
+   * Execute specified action within a transaction.
+   * <p>
+   * If a transaction is active on the current thread, the action joins it. Otherwise, a new transaction is started,
+   * and it is committed when the action completes normally or rolled back when the action throws an exception. A new
+   * read-only transaction is a transaction on a connection marked as read-only via {@link Connection#setReadOnly},
+   * so the database can reject writes and optimize reads, and it can be routed to a replica when the replica data
+   * sources are configured. A read-write action that joins a read-only transaction is rolled back together with it.
+   *
+   * @param readOnly
+   *          Whether a new transaction is read-only
+   * @param action
+   *          The action to execute
+   * @param <T>
+   *          The type of result
+   * @return The result of action
+   */
+  public <T> T executeInTransaction(boolean readOnly, Supplier<T> action) {
+    if (isTransactionActive()) {
+      return action.get();
+    }
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    Connection readOnlyConnection = null;
+    if (readOnly) {
+      try {
+        readOnlyConnection = openReadOnlyConnection(sqlSession);
+      } catch (RuntimeException e) {
+        sqlSession.close();
+        throw e;
+      }
+    }
+    return execute(sqlSession, readOnlyConnection, action);
+  }
+
+  /**
+   * Execute specified action with the {@link SqlSession} of the current transaction.
+   * <p>
+   * If a transaction is active on the current thread, the action joins it. Otherwise, the action is executed with a
+   * new {@link SqlSession} opened with auto-commit mode, so each statement is committed by the database without
+   * starting a transaction, and a query can be routed to a replica when the replica data sources are configured.
+   *
+   * @param action
+   *          The action to execute
+   * @param <T>
+   *          The type of result
+   * @return The result of action
+   * @see #executeInTransaction(Supplier)
+   */
+  public <T> T executeInCurrentTransaction(Supplier<T> action) {
+    if (isTransactionActive()) {
+      return action.get();
+    }
+    return execute(sqlSessionFactory.openSession(true), null, action);
+  }
+
+  /**
+   * Return whether a read-only transaction is acquiring its connection on the current thread.
+   *
+   * @return If a read-only transaction is acquiring its connection, return {@code true}
+   */
+  static boolean isReadOnlyStarting() {
+    return Boolean.TRUE.equals(READ_ONLY_STARTING.get());
+  }
+
+  private static Connection openReadOnlyConnection(SqlSession sqlSession) {
+    // Acquire the connection before the first statement, so the read-only mode applies to the whole transaction
+    READ_ONLY_STARTING.set(Boolean.TRUE);
+    try {
+      Connection connection = sqlSession.getConnection();
+      connection.setReadOnly(true);
+      return connection;
+    } catch (SQLException e) {
+      throw ExceptionFactory.wrapException("Error starting a read-only transaction.", e);
+    } finally {
+      READ_ONLY_STARTING.remove();
+    }
+  }
+
+  private <T> T execute(SqlSession sqlSession, Connection readOnlyConnection, Supplier<T> action) {
+    currentSqlSession.set(sqlSession);
+    try {
+      T result = action.get();
+      sqlSession.commit(true);
+      return result;
+    } catch (Throwable e) {
+      // Also roll back on a checked exception that is thrown via the AOP without declaration
+      rollback(sqlSession, e);
+      throw e;
+    } finally {
+      currentSqlSession.remove();
+      close(sqlSession, readOnlyConnection);
+    }
+  }
+
+  private static void rollback(SqlSession sqlSession, Throwable cause) {
+    try {
+      sqlSession.rollback(true);
+    } catch (RuntimeException | Error e) {
+      // Keep the exception of the action as primary
+      cause.addSuppressed(e);
+    }
+  }
+
+  private static void close(SqlSession sqlSession, Connection readOnlyConnection) {
+    try {
+      if (readOnlyConnection != null) {
+        // Reset after the transaction completes because some drivers reject it in the middle of a transaction
+        readOnlyConnection.setReadOnly(false);
+      }
+    } catch (SQLException e) {
+      // The connection has been closed by switching to the primary on the first write
+      logger.debug("Could not reset the read-only mode of connection.", e);
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+}
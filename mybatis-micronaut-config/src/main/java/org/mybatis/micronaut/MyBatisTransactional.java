@@ -0,0 +1,64 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.aop.Around;
+import io.micronaut.context.annotation.Type;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotation that executes the method within a transaction of the {@link MyBatisTransactionManager}.
+ * <p>
+ * This annotation is available when using the JDBC based transaction(without the Spring based transaction
+ * management). The transaction is committed when the method completes normally, and rolled back when the method throws
+ * an exception. The method invoked within an active transaction joins it.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Around
+@Type(MyBatisTransactionInterceptor.class)
+public @interface MyBatisTransactional {
+
+  /**
+   * Return the name of {@link org.apache.ibatis.session.SqlSessionFactory} that used by the transaction.
+   * <p>
+   * If omit, the unique(or primary) one is used.
+   *
+   * @return The name of {@link org.apache.ibatis.session.SqlSessionFactory}
+   */
+  String value() default "";
+
+  /**
+   * Return whether the transaction is read-only.
+   * <p>
+   * A read-only transaction is executed on a connection marked as read-only, so it can be routed to a replica when the
+   * replica data sources are configured. This attribute is ignored when the method joins an active transaction, and a
+   * read-write method that joins a read-only transaction is committed or rolled back together with it.
+   *
+   * @return If the transaction is read-only, return {@code true}
+   */
+  boolean readOnly() default false;
+
+}
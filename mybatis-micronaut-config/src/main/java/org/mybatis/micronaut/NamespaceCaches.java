@@ -0,0 +1,165 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.core.convert.ConversionService;
+import io.micronaut.core.naming.NameUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * The support class for registering the second level caches that configured per namespace.
+ * <p>
+ * The settings are specified under the {@code mybatis.<name>.caches.<namespace>}. When the {@code off-heap-size} is
+ * specified, the {@link TieredCache} is registered. When the {@code hard-ttl} is specified, the {@link RefreshingCache}
+ * is registered. Otherwise the {@link CaffeineCache} is registered.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class NamespaceCaches {
+
+  static final String MAXIMUM_SIZE = "maximum-size";
+  static final String EXPIRE_AFTER_WRITE = "expire-after-write";
+  static final String EXPIRE_AFTER_ACCESS = "expire-after-access";
+  static final String OFF_HEAP_SIZE = "off-heap-size";
+  static final String SOFT_TTL = "soft-ttl";
+  static final String HARD_TTL = "hard-ttl";
+  static final String NEGATIVE_TTL = "negative-ttl";
+
+  private static final Set<String> SETTING_NAMES = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+      MAXIMUM_SIZE, EXPIRE_AFTER_WRITE, EXPIRE_AFTER_ACCESS, OFF_HEAP_SIZE, SOFT_TTL, HARD_TTL, NEGATIVE_TTL)));
+  private static final Set<String> REFRESH_SETTING_NAMES = Collections
+      .unmodifiableSet(new LinkedHashSet<>(Arrays.asList(SOFT_TTL, HARD_TTL, NEGATIVE_TTL)));
+  private static final Pattern BYTES_PATTERN = Pattern.compile("(\\d+)\\s*([KMG]?B)?", Pattern.CASE_INSENSITIVE);
+
+  private NamespaceCaches() {
+    // NOP
+  }
+
+  /**
+   * Register a cache per namespace into the MyBatis's core configuration.
+   *
+   * @param configuration
+   *          The MyBatis's core configuration
+   * @param caches
+   *          The settings per namespace(such as {@code {"com.example.CityMapper": {"maximum-size": 100}}})
+   * @param conversionService
+   *          The conversion service for converting setting values
+   */
+  static void install(Configuration configuration, Map<String, Object> caches,
+      ConversionService<?> conversionService) {
+    Map<String, Object> flattenSettings = new LinkedHashMap<>();
+    flatten(null, caches, flattenSettings);
+    Map<String, Map<String, Object>> settingsPerNamespace = new LinkedHashMap<>();
+    flattenSettings.forEach((key, value) -> {
+      int index = key.lastIndexOf('.');
+      String settingName = NameUtils.hyphenate(key.substring(index + 1));
+      if (index <= 0 || !SETTING_NAMES.contains(settingName)) {
+        throw new IllegalArgumentException("The cache setting '" + key
+            + "' is invalid. It should be '{namespace}.{setting}' and the supported settings are " + SETTING_NAMES
+            + ".");
+      }
+      settingsPerNamespace.computeIfAbsent(key.substring(0, index), namespace -> new LinkedHashMap<>())
+          .put(settingName, value);
+    });
+    settingsPerNamespace
+        .forEach((namespace, settings) -> configuration.addCache(newCache(namespace, settings, conversionService)));
+  }
+
+  private static Cache newCache(String namespace, Map<String, Object> settings,
+      ConversionService<?> conversionService) {
+    long maximumSize = convert(namespace, settings, MAXIMUM_SIZE, Long.class, conversionService,
+        CaffeineCache.DEFAULT_MAXIMUM_SIZE);
+    Duration expireAfterWrite = convert(namespace, settings, EXPIRE_AFTER_WRITE, Duration.class, conversionService,
+        null);
+    Duration expireAfterAccess = convert(namespace, settings, EXPIRE_AFTER_ACCESS, Duration.class, conversionService,
+        null);
+    if (settings.keySet().stream().anyMatch(REFRESH_SETTING_NAMES::contains)) {
+      if (expireAfterWrite != null || expireAfterAccess != null || settings.containsKey(OFF_HEAP_SIZE)) {
+        throw new IllegalArgumentException("The cache settings " + REFRESH_SETTING_NAMES + " for '" + namespace
+            + "' cannot be combined with '" + EXPIRE_AFTER_WRITE + "', '" + EXPIRE_AFTER_ACCESS + "' and '"
+            + OFF_HEAP_SIZE + "'.");
+      }
+      return new RefreshingCache(namespace, maximumSize,
+          convert(namespace, settings, SOFT_TTL, Duration.class, conversionService, null),
+          convert(namespace, settings, HARD_TTL, Duration.class, conversionService, null),
+          convert(namespace, settings, NEGATIVE_TTL, Duration.class, conversionService, null));
+    }
+    Object offHeapSize = settings.get(OFF_HEAP_SIZE);
+    if (offHeapSize == null) {
+      return new CaffeineCache(namespace, maximumSize, expireAfterWrite, expireAfterAccess);
+    }
+    return new TieredCache(namespace, maximumSize, toBytes(namespace, offHeapSize), expireAfterWrite,
+        expireAfterAccess);
+  }
+
+  private static void flatten(String prefix, Map<?, ?> source, Map<String, Object> target) {
+    // The namespace that contains dots is bound as nested maps
+    source.forEach((key, value) -> {
+      String name = prefix == null ? key.toString() : prefix + "." + key;
+      if (value instanceof Map) {
+        flatten(name, (Map<?, ?>) value, target);
+      } else {
+        target.put(name, value);
+      }
+    });
+  }
+
+  private static <T> T convert(String namespace, Map<String, Object> settings, String settingName, Class<T> type,
+      ConversionService<?> conversionService, T defaultValue) {
+    Object value = settings.get(settingName);
+    if (value == null) {
+      return defaultValue;
+    }
+    return conversionService.convert(value, type)
+        .orElseThrow(() -> new IllegalArgumentException("The cache setting '" + settingName + "' for '" + namespace
+            + "' cannot convert to " + type.getSimpleName() + ". value: " + value));
+  }
+
+  private static long toBytes(String namespace, Object value) {
+    Matcher matcher = BYTES_PATTERN.matcher(value.toString().trim());
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException("The cache setting '" + OFF_HEAP_SIZE + "' for '" + namespace
+          + "' should be the number of bytes(such as 512MB). value: " + value);
+    }
+    long bytes = Long.parseLong(matcher.group(1));
+    String unit = matcher.group(2) == null ? "B" : matcher.group(2).toUpperCase(Locale.ENGLISH);
+    switch (unit) {
+    case "KB":
+      return bytes << 10;
+    case "MB":
+      return bytes << 20;
+    case "GB":
+      return bytes << 30;
+    default:
+      return bytes;
+    }
+  }
+
+}
@@ -0,0 +1,354 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The size-bounded store that holds serialized values in direct {@link ByteBuffer}s(outside of the Java heap).
+ * <p>
+ * The store is partitioned into segments by the hash code of key, and each segment is a ring buffer that appends
+ * values sequentially. When a segment is full, the oldest values are evicted(FIFO). Only keys and positions are held
+ * on the Java heap.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class OffHeapStore {
+
+  private static final int MAX_SEGMENTS = 16;
+  private static final long MIN_SEGMENT_CAPACITY = 1 << 20;
+
+  private final Segment[] segments;
+  private final long expireAfterWriteNanos;
+  private final long expireAfterAccessNanos;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param capacity
+   *          The total capacity in bytes
+   * @param expireAfterWrite
+   *          The duration that values expire after written(if {@code null}, values do not expire)
+   * @param expireAfterAccess
+   *          The duration that values expire after accessed(if {@code null}, values do not expire)
+   */
+  OffHeapStore(long capacity, Duration expireAfterWrite, Duration expireAfterAccess) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity of off-heap store should be greater than 0.");
+    }
+    int segmentCount = 1;
+    while (segmentCount < MAX_SEGMENTS && capacity / (segmentCount * 2) >= MIN_SEGMENT_CAPACITY) {
+      segmentCount *= 2;
+    }
+    while (capacity / segmentCount > Integer.MAX_VALUE) {
+      segmentCount *= 2;
+    }
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment((int) (capacity / segmentCount));
+    }
+    this.expireAfterWriteNanos = expireAfterWrite == null ? 0 : expireAfterWrite.toNanos();
+    this.expireAfterAccessNanos = expireAfterAccess == null ? 0 : expireAfterAccess.toNanos();
+  }
+
+  /**
+   * Return the stored value.
+   *
+   * @param key
+   *          The key
+   * @return The stored value(if it does not exist or has expired, return {@code null})
+   */
+  StoredValue get(Object key) {
+    Segment segment = segmentFor(key);
+    long now = System.nanoTime();
+    StoredValue value = segment.get(key, now);
+    if (value == null) {
+      missCount.increment();
+    } else {
+      hitCount.increment();
+    }
+    return value;
+  }
+
+  /**
+   * Store a value. If the value is larger than the capacity of segment, it is not stored.
+   *
+   * @param key
+   *          The key
+   * @param bytes
+   *          The serialized value
+   * @param writeNanos
+   *          The time that the value was written(in {@link System#nanoTime()})
+   */
+  void put(Object key, byte[] bytes, long writeNanos) {
+    segmentFor(key).put(key, bytes, writeNanos);
+  }
+
+  /**
+   * Remove a value.
+   *
+   * @param key
+   *          The key
+   */
+  void remove(Object key) {
+    segmentFor(key).remove(key, null);
+  }
+
+  /**
+   * Remove all values.
+   */
+  void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Return the number of stored values.
+   *
+   * @return The number of stored values
+   */
+  long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * Return the total bytes of stored values.
+   *
+   * @return The total bytes of stored values
+   */
+  long usedBytes() {
+    long usedBytes = 0;
+    for (Segment segment : segments) {
+      usedBytes += segment.usedBytes();
+    }
+    return usedBytes;
+  }
+
+  long hitCount() {
+    return hitCount.sum();
+  }
+
+  long missCount() {
+    return missCount.sum();
+  }
+
+  long evictionCount() {
+    return evictionCount.sum();
+  }
+
+  private Segment segmentFor(Object key) {
+    int hash = key.hashCode();
+    return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+  }
+
+  private boolean isExpired(Slot slot, long now) {
+    return (expireAfterWriteNanos > 0 && now - slot.writeNanos >= expireAfterWriteNanos)
+        || (expireAfterAccessNanos > 0 && now - slot.accessNanos >= expireAfterAccessNanos);
+  }
+
+  /**
+   * The value that read from the off-heap store.
+   */
+  static final class StoredValue {
+
+    private final byte[] bytes;
+    private final long writeNanos;
+
+    private StoredValue(byte[] bytes, long writeNanos) {
+      this.bytes = bytes;
+      this.writeNanos = writeNanos;
+    }
+
+    byte[] getBytes() {
+      return bytes;
+    }
+
+    long getWriteNanos() {
+      return writeNanos;
+    }
+
+  }
+
+  private static final class Slot {
+
+    private final Object key;
+    private final int offset;
+    private final int length;
+    private final long writeNanos;
+    private volatile long accessNanos;
+
+    private Slot(Object key, int offset, int length, long writeNanos) {
+      this.key = key;
+      this.offset = offset;
+      this.length = length;
+      this.writeNanos = writeNanos;
+      this.accessNanos = writeNanos;
+    }
+
+    private boolean overlaps(int otherOffset, int otherLength) {
+      return offset < otherOffset + otherLength && otherOffset < offset + length;
+    }
+
+  }
+
+  private final class Segment {
+
+    private final ByteBuffer buffer;
+    private final Map<Object, Slot> index = new HashMap<>();
+    // The slots in appended order(it contains the slots that has been removed from the index)
+    private final Deque<Slot> slots = new ArrayDeque<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int position;
+    private long usedBytes;
+
+    private Segment(int capacity) {
+      this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    private StoredValue get(Object key, long now) {
+      Slot slot;
+      lock.readLock().lock();
+      try {
+        slot = index.get(key);
+        if (slot == null) {
+          return null;
+        }
+        if (!isExpired(slot, now)) {
+          slot.accessNanos = now;
+          byte[] bytes = new byte[slot.length];
+          ByteBuffer source = buffer.duplicate();
+          source.position(slot.offset);
+          source.get(bytes);
+          return new StoredValue(bytes, slot.writeNanos);
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+      remove(key, slot);
+      return null;
+    }
+
+    private void put(Object key, byte[] bytes, long writeNanos) {
+      lock.writeLock().lock();
+      try {
+        unlink(index.remove(key));
+        if (bytes.length > buffer.capacity()) {
+          return;
+        }
+        if (slots.isEmpty()) {
+          position = 0;
+        }
+        if (position + bytes.length > buffer.capacity()) {
+          // Wrap around, and evict the slots that placed after the current position(the oldest round)
+          while (!slots.isEmpty() && slots.peekFirst().offset >= position) {
+            evict(slots.pollFirst());
+          }
+          position = 0;
+        }
+        while (!slots.isEmpty() && slots.peekFirst().overlaps(position, bytes.length)) {
+          evict(slots.pollFirst());
+        }
+        ByteBuffer target = buffer.duplicate();
+        target.position(position);
+        target.put(bytes);
+        Slot slot = new Slot(key, position, bytes.length, writeNanos);
+        slots.addLast(slot);
+        index.put(key, slot);
+        usedBytes += bytes.length;
+        position += bytes.length;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    private void remove(Object key, Slot expected) {
+      lock.writeLock().lock();
+      try {
+        Slot slot = index.get(key);
+        if (slot != null && (expected == null || slot == expected)) {
+          unlink(index.remove(key));
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    private void clear() {
+      lock.writeLock().lock();
+      try {
+        index.clear();
+        slots.clear();
+        position = 0;
+        usedBytes = 0;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    private long size() {
+      lock.readLock().lock();
+      try {
+        return index.size();
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private long usedBytes() {
+      lock.readLock().lock();
+      try {
+        return usedBytes;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    private void evict(Slot slot) {
+      // The slot that has been removed or replaced only releases its space
+      if (index.get(slot.key) == slot) {
+        index.remove(slot.key);
+        usedBytes -= slot.length;
+        evictionCount.increment();
+      }
+    }
+
+    private void unlink(Slot slot) {
+      // The space of removed slot is released when the ring buffer wraps around
+      if (slot != null) {
+        usedBytes -= slot.length;
+      }
+    }
+
+  }
+
+}
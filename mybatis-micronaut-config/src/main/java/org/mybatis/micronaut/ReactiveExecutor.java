@@ -0,0 +1,125 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+
+/**
+ * The executor for executing the mapper methods that return a reactive type.
+ * <p>
+ * This executor is created per {@link org.apache.ibatis.session.SqlSessionFactory}, and the number of threads is
+ * bounded by the pool size of the data source because each execution holds a connection until it completes.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class ReactiveExecutor implements Executor {
+
+  // The property names of the maximum pool size on the HikariCP, Tomcat JDBC, Commons DBCP2 and c3p0
+  private static final List<String> POOL_SIZE_PROPERTIES = Arrays.asList("maximumPoolSize", "maxActive",
+      "maxTotal", "maxPoolSize");
+  private static final String TARGET_DATA_SOURCE_PROPERTY = "targetDataSource";
+  // Same as the default maximum pool size of the HikariCP
+  private static final int DEFAULT_SIZE = 10;
+
+  private final int size;
+  private final ThreadPoolExecutor delegate;
+
+  /**
+   * Constructor.
+   *
+   * @param name
+   *          The name of {@link org.apache.ibatis.session.SqlSessionFactory}
+   * @param size
+   *          The number of threads
+   */
+  ReactiveExecutor(String name, int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("The reactive-executor-size must be greater than 0 for '" + name + "'.");
+    }
+    this.size = size;
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.delegate = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        runnable -> {
+          Thread thread = new Thread(runnable, "mybatis-reactive-" + name + "-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.delegate.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Decide the number of threads from the maximum pool size of specified data source.
+   *
+   * @param dataSource
+   *          The data source
+   * @return The maximum pool size of the data source, or the default size if it cannot be detected
+   */
+  static int decideSize(DataSource dataSource) {
+    MetaObject metaObject = SystemMetaObject.forObject(dataSource);
+    // Unwrap the delegating data source such as the TransactionAwareDataSourceProxy of Spring
+    if (metaObject.hasGetter(TARGET_DATA_SOURCE_PROPERTY)
+        && metaObject.getValue(TARGET_DATA_SOURCE_PROPERTY) instanceof DataSource) {
+      return decideSize((DataSource) metaObject.getValue(TARGET_DATA_SOURCE_PROPERTY));
+    }
+    return POOL_SIZE_PROPERTIES.stream().filter(metaObject::hasGetter).map(metaObject::getValue)
+        .filter(Objects::nonNull).map(Object::toString).map(ReactiveExecutor::parseSize).filter(Optional::isPresent)
+        .map(Optional::get).findFirst().orElse(DEFAULT_SIZE);
+  }
+
+  private static Optional<Integer> parseSize(String value) {
+    try {
+      int size = Integer.parseInt(value);
+      return size > 0 ? Optional.of(size) : Optional.empty();
+    } catch (NumberFormatException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Return the number of threads.
+   *
+   * @return The number of threads
+   */
+  int getSize() {
+    return size;
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    delegate.execute(command);
+  }
+
+  /**
+   * Shutdown this executor.
+   */
+  void shutdown() {
+    delegate.shutdown();
+  }
+
+}
@@ -0,0 +1,489 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.core.async.publisher.Publishers;
+import io.micronaut.core.reflect.ClassUtils;
+import io.reactivex.Completable;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ParamNameResolver;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.reflection.TypeParameterResolver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link InvocationHandler} that executes the mapper methods that return a reactive type on the
+ * {@link ReactiveExecutor}.
+ * <p>
+ * The supported return types are as follows:
+ * <ul>
+ * <li>{@link CompletableFuture}, {@link java.util.concurrent.CompletionStage} and {@link java.util.concurrent.Future}
+ * </li>
+ * <li>{@link org.reactivestreams.Publisher}, {@link Flowable}, {@link Observable}, {@link Single}, {@link Maybe} and
+ * {@link Completable}(requires the RxJava 2)</li>
+ * <li>Other types that can be converted from the {@link Flowable} via the {@link Publishers}(such as {@code Mono} and
+ * {@code Flux} of the Reactor)</li>
+ * </ul>
+ * The multi-valued type(such as {@link Flowable}) emits each row, and the single-valued type(such as {@link Single})
+ * emits a row, or a list of rows when the type argument is a {@link List} or {@link Collection}. Other methods are
+ * delegated to the original mapper object.
+ * <p>
+ * The select statement for the multi-valued type is streamed via a {@link Cursor} on a dedicated {@link SqlSession}.
+ * The session is kept open until the stream completes, fails or is cancelled, and each row is fetched on demand of the
+ * subscriber. On cancellation or failure, the executing statement is cancelled via {@link Statement#cancel()} from the
+ * thread that cancels it, so the database stops the query even while the executor thread is fetching rows.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class ReactiveMapperHandler implements InvocationHandler {
+
+  /**
+   * The suffix of the statement id that derived from the select statement for a reactive method.
+   * <p>
+   * The result type of the annotation-based select statement is resolved from the raw return type(such as
+   * {@link Flowable}) by the MyBatis, therefore the derived statement that maps rows to the type argument is used.
+   * Also, the derived statement is used for applying the fetch size of streaming.
+   */
+  static final String STATEMENT_SUFFIX = "!reactive";
+
+  private static final Logger logger = LoggerFactory.getLogger(ReactiveMapperHandler.class);
+
+  private static final boolean RXJAVA_PRESENT = ClassUtils.isPresent("io.reactivex.Flowable",
+      ReactiveMapperHandler.class.getClassLoader());
+  private static final List<String> SINGLE_VALUED_TYPES = Arrays.asList("io.reactivex.Single", "io.reactivex.Maybe",
+      "io.reactivex.Completable", "reactor.core.publisher.Mono");
+
+  private final Class<?> mapperType;
+  private final Object delegate;
+  private final SqlSession sqlSession;
+  private final SqlSessionFactory sqlSessionFactory;
+  private final Supplier<Executor> executorSupplier;
+  private final Map<Method, MethodMetadata> methodMetadata = new ConcurrentHashMap<>();
+
+  private ReactiveMapperHandler(Class<?> mapperType, Object delegate, SqlSession sqlSession,
+      SqlSessionFactory sqlSessionFactory, Supplier<Executor> executorSupplier) {
+    this.mapperType = mapperType;
+    this.delegate = delegate;
+    this.sqlSession = sqlSession;
+    this.sqlSessionFactory = sqlSessionFactory;
+    this.executorSupplier = executorSupplier;
+  }
+
+  /**
+   * Wrap a mapper object for executing the methods that return a reactive type on an executor.
+   *
+   * @param mapperType
+   *          The mapper interface
+   * @param mapper
+   *          The original mapper object
+   * @param sqlSession
+   *          The thread safe {@link SqlSession}(such as {@code SqlSessionTemplate}) for executing statements
+   * @param sqlSessionFactory
+   *          The {@link SqlSessionFactory} for opening a session for streaming
+   * @param executorSupplier
+   *          The supplier of executor(the executor is retrieved on first invocation of a reactive method)
+   * @param <T>
+   *          The type of mapper
+   * @return The wrapped mapper object, or the original mapper object if the mapper interface has no reactive method
+   */
+  static <T> T wrap(Class<T> mapperType, T mapper, SqlSession sqlSession, SqlSessionFactory sqlSessionFactory,
+      Supplier<Executor> executorSupplier) {
+    if (Arrays.stream(mapperType.getMethods()).noneMatch(ReactiveMapperHandler::isReactiveMethod)) {
+      return mapper;
+    }
+    return mapperType.cast(Proxy.newProxyInstance(mapperType.getClassLoader(), new Class<?>[] { mapperType },
+        new ReactiveMapperHandler(mapperType, mapper, sqlSession, sqlSessionFactory, executorSupplier)));
+  }
+
+  /**
+   * Add the statements that derived from the annotation-based select statements for reactive methods.
+   *
+   * @param configuration
+   *          The MyBatis's core configuration that mappers have been added
+   * @param streamFetchSize
+   *          The fetch size for streaming that applied to the statement without fetch size(can be {@code null})
+   */
+  static void addReactiveStatements(Configuration configuration, Integer streamFetchSize) {
+    for (Class<?> mapperType : configuration.getMapperRegistry().getMappers()) {
+      for (Method method : mapperType.getMethods()) {
+        if (!isReactiveMethod(method)) {
+          continue;
+        }
+        Optional<MappedStatement> statement = MapperStatements.findStatementId(configuration, mapperType, method)
+            .map(id -> configuration.getMappedStatement(id, false));
+        if (!statement.isPresent() || statement.get().getSqlCommandType() != SqlCommandType.SELECT
+            || configuration.hasStatement(statement.get().getId() + STATEMENT_SUFFIX, false)) {
+          continue;
+        }
+        Integer fetchSize = statement.get().getFetchSize() == null && isMultiValuedType(method.getReturnType())
+            ? streamFetchSize
+            : statement.get().getFetchSize();
+        if (statement.get().getResultMaps().stream().noneMatch(r -> r.getType() == method.getReturnType())
+            && Objects.equals(fetchSize, statement.get().getFetchSize())) {
+          continue;
+        }
+        configuration.addMappedStatement(deriveStatement(configuration, statement.get(), method.getReturnType(),
+            resolveRowType(mapperType, method), fetchSize));
+      }
+    }
+  }
+
+  private static MappedStatement deriveStatement(Configuration configuration, MappedStatement statement,
+      Class<?> reactiveType, Class<?> rowType, Integer fetchSize) {
+    List<ResultMap> resultMaps = statement.getResultMaps().stream()
+        .map(resultMap -> resultMap.getType() != reactiveType ? resultMap
+            : new ResultMap.Builder(configuration, resultMap.getId() + STATEMENT_SUFFIX, rowType,
+                resultMap.getResultMappings(), resultMap.getAutoMapping())
+                    .discriminator(resultMap.getDiscriminator()).build())
+        .collect(Collectors.toList());
+    MappedStatement.Builder builder = new MappedStatement.Builder(configuration,
+        statement.getId() + STATEMENT_SUFFIX, statement.getSqlSource(), statement.getSqlCommandType())
+            .resource(statement.getResource()).fetchSize(fetchSize).timeout(statement.getTimeout())
+            .statementType(statement.getStatementType()).resultSetType(statement.getResultSetType())
+            .parameterMap(statement.getParameterMap()).resultMaps(resultMaps).cache(statement.getCache())
+            .flushCacheRequired(statement.isFlushCacheRequired()).useCache(statement.isUseCache())
+            .resultOrdered(statement.isResultOrdered()).keyGenerator(statement.getKeyGenerator())
+            .databaseId(statement.getDatabaseId()).lang(statement.getLang());
+    if (statement.getResultSets() != null) {
+      builder.resultSets(String.join(",", statement.getResultSets()));
+    }
+    return builder.build();
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      switch (method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "Reactive mapper proxy for " + mapperType.getName();
+      default:
+        return method.invoke(this, args);
+      }
+    }
+    if (!isReactiveMethod(method)) {
+      try {
+        return method.invoke(delegate, args);
+      } catch (InvocationTargetException e) {
+        throw e.getTargetException();
+      }
+    }
+    MethodMetadata metadata = methodMetadata.computeIfAbsent(method, MethodMetadata::new);
+    Callable<Object> execution = () -> metadata.execute(args);
+    Class<?> returnType = method.getReturnType();
+    if (returnType.isAssignableFrom(CompletableFuture.class)) {
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          return execution.call();
+        } catch (Exception e) {
+          throw e instanceof RuntimeException ? (RuntimeException) e : new CompletionException(e);
+        }
+      }, executorSupplier.get());
+    }
+    if (metadata.streaming) {
+      return RxJavaAdapter.stream(returnType, () -> metadata.openCursor(args), executorSupplier);
+    }
+    return RxJavaAdapter.adapt(returnType, execution, executorSupplier);
+  }
+
+  private static boolean isReactiveMethod(Method method) {
+    return !method.isDefault() && !method.isBridge() && method.getDeclaringClass() != Object.class
+        && isReactiveType(method.getReturnType());
+  }
+
+  private static boolean isReactiveType(Class<?> type) {
+    return (type != Object.class && type.isAssignableFrom(CompletableFuture.class))
+        || Publishers.isConvertibleToPublisher(type) || SINGLE_VALUED_TYPES.contains(type.getName());
+  }
+
+  private static boolean isMultiValuedType(Class<?> type) {
+    return !type.isAssignableFrom(CompletableFuture.class) && !SINGLE_VALUED_TYPES.contains(type.getName());
+  }
+
+  private static Type resolveValueType(Class<?> mapperType, Method method) {
+    Type returnType = TypeParameterResolver.resolveReturnType(method, mapperType);
+    return returnType instanceof ParameterizedType ? ((ParameterizedType) returnType).getActualTypeArguments()[0]
+        : Object.class;
+  }
+
+  private static Class<?> resolveRowType(Class<?> mapperType, Method method) {
+    Type valueType = resolveValueType(mapperType, method);
+    if (isCollectionType(valueType)) {
+      valueType = valueType instanceof ParameterizedType
+          ? ((ParameterizedType) valueType).getActualTypeArguments()[0]
+          : Object.class;
+    }
+    return toRawType(valueType);
+  }
+
+  private static boolean isCollectionType(Type type) {
+    return Collection.class.isAssignableFrom(toRawType(type));
+  }
+
+  private static Class<?> toRawType(Type type) {
+    if (type instanceof Class) {
+      return (Class<?>) type;
+    }
+    if (type instanceof ParameterizedType) {
+      return (Class<?>) ((ParameterizedType) type).getRawType();
+    }
+    return Object.class;
+  }
+
+  private class MethodMetadata {
+
+    private final String statementId;
+    private final SqlCommandType commandType;
+    private final ParamNameResolver paramNameResolver;
+    private final boolean streaming;
+    private final boolean returnsMany;
+    private final Class<?> valueType;
+
+    private MethodMetadata(Method method) {
+      Configuration configuration = sqlSession.getConfiguration();
+      String id = MapperStatements.findStatementId(configuration, mapperType, method)
+          .orElseThrow(() -> new BindingException(
+              "Invalid bound statement (not found): " + mapperType.getName() + "." + method.getName()));
+      this.statementId = configuration.hasStatement(id + STATEMENT_SUFFIX, false) ? id + STATEMENT_SUFFIX : id;
+      this.commandType = configuration.getMappedStatement(id, false).getSqlCommandType();
+      this.paramNameResolver = new ParamNameResolver(configuration, method);
+      Class<?> returnType = method.getReturnType();
+      this.streaming = isMultiValuedType(returnType) && commandType == SqlCommandType.SELECT;
+      Type type = resolveValueType(mapperType, method);
+      this.returnsMany = isCollectionType(type);
+      this.valueType = toRawType(type);
+      if (returnsMany && !valueType.isAssignableFrom(ArrayList.class)) {
+        throw new BindingException("Unsupported type argument " + type + " of the reactive method " + method
+            + ". Use List or Collection.");
+      }
+      if (!returnType.isAssignableFrom(CompletableFuture.class) && !RXJAVA_PRESENT) {
+        throw new BindingException("The RxJava 2 is required for the reactive method " + method + ".");
+      }
+    }
+
+    private Object execute(Object[] args) {
+      Object param = paramNameResolver.getNamedParams(args);
+      switch (commandType) {
+      case SELECT:
+        return returnsMany ? sqlSession.selectList(statementId, param) : sqlSession.selectOne(statementId, param);
+      case INSERT:
+        return toRowCountResult(sqlSession.insert(statementId, param));
+      case UPDATE:
+        return toRowCountResult(sqlSession.update(statementId, param));
+      case DELETE:
+        return toRowCountResult(sqlSession.delete(statementId, param));
+      default:
+        throw new BindingException("Unknown execution method for: " + statementId);
+      }
+    }
+
+    private CursorSession openCursor(Object[] args) {
+      SqlSession session = sqlSessionFactory.openSession();
+      try {
+        return new CursorSession(session, session.selectCursor(statementId, paramNameResolver.getNamedParams(args)));
+      } catch (RuntimeException e) {
+        session.close();
+        throw e;
+      }
+    }
+
+    private Object toRowCountResult(int rowCount) {
+      if (valueType == Long.class) {
+        return (long) rowCount;
+      }
+      if (valueType == Boolean.class) {
+        return rowCount > 0;
+      }
+      if (valueType == Void.class) {
+        return null;
+      }
+      return rowCount;
+    }
+
+  }
+
+  private static final class CursorSession implements Closeable {
+
+    private final SqlSession session;
+    private final Cursor<Object> cursor;
+    private final Iterator<Object> iterator;
+    private final Statement statement;
+
+    private CursorSession(SqlSession session, Cursor<Object> cursor) {
+      this.session = session;
+      this.cursor = cursor;
+      this.iterator = cursor.iterator();
+      this.statement = findStatement(cursor);
+    }
+
+    private static Statement findStatement(Cursor<Object> cursor) {
+      // The DefaultCursor holds the result set of the executing statement
+      MetaObject metaObject = SystemMetaObject.forObject(cursor);
+      if (!metaObject.hasGetter("rsw")) {
+        return null;
+      }
+      try {
+        ResultSet resultSet = (ResultSet) metaObject.getValue("rsw.resultSet");
+        return resultSet == null ? null : resultSet.getStatement();
+      } catch (SQLException e) {
+        logger.debug("Could not get the statement of cursor. It is not cancelled on cancellation.", e);
+        return null;
+      }
+    }
+
+    private void cancel() {
+      // Called from other thread while the executor thread may be fetching rows
+      if (statement == null) {
+        return;
+      }
+      try {
+        if (!statement.isClosed()) {
+          statement.cancel();
+        }
+      } catch (SQLException e) {
+        // The statement may be closed concurrently on completion
+        logger.debug("Could not cancel the statement of cursor.", e);
+      }
+    }
+
+    @Override
+    public void close() {
+      // Closing the cursor closes the statement too(the statement is closed on completion)
+      try {
+        cursor.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        session.close();
+      }
+    }
+
+  }
+
+  // Separated for loading the RxJava classes only when a method that returns the reactive stream type is invoked
+  private static final class RxJavaAdapter {
+
+    private static Object adapt(Class<?> returnType, Callable<Object> execution, Supplier<Executor> executorSupplier) {
+      Maybe<Object> maybe = Maybe.defer(() -> Maybe.fromCallable(execution)
+          .subscribeOn(Schedulers.from(executorSupplier.get())));
+      if (returnType == Single.class) {
+        return maybe.toSingle();
+      }
+      if (returnType == Maybe.class) {
+        return maybe;
+      }
+      if (returnType == Completable.class) {
+        return maybe.ignoreElement();
+      }
+      return convert(returnType, maybe.toFlowable());
+    }
+
+    private static Object stream(Class<?> returnType, Callable<CursorSession> cursorOpener,
+        Supplier<Executor> executorSupplier) {
+      // Fetch a row per request from the subscriber, and close the cursor on completion, error and cancellation
+      Flowable<Object> flowable = Flowable.defer(() -> {
+        AtomicReference<CursorSession> current = new AtomicReference<>();
+        return Flowable.generate(() -> {
+          CursorSession state = cursorOpener.call();
+          current.set(state);
+          return state;
+        }, (CursorSession state, Emitter<Object> emitter) -> {
+          // The reactive streams does not allow null, therefore skip null rows. Each invocation consumes a request
+          // even if it emits nothing, so read up to the next non-null row within the same invocation.
+          while (state.iterator.hasNext()) {
+            Object row = state.iterator.next();
+            if (row != null) {
+              emitter.onNext(row);
+              return;
+            }
+          }
+          emitter.onComplete();
+        }, CursorSession::close).subscribeOn(Schedulers.from(executorSupplier.get()))
+            // The cursor is closed by the executor thread after the current fetch, so cancel the statement first
+            .doOnCancel(() -> cancel(current)).doOnError(e -> cancel(current));
+      });
+      return convert(returnType, flowable);
+    }
+
+    private static void cancel(AtomicReference<CursorSession> current) {
+      CursorSession state = current.get();
+      if (state != null) {
+        state.cancel();
+      }
+    }
+
+    private static Object convert(Class<?> returnType, Flowable<Object> flowable) {
+      if (returnType.isInstance(flowable)) {
+        return flowable;
+      }
+      if (returnType == Observable.class) {
+        return flowable.toObservable();
+      }
+      return Publishers.convertPublisher(flowable, returnType);
+    }
+
+  }
+
+}
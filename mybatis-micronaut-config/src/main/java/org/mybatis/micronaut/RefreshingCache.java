@@ -0,0 +1,356 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.cache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The second level cache implementation that serves stale entries while refreshing them in the background.
+ * <p>
+ * Each entry has the soft TTL and the hard TTL. Until the soft TTL, the entry is fresh. Between the soft TTL and the
+ * hard TTL, the entry is served as stale and the query is executed again in the background to refresh it(at most one
+ * refresh per entry at a time). After the hard TTL, the entry expires and the query is executed by the caller. The
+ * empty results are cached with the negative TTL, or not cached when it is not specified.
+ * <p>
+ * The TTLs can be configured per namespace(as the default of this cache) and per statement via the
+ * {@link StaleWhileRevalidate}. The background refresh is requested by the {@link StaleWhileRevalidateInterceptor}.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class RefreshingCache implements Cache {
+
+  private static final Logger logger = LoggerFactory.getLogger(RefreshingCache.class);
+
+  // Whether the current thread is refreshing an entry(the query should not be served from caches)
+  private static final ThreadLocal<Boolean> REFRESHING = new ThreadLocal<>();
+
+  private final String id;
+  private final Policy defaultPolicy;
+  private final com.github.benmanes.caffeine.cache.Cache<Object, Entry> cache;
+  private final ConcurrentMap<Object, Entry> entries;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder staleHitCount = new LongAdder();
+  private final LongAdder refreshSuccessCount = new LongAdder();
+  private final LongAdder refreshFailureCount = new LongAdder();
+  private final LongAdder totalRefreshTime = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param id
+   *          The cache id(namespace)
+   * @param maximumSize
+   *          The maximum number of entries
+   * @param softTtl
+   *          The duration that entries are fresh(if {@code null}, same as the hard TTL)
+   * @param hardTtl
+   *          The duration that entries expire after written
+   * @param negativeTtl
+   *          The duration that empty results expire after written(if {@code null}, empty results are not cached)
+   */
+  public RefreshingCache(String id, long maximumSize, Duration softTtl, Duration hardTtl, Duration negativeTtl) {
+    this(id, maximumSize, Policy.of(id, softTtl, hardTtl, negativeTtl));
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param id
+   *          The cache id(namespace)
+   * @param maximumSize
+   *          The maximum number of entries
+   * @param defaultPolicy
+   *          The policy of statements that do not specify it(if {@code null}, only the statements that specify it are
+   *          cached)
+   */
+  RefreshingCache(String id, long maximumSize, Policy defaultPolicy) {
+    this.id = id;
+    this.defaultPolicy = defaultPolicy;
+    this.cache = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().expireAfter(new EntryExpiry()).build();
+    this.entries = cache.asMap();
+  }
+
+  /**
+   * Return whether the current thread is refreshing an entry.
+   *
+   * @return If the current thread is refreshing an entry, return {@code true}
+   */
+  static boolean isRefreshing() {
+    return REFRESHING.get() != null;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    // The TransactionalCache puts null for the entry that missed in the cache
+    if (value == null) {
+      if (!isRefreshing()) {
+        cache.invalidate(key);
+      }
+      return;
+    }
+    entries.compute(key, (k, old) -> {
+      // The entry that has been removed during the refresh is not restored
+      if (old == null && (defaultPolicy == null || isRefreshing())) {
+        return null;
+      }
+      Entry entry = old == null ? new Entry(defaultPolicy, null, value, System.nanoTime())
+          : new Entry(old.policy, old.refresher, value, System.nanoTime());
+      return entry.isNegative() && entry.policy.negativeTtlNanos < 0 ? null : entry;
+    });
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    if (isRefreshing()) {
+      return null;
+    }
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null || entry.value == null) {
+      missCount.increment();
+      return null;
+    }
+    hitCount.increment();
+    return entry.value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    if (isRefreshing()) {
+      return null;
+    }
+    Entry entry = entries.remove(key);
+    return entry == null ? null : entry.value;
+  }
+
+  @Override
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  @Override
+  public int getSize() {
+    return (int) Math.min(cache.estimatedSize(), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Return the snapshot of the statistics.
+   * <p>
+   * The load counts and the total load time represent the background refreshes.
+   *
+   * @return The snapshot of the statistics
+   */
+  public CacheStats getStats() {
+    CacheStats stats = cache.stats();
+    return new CacheStats(hitCount.sum(), missCount.sum(), refreshSuccessCount.sum(), refreshFailureCount.sum(),
+        totalRefreshTime.sum(), stats.evictionCount(), stats.evictionWeight());
+  }
+
+  /**
+   * Return the number of times that the stale entries have been served.
+   *
+   * @return The number of stale hits
+   */
+  public long getStaleHitCount() {
+    return staleHitCount.sum();
+  }
+
+  /**
+   * Return the policy of statements that do not specify it.
+   *
+   * @return The default policy(if {@code null}, only the statements that specify it are cached)
+   */
+  Policy getDefaultPolicy() {
+    return defaultPolicy;
+  }
+
+  /**
+   * Prepare the entry for the query that is about to be executed, and refresh it in the background if it is stale.
+   *
+   * @param key
+   *          The cache key of the query
+   * @param policy
+   *          The policy of the statement
+   * @param refresher
+   *          The task that executes the query again(if {@code null}, the entry is not refreshed in the background)
+   * @param refreshExecutor
+   *          The executor for refreshing in the background
+   */
+  void prepare(Object key, Policy policy, Runnable refresher, Executor refreshExecutor) {
+    Entry entry = entries.get(key);
+    if (entry == null || (entry.refresher == null && refresher != null)) {
+      entry = entries.compute(key, (k, old) -> {
+        if (old == null) {
+          // The placeholder holds the policy and refresher until the result is put
+          return new Entry(policy, refresher, null, System.nanoTime());
+        }
+        return old.refresher == null && refresher != null ? new Entry(old.policy, refresher, old.value, old.writeNanos)
+            : old;
+      });
+    }
+    if (!entry.isStale(System.nanoTime())) {
+      return;
+    }
+    staleHitCount.increment();
+    if (entry.refreshing.compareAndSet(false, true)) {
+      Entry staleEntry = entry;
+      try {
+        refreshExecutor.execute(() -> refresh(staleEntry));
+      } catch (RejectedExecutionException e) {
+        // Retry on next access
+        staleEntry.refreshing.set(false);
+      }
+    }
+  }
+
+  private void refresh(Entry entry) {
+    long start = System.nanoTime();
+    REFRESHING.set(Boolean.TRUE);
+    try {
+      entry.refresher.run();
+      refreshSuccessCount.increment();
+    } catch (RuntimeException e) {
+      refreshFailureCount.increment();
+      logger.warn("Failed to refresh the stale entry of cache '{}'. It is served until the hard TTL.", id, e);
+    } finally {
+      REFRESHING.remove();
+      totalRefreshTime.add(System.nanoTime() - start);
+      entry.refreshing.set(false);
+    }
+  }
+
+  /**
+   * Perform the pending maintenance operations such as the eviction.
+   */
+  void cleanUp() {
+    cache.cleanUp();
+  }
+
+  /**
+   * The TTLs of entries.
+   */
+  static final class Policy {
+
+    private final long softTtlNanos;
+    private final long hardTtlNanos;
+    private final long negativeTtlNanos;
+
+    private Policy(long softTtlNanos, long hardTtlNanos, long negativeTtlNanos) {
+      this.softTtlNanos = softTtlNanos;
+      this.hardTtlNanos = hardTtlNanos;
+      this.negativeTtlNanos = negativeTtlNanos;
+    }
+
+    /**
+     * Create a policy.
+     *
+     * @param owner
+     *          The owner of the policy(namespace or statement id) for the error message
+     * @param softTtl
+     *          The duration that entries are fresh(if {@code null}, same as the hard TTL)
+     * @param hardTtl
+     *          The duration that entries expire after written
+     * @param negativeTtl
+     *          The duration that empty results expire after written(if {@code null}, empty results are not cached)
+     * @return The policy
+     */
+    static Policy of(String owner, Duration softTtl, Duration hardTtl, Duration negativeTtl) {
+      if (hardTtl == null || hardTtl.isNegative() || hardTtl.isZero()) {
+        throw new IllegalArgumentException("The hard TTL for '" + owner + "' should be greater than 0.");
+      }
+      if (softTtl != null && (softTtl.isNegative() || softTtl.compareTo(hardTtl) > 0)) {
+        throw new IllegalArgumentException(
+            "The soft TTL for '" + owner + "' should be between 0 and the hard TTL(" + hardTtl + ").");
+      }
+      if (negativeTtl != null && (negativeTtl.isNegative() || negativeTtl.isZero())) {
+        throw new IllegalArgumentException("The negative TTL for '" + owner + "' should be greater than 0.");
+      }
+      return new Policy(softTtl == null ? hardTtl.toNanos() : softTtl.toNanos(), hardTtl.toNanos(),
+          negativeTtl == null ? -1 : negativeTtl.toNanos());
+    }
+
+  }
+
+  private static final class Entry {
+
+    private final Policy policy;
+    private final Runnable refresher;
+    private final Object value;
+    private final long writeNanos;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private Entry(Policy policy, Runnable refresher, Object value, long writeNanos) {
+      this.policy = policy;
+      this.refresher = refresher;
+      this.value = value;
+      this.writeNanos = writeNanos;
+    }
+
+    private boolean isNegative() {
+      return value instanceof Collection && ((Collection<?>) value).isEmpty();
+    }
+
+    private boolean isStale(long now) {
+      return value != null && refresher != null && !isNegative() && now - writeNanos >= policy.softTtlNanos;
+    }
+
+    private long remainingNanos(long now) {
+      long ttl = isNegative() ? policy.negativeTtlNanos : policy.hardTtlNanos;
+      return Math.max(0, writeNanos + ttl - now);
+    }
+
+  }
+
+  private static final class EntryExpiry implements Expiry<Object, Entry> {
+
+    @Override
+    public long expireAfterCreate(Object key, Entry entry, long currentTime) {
+      return entry.remainingNanos(currentTime);
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Entry entry, long currentTime, long currentDuration) {
+      return entry.remainingNanos(currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Entry entry, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+
+  }
+
+}
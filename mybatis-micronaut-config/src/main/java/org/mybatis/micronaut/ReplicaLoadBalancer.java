@@ -0,0 +1,132 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The load balancer that selects a replica data source by the least outstanding requests.
+ * <p>
+ * The number of outstanding requests is the number of sessions that are using the replica. The replica that fails
+ * to get a connection is ejected from candidates during the ejection duration.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class ReplicaLoadBalancer {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReplicaLoadBalancer.class);
+
+  private final List<Replica> replicas;
+  private final long ejectionNanos;
+  private final AtomicInteger offset = new AtomicInteger();
+
+  /**
+   * Constructor.
+   *
+   * @param replicas
+   *          The replica data sources
+   * @param ejectionDuration
+   *          The duration for ejecting an unhealthy replica
+   */
+  ReplicaLoadBalancer(List<DataSource> replicas, Duration ejectionDuration) {
+    this.replicas = replicas.stream().map(Replica::new).collect(Collectors.toList());
+    this.ejectionNanos = ejectionDuration.toNanos();
+  }
+
+  /**
+   * Acquire a healthy replica that has the least outstanding requests.
+   * <p>
+   * The acquired replica should be released via the {@link Replica#release()}.
+   *
+   * @return The acquired replica. If there is no healthy replica, return empty
+   */
+  Optional<Replica> acquire() {
+    long now = System.nanoTime();
+    // Start from the rotated position for spreading requests between replicas that have the same outstanding
+    int start = Math.floorMod(offset.getAndIncrement(), replicas.size());
+    Replica selected = null;
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get((start + i) % replicas.size());
+      if (replica.isHealthy(now) && (selected == null || replica.outstanding.get() < selected.outstanding.get())) {
+        selected = replica;
+      }
+    }
+    if (selected == null) {
+      return Optional.empty();
+    }
+    selected.outstanding.incrementAndGet();
+    return Optional.of(selected);
+  }
+
+  /**
+   * The replica data source.
+   */
+  final class Replica {
+
+    private final DataSource dataSource;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile long ejectedUntil;
+    private volatile boolean ejected;
+
+    private Replica(DataSource dataSource) {
+      this.dataSource = dataSource;
+    }
+
+    /**
+     * Return the data source of this replica.
+     *
+     * @return The data source of this replica
+     */
+    DataSource getDataSource() {
+      return dataSource;
+    }
+
+    /**
+     * Release an outstanding request.
+     */
+    void release() {
+      outstanding.decrementAndGet();
+    }
+
+    /**
+     * Eject this replica from candidates during the ejection duration.
+     *
+     * @param cause
+     *          The cause of ejection
+     */
+    void eject(Exception cause) {
+      logger.warn("Eject the replica data source [{}] for {} ms. Cause: {}", dataSource,
+          Duration.ofNanos(ejectionNanos).toMillis(), cause.toString());
+      ejectedUntil = System.nanoTime() + ejectionNanos;
+      ejected = true;
+    }
+
+    private boolean isHealthy(long now) {
+      return !ejected || now - ejectedUntil >= 0;
+    }
+
+  }
+
+}
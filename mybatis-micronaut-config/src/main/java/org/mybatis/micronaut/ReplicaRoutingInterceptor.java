@@ -0,0 +1,90 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.Properties;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * The plugin interceptor that tells whether the executing statement is read-only to the
+ * {@link ReplicaRoutingTransactionFactory}.
+ * <p>
+ * A {@code SELECT} statement is treated as read-only unless it is executed within a write statement(such as the
+ * {@code selectKey}).
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Intercepts({
+    @Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class,
+        RowBounds.class, ResultHandler.class }),
+    @Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class,
+        RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class }),
+    @Signature(type = Executor.class, method = "queryCursor", args = { MappedStatement.class, Object.class,
+        RowBounds.class }),
+    @Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class }) })
+class ReplicaRoutingInterceptor implements Interceptor {
+
+  private static final ThreadLocal<Boolean> READ_REQUESTED = new ThreadLocal<>();
+
+  /**
+   * Return whether the executing statement on the current thread is read-only.
+   *
+   * @return If the executing statement is read-only, return {@code true}
+   */
+  static boolean isReadRequested() {
+    return Boolean.TRUE.equals(READ_REQUESTED.get());
+  }
+
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+    Boolean previous = READ_REQUESTED.get();
+    READ_REQUESTED.set(statement.getSqlCommandType() == SqlCommandType.SELECT && !Boolean.FALSE.equals(previous));
+    try {
+      return invocation.proceed();
+    } finally {
+      if (previous == null) {
+        READ_REQUESTED.remove();
+      } else {
+        READ_REQUESTED.set(previous);
+      }
+    }
+  }
+
+  @Override
+  public Object plugin(Object target) {
+    return Plugin.wrap(target, this);
+  }
+
+  @Override
+  public void setProperties(Properties properties) {
+    // NOP
+  }
+
+}
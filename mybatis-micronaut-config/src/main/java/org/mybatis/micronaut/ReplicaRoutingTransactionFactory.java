@@ -0,0 +1,183 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.Properties;
+import javax.sql.DataSource;
+
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.TransactionFactory;
+
+/**
+ * The {@link TransactionFactory} that routes read-only statements to replica data sources.
+ * <p>
+ * The data source is decided lazily when the first connection is requested. If the executing statement is read-only
+ * (see {@link ReplicaRoutingInterceptor}) and the {@link ReplicaPolicy} allows it, the replica that selected by the
+ * {@link ReplicaLoadBalancer} is used, otherwise the primary is used. When a write statement is executed on the
+ * replica, the session switches to the primary and stays on it (subsequent reads can read own writes).
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class ReplicaRoutingTransactionFactory implements TransactionFactory {
+
+  private final TransactionFactory transactionFactory;
+  private final ReplicaLoadBalancer loadBalancer;
+  private final ReplicaPolicy replicaPolicy;
+
+  /**
+   * Constructor.
+   *
+   * @param transactionFactory
+   *          The {@link TransactionFactory} that creates the actual transaction
+   * @param loadBalancer
+   *          The load balancer for replica data sources
+   * @param replicaPolicy
+   *          The policy that decides whether a session can use replicas
+   */
+  ReplicaRoutingTransactionFactory(TransactionFactory transactionFactory, ReplicaLoadBalancer loadBalancer,
+      ReplicaPolicy replicaPolicy) {
+    this.transactionFactory = transactionFactory;
+    this.loadBalancer = loadBalancer;
+    this.replicaPolicy = replicaPolicy;
+  }
+
+  @Override
+  public void setProperties(Properties props) {
+    transactionFactory.setProperties(props);
+  }
+
+  @Override
+  public Transaction newTransaction(Connection conn) {
+    return transactionFactory.newTransaction(conn);
+  }
+
+  @Override
+  public Transaction newTransaction(DataSource dataSource, TransactionIsolationLevel level, boolean autoCommit) {
+    return new ReplicaRoutingTransaction(dataSource, level, autoCommit);
+  }
+
+  /**
+   * The policy that decides whether a session can use replicas.
+   */
+  @FunctionalInterface
+  interface ReplicaPolicy {
+
+    /**
+     * Return whether a session can use replicas.
+     *
+     * @param autoCommit
+     *          The auto-commit mode that requested on opening a session
+     * @return If a session can use replicas, return {@code true}
+     */
+    boolean isReplicaAllowed(boolean autoCommit);
+
+  }
+
+  private class ReplicaRoutingTransaction implements Transaction {
+
+    private final DataSource primary;
+    private final TransactionIsolationLevel level;
+    private final boolean autoCommit;
+    private Transaction target;
+    private ReplicaLoadBalancer.Replica replica;
+
+    private ReplicaRoutingTransaction(DataSource primary, TransactionIsolationLevel level, boolean autoCommit) {
+      this.primary = primary;
+      this.level = level;
+      this.autoCommit = autoCommit;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      boolean read = ReplicaRoutingInterceptor.isReadRequested();
+      if (target == null) {
+        // A read-only transaction acquires its connection before the first statement
+        return open(MyBatisTransactionManager.isReadOnlyStarting()
+            || read && replicaPolicy.isReplicaAllowed(autoCommit));
+      }
+      if (replica != null && !read) {
+        // Switch to the primary on the first write
+        close();
+        return open(false);
+      }
+      return target.getConnection();
+    }
+
+    private Connection open(boolean useReplica) throws SQLException {
+      if (useReplica) {
+        Optional<ReplicaLoadBalancer.Replica> candidate;
+        while ((candidate = loadBalancer.acquire()).isPresent()) {
+          Transaction transaction = transactionFactory.newTransaction(candidate.get().getDataSource(), level,
+              autoCommit);
+          try {
+            Connection connection = transaction.getConnection();
+            target = transaction;
+            replica = candidate.get();
+            return connection;
+          } catch (SQLException | RuntimeException e) {
+            // The spring managed transaction throws the CannotGetJdbcConnectionException
+            candidate.get().eject(e);
+            candidate.get().release();
+          }
+        }
+      }
+      target = transactionFactory.newTransaction(primary, level, autoCommit);
+      return target.getConnection();
+    }
+
+    @Override
+    public void commit() throws SQLException {
+      if (target != null) {
+        target.commit();
+      }
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+      if (target != null) {
+        target.rollback();
+      }
+    }
+
+    @Override
+    public void close() throws SQLException {
+      if (target == null) {
+        return;
+      }
+      try {
+        target.close();
+      } finally {
+        if (replica != null) {
+          replica.release();
+        }
+        target = null;
+        replica = null;
+      }
+    }
+
+    @Override
+    public Integer getTimeout() throws SQLException {
+      return target == null ? null : target.getTimeout();
+    }
+
+  }
+
+}
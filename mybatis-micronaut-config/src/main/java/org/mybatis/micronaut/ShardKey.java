@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotation that indicates the shard key of a sharded mapper method.
+ * <p>
+ * The statement is executed only on the shard that decided by the shard key(see {@link ShardRouter#route(Object)}).
+ * The statement of a method that does not have the shard key is executed on all shards.
+ *
+ * <pre>
+ * &#64;Select("SELECT * FROM city WHERE id = #{id}")
+ * City findById(&#64;ShardKey int id);
+ *
+ * &#64;Insert("INSERT INTO city (id, name) VALUES (#{id}, #{name})")
+ * void insert(&#64;ShardKey("id") City city);
+ * </pre>
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface ShardKey {
+
+  /**
+   * Return the property path of the shard key in the parameter object. Default is the parameter itself.
+   *
+   * @return The property path of the shard key
+   */
+  String value() default "";
+
+}
@@ -0,0 +1,58 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotation that indicates the order for merging results that retrieved from all shards.
+ * <p>
+ * The results of each shard should be sorted in the same order by the statement(such as the {@code ORDER BY}
+ * clause), and these are merge-sorted. If not specified, results are concatenated in the shard order.
+ *
+ * <pre>
+ * &#64;Select("SELECT * FROM city ORDER BY name")
+ * &#64;ShardMergeOrder("name")
+ * List&lt;City&gt; findAll();
+ * </pre>
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ShardMergeOrder {
+
+  /**
+   * Return the property path of the sort key in the result object. Default is the result object itself.
+   *
+   * @return The property path of the sort key
+   */
+  String value() default "";
+
+  /**
+   * Return whether sort in descending order.
+   *
+   * @return If sort in descending order, return {@code true}
+   */
+  boolean descending() default false;
+
+}
@@ -0,0 +1,133 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The router that decides the shard by the shard key.
+ * <p>
+ * The shard is decided by the hash code of the shard key(the name is used instead for an enum). Therefore, the shard
+ * key should be a type that has the stable hash code such as a number, a {@link String} and a
+ * {@link java.util.UUID}. A number is normalized before hashing so that the same value is routed to the same shard
+ * regardless of its type(e.g. {@code 1}, {@code 1L} and {@code new BigDecimal("1.0")}): an integral value that fits
+ * in the {@code long} is hashed as the {@code long}(as same as the {@link Integer} when it fits in the {@code int}),
+ * and other values are hashed as the {@link BigDecimal} that stripped trailing zeros.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class ShardRouter {
+
+  private final String name;
+  private final List<String> shardNames;
+
+  /**
+   * Constructor.
+   *
+   * @param name
+   *          The sharding group name
+   * @param shardNames
+   *          The shard names
+   */
+  ShardRouter(String name, List<String> shardNames) {
+    this.name = name;
+    this.shardNames = Collections.unmodifiableList(shardNames);
+  }
+
+  /**
+   * Return the sharding group name.
+   *
+   * @return The sharding group name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Return the shard names.
+   *
+   * @return The shard names
+   */
+  public List<String> getShardNames() {
+    return shardNames;
+  }
+
+  /**
+   * Decide the shard by the shard key.
+   *
+   * @param shardKey
+   *          The shard key
+   * @return The shard name
+   */
+  public String route(Object shardKey) {
+    Objects.requireNonNull(shardKey, "The shard key must not be null.");
+    int hash;
+    if (shardKey instanceof Enum) {
+      hash = ((Enum<?>) shardKey).name().hashCode();
+    } else if (shardKey instanceof Number) {
+      hash = hashNumber((Number) shardKey);
+    } else {
+      hash = shardKey.hashCode();
+    }
+    return shardNames.get(Math.floorMod(hash, shardNames.size()));
+  }
+
+  private static int hashNumber(Number number) {
+    if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte
+        || number instanceof AtomicLong || number instanceof AtomicInteger) {
+      return hashLong(number.longValue());
+    }
+    BigDecimal decimal;
+    if (number instanceof BigDecimal) {
+      decimal = (BigDecimal) number;
+    } else if (number instanceof BigInteger) {
+      decimal = new BigDecimal((BigInteger) number);
+    } else if (number instanceof Double || number instanceof Float) {
+      double value = number.doubleValue();
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        return Double.hashCode(value);
+      }
+      decimal = new BigDecimal(value);
+    } else {
+      return number.hashCode();
+    }
+    if (decimal.signum() == 0) {
+      return hashLong(0L);
+    }
+    decimal = decimal.stripTrailingZeros();
+    if (decimal.scale() <= 0 && decimal.precision() - decimal.scale() <= 19) {
+      try {
+        return hashLong(decimal.longValueExact());
+      } catch (ArithmeticException e) {
+        // An integral value that does not fit in the long
+      }
+    }
+    return decimal.hashCode();
+  }
+
+  private static int hashLong(long value) {
+    // Same as the Integer when the value fits in the int for keeping the shard of existing keys
+    return value == (int) value ? (int) value : Long.hashCode(value);
+  }
+
+}
@@ -0,0 +1,387 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+/**
+ * The invocation handler of the sharded mapper.
+ * <p>
+ * When a method has the shard key(see {@link ShardKey}), the method is invoked on the shard that decided by the
+ * {@link ShardRouter} on the current thread. Otherwise, the method is invoked on all shards in parallel and results
+ * are merged as follows:
+ * <ul>
+ * <li>Collection, array and map: merged in the shard order, or merge-sorted by the {@link ShardMergeOrder}</li>
+ * <li>Number(such as the row count of the write statement and the result of {@code COUNT(*)}): summed. If all shards
+ * return {@code null}, return {@code null}(or zero for the primitive type)</li>
+ * <li>Boolean: {@code true} if any shard returns {@code true}</li>
+ * <li>Other: the only non-null result. If two or more shards return a result, throw the
+ * {@link TooManyResultsException}</li>
+ * </ul>
+ * The method that returns other primitive type(such as {@code char}) is rejected on creating the sharded mapper
+ * because the result cannot be {@code null} when no shard returns a result.
+ * Note that the statements executed on other threads do not participate in the current transaction.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class ShardedMapperHandler implements InvocationHandler {
+
+  private static final Set<Class<?>> AGGREGATABLE_TYPES = new HashSet<>(Arrays.asList(int.class, Integer.class,
+      long.class, Long.class, short.class, Short.class, byte.class, Byte.class, double.class, Double.class,
+      float.class, Float.class, BigInteger.class, BigDecimal.class, boolean.class, Boolean.class));
+
+  private final Class<?> mapperType;
+  private final ShardRouter router;
+  private final SqlSessionFactory sqlSessionFactory;
+  private final Function<String, Executor> executors;
+  private final ShardInvoker invoker;
+  private final Map<Method, MethodMetadata> methodMetadata = new ConcurrentHashMap<>();
+
+  private ShardedMapperHandler(Class<?> mapperType, ShardRouter router, SqlSessionFactory sqlSessionFactory,
+      Function<String, Executor> executors, ShardInvoker invoker) {
+    this.mapperType = mapperType;
+    this.router = router;
+    this.sqlSessionFactory = sqlSessionFactory;
+    this.executors = executors;
+    this.invoker = invoker;
+  }
+
+  /**
+   * Create a sharded mapper.
+   *
+   * @param mapperType
+   *          The mapper interface
+   * @param router
+   *          The router that decides the shard
+   * @param sqlSessionFactory
+   *          The {@link SqlSessionFactory} of a shard for resolving statements(its configuration is retrieved on first
+   *          method invocation)
+   * @param executors
+   *          The function that returns the executor for invoking on the specified shard(when invoking on all shards in
+   *          parallel)
+   * @param invoker
+   *          The invoker that invokes a mapper method on the specified shard
+   * @param <T>
+   *          The type of mapper
+   * @return The sharded mapper
+   */
+  static <T> T newMapper(Class<T> mapperType, ShardRouter router, SqlSessionFactory sqlSessionFactory,
+      Function<String, Executor> executors, ShardInvoker invoker) {
+    for (Method method : mapperType.getMethods()) {
+      Class<?> returnType = method.getReturnType();
+      if (returnType.isPrimitive() && returnType != void.class && !isAggregatable(returnType)
+          && findShardKeyIndex(method) < 0) {
+        throw new BuilderException("The method " + method + " that invoked on all shards cannot return the "
+            + returnType + " because the results of shards cannot be merged into it.");
+      }
+    }
+    return mapperType.cast(Proxy.newProxyInstance(mapperType.getClassLoader(), new Class<?>[] { mapperType },
+        new ShardedMapperHandler(mapperType, router, sqlSessionFactory, executors, invoker)));
+  }
+
+  private Configuration getConfiguration() {
+    return sqlSessionFactory.getConfiguration();
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      switch (method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "Sharded mapper proxy for " + mapperType.getName() + " on " + router.getShardNames();
+      default:
+        return method.invoke(this, args);
+      }
+    }
+    MethodMetadata metadata = methodMetadata.computeIfAbsent(method, MethodMetadata::new);
+    if (metadata.shardKeyIndex >= 0) {
+      Object shardKey = metadata.shardKeyProperty.isEmpty() ? args[metadata.shardKeyIndex]
+          : getConfiguration().newMetaObject(args[metadata.shardKeyIndex]).getValue(metadata.shardKeyProperty);
+      if (shardKey == null) {
+        throw new IllegalArgumentException("The shard key must not be null. method: " + method);
+      }
+      return invoker.invoke(router.route(shardKey), method, args);
+    }
+    List<CompletableFuture<Object>> futures = router.getShardNames().stream()
+        .map(shardName -> CompletableFuture.supplyAsync(() -> {
+          try {
+            return invoker.invoke(shardName, method, args);
+          } catch (Throwable e) {
+            throw new CompletionException(e);
+          }
+        }, executors.apply(shardName))).collect(Collectors.toList());
+    List<Object> results = new ArrayList<>(futures.size());
+    for (CompletableFuture<Object> future : futures) {
+      try {
+        results.add(future.join());
+      } catch (CompletionException e) {
+        throw e.getCause() == null ? e : e.getCause();
+      }
+    }
+    return merge(metadata, method.getReturnType(), results);
+  }
+
+  private Object merge(MethodMetadata metadata, Class<?> returnType, List<Object> results) {
+    if (returnType == void.class) {
+      return null;
+    }
+    if (isAggregatable(returnType)) {
+      return aggregate(returnType, results);
+    }
+    if (returnType.isArray() || Collection.class.isAssignableFrom(returnType)) {
+      List<List<Object>> lists = results.stream().map(ShardedMapperHandler::toList).collect(Collectors.toList());
+      List<Object> merged = metadata.mergeOrder == null
+          ? lists.stream().flatMap(List::stream).collect(Collectors.toList())
+          : mergeSorted(lists, metadata.mergeOrder);
+      return toReturnType(returnType, merged);
+    }
+    if (Map.class.isAssignableFrom(returnType)) {
+      @SuppressWarnings("unchecked")
+      Map<Object, Object> merged = returnType.isInterface() ? new LinkedHashMap<>()
+          : (Map<Object, Object>) getConfiguration().getObjectFactory().create(returnType);
+      results.stream().filter(Objects::nonNull).forEach(result -> merged.putAll((Map<?, ?>) result));
+      return merged;
+    }
+    if (returnType == Optional.class) {
+      return Optional.ofNullable(uniqueResult(
+          results.stream().map(result -> ((Optional<?>) result).orElse(null)).collect(Collectors.toList())));
+    }
+    return uniqueResult(results);
+  }
+
+  private static boolean isAggregatable(Class<?> returnType) {
+    return AGGREGATABLE_TYPES.contains(returnType);
+  }
+
+  private static Object aggregate(Class<?> returnType, List<Object> results) {
+    List<Object> values = results.stream().filter(Objects::nonNull).collect(Collectors.toList());
+    if (values.isEmpty() && !returnType.isPrimitive()) {
+      return null;
+    }
+    if (returnType == boolean.class || returnType == Boolean.class) {
+      return values.stream().anyMatch(Boolean.TRUE::equals);
+    }
+    if (returnType == BigDecimal.class) {
+      return values.stream().map(BigDecimal.class::cast).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+    if (returnType == BigInteger.class) {
+      return values.stream().map(BigInteger.class::cast).reduce(BigInteger.ZERO, BigInteger::add);
+    }
+    if (returnType == double.class || returnType == Double.class) {
+      return values.stream().mapToDouble(value -> ((Number) value).doubleValue()).sum();
+    }
+    if (returnType == float.class || returnType == Float.class) {
+      return (float) values.stream().mapToDouble(value -> ((Number) value).doubleValue()).sum();
+    }
+    long sum = values.stream().mapToLong(value -> ((Number) value).longValue()).sum();
+    if (returnType == int.class || returnType == Integer.class) {
+      return (int) sum;
+    }
+    if (returnType == short.class || returnType == Short.class) {
+      return (short) sum;
+    }
+    if (returnType == byte.class || returnType == Byte.class) {
+      return (byte) sum;
+    }
+    return sum;
+  }
+
+  private static int findShardKeyIndex(Method method) {
+    Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+    for (int i = 0; i < parameterAnnotations.length; i++) {
+      for (Annotation annotation : parameterAnnotations[i]) {
+        if (annotation instanceof ShardKey) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static Object uniqueResult(List<Object> results) {
+    List<Object> nonNullResults = results.stream().filter(Objects::nonNull).collect(Collectors.toList());
+    if (nonNullResults.size() > 1) {
+      throw new TooManyResultsException(
+          "Expected one result (or null) to be returned by all shards, but found: " + nonNullResults.size());
+    }
+    return nonNullResults.isEmpty() ? null : nonNullResults.get(0);
+  }
+
+  private static List<Object> toList(Object result) {
+    if (result == null) {
+      return Collections.emptyList();
+    }
+    if (result instanceof Collection) {
+      return new ArrayList<>((Collection<?>) result);
+    }
+    List<Object> list = new ArrayList<>(Array.getLength(result));
+    for (int i = 0; i < Array.getLength(result); i++) {
+      list.add(Array.get(result, i));
+    }
+    return list;
+  }
+
+  private static List<Object> mergeSorted(List<List<Object>> lists, Comparator<Object> order) {
+    // K-way merge of the results that sorted on each shard
+    PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, lists.size()),
+        (a, b) -> order.compare(a.value, b.value));
+    lists.stream().map(List::iterator).filter(Iterator::hasNext).map(Head::new).forEach(heads::add);
+    List<Object> merged = new ArrayList<>(lists.stream().mapToInt(List::size).sum());
+    while (!heads.isEmpty()) {
+      Head head = heads.poll();
+      merged.add(head.value);
+      if (head.next()) {
+        heads.add(head);
+      }
+    }
+    return merged;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object toReturnType(Class<?> returnType, List<Object> merged) {
+    if (returnType.isArray()) {
+      Object array = Array.newInstance(returnType.getComponentType(), merged.size());
+      for (int i = 0; i < merged.size(); i++) {
+        Array.set(array, i, merged.get(i));
+      }
+      return array;
+    }
+    if (returnType.isAssignableFrom(ArrayList.class)) {
+      return merged;
+    }
+    Collection<Object> collection = returnType.isAssignableFrom(LinkedHashSet.class) ? new LinkedHashSet<>()
+        : (Collection<Object>) getConfiguration().getObjectFactory().create(returnType);
+    collection.addAll(merged);
+    return collection;
+  }
+
+  /**
+   * The invoker that invokes a mapper method on the specified shard.
+   */
+  @FunctionalInterface
+  interface ShardInvoker {
+
+    /**
+     * Invoke a mapper method on the specified shard.
+     *
+     * @param shardName
+     *          The shard name
+     * @param method
+     *          The mapper method
+     * @param args
+     *          The arguments
+     * @return The result of the mapper method
+     * @throws Throwable
+     *           If the mapper method throws an exception
+     */
+    Object invoke(String shardName, Method method, Object[] args) throws Throwable;
+
+  }
+
+  private class MethodMetadata {
+
+    private final int shardKeyIndex;
+    private final String shardKeyProperty;
+    private final Comparator<Object> mergeOrder;
+
+    private MethodMetadata(Method method) {
+      int index = findShardKeyIndex(method);
+      this.shardKeyIndex = index;
+      this.shardKeyProperty = index < 0 ? ""
+          : Arrays.stream(method.getParameterAnnotations()[index]).filter(ShardKey.class::isInstance)
+              .map(ShardKey.class::cast).findFirst().map(ShardKey::value).orElse("");
+      this.mergeOrder = Optional.ofNullable(method.getAnnotation(ShardMergeOrder.class)).map(this::toComparator)
+          .orElse(null);
+    }
+
+    private Comparator<Object> toComparator(ShardMergeOrder mergeOrder) {
+      Comparator<Object> comparator = (a, b) -> compareNullsFirst(sortKey(a, mergeOrder), sortKey(b, mergeOrder));
+      return mergeOrder.descending() ? comparator.reversed() : comparator;
+    }
+
+    private Object sortKey(Object value, ShardMergeOrder mergeOrder) {
+      return mergeOrder.value().isEmpty() || value == null ? value
+          : getConfiguration().newMetaObject(value).getValue(mergeOrder.value());
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compareNullsFirst(Object a, Object b) {
+      if (a == null || b == null) {
+        return a == null ? (b == null ? 0 : -1) : 1;
+      }
+      return ((Comparable<Object>) a).compareTo(b);
+    }
+
+  }
+
+  private static class Head {
+
+    private final Iterator<Object> iterator;
+    private Object value;
+
+    private Head(Iterator<Object> iterator) {
+      this.iterator = iterator;
+      this.value = iterator.next();
+    }
+
+    private boolean next() {
+      if (!iterator.hasNext()) {
+        return false;
+      }
+      value = iterator.next();
+      return true;
+    }
+
+  }
+
+}
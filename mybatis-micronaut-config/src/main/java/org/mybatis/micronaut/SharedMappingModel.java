@@ -0,0 +1,144 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * The support class for sharing the mapping model parsed by the template {@link Configuration}.
+ * <p>
+ * The mapping model(result maps, parameter maps, caches, sql fragments and mapper interfaces) is immutable after
+ * parsing, so the target {@link Configuration} holds references to the same objects instead of scanning and parsing
+ * them again. The mapped statements and select key generators are copied with the target {@link Configuration},
+ * because MyBatis creates the statement, parameter and result set handlers and the executor for lazy loading from
+ * the configuration of the executing statement. Therefore the statements are executed with the settings, plugins,
+ * object factories and data source of the target, but the sql sources and mappings are parsed by the template, so
+ * the type aliases and type handlers referenced by them are resolved with the template's. The second level caches
+ * are also shared, but the cache key contains the environment id of the executing {@link Configuration}, so cached
+ * results are not shared between configurations. The copied statements flush the cache as declared, even if the
+ * template uses the table based cache invalidation and the target does not.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class SharedMappingModel {
+
+  private SharedMappingModel() {
+    // NOP
+  }
+
+  /**
+   * Share the mapping model of the template {@link Configuration} with the target {@link Configuration}.
+   *
+   * @param template
+   *          The template {@link Configuration} that has already been parsed
+   * @param target
+   *          The target {@link Configuration}
+   */
+  static void share(Configuration template, Configuration target) {
+    if (!Objects.equals(template.getDatabaseId(), target.getDatabaseId())) {
+      throw new IllegalStateException("The database id [" + target.getDatabaseId()
+          + "] does not match with the database id [" + template.getDatabaseId() + "] of the template.");
+    }
+    // Only full names(contain the namespace) are copied because short names are registered by the target itself,
+    // and calling this method resolves incomplete elements(such as cache-ref) of the template.
+    Set<Cache> caches = Collections.newSetFromMap(new IdentityHashMap<>());
+    Map<MappedStatement, MappedStatement> statements = new IdentityHashMap<>();
+    template.getMappedStatementNames().stream().filter(SharedMappingModel::isFullName).forEach(id -> {
+      MappedStatement statement = template.getMappedStatement(id, false);
+      if (statement.getCache() != null) {
+        caches.add(statement.getCache());
+      }
+      statements.computeIfAbsent(statement, x -> copyStatement(statement, target));
+    });
+    // The select key generators hold the key statement, so they are also copied to execute it with the target
+    Map<KeyGenerator, KeyGenerator> keyGenerators = new IdentityHashMap<>();
+    statements.values().forEach(statement -> {
+      if (statement.getKeyGenerator() instanceof SelectKeyGenerator) {
+        KeyGenerator keyGenerator = keyGenerators.computeIfAbsent(statement.getKeyGenerator(),
+            x -> copyKeyGenerator((SelectKeyGenerator) x, statements));
+        SystemMetaObject.forObject(statement).setValue("keyGenerator", keyGenerator);
+      }
+      target.addMappedStatement(statement);
+    });
+    caches.stream().filter(cache -> !target.hasCache(cache.getId())).forEach(target::addCache);
+    template.getResultMapNames().stream().filter(SharedMappingModel::isFullName)
+        .forEach(id -> target.addResultMap(template.getResultMap(id)));
+    template.getParameterMapNames().stream().filter(SharedMappingModel::isFullName)
+        .forEach(id -> target.addParameterMap(template.getParameterMap(id)));
+    template.getKeyGeneratorNames().stream().filter(SharedMappingModel::isFullName).forEach(id -> {
+      KeyGenerator keyGenerator = template.getKeyGenerator(id);
+      target.addKeyGenerator(id, keyGenerators.getOrDefault(keyGenerator, keyGenerator));
+    });
+    template.getSqlFragments().keySet().stream().filter(SharedMappingModel::isFullName)
+        .filter(id -> !target.getSqlFragments().containsKey(id))
+        .forEach(id -> target.getSqlFragments().put(id, template.getSqlFragments().get(id)));
+    // Mark as loaded for preventing to parse annotations and mapper xml files again
+    template.getMapperRegistry().getMappers().stream().filter(mapper -> !target.hasMapper(mapper))
+        .forEach(mapper -> {
+          target.addLoadedResource(mapper.toString());
+          target.addMapper(mapper);
+        });
+  }
+
+  private static MappedStatement copyStatement(MappedStatement statement, Configuration target) {
+    MappedStatement.Builder builder = new MappedStatement.Builder(target, statement.getId(),
+        statement.getSqlSource(), statement.getSqlCommandType()).resource(statement.getResource())
+            .fetchSize(statement.getFetchSize()).timeout(statement.getTimeout())
+            .statementType(statement.getStatementType()).resultSetType(statement.getResultSetType())
+            .parameterMap(statement.getParameterMap()).resultMaps(statement.getResultMaps())
+            .cache(statement.getCache())
+            .flushCacheRequired(TableDependencyInterceptor.isFlushCacheDeclared(statement))
+            .useCache(statement.isUseCache()).resultOrdered(statement.isResultOrdered())
+            .keyGenerator(statement.getKeyGenerator()).databaseId(statement.getDatabaseId())
+            .lang(statement.getLang());
+    if (statement.getKeyProperties() != null) {
+      builder.keyProperty(String.join(",", statement.getKeyProperties()));
+    }
+    if (statement.getKeyColumns() != null) {
+      builder.keyColumn(String.join(",", statement.getKeyColumns()));
+    }
+    if (statement.getResultSets() != null) {
+      builder.resultSets(String.join(",", statement.getResultSets()));
+    }
+    return builder.build();
+  }
+
+  private static KeyGenerator copyKeyGenerator(SelectKeyGenerator keyGenerator,
+      Map<MappedStatement, MappedStatement> statements) {
+    MetaObject metaObject = SystemMetaObject.forObject(keyGenerator);
+    MappedStatement keyStatement = (MappedStatement) metaObject.getValue("keyStatement");
+    return new SelectKeyGenerator(statements.getOrDefault(keyStatement, keyStatement),
+        (boolean) metaObject.getValue("executeBefore"));
+  }
+
+  private static boolean isFullName(String name) {
+    return name.indexOf('.') != -1;
+  }
+
+}
@@ -0,0 +1,238 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * The plugin interceptor that coalesces the identical queries that are executing concurrently.
+ * <p>
+ * The queries are identical when their {@link CacheKey}(that consists of the statement id, the SQL, the parameters,
+ * the row bounds and the environment) are equal. The first query(leader) is executed, and the following queries
+ * (followers) wait for the result of the leader instead of executing it. Each follower receives a copy of the result
+ * list, but the elements are shared with the leader and other followers, so please treat them as read-only.
+ * <p>
+ * The queries are not coalesced within a write transaction(after a write statement or a locking query such as
+ * {@code SELECT ... FOR UPDATE} has been executed on the session until commit or rollback), because they should see
+ * the uncommitted changes and the leader may wait for the locks held by them. The locking queries are not coalesced
+ * either. If the leader fails or does not complete within the statement timeout(or
+ * {@value #DEFAULT_WAIT_SECONDS} seconds when it is not specified), the followers execute the query by themselves.
+ * <p>
+ * An instance is created per {@link Executor} via {@link #plugin(Object)} for tracking the write transaction, and the
+ * in-flight queries and the statistics are shared between instances.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Intercepts({
+    @Signature(type = Executor.class, method = "query",
+        args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class }),
+    @Signature(type = Executor.class, method = "query",
+        args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class,
+            BoundSql.class }),
+    @Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class }),
+    @Signature(type = Executor.class, method = "commit", args = { boolean.class }),
+    @Signature(type = Executor.class, method = "rollback", args = { boolean.class }),
+    @Signature(type = Executor.class, method = "close", args = { boolean.class }) })
+final class SingleFlightInterceptor implements Interceptor {
+
+  /**
+   * The maximum seconds that a follower waits for the leader when the statement timeout is not specified.
+   */
+  static final int DEFAULT_WAIT_SECONDS = 30;
+
+  private static final int MAX_CACHED_SQLS = 10_000;
+
+  private static final Pattern LOCKING_CLAUSE = Pattern.compile(
+      "\\bFOR\\s+(UPDATE|SHARE|NO\\s+KEY\\s+UPDATE|KEY\\s+SHARE)\\b|\\bLOCK\\s+IN\\s+SHARE\\s+MODE\\b",
+      Pattern.CASE_INSENSITIVE);
+
+  private final Flights flights;
+  private volatile boolean writing;
+
+  /**
+   * Constructor.
+   */
+  SingleFlightInterceptor() {
+    this(new Flights());
+  }
+
+  private SingleFlightInterceptor(Flights flights) {
+    this.flights = flights;
+  }
+
+  /**
+   * Return the number of queries that have been executed as the leader.
+   *
+   * @return The number of leaders
+   */
+  long getLeaderCount() {
+    return flights.leaderCount.sum();
+  }
+
+  /**
+   * Return the number of queries that have received the result of the leader.
+   *
+   * @return The number of followers
+   */
+  long getFollowerCount() {
+    return flights.followerCount.sum();
+  }
+
+  /**
+   * Return the number of queries that are waiting for the result of the leader.
+   *
+   * @return The number of waiting followers
+   */
+  long getWaitingCount() {
+    return flights.waitingCount.sum();
+  }
+
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    switch (invocation.getMethod().getName()) {
+    case "query":
+      return query(invocation);
+    case "update":
+      writing = true;
+      return invocation.proceed();
+    default:
+      try {
+        return invocation.proceed();
+      } finally {
+        writing = false;
+      }
+    }
+  }
+
+  private Object query(Invocation invocation) throws Throwable {
+    ExecutorQuery query = new ExecutorQuery(invocation);
+    MappedStatement statement = query.getStatement();
+    if (writing || query.getResultHandler() != null || statement.getSqlCommandType() != SqlCommandType.SELECT
+        || statement.isFlushCacheRequired() || statement.getStatementType() == StatementType.CALLABLE) {
+      return query.proceed();
+    }
+    if (flights.isLocking(query.getBoundSql().getSql())) {
+      // The locks are held until the end of transaction
+      writing = true;
+      return query.proceed();
+    }
+    CacheKey key = query.getCacheKey();
+    Flight flight = new Flight();
+    Flight leader = flights.inFlight.putIfAbsent(key, flight);
+    if (leader == null) {
+      return lead(query, key, flight);
+    }
+    if (leader.thread == Thread.currentThread()) {
+      return query.proceed();
+    }
+    Integer timeout = statement.getTimeout();
+    List<?> result;
+    flights.waitingCount.increment();
+    try {
+      result = leader.result.get(timeout == null || timeout <= 0 ? DEFAULT_WAIT_SECONDS : timeout, TimeUnit.SECONDS);
+    } catch (ExecutionException | TimeoutException e) {
+      // The failure of leader may depend on its session(such as the transaction timeout or the locks of other session)
+      return query.proceed();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw e;
+    } finally {
+      flights.waitingCount.decrement();
+    }
+    flights.followerCount.increment();
+    return new ArrayList<>(result);
+  }
+
+  private Object lead(ExecutorQuery query, CacheKey key, Flight flight) throws Throwable {
+    flights.leaderCount.increment();
+    try {
+      List<?> result = (List<?>) query.proceed();
+      flights.inFlight.remove(key, flight);
+      flight.result.complete(new ArrayList<>(result));
+      return result;
+    } catch (Throwable e) {
+      flights.inFlight.remove(key, flight);
+      flight.result.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  @Override
+  public Object plugin(Object target) {
+    // Track the write transaction per executor(= per session)
+    return target instanceof Executor ? Plugin.wrap(target, new SingleFlightInterceptor(flights)) : target;
+  }
+
+  @Override
+  public void setProperties(Properties properties) {
+    // NOP
+  }
+
+  private static class Flights {
+
+    private final ConcurrentMap<CacheKey, Flight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder leaderCount = new LongAdder();
+    private final LongAdder followerCount = new LongAdder();
+    private final LongAdder waitingCount = new LongAdder();
+    private final Map<String, Boolean> lockingSqls = new ConcurrentHashMap<>();
+
+    private boolean isLocking(String sql) {
+      Boolean locking = lockingSqls.get(sql);
+      if (locking == null) {
+        locking = LOCKING_CLAUSE.matcher(sql).find();
+        if (lockingSqls.size() < MAX_CACHED_SQLS) {
+          lockingSqls.put(sql, locking);
+        }
+      }
+      return locking;
+    }
+
+  }
+
+  private static class Flight {
+
+    private final Thread thread = Thread.currentThread();
+    private final CompletableFuture<List<?>> result = new CompletableFuture<>();
+
+  }
+
+}
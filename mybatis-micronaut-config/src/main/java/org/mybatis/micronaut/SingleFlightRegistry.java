@@ -0,0 +1,72 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import javax.inject.Singleton;
+
+/**
+ * The registry of the {@link SingleFlightInterceptor} per {@code SqlSessionFactory}.
+ * <p>
+ * It decouples the {@link MyBatisSingleFlightMetrics} from the {@code SqlSessionFactory} that may be initialized
+ * lazily, and it does not depend on the Micrometer.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Singleton
+class SingleFlightRegistry {
+
+  private final Map<String, SingleFlightInterceptor> interceptors = new LinkedHashMap<>();
+  private final List<BiConsumer<String, SingleFlightInterceptor>> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Register an interceptor of specified {@code SqlSessionFactory}.
+   *
+   * @param name
+   *          The name of {@code SqlSessionFactory}
+   * @param interceptor
+   *          The interceptor
+   */
+  void register(String name, SingleFlightInterceptor interceptor) {
+    synchronized (interceptors) {
+      interceptors.put(name, interceptor);
+    }
+    listeners.forEach(listener -> listener.accept(name, interceptor));
+  }
+
+  /**
+   * Add a listener that notified when an interceptor has been registered.
+   * <p>
+   * The listener is also notified for the interceptors that have already been registered.
+   *
+   * @param listener
+   *          The listener
+   */
+  void addListener(BiConsumer<String, SingleFlightInterceptor> listener) {
+    listeners.add(listener);
+    Map<String, SingleFlightInterceptor> registered;
+    synchronized (interceptors) {
+      registered = new LinkedHashMap<>(interceptors);
+    }
+    registered.forEach(listener);
+  }
+
+}
@@ -0,0 +1,174 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The lightweight extractor of the tables that a SQL refers.
+ * <p>
+ * It does not parse the SQL strictly. It tokenizes the SQL ignoring comments and literals, and collects the names
+ * that follow {@code FROM}, {@code JOIN}, {@code INTO}, {@code UPDATE}, {@code USING} and {@code TABLE}. Names are
+ * returned without the schema and in lower case. It may return extra names(such as {@code EXTRACT(YEAR FROM col)}),
+ * that only causes extra invalidation.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class SqlTableExtractor {
+
+  private static final String QUOTED = "\"";
+
+  private static final Set<String> TABLE_KEYWORDS = new HashSet<>(
+      Arrays.asList("from", "join", "into", "update", "using", "table"));
+
+  private static final Set<String> NON_TABLE_WORDS = new HashSet<>(Arrays.asList("select", "where", "group", "order",
+      "having", "limit", "offset", "fetch", "union", "except", "intersect", "minus", "on", "join", "inner", "left",
+      "right", "full", "outer", "cross", "natural", "set", "values", "returning", "for", "window", "using", "when",
+      "then", "lateral", "only", "with", "default"));
+
+  private SqlTableExtractor() {
+    // NOP
+  }
+
+  /**
+   * Extract the tables that specified SQL refers.
+   *
+   * @param sql
+   *          The SQL
+   * @return The table names(without schema and in lower case)
+   */
+  static Set<String> extract(String sql) {
+    List<String> tokens = tokenize(sql);
+    Set<String> tables = new LinkedHashSet<>();
+    for (int i = 0; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      if (!TABLE_KEYWORDS.contains(token) || isNonTableUpdate(tokens, i)) {
+        continue;
+      }
+      i = readTables(tokens, i + 1, token.equals("from"), tables);
+    }
+    return tables.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(tables);
+  }
+
+  private static boolean isNonTableUpdate(List<String> tokens, int index) {
+    // FOR UPDATE, ON DUPLICATE KEY UPDATE and ON CONFLICT DO UPDATE
+    if (!tokens.get(index).equals("update") || index == 0) {
+      return false;
+    }
+    String previous = tokens.get(index - 1);
+    return previous.equals("for") || previous.equals("key") || previous.equals("do");
+  }
+
+  private static int readTables(List<String> tokens, int start, boolean list, Set<String> tables) {
+    int i = start;
+    while (i < tokens.size() && (tokens.get(i).equals("only") || tokens.get(i).equals("lateral"))) {
+      i++;
+    }
+    while (i < tokens.size() && isIdentifier(tokens.get(i))) {
+      String name = tokens.get(i++);
+      while (i + 1 < tokens.size() && tokens.get(i).equals(".") && isIdentifier(tokens.get(i + 1))) {
+        name = tokens.get(i + 1);
+        i += 2;
+      }
+      tables.add(name.startsWith(QUOTED) ? name.substring(1) : name);
+      if (!list) {
+        break;
+      }
+      if (i < tokens.size() && tokens.get(i).equals("as")) {
+        i++;
+      }
+      if (i < tokens.size() && isIdentifier(tokens.get(i))) {
+        i++;
+      }
+      if (i >= tokens.size() || !tokens.get(i).equals(",")) {
+        break;
+      }
+      i++;
+    }
+    return i - 1;
+  }
+
+  private static boolean isIdentifier(String token) {
+    if (token.startsWith(QUOTED)) {
+      return token.length() > 1;
+    }
+    char first = token.charAt(0);
+    return (Character.isLetter(first) || first == '_') && !NON_TABLE_WORDS.contains(token)
+        && !TABLE_KEYWORDS.contains(token) && !token.equals("as");
+  }
+
+  private static List<String> tokenize(String sql) {
+    List<String> tokens = new ArrayList<>();
+    int length = sql.length();
+    int i = 0;
+    while (i < length) {
+      char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        int end = sql.indexOf('\n', i);
+        i = end < 0 ? length : end + 1;
+      } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? length : end + 2;
+      } else if (c == '\'') {
+        i = skipQuoted(sql, i, '\'');
+        tokens.add("?");
+      } else if (c == '"' || c == '`' || c == '[') {
+        char close = c == '[' ? ']' : c;
+        int end = skipQuoted(sql, i, close);
+        String name = sql.substring(i + 1, Math.max(i + 1, end - 1));
+        tokens.add(QUOTED + name.toLowerCase(Locale.ENGLISH));
+        i = end;
+      } else if (Character.isLetterOrDigit(c) || c == '_' || c == '$') {
+        int start = i;
+        while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+            || sql.charAt(i) == '$')) {
+          i++;
+        }
+        tokens.add(sql.substring(start, i).toLowerCase(Locale.ENGLISH));
+      } else {
+        tokens.add(String.valueOf(c));
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+  private static int skipQuoted(String sql, int start, char close) {
+    int i = start + 1;
+    while (i < sql.length()) {
+      if (sql.charAt(i) == close) {
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == close) {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return sql.length();
+  }
+
+}
@@ -0,0 +1,72 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotation that indicates the results of the select statement are cached by the {@link RefreshingCache}, and
+ * the stale results are served while refreshing them in the background.
+ * <p>
+ * When the namespace does not have a cache, a {@link RefreshingCache} is registered for it and only the annotated
+ * statements use it. When the namespace has a {@link RefreshingCache}(configured by the {@code hard-ttl} under the
+ * {@code mybatis.<name>.caches.<namespace>}), this annotation overrides the TTLs of the namespace. Durations are
+ * specified in the same format as the configuration properties(such as {@code 30s} and {@code 5m}).
+ *
+ * <pre>
+ * &#64;Select("SELECT state, COUNT(*) AS count FROM city GROUP BY state")
+ * &#64;StaleWhileRevalidate(softTtl = "1m", hardTtl = "10m", negativeTtl = "10s")
+ * List&lt;CityCount&gt; countByState();
+ * </pre>
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface StaleWhileRevalidate {
+
+  /**
+   * Return the duration that the results are fresh.
+   * <p>
+   * If not specified, it is same as the {@link #hardTtl()}(stale results are not served).
+   *
+   * @return The soft TTL
+   */
+  String softTtl() default "";
+
+  /**
+   * Return the duration that the results expire after written.
+   *
+   * @return The hard TTL
+   */
+  String hardTtl();
+
+  /**
+   * Return the duration that the empty results expire after written.
+   * <p>
+   * If not specified, the empty results are not cached.
+   *
+   * @return The negative TTL
+   */
+  String negativeTtl() default "";
+
+}
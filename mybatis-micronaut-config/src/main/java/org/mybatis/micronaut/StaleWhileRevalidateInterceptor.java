@@ -0,0 +1,279 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.core.convert.ConversionService;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+
+/**
+ * The plugin interceptor that requests the background refresh of stale entries of the {@link RefreshingCache}.
+ * <p>
+ * Before a query of the target statement is executed, this interceptor prepares the entry with the policy of the
+ * statement and the task that executes the query again. If the entry is stale, it is refreshed by a new session on the
+ * refresh executor, and the caller is served the stale entry by the {@code CachingExecutor}.
+ * <p>
+ * The refresh executor is created per {@link SqlSessionFactory}, and the number of threads is bounded by the half of
+ * the pool size of the data source. When all threads are busy, the refresh is retried on next access. The refresh
+ * executes the query with a snapshot of the parameter, so it is requested only when the parameter is an immutable
+ * value(such as {@link String}, numbers, enums and date-time types of {@code java.time}) or a map of them. Otherwise,
+ * the entry is served until the hard TTL and then the caller executes the query.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Intercepts({
+    @Signature(type = Executor.class, method = "query",
+        args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class }),
+    @Signature(type = Executor.class, method = "query",
+        args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class,
+            BoundSql.class }) })
+final class StaleWhileRevalidateInterceptor implements Interceptor {
+
+  private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(String.class, Boolean.class,
+      Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+      BigInteger.class, BigDecimal.class, UUID.class));
+
+  private final Map<String, RefreshingStatement> statements;
+  private final SqlSessionFactory sqlSessionFactory;
+  private final java.util.concurrent.Executor refreshExecutor;
+
+  private StaleWhileRevalidateInterceptor(Map<String, RefreshingStatement> statements,
+      SqlSessionFactory sqlSessionFactory, java.util.concurrent.Executor refreshExecutor) {
+    this.statements = statements;
+    this.sqlSessionFactory = sqlSessionFactory;
+    this.refreshExecutor = refreshExecutor;
+  }
+
+  /**
+   * Install the stale-while-revalidate caching into specified configuration.
+   * <p>
+   * The target statements are the methods annotated with the {@link StaleWhileRevalidate} and the select statements
+   * of namespaces whose cache is the {@link RefreshingCache} with the default policy.
+   *
+   * @param configuration
+   *          The MyBatis's core configuration
+   * @param conversionService
+   *          The conversion service for converting durations of the annotation
+   */
+  static void install(Configuration configuration, ConversionService<?> conversionService) {
+    Map<String, RefreshingStatement> statements = new HashMap<>();
+    for (Class<?> mapperType : configuration.getMapperRegistry().getMappers()) {
+      for (Method method : mapperType.getMethods()) {
+        StaleWhileRevalidate annotation = method.getAnnotation(StaleWhileRevalidate.class);
+        if (annotation == null) {
+          continue;
+        }
+        MappedStatement statement = MapperStatements.findStatementId(configuration, mapperType, method)
+            .map(id -> configuration.getMappedStatement(id, false))
+            .filter(s -> s.getSqlCommandType() == SqlCommandType.SELECT).orElseThrow(() -> new BuilderException(
+                "The stale-while-revalidate method " + method + " requires a select statement."));
+        RefreshingCache.Policy policy = RefreshingCache.Policy.of(statement.getId(),
+            toDuration(method, annotation.softTtl(), conversionService),
+            toDuration(method, annotation.hardTtl(), conversionService),
+            toDuration(method, annotation.negativeTtl(), conversionService));
+        RefreshingCache cache = attachCache(configuration, statement);
+        for (String id : new String[] { statement.getId(),
+            statement.getId() + ReactiveMapperHandler.STATEMENT_SUFFIX }) {
+          if (configuration.hasStatement(id, false)) {
+            SystemMetaObject.forObject(configuration.getMappedStatement(id, false)).setValue("useCache", true);
+            statements.put(id, new RefreshingStatement(cache, policy));
+          }
+        }
+      }
+    }
+    // The collection of configuration may contain the ambiguous short names and duplicates
+    for (Object statement : new ArrayList<Object>(configuration.getMappedStatements())) {
+      if (statement instanceof MappedStatement
+          && ((MappedStatement) statement).getSqlCommandType() == SqlCommandType.SELECT
+          && ((MappedStatement) statement).getCache() instanceof RefreshingCache) {
+        MappedStatement mappedStatement = (MappedStatement) statement;
+        RefreshingCache cache = (RefreshingCache) mappedStatement.getCache();
+        if (cache.getDefaultPolicy() != null) {
+          statements.putIfAbsent(mappedStatement.getId(), new RefreshingStatement(cache, cache.getDefaultPolicy()));
+        }
+      }
+    }
+    if (!statements.isEmpty()) {
+      configuration.addInterceptor(new StaleWhileRevalidateInterceptor(statements,
+          new DefaultSqlSessionFactory(configuration), newRefreshExecutor(configuration.getEnvironment())));
+    }
+  }
+
+  private static Duration toDuration(Method method, String value, ConversionService<?> conversionService) {
+    if (value.isEmpty()) {
+      return null;
+    }
+    return conversionService.convert(value, Duration.class).orElseThrow(() -> new BuilderException(
+        "The duration '" + value + "' of stale-while-revalidate method " + method + " is invalid."));
+  }
+
+  private static RefreshingCache attachCache(Configuration configuration, MappedStatement statement) {
+    Cache cache = statement.getCache();
+    if (cache instanceof RefreshingCache) {
+      return (RefreshingCache) cache;
+    }
+    if (cache != null) {
+      throw new BuilderException("The stale-while-revalidate statement '" + statement.getId()
+          + "' requires a namespace without cache or with the cache configured by the 'hard-ttl', but it uses the"
+          + " cache '" + cache.getId() + "'.");
+    }
+    // Register a cache that caches only the annotated statements, and flush it by write statements of the namespace
+    String namespace = statement.getId().substring(0, statement.getId().lastIndexOf('.'));
+    RefreshingCache refreshingCache = new RefreshingCache(namespace, CaffeineCache.DEFAULT_MAXIMUM_SIZE, null);
+    configuration.addCache(refreshingCache);
+    Set<MappedStatement> namespaceStatements = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Object candidate : new ArrayList<Object>(configuration.getMappedStatements())) {
+      if (candidate instanceof MappedStatement && ((MappedStatement) candidate).getCache() == null
+          && ((MappedStatement) candidate).getId().startsWith(namespace + ".")
+          && ((MappedStatement) candidate).getId().lastIndexOf('.') == namespace.length()) {
+        namespaceStatements.add((MappedStatement) candidate);
+      }
+    }
+    for (MappedStatement namespaceStatement : namespaceStatements) {
+      SystemMetaObject.forObject(namespaceStatement).setValue("cache", refreshingCache);
+      if (namespaceStatement.getSqlCommandType() == SqlCommandType.SELECT) {
+        SystemMetaObject.forObject(namespaceStatement).setValue("useCache", false);
+      }
+    }
+    return refreshingCache;
+  }
+
+  private static java.util.concurrent.Executor newRefreshExecutor(Environment environment) {
+    int size = environment == null ? 1 : Math.max(1, ReactiveExecutor.decideSize(environment.getDataSource()) / 2);
+    String name = environment == null ? "default" : environment.getId();
+    AtomicInteger threadNumber = new AtomicInteger();
+    // Do not queue the refreshes because they are retried on next access
+    return new ThreadPoolExecutor(0, size, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-cache-refresh-" + name + "-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    ExecutorQuery query = new ExecutorQuery(invocation);
+    MappedStatement statement = query.getStatement();
+    RefreshingStatement refreshingStatement = statements.get(statement.getId());
+    // Same as conditions that the CachingExecutor uses the cache
+    if (refreshingStatement == null || !statement.isUseCache() || query.getResultHandler() != null
+        || RefreshingCache.isRefreshing()) {
+      return query.proceed();
+    }
+    refreshingStatement.cache.prepare(query.getCacheKey(), refreshingStatement.policy,
+        newRefresher(statement.getId(), query.getParameter(), query.getRowBounds()), refreshExecutor);
+    return query.proceed();
+  }
+
+  private Runnable newRefresher(String statementId, Object parameter, RowBounds rowBounds) {
+    // The refresher runs later on another thread, so it cannot hold the object that the caller may change
+    Object snapshot;
+    if (isImmutable(parameter)) {
+      snapshot = parameter;
+    } else if (parameter instanceof Map && ((Map<?, ?>) parameter).values().stream()
+        .allMatch(StaleWhileRevalidateInterceptor::isImmutable)) {
+      snapshot = copyMap((Map<?, ?>) parameter);
+    } else {
+      return null;
+    }
+    return () -> refresh(statementId, snapshot, rowBounds);
+  }
+
+  private static boolean isImmutable(Object value) {
+    return value == null || value instanceof Enum || IMMUTABLE_TYPES.contains(value.getClass())
+        || value.getClass().getName().startsWith("java.time.");
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> copyMap(Map<?, ?> parameter) {
+    // Keep the type of map because it affects the resolution of missing keys
+    Map<String, Object> copy = parameter instanceof DefaultSqlSession.StrictMap ? new DefaultSqlSession.StrictMap<>()
+        : parameter instanceof MapperMethod.ParamMap ? new MapperMethod.ParamMap<>() : new HashMap<>();
+    copy.putAll((Map<String, Object>) parameter);
+    return copy;
+  }
+
+  private void refresh(String statementId, Object parameter, RowBounds rowBounds) {
+    // The result is put into the cache when the session is closed
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.selectList(statementId, parameter, rowBounds);
+    }
+  }
+
+  @Override
+  public Object plugin(Object target) {
+    return Plugin.wrap(target, this);
+  }
+
+  @Override
+  public void setProperties(Properties properties) {
+    // NOP
+  }
+
+  private static class RefreshingStatement {
+
+    private final RefreshingCache cache;
+    private final RefreshingCache.Policy policy;
+
+    private RefreshingStatement(RefreshingCache cache, RefreshingCache.Policy policy) {
+      this.cache = cache;
+      this.policy = policy;
+    }
+
+  }
+
+}
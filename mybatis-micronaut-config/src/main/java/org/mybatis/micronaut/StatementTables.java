@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotation that declares the tables that the statement reads or writes, instead of extracting them from the SQL.
+ * <p>
+ * It is used by the table based cache invalidation(see
+ * {@link MyBatisConfiguration#setTableBasedCacheInvalidation(boolean)}). Please specify it when the SQL refers tables
+ * via views, stored procedures or database specific syntax that cannot be extracted. The table names are compared
+ * without the schema and case.
+ *
+ * <pre>
+ * &#64;Select("SELECT * FROM city_summary WHERE state = #{state}")
+ * &#64;StatementTables({ "city", "country" })
+ * List&lt;CitySummary&gt; findSummaries(String state);
+ * </pre>
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface StatementTables {
+
+  /**
+   * Return the tables that the statement reads or writes.
+   *
+   * @return The table names
+   */
+  String[] value();
+
+}
@@ -0,0 +1,404 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.scripting.defaults.RawSqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * The plugin interceptor that invalidates the second level cache entries per table instead of per namespace.
+ * <p>
+ * On install, the write statements({@code INSERT}, {@code UPDATE} and {@code DELETE}) stop flushing the cache of their
+ * namespace. Instead, this interceptor records the cache keys of queries per table that the query reads, and removes
+ * the entries that depend on the written tables from caches of all namespaces when the session is committed. The
+ * tables are extracted from the {@link BoundSql} by the {@link SqlTableExtractor} or declared by the
+ * {@link StatementTables}. The tables of a write statement whose sql does not depend on the parameter(the static sql)
+ * are extracted only once per statement.
+ * <p>
+ * A write statement whose tables are unknown clears the cache of its namespace as MyBatis does, and a query whose
+ * tables are unknown is removed by any write statement of its namespace. A query that depends on the tables(or the
+ * cache) written in the current transaction bypasses the second level cache until the transaction ends, so the
+ * session reads its own writes. When the number of keys recorded for a pair
+ * of table and cache exceeds {@value #MAX_KEYS_PER_TABLE}, the whole cache is cleared on invalidation instead.
+ * <p>
+ * An instance is created per {@link Executor} via {@link #plugin(Object)} and holds the tables written in the current
+ * transaction of it.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@Intercepts({
+    @Signature(type = Executor.class, method = "query",
+        args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class }),
+    @Signature(type = Executor.class, method = "query",
+        args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class,
+            BoundSql.class }),
+    @Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class }),
+    @Signature(type = Executor.class, method = "commit", args = { boolean.class }),
+    @Signature(type = Executor.class, method = "rollback", args = { boolean.class }),
+    @Signature(type = Executor.class, method = "close", args = { boolean.class }) })
+final class TableDependencyInterceptor implements Interceptor {
+
+  /**
+   * The maximum number of keys that are recorded per pair of table and cache.
+   */
+  static final int MAX_KEYS_PER_TABLE = 10_000;
+
+  private static final int MAX_CACHED_SQLS = 10_000;
+
+  private static final String NAMESPACE_TABLE_PREFIX = "#namespace:";
+
+  private final Dependencies dependencies;
+  private final Set<String> pendingTables = new LinkedHashSet<>();
+  private final Set<Cache> pendingCaches = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  private TableDependencyInterceptor(Dependencies dependencies) {
+    this.dependencies = dependencies;
+  }
+
+  /**
+   * Install the table based cache invalidation into specified configuration.
+   *
+   * @param configuration
+   *          The MyBatis's core configuration
+   */
+  static void install(Configuration configuration) {
+    // The collection of configuration may contain the ambiguous short names and duplicates
+    Set<String> writeStatementIds = new LinkedHashSet<>();
+    for (Object element : new ArrayList<Object>(configuration.getMappedStatements())) {
+      if (!(element instanceof MappedStatement) || !isWrite((MappedStatement) element)) {
+        continue;
+      }
+      MappedStatement statement = (MappedStatement) element;
+      if (statement.isFlushCacheRequired()) {
+        SystemMetaObject.forObject(statement).setValue("flushCacheRequired", false);
+        writeStatementIds.add(statement.getId());
+      }
+    }
+    configuration.addInterceptor(
+        new TableDependencyInterceptor(new Dependencies(findDeclaredTables(configuration), writeStatementIds)));
+  }
+
+  /**
+   * Return whether specified statement flushes the cache of its namespace as declared.
+   * <p>
+   * The statements of a configuration that the table based cache invalidation has been installed into do not flush the
+   * cache, so the configuration that shares them(see {@link SharedMappingModel}) should restore the declared flag.
+   *
+   * @param statement
+   *          The mapped statement
+   * @return If the statement flushes the cache of its namespace as declared, return {@code true}
+   */
+  static boolean isFlushCacheDeclared(MappedStatement statement) {
+    return statement.isFlushCacheRequired() || statement.getConfiguration().getInterceptors().stream()
+        .filter(TableDependencyInterceptor.class::isInstance).map(TableDependencyInterceptor.class::cast)
+        .anyMatch(interceptor -> interceptor.dependencies.isWrite(statement));
+  }
+
+  private static Map<String, Set<String>> findDeclaredTables(Configuration configuration) {
+    Map<String, Set<String>> declaredTables = new HashMap<>();
+    for (Class<?> mapperType : configuration.getMapperRegistry().getMappers()) {
+      for (Method method : mapperType.getMethods()) {
+        StatementTables statementTables = method.getAnnotation(StatementTables.class);
+        if (statementTables != null) {
+          Set<String> tables = Arrays.stream(statementTables.value()).map(TableDependencyInterceptor::normalize)
+              .collect(Collectors.toCollection(LinkedHashSet::new));
+          declaredTables.put(mapperType.getName() + "." + method.getName(), Collections.unmodifiableSet(tables));
+        }
+      }
+    }
+    return declaredTables;
+  }
+
+  private static boolean isWrite(MappedStatement statement) {
+    SqlCommandType type = statement.getSqlCommandType();
+    return type == SqlCommandType.INSERT || type == SqlCommandType.UPDATE || type == SqlCommandType.DELETE;
+  }
+
+  private static String normalize(String table) {
+    String name = table.substring(table.lastIndexOf('.') + 1).toLowerCase(Locale.ENGLISH);
+    return name.replaceAll("^[\"`\\[]|[\"`\\]]$", "");
+  }
+
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    Object[] args = invocation.getArgs();
+    switch (invocation.getMethod().getName()) {
+    case "query":
+      ExecutorQuery query = new ExecutorQuery(invocation);
+      recordQuery(query);
+      return query.proceed();
+    case "update":
+      recordUpdate((MappedStatement) args[0], args[1]);
+      return invocation.proceed();
+    case "commit":
+      Object result = invocation.proceed();
+      invalidatePending();
+      return result;
+    case "close":
+      try {
+        return invocation.proceed();
+      } finally {
+        // The executor commits the caches on close unless the rollback is forced
+        if ((boolean) args[0]) {
+          discardPending();
+        } else {
+          invalidatePending();
+        }
+      }
+    default:
+      try {
+        return invocation.proceed();
+      } finally {
+        discardPending();
+      }
+    }
+  }
+
+  private void recordQuery(ExecutorQuery query) {
+    MappedStatement statement = query.getStatement();
+    Cache cache = statement.getCache();
+    // Same as conditions that the CachingExecutor uses the cache
+    if (cache == null || !statement.isUseCache() || query.getResultHandler() != null) {
+      return;
+    }
+    Set<String> tables = dependencies.findTables(statement, query.getBoundSql());
+    if (isPending(tables, cache)) {
+      // The shared cache does not reflect the writes of the current transaction until commit
+      query.setStatement(dependencies.uncachedStatement(statement));
+    } else {
+      dependencies.record(tables, cache, query.getCacheKey());
+    }
+  }
+
+  private synchronized boolean isPending(Set<String> tables, Cache cache) {
+    if (pendingCaches.contains(cache) || pendingTables.contains(NAMESPACE_TABLE_PREFIX + cache.getId())) {
+      return true;
+    }
+    return tables.stream().anyMatch(pendingTables::contains);
+  }
+
+  private void recordUpdate(MappedStatement statement, Object parameter) {
+    if (!dependencies.isWrite(statement)) {
+      return;
+    }
+    Set<String> tables = dependencies.findWriteTables(statement, parameter);
+    Cache cache = statement.getCache();
+    synchronized (this) {
+      if (tables.isEmpty()) {
+        if (cache != null) {
+          pendingCaches.add(cache);
+        }
+      } else {
+        pendingTables.addAll(tables);
+        if (cache != null) {
+          pendingTables.add(NAMESPACE_TABLE_PREFIX + cache.getId());
+        }
+      }
+    }
+  }
+
+  private void invalidatePending() {
+    Set<String> tables;
+    Set<Cache> caches;
+    synchronized (this) {
+      if (pendingTables.isEmpty() && pendingCaches.isEmpty()) {
+        return;
+      }
+      tables = new LinkedHashSet<>(pendingTables);
+      caches = Collections.newSetFromMap(new IdentityHashMap<>());
+      caches.addAll(pendingCaches);
+      pendingTables.clear();
+      pendingCaches.clear();
+    }
+    dependencies.invalidate(tables, caches);
+  }
+
+  private synchronized void discardPending() {
+    pendingTables.clear();
+    pendingCaches.clear();
+  }
+
+  @Override
+  public Object plugin(Object target) {
+    // Hold the pending tables per executor(= per session)
+    return target instanceof Executor ? Plugin.wrap(target, new TableDependencyInterceptor(dependencies)) : target;
+  }
+
+  @Override
+  public void setProperties(Properties properties) {
+    // NOP
+  }
+
+  /**
+   * The dependencies between tables and cache entries that are shared between executors of a configuration.
+   */
+  private static class Dependencies {
+
+    private final Map<String, Set<String>> declaredTables;
+    private final Set<String> writeStatementIds;
+    private final Map<String, Set<String>> sqlTables = new ConcurrentHashMap<>();
+    private final Map<MappedStatement, Set<String>> staticStatementTables = new ConcurrentHashMap<>();
+    private final Map<String, Map<Cache, KeySet>> dependents = new ConcurrentHashMap<>();
+    private final Map<MappedStatement, MappedStatement> uncachedStatements = new ConcurrentHashMap<>();
+
+    private Dependencies(Map<String, Set<String>> declaredTables, Set<String> writeStatementIds) {
+      this.declaredTables = declaredTables;
+      this.writeStatementIds = writeStatementIds;
+    }
+
+    private boolean isWrite(MappedStatement statement) {
+      return writeStatementIds.contains(statement.getId());
+    }
+
+    private Set<String> findTables(MappedStatement statement, BoundSql boundSql) {
+      Set<String> tables = findDeclaredTables(statement);
+      return tables != null ? tables : findSqlTables(boundSql.getSql());
+    }
+
+    private Set<String> findWriteTables(MappedStatement statement, Object parameter) {
+      Set<String> tables = findDeclaredTables(statement);
+      if (tables != null) {
+        return tables;
+      }
+      SqlSource sqlSource = statement.getSqlSource();
+      if (sqlSource instanceof RawSqlSource || sqlSource instanceof StaticSqlSource) {
+        // The static sql does not depend on the parameter, so it is not evaluated on every write
+        return staticStatementTables.computeIfAbsent(statement,
+            x -> findSqlTables(statement.getBoundSql(parameter).getSql()));
+      }
+      return findSqlTables(statement.getBoundSql(parameter).getSql());
+    }
+
+    private Set<String> findDeclaredTables(MappedStatement statement) {
+      String id = statement.getId();
+      // The derived statements(such as '!bulk' and '!reactive') follow the declaration of the original method
+      int suffixIndex = id.indexOf('!');
+      return declaredTables.get(suffixIndex < 0 ? id : id.substring(0, suffixIndex));
+    }
+
+    private Set<String> findSqlTables(String sql) {
+      Set<String> tables = sqlTables.get(sql);
+      if (tables == null) {
+        tables = SqlTableExtractor.extract(sql);
+        if (sqlTables.size() < MAX_CACHED_SQLS) {
+          sqlTables.put(sql, tables);
+        }
+      }
+      return tables;
+    }
+
+    private MappedStatement uncachedStatement(MappedStatement statement) {
+      return uncachedStatements.computeIfAbsent(statement, x -> new MappedStatement.Builder(
+          statement.getConfiguration(), statement.getId(), statement.getSqlSource(), statement.getSqlCommandType())
+              .resource(statement.getResource()).fetchSize(statement.getFetchSize())
+              .timeout(statement.getTimeout()).statementType(statement.getStatementType())
+              .resultSetType(statement.getResultSetType()).parameterMap(statement.getParameterMap())
+              .resultMaps(statement.getResultMaps()).cache(statement.getCache())
+              .flushCacheRequired(statement.isFlushCacheRequired()).useCache(false)
+              .resultOrdered(statement.isResultOrdered()).keyGenerator(statement.getKeyGenerator())
+              .databaseId(statement.getDatabaseId()).lang(statement.getLang())
+              .resultSets(statement.getResultSets() == null ? null : String.join(",", statement.getResultSets()))
+              .build());
+    }
+
+    private void record(Set<String> tables, Cache cache, CacheKey key) {
+      if (tables.isEmpty()) {
+        record(NAMESPACE_TABLE_PREFIX + cache.getId(), cache, key);
+      } else {
+        tables.forEach(table -> record(table, cache, key));
+      }
+    }
+
+    private void record(String table, Cache cache, CacheKey key) {
+      dependents.computeIfAbsent(table, x -> new ConcurrentHashMap<>()).computeIfAbsent(cache, x -> new KeySet())
+          .add(key);
+    }
+
+    private void invalidate(Set<String> tables, Set<Cache> caches) {
+      Set<Cache> removedCaches = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (String table : tables) {
+        Map<Cache, KeySet> entries = dependents.remove(table);
+        if (entries == null) {
+          continue;
+        }
+        entries.forEach((cache, keySet) -> {
+          if (keySet.overflowed) {
+            caches.add(cache);
+          } else {
+            keySet.keys.forEach(cache::removeObject);
+            removedCaches.add(cache);
+          }
+        });
+      }
+      caches.forEach(Cache::clear);
+      removedCaches.removeAll(caches);
+      // Other nodes cannot know the keys, so the same cache on other nodes is cleared
+      removedCaches.stream().filter(InvalidatingCache.class::isInstance).map(InvalidatingCache.class::cast)
+          .forEach(InvalidatingCache::publish);
+    }
+
+  }
+
+  private static class KeySet {
+
+    private final Set<CacheKey> keys = ConcurrentHashMap.newKeySet();
+    private volatile boolean overflowed;
+
+    private void add(CacheKey key) {
+      if (overflowed) {
+        return;
+      }
+      keys.add(key);
+      if (keys.size() > MAX_KEYS_PER_TABLE) {
+        overflowed = true;
+        keys.clear();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,172 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * The two-tier second level cache that consists of the on-heap tier and the off-heap tier.
+ * <p>
+ * The on-heap tier is a small Caffeine cache that holds hot objects as is. The off-heap tier holds all objects that
+ * serialized by the compact binary serializer in direct {@link java.nio.ByteBuffer}s, therefore large cached data does
+ * not increase the GC pause time. An object is written into both tiers, and it is promoted into the on-heap tier when
+ * it is found only in the off-heap tier.
+ * <p>
+ * The objects to cache should be the basic types, the collections, the types annotated with
+ * {@code @io.micronaut.core.annotation.Introspected} that have the default constructor, or the serializable types.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class TieredCache implements Cache {
+
+  private final String id;
+  private final long expireAfterWriteNanos;
+  private final com.github.benmanes.caffeine.cache.Cache<Object, HeapEntry> heapTier;
+  private final OffHeapStore offHeapTier;
+
+  /**
+   * Constructor.
+   *
+   * @param id
+   *          The cache id(namespace)
+   * @param maximumSize
+   *          The maximum number of entries in the on-heap tier
+   * @param offHeapSize
+   *          The capacity of the off-heap tier in bytes
+   * @param expireAfterWrite
+   *          The duration that entries expire after written(if {@code null}, entries do not expire)
+   * @param expireAfterAccess
+   *          The duration that entries expire after accessed(if {@code null}, entries do not expire)
+   */
+  public TieredCache(String id, long maximumSize, long offHeapSize, Duration expireAfterWrite,
+      Duration expireAfterAccess) {
+    this.id = id;
+    this.expireAfterWriteNanos = expireAfterWrite == null ? 0 : expireAfterWrite.toNanos();
+    this.heapTier = CaffeineCache.newBuilder(maximumSize, expireAfterWrite, expireAfterAccess).build();
+    this.offHeapTier = new OffHeapStore(offHeapSize, expireAfterWrite, expireAfterAccess);
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    // The TransactionalCache puts null for the entry that missed in the cache
+    if (value == null) {
+      removeObject(key);
+      return;
+    }
+    byte[] bytes = CompactSerializer.serialize(value);
+    long now = System.nanoTime();
+    heapTier.put(key, new HeapEntry(value, now));
+    offHeapTier.put(key, bytes, now);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    HeapEntry entry = heapTier.getIfPresent(key);
+    if (entry != null) {
+      if (!isExpired(entry.writeNanos)) {
+        return entry.value;
+      }
+      // The promoted entry keeps the time that was written into the off-heap tier
+      heapTier.invalidate(key);
+    }
+    OffHeapStore.StoredValue storedValue = offHeapTier.get(key);
+    if (storedValue == null) {
+      return null;
+    }
+    Object value = CompactSerializer.deserialize(storedValue.getBytes());
+    heapTier.put(key, new HeapEntry(value, storedValue.getWriteNanos()));
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    HeapEntry entry = heapTier.asMap().remove(key);
+    offHeapTier.remove(key);
+    return entry == null ? null : entry.value;
+  }
+
+  @Override
+  public void clear() {
+    heapTier.invalidateAll();
+    offHeapTier.clear();
+  }
+
+  @Override
+  public int getSize() {
+    return (int) Math.min(Math.max(heapTier.estimatedSize(), offHeapTier.size()), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Return the snapshot of the statistics(hit, miss, eviction, etc...) of the on-heap tier.
+   *
+   * @return The snapshot of the statistics of the on-heap tier
+   */
+  public CacheStats getStats() {
+    return heapTier.stats();
+  }
+
+  /**
+   * Return the snapshot of the statistics(hit, miss and eviction) of the off-heap tier.
+   *
+   * @return The snapshot of the statistics of the off-heap tier
+   */
+  public CacheStats getOffHeapStats() {
+    return new CacheStats(offHeapTier.hitCount(), offHeapTier.missCount(), 0, 0, 0, offHeapTier.evictionCount(), 0);
+  }
+
+  /**
+   * Return the total bytes of objects that held in the off-heap tier.
+   *
+   * @return The total bytes of objects that held in the off-heap tier
+   */
+  public long getOffHeapUsedBytes() {
+    return offHeapTier.usedBytes();
+  }
+
+  /**
+   * Perform the pending maintenance operations of the on-heap tier such as the eviction.
+   */
+  void cleanUp() {
+    heapTier.cleanUp();
+  }
+
+  private boolean isExpired(long writeNanos) {
+    return expireAfterWriteNanos > 0 && System.nanoTime() - writeNanos >= expireAfterWriteNanos;
+  }
+
+  private static final class HeapEntry {
+
+    private final Object value;
+    private final long writeNanos;
+
+    private HeapEntry(Object value, long writeNanos) {
+      this.value = value;
+      this.writeNanos = writeNanos;
+    }
+
+  }
+
+}
@@ -0,0 +1,251 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionException;
+
+/**
+ * The thread safe {@link SqlSession} that delegates to the {@link SqlSession} bound to the current transaction of the
+ * {@link MyBatisTransactionManager}.
+ * <p>
+ * Within a transaction(such as a method annotated with the {@link MyBatisTransactional}), all method invocations
+ * share the same {@link SqlSession}, so they share the connection, the statements cached by the {@code REUSE}
+ * executor and the local cache. Outside of a transaction, each method invocation is executed within a new transaction
+ * that is committed on completion, so nothing is reused between invocations. This class is registered as a bean per
+ * {@link org.apache.ibatis.session.SqlSessionFactory} with JDBC based transaction, and the mapper beans use it.
+ * <p>
+ * The {@link #commit()}, {@link #rollback()} and {@link #close()} are not allowed because the transaction manages
+ * them.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public final class TransactionalSqlSession implements SqlSession {
+
+  private final MyBatisTransactionManager transactionManager;
+
+  /**
+   * Constructor.
+   *
+   * @param transactionManager
+   *          The {@link MyBatisTransactionManager} that binds an {@link SqlSession} to the current transaction
+   */
+  TransactionalSqlSession(MyBatisTransactionManager transactionManager) {
+    this.transactionManager = transactionManager;
+  }
+
+  private <T> T execute(Function<SqlSession, T> action) {
+    return transactionManager.executeInCurrentTransaction(() -> action.apply(currentSqlSession()));
+  }
+
+  private SqlSession currentSqlSession() {
+    return transactionManager.getCurrentSqlSession().orElseThrow(
+        () -> new SqlSessionException("No transaction is active for '" + transactionManager.getName() + "'."));
+  }
+
+  @Override
+  public <T> T selectOne(String statement) {
+    return execute(sqlSession -> sqlSession.selectOne(statement));
+  }
+
+  @Override
+  public <T> T selectOne(String statement, Object parameter) {
+    return execute(sqlSession -> sqlSession.selectOne(statement, parameter));
+  }
+
+  @Override
+  public <E> List<E> selectList(String statement) {
+    return execute(sqlSession -> sqlSession.selectList(statement));
+  }
+
+  @Override
+  public <E> List<E> selectList(String statement, Object parameter) {
+    return execute(sqlSession -> sqlSession.selectList(statement, parameter));
+  }
+
+  @Override
+  public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
+    return execute(sqlSession -> sqlSession.selectList(statement, parameter, rowBounds));
+  }
+
+  @Override
+  public <K, V> Map<K, V> selectMap(String statement, String mapKey) {
+    return execute(sqlSession -> sqlSession.selectMap(statement, mapKey));
+  }
+
+  @Override
+  public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey) {
+    return execute(sqlSession -> sqlSession.selectMap(statement, parameter, mapKey));
+  }
+
+  @Override
+  public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds) {
+    return execute(sqlSession -> sqlSession.selectMap(statement, parameter, mapKey, rowBounds));
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The cursor requires an active transaction because it is closed when the transaction ends.
+   */
+  @Override
+  public <T> Cursor<T> selectCursor(String statement) {
+    return currentSqlSession().selectCursor(statement);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The cursor requires an active transaction because it is closed when the transaction ends.
+   */
+  @Override
+  public <T> Cursor<T> selectCursor(String statement, Object parameter) {
+    return currentSqlSession().selectCursor(statement, parameter);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The cursor requires an active transaction because it is closed when the transaction ends.
+   */
+  @Override
+  public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+    return currentSqlSession().selectCursor(statement, parameter, rowBounds);
+  }
+
+  @Override
+  public void select(String statement, Object parameter, ResultHandler handler) {
+    execute(sqlSession -> {
+      sqlSession.select(statement, parameter, handler);
+      return null;
+    });
+  }
+
+  @Override
+  public void select(String statement, ResultHandler handler) {
+    execute(sqlSession -> {
+      sqlSession.select(statement, handler);
+      return null;
+    });
+  }
+
+  @Override
+  public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
+    execute(sqlSession -> {
+      sqlSession.select(statement, parameter, rowBounds, handler);
+      return null;
+    });
+  }
+
+  @Override
+  public int insert(String statement) {
+    return execute(sqlSession -> sqlSession.insert(statement));
+  }
+
+  @Override
+  public int insert(String statement, Object parameter) {
+    return execute(sqlSession -> sqlSession.insert(statement, parameter));
+  }
+
+  @Override
+  public int update(String statement) {
+    return execute(sqlSession -> sqlSession.update(statement));
+  }
+
+  @Override
+  public int update(String statement, Object parameter) {
+    return execute(sqlSession -> sqlSession.update(statement, parameter));
+  }
+
+  @Override
+  public int delete(String statement) {
+    return execute(sqlSession -> sqlSession.delete(statement));
+  }
+
+  @Override
+  public int delete(String statement, Object parameter) {
+    return execute(sqlSession -> sqlSession.delete(statement, parameter));
+  }
+
+  @Override
+  public void commit() {
+    throw new UnsupportedOperationException("Manual commit is not allowed over a TransactionalSqlSession");
+  }
+
+  @Override
+  public void commit(boolean force) {
+    throw new UnsupportedOperationException("Manual commit is not allowed over a TransactionalSqlSession");
+  }
+
+  @Override
+  public void rollback() {
+    throw new UnsupportedOperationException("Manual rollback is not allowed over a TransactionalSqlSession");
+  }
+
+  @Override
+  public void rollback(boolean force) {
+    throw new UnsupportedOperationException("Manual rollback is not allowed over a TransactionalSqlSession");
+  }
+
+  @Override
+  public List<BatchResult> flushStatements() {
+    return transactionManager.getCurrentSqlSession().map(SqlSession::flushStatements)
+        .orElseGet(Collections::emptyList);
+  }
+
+  @Override
+  public void close() {
+    throw new UnsupportedOperationException("Manual close is not allowed over a TransactionalSqlSession");
+  }
+
+  @Override
+  public void clearCache() {
+    transactionManager.getCurrentSqlSession().ifPresent(SqlSession::clearCache);
+  }
+
+  @Override
+  public Configuration getConfiguration() {
+    return transactionManager.getSqlSessionFactory().getConfiguration();
+  }
+
+  @Override
+  public <T> T getMapper(Class<T> type) {
+    return GeneratedMapperSupport.getMapper(type, this);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The connection requires an active transaction because it is released when the transaction ends.
+   */
+  @Override
+  public Connection getConnection() {
+    return currentSqlSession().getConnection();
+  }
+
+}
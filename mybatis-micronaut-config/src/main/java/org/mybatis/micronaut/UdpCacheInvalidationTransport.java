@@ -0,0 +1,241 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link CacheInvalidationTransport} that delivers messages via the UDP.
+ * <p>
+ * Messages are sent to each target address. When a target is a multicast group address(such as
+ * {@code 239.255.27.1:45588}), this transport joins the group, so all nodes can use the same settings. When targets are
+ * unicast addresses, each node should specify the addresses of other nodes. A message that exceeds the datagram size is
+ * split into multiple datagrams. An exception thrown by a listener is logged, and does not stop receiving messages.
+ * <p>
+ * Messages are neither authenticated nor encrypted, so any host that can reach the port can flush caches. This
+ * transport must be used on a trusted network.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+public class UdpCacheInvalidationTransport implements CacheInvalidationTransport {
+
+  static final int MAX_DATAGRAM_SIZE = 1400;
+
+  private static final Logger logger = LoggerFactory.getLogger(UdpCacheInvalidationTransport.class);
+  private static final int MAGIC = 0x4D42;
+  private static final int VERSION = 1;
+
+  private final MulticastSocket socket;
+  private final List<InetSocketAddress> targets;
+  private final List<Consumer<CacheInvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Constructor.
+   *
+   * @param bindAddress
+   *          The address to receive messages
+   * @param targets
+   *          The addresses to send messages
+   * @throws IOException
+   *           If fail to open the socket or join the multicast group
+   */
+  public UdpCacheInvalidationTransport(InetSocketAddress bindAddress, List<InetSocketAddress> targets)
+      throws IOException {
+    this.targets = new ArrayList<>(targets);
+    this.socket = new MulticastSocket(null);
+    try {
+      socket.setReuseAddress(true);
+      socket.bind(bindAddress);
+      for (InetSocketAddress target : targets) {
+        if (target.getAddress().isMulticastAddress()) {
+          socket.joinGroup(target.getAddress());
+        }
+      }
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+    Thread receiver = new Thread(this::receive, "mybatis-cache-invalidation-receiver");
+    receiver.setDaemon(true);
+    receiver.start();
+  }
+
+  /**
+   * Return the local port that receives messages.
+   *
+   * @return The local port
+   */
+  public int getLocalPort() {
+    return socket.getLocalPort();
+  }
+
+  @Override
+  public void send(CacheInvalidationMessage message) {
+    try {
+      for (byte[] datagram : encode(message)) {
+        for (InetSocketAddress target : targets) {
+          socket.send(new DatagramPacket(datagram, datagram.length, target));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void subscribe(Consumer<CacheInvalidationMessage> listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void close() {
+    socket.close();
+  }
+
+  private void receive() {
+    byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+    while (!socket.isClosed()) {
+      DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+      try {
+        socket.receive(packet);
+      } catch (IOException e) {
+        if (!socket.isClosed()) {
+          logger.warn("Failed to receive a cache invalidation message.", e);
+        }
+        continue;
+      }
+      CacheInvalidationMessage message;
+      try {
+        message = decode(packet.getData(), packet.getOffset(), packet.getLength());
+      } catch (IOException e) {
+        logger.debug("Ignore an invalid datagram from {}.", packet.getSocketAddress(), e);
+        continue;
+      }
+      for (Consumer<CacheInvalidationMessage> listener : listeners) {
+        try {
+          listener.accept(message);
+        } catch (RuntimeException e) {
+          // Keep the receiver thread alive for subsequent messages
+          logger.warn("Failed to handle a cache invalidation message from {}.", packet.getSocketAddress(), e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Encode a message into datagrams.
+   *
+   * @param message
+   *          The message
+   * @return The datagrams
+   */
+  static List<byte[]> encode(CacheInvalidationMessage message) {
+    byte[] nodeId = message.getNodeId().getBytes(StandardCharsets.UTF_8);
+    int headerSize = 2 + 1 + 2 + nodeId.length + 2;
+    List<byte[]> datagrams = new ArrayList<>();
+    List<byte[]> regions = new ArrayList<>();
+    int size = headerSize;
+    for (String region : message.getRegions()) {
+      byte[] bytes = region.getBytes(StandardCharsets.UTF_8);
+      if (headerSize + 2 + bytes.length > MAX_DATAGRAM_SIZE) {
+        throw new IllegalArgumentException("The region is too long to send via the UDP: " + region);
+      }
+      if (size + 2 + bytes.length > MAX_DATAGRAM_SIZE) {
+        datagrams.add(encode(nodeId, regions));
+        regions.clear();
+        size = headerSize;
+      }
+      regions.add(bytes);
+      size += 2 + bytes.length;
+    }
+    if (!regions.isEmpty()) {
+      datagrams.add(encode(nodeId, regions));
+    }
+    return datagrams;
+  }
+
+  private static byte[] encode(byte[] nodeId, List<byte[]> regions) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_DATAGRAM_SIZE);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeShort(MAGIC);
+      out.writeByte(VERSION);
+      out.writeShort(nodeId.length);
+      out.write(nodeId);
+      out.writeShort(regions.size());
+      for (byte[] region : regions) {
+        out.writeShort(region.length);
+        out.write(region);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decode a datagram into a message.
+   *
+   * @param data
+   *          The buffer of datagram
+   * @param offset
+   *          The offset of datagram
+   * @param length
+   *          The length of datagram
+   * @return The message
+   * @throws IOException
+   *           If the datagram is not a valid message
+   */
+  static CacheInvalidationMessage decode(byte[] data, int offset, int length) throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length))) {
+      if (in.readUnsignedShort() != MAGIC || in.readUnsignedByte() != VERSION) {
+        throw new IOException("Not a cache invalidation message.");
+      }
+      String nodeId = readString(in);
+      int count = in.readUnsignedShort();
+      Set<String> regions = new LinkedHashSet<>(count);
+      for (int i = 0; i < count; i++) {
+        regions.add(readString(in));
+      }
+      return new CacheInvalidationMessage(nodeId, regions);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readUnsignedShort()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,290 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * The generator of the mapper implementation class.
+ * <p>
+ * This generator generates the concrete class({@code <mapper binary name>$MyBatisMapper}) that calls the
+ * {@code SqlSession} directly with the statement id resolved at compile time and the parameter names resolved at
+ * construction. The generated method is limited to the annotation-based statement method(such as {@code @Select},
+ * {@code @Insert}, {@code @Update} and {@code @Delete}) declared on the mapper interface, and other methods are
+ * delegated to the MyBatis's mapper proxy.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+final class MapperImplementationGenerator {
+
+  static final String IMPLEMENTATION_SUFFIX = "$MyBatisMapper";
+
+  private static final String SUPPORT = "org.mybatis.micronaut.GeneratedMapperSupport";
+  private static final String ANNOTATION_PACKAGE = "org.apache.ibatis.annotations.";
+  private static final List<String> SELECT_ANNOTATIONS = Arrays.asList("Select", "SelectProvider");
+  private static final List<String> INSERT_ANNOTATIONS = Arrays.asList("Insert", "InsertProvider");
+  private static final List<String> UPDATE_ANNOTATIONS = Arrays.asList("Update", "UpdateProvider");
+  private static final List<String> DELETE_ANNOTATIONS = Arrays.asList("Delete", "DeleteProvider");
+  private static final List<String> UNSUPPORTED_ANNOTATIONS = Arrays.asList("MapKey", "Flush");
+  private static final List<String> UNSUPPORTED_PARAMETER_TYPES = Arrays.asList("org.apache.ibatis.session.RowBounds",
+      "org.apache.ibatis.session.ResultHandler");
+  // The methods that return these types are executed by the ReactiveMapperHandler
+  private static final List<String> REACTIVE_TYPES = Arrays.asList("org.reactivestreams.Publisher",
+      "java.util.concurrent.CompletionStage", "java.util.concurrent.Future", "io.reactivex.Observable",
+      "io.reactivex.Single", "io.reactivex.Maybe", "io.reactivex.Completable");
+  private static final List<String> LIST_TYPES = Arrays.asList("java.util.List", "java.util.Collection");
+
+  private final ProcessingEnvironment processingEnv;
+
+  MapperImplementationGenerator(ProcessingEnvironment processingEnv) {
+    this.processingEnv = processingEnv;
+  }
+
+  /**
+   * Generate the mapper implementation class.
+   *
+   * @param mapper
+   *          The mapper interface
+   * @return If generated the mapper implementation class, return the binary name of it, otherwise return
+   *         {@code null}
+   */
+  String generate(TypeElement mapper) {
+    if (!mapper.getTypeParameters().isEmpty()) {
+      return null;
+    }
+    List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(mapper))
+        .stream().filter(method -> method.getModifiers().contains(Modifier.ABSTRACT)).collect(Collectors.toList());
+    StringBuilder fields = new StringBuilder();
+    StringBuilder initializers = new StringBuilder();
+    StringBuilder body = new StringBuilder();
+    String mapperName = mapper.getQualifiedName().toString();
+    String statementPrefix = processingEnv.getElementUtils().getBinaryName(mapper) + ".";
+    int generatedCount = 0;
+    for (int i = 0; i < methods.size(); i++) {
+      ExecutableElement method = methods.get(i);
+      String call = method.getEnclosingElement().equals(mapper) ? generateCall(method, statementPrefix, i) : null;
+      body.append('\n').append(signature(mapper, method)).append(" {\n");
+      if (call == null) {
+        body.append("    ").append(method.getReturnType().getKind() == TypeKind.VOID ? "" : "return ")
+            .append("delegate.").append(method.getSimpleName()).append('(').append(arguments(method))
+            .append(");\n");
+      } else {
+        body.append(call);
+        generatedCount++;
+        if (requiresParamMap(method)) {
+          fields.append("  private final String[] paramNames").append(i).append(";\n");
+          initializers.append("    this.paramNames").append(i).append(" = ").append(SUPPORT)
+              .append(".getParamNames(configuration, ").append(mapperName).append(".class, \"")
+              .append(method.getSimpleName()).append('"').append(parameterClasses(method)).append(");\n");
+        }
+      }
+      body.append("  }\n");
+    }
+    if (generatedCount == 0) {
+      return null;
+    }
+    boolean delegated = generatedCount < methods.size();
+    String packageName = processingEnv.getElementUtils().getPackageOf(mapper).getQualifiedName().toString();
+    String simpleName = statementPrefix.substring(packageName.isEmpty() ? 0 : packageName.length() + 1,
+        statementPrefix.length() - 1) + IMPLEMENTATION_SUFFIX;
+    String implementationName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+    StringBuilder source = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n\n");
+    }
+    source.append("/**\n * The mapper implementation for {@link ").append(mapperName)
+        .append("} generated by the mybatis-micronaut.\n */\n");
+    source.append("public final class ").append(simpleName).append(" implements ").append(mapperName).append(" {\n\n");
+    source.append("  private final org.apache.ibatis.session.SqlSession sqlSession;\n");
+    if (delegated) {
+      source.append("  private final ").append(mapperName).append(" delegate;\n");
+    }
+    source.append(fields);
+    source.append("\n  public ").append(simpleName).append("(org.apache.ibatis.session.SqlSession sqlSession) {\n");
+    source.append("    this.sqlSession = sqlSession;\n");
+    if (delegated || initializers.length() > 0) {
+      source.append("    org.apache.ibatis.session.Configuration configuration = sqlSession.getConfiguration();\n");
+    }
+    if (delegated) {
+      source.append("    this.delegate = configuration.getMapper(").append(mapperName).append(".class, sqlSession);\n");
+    }
+    source.append(initializers).append("  }\n").append(body).append("\n}\n");
+
+    try (Writer writer = processingEnv.getFiler().createSourceFile(implementationName, mapper).openWriter()) {
+      writer.write(source.toString());
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Fail to generate the mapper implementation [" + implementationName + "]. Cause: " + e, mapper);
+      return null;
+    }
+    return implementationName;
+  }
+
+  private String generateCall(ExecutableElement method, String statementPrefix, int index) {
+    if (!method.getTypeParameters().isEmpty() || hasAnyAnnotation(method, UNSUPPORTED_ANNOTATIONS)
+        || method.getParameters().stream().anyMatch(parameter -> isAssignable(parameter.asType(),
+            UNSUPPORTED_PARAMETER_TYPES)) || isAssignable(method.getReturnType(), REACTIVE_TYPES)) {
+      return null;
+    }
+    String statement = '"' + statementPrefix + method.getSimpleName() + '"';
+    String parameter = parameter(method, index);
+    TypeMirror returnType = method.getReturnType();
+    if (hasAnyAnnotation(method, SELECT_ANNOTATIONS)) {
+      return generateSelect(statement, parameter, returnType);
+    }
+    String command = hasAnyAnnotation(method, INSERT_ANNOTATIONS) ? "insert"
+        : hasAnyAnnotation(method, UPDATE_ANNOTATIONS) ? "update"
+            : hasAnyAnnotation(method, DELETE_ANNOTATIONS) ? "delete" : null;
+    if (command == null) {
+      return null;
+    }
+    String execution = "sqlSession." + command + "(" + statement + ", " + parameter + ")";
+    switch (erasure(returnType)) {
+    case "void":
+      return "    " + execution + ";\n";
+    case "int":
+    case "java.lang.Integer":
+      return "    return " + execution + ";\n";
+    case "long":
+    case "java.lang.Long":
+      return "    return (long) " + execution + ";\n";
+    case "boolean":
+    case "java.lang.Boolean":
+      return "    return " + execution + " > 0;\n";
+    default:
+      return null;
+    }
+  }
+
+  private String generateSelect(String statement, String parameter, TypeMirror returnType) {
+    String erasure = erasure(returnType);
+    if (returnType.getKind() == TypeKind.VOID || returnType.getKind() == TypeKind.ARRAY
+        || returnType.getKind() == TypeKind.TYPEVAR || erasure.equals("org.apache.ibatis.cursor.Cursor")) {
+      return null;
+    }
+    if (LIST_TYPES.contains(erasure)) {
+      return "    return sqlSession.selectList(" + statement + ", " + parameter + ");\n";
+    }
+    if (isAssignable(returnType, LIST_TYPES.subList(1, 2))) {
+      // Other collection types are converted by the MyBatis's mapper proxy
+      return null;
+    }
+    if (erasure.equals("java.util.Optional")) {
+      List<? extends TypeMirror> typeArguments = ((DeclaredType) returnType).getTypeArguments();
+      if (typeArguments.size() != 1 || typeArguments.get(0).getKind() != TypeKind.DECLARED) {
+        return null;
+      }
+      return "    return java.util.Optional.ofNullable(sqlSession.<" + typeArguments.get(0) + ">selectOne(" + statement
+          + ", " + parameter + "));\n";
+    }
+    if (returnType.getKind().isPrimitive()) {
+      String boxedType = processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils()
+          .getPrimitiveType(returnType.getKind())).getQualifiedName().toString();
+      return "    return " + SUPPORT + ".<" + boxedType + ">requireNonNullResult(sqlSession.<" + boxedType
+          + ">selectOne(" + statement + ", " + parameter + "), " + statement + ", " + returnType + ".class);\n";
+    }
+    return "    return sqlSession.<" + returnType + ">selectOne(" + statement + ", " + parameter + ");\n";
+  }
+
+  private String parameter(ExecutableElement method, int index) {
+    if (method.getParameters().isEmpty()) {
+      return "null";
+    }
+    if (!requiresParamMap(method)) {
+      return "arg0";
+    }
+    return SUPPORT + ".toParamMap(paramNames" + index + ", " + arguments(method) + ")";
+  }
+
+  private boolean requiresParamMap(ExecutableElement method) {
+    return method.getParameters().size() > 1 || method.getParameters().stream()
+        .anyMatch(parameter -> hasAnyAnnotation(parameter, Arrays.asList("Param")));
+  }
+
+  private String signature(TypeElement mapper, ExecutableElement method) {
+    ExecutableType type = (ExecutableType) processingEnv.getTypeUtils().asMemberOf((DeclaredType) mapper.asType(),
+        method);
+    StringBuilder signature = new StringBuilder("  @Override\n  public ");
+    if (!method.getTypeParameters().isEmpty()) {
+      signature.append(method.getTypeParameters().stream().map(this::typeParameter)
+          .collect(Collectors.joining(", ", "<", "> ")));
+    }
+    signature.append(type.getReturnType()).append(' ').append(method.getSimpleName()).append('(');
+    List<? extends TypeMirror> parameterTypes = type.getParameterTypes();
+    signature.append(IntStream.range(0, parameterTypes.size()).mapToObj(i -> parameterTypes.get(i) + " arg" + i)
+        .collect(Collectors.joining(", ")));
+    signature.append(')');
+    if (!type.getThrownTypes().isEmpty()) {
+      signature.append(" throws ")
+          .append(type.getThrownTypes().stream().map(TypeMirror::toString).collect(Collectors.joining(", ")));
+    }
+    return signature.toString();
+  }
+
+  private String typeParameter(TypeParameterElement typeParameter) {
+    String bounds = typeParameter.getBounds().stream().map(TypeMirror::toString)
+        .filter(bound -> !bound.equals(Object.class.getName())).collect(Collectors.joining(" & "));
+    return typeParameter.getSimpleName() + (bounds.isEmpty() ? "" : " extends " + bounds);
+  }
+
+  private String arguments(ExecutableElement method) {
+    return IntStream.range(0, method.getParameters().size()).mapToObj(i -> "arg" + i)
+        .collect(Collectors.joining(", "));
+  }
+
+  private String parameterClasses(ExecutableElement method) {
+    return method.getParameters().stream().map(parameter -> ", " + erasure(parameter.asType()) + ".class")
+        .collect(Collectors.joining());
+  }
+
+  private String erasure(TypeMirror type) {
+    return processingEnv.getTypeUtils().erasure(type).toString();
+  }
+
+  private boolean isAssignable(TypeMirror type, List<String> typeNames) {
+    TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+    return typeNames.stream().map(processingEnv.getElementUtils()::getTypeElement).filter(e -> e != null)
+        .anyMatch(e -> processingEnv.getTypeUtils().isAssignable(erasure,
+            processingEnv.getTypeUtils().erasure(e.asType())));
+  }
+
+  private static boolean hasAnyAnnotation(Element element, List<String> simpleNames) {
+    return element.getAnnotationMirrors().stream().map(annotation -> annotation.getAnnotationType().toString())
+        .anyMatch(name -> name.startsWith(ANNOTATION_PACKAGE)
+            && simpleNames.contains(name.substring(ANNOTATION_PACKAGE.length())));
+  }
+
+}
@@ -0,0 +1,365 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * The annotation processor that generates the index of MyBatis components at compile time.
+ * <p>
+ * This processor writes the binary names of interfaces annotated with {@code @Mapper} into the
+ * {@value #MAPPER_INDEX}. The index is used instead of scanning the classpath when resolving mappers from the
+ * {@code mybatis.*.mapper-packages}.
+ * <p>
+ * This processor also writes the binary names of all compiled types with their flags and super types into the
+ * {@value #TYPE_INDEX}. The index is used instead of scanning the classpath via the MyBatis's VFS when registering
+ * type aliases and type handlers from the {@code mybatis.*.type-alias-packages} and the
+ * {@code mybatis.*.type-handler-packages}.
+ * <p>
+ * In addition, this processor writes the GraalVM native-image configuration files({@code reflect-config.json},
+ * {@code proxy-config.json} and {@code resource-config.json}) into the {@value #NATIVE_IMAGE_DIRECTORY}. These
+ * files cover mapper interfaces, types that referenced from mapper methods, type aliases, type handlers and other
+ * MyBatis components(such as plugin interceptors) that compiled together. You can disable it by specifying
+ * {@code -Amybatis.nativeImage=false}, and add resource patterns(such as mapper xml files that specified by
+ * {@code mybatis.*.mapper-xml-files}) by specifying {@code -Amybatis.nativeImage.resources=<pattern>,...}.
+ * <p>
+ * Moreover, this processor generates the mapper implementation class that calls the {@code SqlSession} directly
+ * for each mapper interface(see {@link MapperImplementationGenerator}). You can disable it by specifying
+ * {@code -Amybatis.mapperImplementation=false}.
+ *
+ * @author Kazuki Shimizu
+ * @since 1.0.0
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions({ MyBatisIndexProcessor.NATIVE_IMAGE_OPTION, MyBatisIndexProcessor.NATIVE_IMAGE_RESOURCES_OPTION,
+    MyBatisIndexProcessor.MAPPER_IMPLEMENTATION_OPTION })
+public class MyBatisIndexProcessor extends AbstractProcessor {
+
+  /**
+   * The resource path of the mapper index.
+   */
+  public static final String MAPPER_INDEX = "META-INF/mybatis/mapper.index";
+
+  /**
+   * The resource path of the type index.
+   * <p>
+   * Each entry is formatted as {@code <binary name>:<flags>:<super types>}. The flags consist of {@code I}(interface),
+   * {@code A}(abstract) and {@code M}(member class), and the super types are comma separated binary names of all
+   * super classes and interfaces except {@code java.lang.Object}.
+   */
+  public static final String TYPE_INDEX = "META-INF/mybatis/type.index";
+
+  /**
+   * The resource directory of the generated native-image configuration files.
+   */
+  public static final String NATIVE_IMAGE_DIRECTORY = "META-INF/native-image/org.mybatis.micronaut/generated";
+
+  static final String MAPPER_ANNOTATION = "org.apache.ibatis.annotations.Mapper";
+  static final String NATIVE_IMAGE_OPTION = "mybatis.nativeImage";
+  static final String NATIVE_IMAGE_RESOURCES_OPTION = "mybatis.nativeImage.resources";
+  static final String MAPPER_IMPLEMENTATION_OPTION = "mybatis.mapperImplementation";
+
+  private static final String REFLECT_CONFIG = NATIVE_IMAGE_DIRECTORY + "/reflect-config.json";
+  private static final String PROXY_CONFIG = NATIVE_IMAGE_DIRECTORY + "/proxy-config.json";
+  private static final String RESOURCE_CONFIG = NATIVE_IMAGE_DIRECTORY + "/resource-config.json";
+  private static final Pattern REFLECT_CONFIG_ENTRY = Pattern.compile("^\"name\" : \"([^\"]+)\"");
+  private static final String ALIAS_ANNOTATION = "org.apache.ibatis.type.Alias";
+  private static final List<String> COMPONENT_TYPES = Arrays.asList("org.apache.ibatis.type.TypeHandler",
+      "org.apache.ibatis.plugin.Interceptor", "org.apache.ibatis.scripting.LanguageDriver",
+      "org.apache.ibatis.cache.Cache", "org.apache.ibatis.mapping.DatabaseIdProvider",
+      "org.apache.ibatis.reflection.factory.ObjectFactory", "org.apache.ibatis.reflection.wrapper.ObjectWrapperFactory",
+      "org.apache.ibatis.reflection.ReflectorFactory", "org.apache.ibatis.executor.loader.ProxyFactory");
+
+  private final Set<String> mapperNames = new TreeSet<>();
+  private final Set<String> typeEntries = new TreeSet<>();
+  private final Set<String> reflectionTypeNames = new TreeSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      Set<String> processedTypeNames = typeEntries.stream().map(MyBatisIndexProcessor::entryName)
+          .collect(Collectors.toSet());
+      Set<String> mergedMapperNames = mergeIndex(MAPPER_INDEX, mapperNames, processedTypeNames);
+      writeIndex(MAPPER_INDEX, mergedMapperNames);
+      writeIndex(TYPE_INDEX, mergeIndex(TYPE_INDEX, typeEntries, processedTypeNames));
+      if (isEnabled(NATIVE_IMAGE_OPTION)) {
+        writeNativeImageConfigs(mergedMapperNames);
+      }
+      return false;
+    }
+    TypeElement mapperAnnotation = processingEnv.getElementUtils().getTypeElement(MAPPER_ANNOTATION);
+    if (mapperAnnotation != null) {
+      roundEnv.getElementsAnnotatedWith(mapperAnnotation).stream()
+          .filter(element -> element.getKind() == ElementKind.INTERFACE).map(TypeElement.class::cast)
+          .forEach(this::collectMapper);
+    }
+    ElementFilter.typesIn(roundEnv.getRootElements()).forEach(this::collectTypeEntry);
+    if (isEnabled(NATIVE_IMAGE_OPTION)) {
+      ElementFilter.typesIn(roundEnv.getRootElements()).forEach(this::collectComponents);
+    }
+    return false;
+  }
+
+  private void collectTypeEntry(TypeElement type) {
+    StringBuilder flags = new StringBuilder();
+    if (type.getKind().isInterface()) {
+      flags.append('I');
+    }
+    if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+      flags.append('A');
+    }
+    if (type.getNestingKind() == NestingKind.MEMBER) {
+      flags.append('M');
+    }
+    Set<String> superTypeNames = new TreeSet<>();
+    collectSuperTypeNames(type.asType(), superTypeNames);
+    typeEntries.add(binaryName(type) + ":" + flags + ":" + String.join(",", superTypeNames));
+    ElementFilter.typesIn(type.getEnclosedElements()).forEach(this::collectTypeEntry);
+  }
+
+  private void collectSuperTypeNames(TypeMirror type, Set<String> superTypeNames) {
+    for (TypeMirror superType : processingEnv.getTypeUtils().directSupertypes(type)) {
+      TypeMirror erasure = processingEnv.getTypeUtils().erasure(superType);
+      if (erasure.getKind() != TypeKind.DECLARED) {
+        continue;
+      }
+      String name = binaryName((TypeElement) ((DeclaredType) erasure).asElement());
+      if (!name.equals(Object.class.getName()) && superTypeNames.add(name)) {
+        collectSuperTypeNames(erasure, superTypeNames);
+      }
+    }
+  }
+
+  private boolean isEnabled(String option) {
+    return !"false".equalsIgnoreCase(processingEnv.getOptions().get(option));
+  }
+
+  private void collectMapper(TypeElement mapper) {
+    String mapperName = binaryName(mapper);
+    mapperNames.add(mapperName);
+    String implementationName = isEnabled(MAPPER_IMPLEMENTATION_OPTION)
+        ? new MapperImplementationGenerator(processingEnv).generate(mapper)
+        : null;
+    if (!isEnabled(NATIVE_IMAGE_OPTION)) {
+      return;
+    }
+    reflectionTypeNames.add(mapperName);
+    if (implementationName != null) {
+      reflectionTypeNames.add(implementationName);
+    }
+    Set<String> visited = new TreeSet<>();
+    ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(mapper)).stream()
+        .filter(method -> !method.getEnclosingElement().toString().equals(Object.class.getName()))
+        .forEach(method -> {
+          collectReferencedTypes(method.getReturnType(), visited);
+          method.getParameters().forEach(parameter -> collectReferencedTypes(parameter.asType(), visited));
+        });
+  }
+
+  private void collectReferencedTypes(TypeMirror type, Set<String> visited) {
+    if (type.getKind() == TypeKind.ARRAY) {
+      collectReferencedTypes(((ArrayType) type).getComponentType(), visited);
+      return;
+    }
+    if (type.getKind() != TypeKind.DECLARED) {
+      return;
+    }
+    DeclaredType declaredType = (DeclaredType) type;
+    declaredType.getTypeArguments().forEach(argument -> collectReferencedTypes(argument, visited));
+    TypeElement element = (TypeElement) declaredType.asElement();
+    String name = binaryName(element);
+    if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("org.apache.ibatis.")
+        || !visited.add(name)) {
+      return;
+    }
+    if (element.getKind() == ElementKind.CLASS || element.getKind() == ElementKind.ENUM) {
+      reflectionTypeNames.add(name);
+      // Nested properties are also accessed via reflection when mapping results
+      ElementFilter.fieldsIn(element.getEnclosedElements()).stream()
+          .filter(field -> !field.getModifiers().contains(Modifier.STATIC)).map(VariableElement::asType)
+          .forEach(fieldType -> collectReferencedTypes(fieldType, visited));
+      collectReferencedTypes(element.getSuperclass(), visited);
+    }
+  }
+
+  private void collectComponents(TypeElement type) {
+    if (isComponent(type)) {
+      reflectionTypeNames.add(binaryName(type));
+    }
+    ElementFilter.typesIn(type.getEnclosedElements()).forEach(this::collectComponents);
+  }
+
+  private boolean isComponent(TypeElement type) {
+    if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+      return false;
+    }
+    if (type.getAnnotationMirrors().stream()
+        .anyMatch(annotation -> annotation.getAnnotationType().toString().equals(ALIAS_ANNOTATION))) {
+      return true;
+    }
+    TypeMirror erasure = processingEnv.getTypeUtils().erasure(type.asType());
+    return COMPONENT_TYPES.stream().map(processingEnv.getElementUtils()::getTypeElement).filter(Objects::nonNull)
+        .map(componentType -> processingEnv.getTypeUtils().erasure(componentType.asType()))
+        .anyMatch(componentType -> processingEnv.getTypeUtils().isAssignable(erasure, componentType));
+  }
+
+  private String binaryName(TypeElement element) {
+    return processingEnv.getElementUtils().getBinaryName(element).toString();
+  }
+
+  private void writeNativeImageConfigs(Set<String> mergedMapperNames) {
+    // The types that no longer referenced are kept until the next full compilation because the types referenced from
+    // mapper methods are collected only when the mapper is processed
+    Set<String> mergedReflectionTypeNames = mergeEntries(reflectionTypeNames, readReflectionTypeNames(),
+        Collections.emptySet());
+    if (mergedMapperNames.isEmpty() && mergedReflectionTypeNames.isEmpty()) {
+      return;
+    }
+    // Mapper xml file and its pre-parsed binary form that bound with mapper interface
+    Set<String> resourcePatterns = mergedMapperNames.stream()
+        .map(mapperName -> "\\Q" + mapperName.replace('.', '/') + ".xml\\E.*")
+        .collect(Collectors.toCollection(TreeSet::new));
+    // The indexes are read instead of scanning the classpath that is not supported on the native image
+    resourcePatterns.add("\\Q" + MAPPER_INDEX + "\\E");
+    resourcePatterns.add("\\Q" + TYPE_INDEX + "\\E");
+    String resources = processingEnv.getOptions().get(NATIVE_IMAGE_RESOURCES_OPTION);
+    if (resources != null) {
+      Arrays.stream(resources.split(",")).map(String::trim).filter(pattern -> !pattern.isEmpty())
+          .forEach(resourcePatterns::add);
+    }
+    writeResource(REFLECT_CONFIG,
+        mergedReflectionTypeNames.stream().map(name -> "  {\n    \"name\" : " + quote(name) + ",\n"
+            + "    \"allDeclaredConstructors\" : true,\n    \"allPublicConstructors\" : true,\n"
+            + "    \"allDeclaredMethods\" : true,\n    \"allPublicMethods\" : true,\n"
+            + "    \"allDeclaredFields\" : true,\n    \"allPublicFields\" : true\n  }")
+            .collect(Collectors.joining(",\n", "[\n", "\n]\n")));
+    writeResource(PROXY_CONFIG, mergedMapperNames.stream()
+        .map(name -> "  [ " + quote(name) + " ]").collect(Collectors.joining(",\n", "[\n", "\n]\n")));
+    writeResource(RESOURCE_CONFIG,
+        resourcePatterns.stream().map(pattern -> "    { \"pattern\" : " + quote(pattern) + " }")
+            .collect(Collectors.joining(",\n", "{\n  \"resources\" : [\n", "\n  ]\n}\n")));
+  }
+
+  private static String quote(String value) {
+    return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+  }
+
+  /**
+   * Read the type names from the {@code reflect-config.json} that written by the previous compilation.
+   */
+  private List<String> readReflectionTypeNames() {
+    return readResource(REFLECT_CONFIG).stream().map(REFLECT_CONFIG_ENTRY::matcher).filter(Matcher::find)
+        .map(matcher -> matcher.group(1)).collect(Collectors.toList());
+  }
+
+  /**
+   * Merge the entries of this compilation with the index that written by the previous compilation.
+   * <p>
+   * On an incremental compilation, only changed sources are processed, so the existing entries are kept unless the
+   * type is processed in this compilation or no longer exists.
+   */
+  private Set<String> mergeIndex(String resourceName, Set<String> entries, Set<String> processedTypeNames) {
+    return mergeEntries(entries, readResource(resourceName), processedTypeNames);
+  }
+
+  private Set<String> mergeEntries(Set<String> entries, List<String> previousEntries, Set<String> processedTypeNames) {
+    Set<String> mergedEntries = new TreeSet<>(entries);
+    previousEntries.stream().filter(entry -> {
+      String name = entryName(entry);
+      return !processedTypeNames.contains(name)
+          && processingEnv.getElementUtils().getTypeElement(name.replace('$', '.')) != null;
+    }).forEach(mergedEntries::add);
+    return mergedEntries;
+  }
+
+  private static String entryName(String entry) {
+    int index = entry.indexOf(':');
+    return index == -1 ? entry : entry.substring(0, index);
+  }
+
+  private List<String> readResource(String resourceName) {
+    try {
+      FileObject resource = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", resourceName);
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(resource.openInputStream(), StandardCharsets.UTF_8))) {
+        return reader.lines().map(String::trim).filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .collect(Collectors.toList());
+      }
+    } catch (IOException e) {
+      // The resource does not exist on a full compilation
+      return Collections.emptyList();
+    }
+  }
+
+  private void writeIndex(String resourceName, Collection<String> entries) {
+    if (entries.isEmpty()) {
+      return;
+    }
+    writeResource(resourceName, entries.stream().map(entry -> entry + "\n").collect(Collectors.joining()));
+  }
+
+  private void writeResource(String resourceName, String content) {
+    try {
+      FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", resourceName);
+      try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+        writer.write(content);
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Fail to write the MyBatis resource [" + resourceName + "]. Cause: " + e);
+    }
+  }
+
+}
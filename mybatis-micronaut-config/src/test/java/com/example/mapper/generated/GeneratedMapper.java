@@ -0,0 +1,40 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.example.mapper.generated;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+@Mapper
+public interface GeneratedMapper {
+
+  @Select("SELECT DATABASE()")
+  String selectDatabaseName();
+
+  @Select("SELECT DATABASE()")
+  Optional<String> selectOptionalDatabaseName();
+
+  @Select("SELECT DATABASE()")
+  List<String> selectDatabaseNames();
+
+  @Select("SELECT CAST(#{a} AS INT) + CAST(#{b} AS INT)")
+  int sum(@Param("a") int a, @Param("b") int b);
+
+}
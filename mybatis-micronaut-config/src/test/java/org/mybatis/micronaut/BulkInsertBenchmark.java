@@ -0,0 +1,145 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The JMH benchmark that compares the JDBC batch with the {@link BulkInsert}.
+ * <p>
+ * Each benchmark inserts 1000 rows within a transaction on the H2 in-memory database via the HikariCP. You can run it
+ * via the {@link #main(String[])} on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkInsertBenchmark {
+
+  private static final int ROWS = 1000;
+
+  private HikariDataSource dataSource;
+  private SqlSessionFactory sqlSessionFactory;
+  private List<String> names;
+  private List<Map<String, Object>> cities;
+
+  @Setup
+  public void setup() {
+    dataSource = new HikariDataSource();
+    dataSource.setJdbcUrl("jdbc:h2:mem:bulk-benchmark;DB_CLOSE_DELAY=-1");
+    dataSource.setUsername("sa");
+
+    Configuration configuration = new Configuration(
+        new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(BulkCityMapper.class);
+    BulkInsertInterceptor.install(configuration);
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+    names = IntStream.range(0, ROWS).mapToObj(i -> "city" + i).collect(Collectors.toList());
+    cities = names.stream().map(name -> {
+      Map<String, Object> city = new HashMap<>();
+      city.put("name", name);
+      return city;
+    }).collect(Collectors.toList());
+  }
+
+  @Setup(Level.Iteration)
+  public void createTable() throws SQLException {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("DROP TABLE IF EXISTS city");
+      statement.execute("CREATE TABLE city (id INT GENERATED BY DEFAULT AS IDENTITY, name VARCHAR(20))");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    dataSource.close();
+  }
+
+  @Benchmark
+  public int batch() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      BulkCityMapper mapper = sqlSession.getMapper(BulkCityMapper.class);
+      names.forEach(mapper::insert);
+      int size = sqlSession.flushStatements().size();
+      sqlSession.commit();
+      return size;
+    }
+  }
+
+  @Benchmark
+  public int bulk() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      int count = sqlSession.getMapper(BulkCityMapper.class).insertAll(cities);
+      sqlSession.commit();
+      return count;
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(BulkInsertBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  interface BulkCityMapper {
+
+    @Insert("INSERT INTO city (name) VALUES (#{name})")
+    void insert(String name);
+
+    @Insert("INSERT INTO city (name) VALUES (#{name})")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    @BulkInsert
+    int insertAll(Collection<Map<String, Object>> cities);
+
+  }
+
+}
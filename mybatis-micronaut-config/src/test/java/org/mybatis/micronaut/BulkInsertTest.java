@@ -0,0 +1,126 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BulkInsertTest {
+
+  @Test
+  void insertRowsPerChunkAndSetGeneratedKeys() throws SQLException {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1");
+    dataSource.setUser("sa");
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("DROP TABLE IF EXISTS city");
+      statement.execute("CREATE TABLE city (id INT GENERATED BY DEFAULT AS IDENTITY, name VARCHAR(20))");
+    }
+    Configuration configuration = new Configuration(new Environment("bulk", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(BulkCityMapper.class);
+    BulkInsertInterceptor.install(configuration);
+    StatementCountInterceptor statementCounter = new StatementCountInterceptor();
+    configuration.addInterceptor(statementCounter);
+    SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+    List<Map<String, Object>> cities = Stream.of("Tokyo", "Osaka", "Nagoya", "Kyoto", "Kobe").map(name -> {
+      Map<String, Object> city = new HashMap<>();
+      city.put("name", name);
+      return city;
+    }).collect(Collectors.toList());
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+      BulkCityMapper mapper = sqlSession.getMapper(BulkCityMapper.class);
+      Assertions.assertEquals(5, mapper.insertAll(cities));
+      Assertions.assertEquals(0, mapper.insertAll(Collections.emptyList()));
+    }
+    // Expanded into the multi-row insert statements per chunk(2 + 2 + 1 rows)
+    Assertions.assertEquals(3, statementCounter.count.get());
+    Assertions.assertEquals(Arrays.asList(1, 2, 3, 4, 5),
+        cities.stream().map(city -> city.get("id")).collect(Collectors.toList()));
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT name FROM city ORDER BY id")) {
+      for (Map<String, Object> city : cities) {
+        Assertions.assertTrue(resultSet.next());
+        Assertions.assertEquals(city.get("name"), resultSet.getString(1));
+      }
+      Assertions.assertFalse(resultSet.next());
+    }
+  }
+
+  interface BulkCityMapper {
+
+    @Insert("INSERT INTO city (name) VALUES (#{name})")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    @BulkInsert(chunkSize = 2)
+    int insertAll(Collection<Map<String, Object>> cities);
+
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class,
+      Integer.class }))
+  static class StatementCountInterceptor implements Interceptor {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      count.incrementAndGet();
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+      // NOP
+    }
+
+  }
+
+}
@@ -0,0 +1,144 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.context.ApplicationContext;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CacheInvalidationTest {
+
+  @Test
+  void invalidateCachesOnOtherNodes() {
+    LoopbackCacheInvalidationTransport transport = new LoopbackCacheInvalidationTransport();
+    try (CacheInvalidationBus bus1 = new CacheInvalidationBus(transport, Duration.ofHours(1));
+        CacheInvalidationBus bus2 = new CacheInvalidationBus(transport, Duration.ofHours(1))) {
+      Configuration configuration1 = newConfiguration();
+      Configuration configuration2 = newConfiguration();
+      bus1.install("default", configuration1);
+      bus2.install("default", configuration2);
+
+      Cache cache1 = configuration1.getCache("cities");
+      Cache cache2 = configuration2.getCache("cities");
+      Assertions.assertEquals(InvalidatingCache.class, cache1.getClass());
+      Assertions.assertEquals("default:cities", ((InvalidatingCache) cache1).getRegion());
+      Assertions.assertSame(cache1, configuration1.getMappedStatement("cities.select").getCache());
+      cache1.putObject("1", "Tokyo");
+      cache2.putObject("1", "Tokyo");
+      configuration2.getCache("countries").putObject("1", "Japan");
+
+      // The flushes within the batch interval are coalesced into one message
+      cache1.clear();
+      cache1.clear();
+      configuration1.getCache("countries").clear();
+      Assertions.assertNull(cache1.getObject("1"));
+      Assertions.assertEquals("Tokyo", cache2.getObject("1"));
+      bus1.flush();
+      Assertions.assertEquals(1, bus1.getPublishedMessageCount());
+      Assertions.assertEquals(1, bus2.getReceivedMessageCount());
+      Assertions.assertEquals(0, bus1.getReceivedMessageCount());
+      Assertions.assertNull(cache2.getObject("1"));
+      Assertions.assertNull(configuration2.getCache("countries").getObject("1"));
+    }
+  }
+
+  @Test
+  void sendAndReceiveViaUdp() throws IOException, InterruptedException {
+    int port1;
+    int port2;
+    try (DatagramSocket socket1 = new DatagramSocket(0); DatagramSocket socket2 = new DatagramSocket(0)) {
+      port1 = socket1.getLocalPort();
+      port2 = socket2.getLocalPort();
+    }
+    try (
+        UdpCacheInvalidationTransport transport1 = new UdpCacheInvalidationTransport(
+            new InetSocketAddress("127.0.0.1", port1),
+            Collections.singletonList(new InetSocketAddress("127.0.0.1", port2)));
+        UdpCacheInvalidationTransport transport2 = new UdpCacheInvalidationTransport(
+            new InetSocketAddress("127.0.0.1", port2),
+            Collections.singletonList(new InetSocketAddress("127.0.0.1", port1)))) {
+      BlockingQueue<CacheInvalidationMessage> messages = new LinkedBlockingQueue<>();
+      // The failure of a listener does not affect other listeners and subsequent messages
+      transport2.subscribe(message -> {
+        throw new IllegalStateException("test!");
+      });
+      transport2.subscribe(messages::add);
+
+      // The large message is split into multiple datagrams
+      Set<String> regions = IntStream.range(0, 100).mapToObj(i -> "default:com.example.mapper.Mapper" + i)
+          .collect(Collectors.toCollection(LinkedHashSet::new));
+      transport1.send(new CacheInvalidationMessage("node1", regions));
+      Set<String> received = new HashSet<>();
+      while (received.size() < regions.size()) {
+        CacheInvalidationMessage message = messages.poll(5, TimeUnit.SECONDS);
+        Assertions.assertNotNull(message);
+        Assertions.assertEquals("node1", message.getNodeId());
+        received.addAll(message.getRegions());
+      }
+      Assertions.assertEquals(regions, received);
+    }
+  }
+
+  @Test
+  void whenCacheInvalidationIsEnabledShouldDecorateCaches() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mapper-packages", new String[] {});
+    properties.put("mybatis.default.caches.cities.maximum-size", 100);
+    properties.put("mybatis-cache-invalidation.enabled", true);
+    properties.put("mybatis-cache-invalidation.transport", "loopback");
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      Cache cache = context.getBean(SqlSessionFactory.class).getConfiguration().getCache("cities");
+      Assertions.assertEquals(InvalidatingCache.class, cache.getClass());
+      Assertions.assertEquals(CaffeineCache.class, ((InvalidatingCache) cache).getDelegate().getClass());
+      Assertions.assertEquals(LoopbackCacheInvalidationTransport.class,
+          context.getBean(CacheInvalidationTransport.class).getClass());
+    }
+  }
+
+  private static Configuration newConfiguration() {
+    Configuration configuration = new Configuration();
+    Cache cities = new CaffeineCache("cities");
+    configuration.addCache(cities);
+    configuration.addCache(new CaffeineCache("countries"));
+    configuration.addMappedStatement(new MappedStatement.Builder(configuration, "cities.select",
+        new StaticSqlSource(configuration, "SELECT 1"), SqlCommandType.SELECT).cache(cities).build());
+    return configuration;
+  }
+
+}
@@ -0,0 +1,61 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CaffeineCacheTest {
+
+  @Test
+  void recordHitMissAndEviction() {
+    CaffeineCache cache = new CaffeineCache("cities", 2, null, null);
+    cache.putObject("1", "Tokyo");
+    cache.putObject("2", "Osaka");
+    Assertions.assertEquals("Tokyo", cache.getObject("1"));
+    Assertions.assertNull(cache.getObject("3"));
+
+    // The null value that put by the TransactionalCache is treated as removing
+    cache.putObject("2", null);
+    Assertions.assertNull(cache.getObject("2"));
+
+    for (int i = 3; i <= 10; i++) {
+      cache.putObject(String.valueOf(i), "City" + i);
+    }
+    cache.cleanUp();
+    Assertions.assertEquals(2, cache.getSize());
+
+    CacheStats stats = cache.getStats();
+    Assertions.assertEquals(1, stats.hitCount());
+    Assertions.assertEquals(2, stats.missCount());
+    Assertions.assertTrue(stats.evictionCount() > 0);
+
+    cache.clear();
+    cache.cleanUp();
+    Assertions.assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void removeObject() {
+    CaffeineCache cache = new CaffeineCache("cities");
+    cache.putObject("1", "Tokyo");
+    Assertions.assertEquals("Tokyo", cache.removeObject("1"));
+    Assertions.assertNull(cache.removeObject("1"));
+  }
+
+}
@@ -0,0 +1,69 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.CacheException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CompactSerializerTest {
+
+  @Test
+  void serializeAndDeserialize() {
+    Map<String, Object> row = new HashMap<>();
+    row.put("id", 1);
+    row.put("name", "Tokyo");
+    row.put("population", -13_960_000L);
+    row.put("area", new BigDecimal("2194.07"));
+    row.put("updatedAt", new Timestamp(1_556_000_000_123L));
+    row.put("createdAt", LocalDateTime.of(2019, 5, 1, 9, 30));
+    row.put("unit", TimeUnit.SECONDS);
+    row.put("uuid", UUID.randomUUID());
+    row.put("bytes", new byte[] { 1, 2, 3 });
+    row.put("empty", null);
+    List<Object> rows = new ArrayList<>();
+    rows.add(row);
+    rows.add(row);
+    row.put("rows", rows);
+
+    List<?> restored = (List<?>) CompactSerializer.deserialize(CompactSerializer.serialize(rows));
+    Map<?, ?> restoredRow = (Map<?, ?>) restored.get(0);
+    for (String key : new String[] { "id", "name", "population", "area", "updatedAt", "createdAt", "unit", "uuid" }) {
+      Assertions.assertEquals(row.get(key), restoredRow.get(key), key);
+    }
+    Assertions.assertArrayEquals((byte[]) row.get("bytes"), (byte[]) restoredRow.get("bytes"));
+    Assertions.assertTrue(restoredRow.containsKey("empty"));
+    // The shared and circular references are restored
+    Assertions.assertSame(restoredRow, restored.get(1));
+    Assertions.assertSame(restored, restoredRow.get("rows"));
+  }
+
+  @Test
+  void whenObjectIsNotSerializableShouldThrowCacheException() {
+    Assertions.assertThrows(CacheException.class, () -> CompactSerializer.serialize(new Object()));
+  }
+
+}
@@ -0,0 +1,144 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.micronaut.core.annotation.Introspected;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.MethodInvoker;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IntrospectedFactoryTest {
+
+  @Test
+  void createObjectViaIntrospection() {
+    ObjectFactory objectFactory = new IntrospectedObjectFactory();
+    Assertions.assertEquals(Item.class, objectFactory.create(Item.class).getClass());
+    ImmutableItem item = objectFactory.create(ImmutableItem.class, Arrays.asList(Integer.class, String.class),
+        Arrays.asList(1, "Pen"));
+    Assertions.assertEquals(Integer.valueOf(1), item.getId());
+    Assertions.assertEquals("Pen", item.getName());
+    Assertions.assertEquals(ArrayList.class, objectFactory.create(List.class).getClass());
+  }
+
+  @Test
+  void accessPropertyViaIntrospection() {
+    ReflectorFactory reflectorFactory = new IntrospectedReflectorFactory();
+    Item item = new Item();
+    MetaObject metaObject = MetaObject.forObject(item, new IntrospectedObjectFactory(),
+        new DefaultObjectWrapperFactory(), reflectorFactory);
+    metaObject.setValue("name", "Pen");
+    Assertions.assertEquals("Pen", item.getName());
+    Assertions.assertEquals("Pen", metaObject.getValue("name"));
+    Assertions.assertEquals(String.class, metaObject.getGetterType("name"));
+    Assertions.assertFalse(reflectorFactory.findForClass(Item.class).getGetInvoker("name") instanceof MethodInvoker);
+    Assertions.assertFalse(reflectorFactory.findForClass(Item.class).getSetInvoker("name") instanceof MethodInvoker);
+    Assertions.assertSame(reflectorFactory.findForClass(Item.class), reflectorFactory.findForClass(Item.class));
+  }
+
+  @Test
+  void analyzeIntrospectedTypeViaReflectionOnlyWhenRequired() {
+    ReflectorFactory reflectorFactory = new IntrospectedReflectorFactory();
+    Reflector reflector = reflectorFactory.findForClass(FieldItem.class);
+    Assertions.assertEquals(FieldItem.class, reflector.getType());
+    Assertions.assertEquals("name", reflector.findPropertyName("NAME"));
+    Assertions.assertTrue(reflector.hasGetter("name"));
+    Assertions.assertEquals(String.class, reflector.getSetterType("name"));
+    Assertions.assertFalse(reflector.getGetInvoker("name") instanceof MethodInvoker);
+    Assertions.assertNull(SystemMetaObject.forObject(reflector).getValue("reflectiveReflector"));
+
+    // The field without the accessor method is accessed via the reflection
+    FieldItem item = new FieldItem();
+    MetaObject metaObject = MetaObject.forObject(item, new IntrospectedObjectFactory(),
+        new DefaultObjectWrapperFactory(), reflectorFactory);
+    metaObject.setValue("code", "P1");
+    Assertions.assertEquals("P1", item.code);
+    Assertions.assertNotNull(SystemMetaObject.forObject(reflector).getValue("reflectiveReflector"));
+    Assertions.assertTrue(
+        Arrays.asList(reflector.getGetablePropertyNames()).containsAll(Arrays.asList("name", "code")));
+  }
+
+  @Test
+  void accessPropertyViaReflectionWhenNotIntrospected() {
+    ReflectorFactory reflectorFactory = new IntrospectedReflectorFactory();
+    Assertions.assertTrue(
+        reflectorFactory.findForClass(PlainItem.class).getGetInvoker("name") instanceof MethodInvoker);
+  }
+
+  @Introspected
+  public static class Item {
+    private String name;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
+
+  @Introspected
+  public static class ImmutableItem {
+    private final Integer id;
+    private final String name;
+
+    public ImmutableItem(Integer id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+
+    public Integer getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
+  @Introspected
+  public static class FieldItem {
+    private String name;
+    public String code;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
+
+  public static class PlainItem {
+    private String name;
+
+    public String getName() {
+      return name;
+    }
+  }
+
+}
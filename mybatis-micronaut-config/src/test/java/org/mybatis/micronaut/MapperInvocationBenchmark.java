@@ -0,0 +1,116 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.example.mapper.generated.GeneratedMapper;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The JMH benchmark that compares the MyBatis's mapper proxy with the generated mapper implementation.
+ * <p>
+ * This benchmark uses the {@link SqlSession} that returns fixed results without accessing the database for
+ * measuring the overhead of the mapper invocation only. You can run it via the {@link #main(String[])} on the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperInvocationBenchmark {
+
+  private GeneratedMapper proxyMapper;
+  private GeneratedMapper generatedMapper;
+
+  @Setup
+  public void setup() {
+    Configuration configuration = new Configuration();
+    configuration.addMapper(GeneratedMapper.class);
+    Map<String, Object> results = new HashMap<>();
+    results.put(GeneratedMapper.class.getName() + ".selectDatabaseName", "DEFAULT");
+    results.put(GeneratedMapper.class.getName() + ".sum", 3);
+    SqlSession sqlSession = new FixedResultSqlSession(configuration, results);
+    proxyMapper = configuration.getMapper(GeneratedMapper.class, sqlSession);
+    generatedMapper = GeneratedMapperSupport.getMapper(GeneratedMapper.class, sqlSession);
+  }
+
+  @Benchmark
+  public String proxyWithoutParam() {
+    return proxyMapper.selectDatabaseName();
+  }
+
+  @Benchmark
+  public String generatedWithoutParam() {
+    return generatedMapper.selectDatabaseName();
+  }
+
+  @Benchmark
+  public int proxyWithParams() {
+    return proxyMapper.sum(1, 2);
+  }
+
+  @Benchmark
+  public int generatedWithParams() {
+    return generatedMapper.sum(1, 2);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(MapperInvocationBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  private static class FixedResultSqlSession extends DefaultSqlSession {
+
+    private final Map<String, Object> results;
+
+    private FixedResultSqlSession(Configuration configuration, Map<String, Object> results) {
+      super(configuration, null);
+      this.results = results;
+    }
+
+    @Override
+    public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
+      getConfiguration().getMappedStatement(statement);
+      @SuppressWarnings("unchecked")
+      E result = (E) results.get(statement);
+      return Collections.singletonList(result);
+    }
+
+  }
+
+}
@@ -0,0 +1,80 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MapperXmlPrecompilerTest {
+
+  @Test
+  void loadPreparsedMapperXml() throws IOException {
+    Path directory = Files.createTempDirectory("mybatis-micronaut");
+    Path xmlFile = copyMapperXml(directory);
+
+    Assertions.assertEquals(1, MapperXmlPrecompiler.precompile(directory));
+    Assertions.assertTrue(Files.exists(directory.resolve("UserMapper.xml" + MapperXmlDocument.PREPARSED_EXTENSION)));
+
+    MapperXmlDocument document = MapperXmlDocument.load(xmlFile.toUri().toURL());
+    Assertions.assertTrue(document.isPreparsed());
+    Configuration configuration = new Configuration();
+    document.parse(configuration);
+    Assertions.assertTrue(configuration.hasStatement("com.example.mapper.user.UserMapper.selectDatabaseName"));
+    Assertions.assertEquals("SELECT DATABASE()", configuration
+        .getMappedStatement("com.example.mapper.user.UserMapper.selectDatabaseName").getBoundSql(null).getSql().trim());
+  }
+
+  @Test
+  void loadMapperXmlWhenPreparsedMapperXmlIsStale() throws IOException {
+    Path directory = Files.createTempDirectory("mybatis-micronaut");
+    Path xmlFile = copyMapperXml(directory);
+    MapperXmlPrecompiler.precompile(directory);
+    Files.write(xmlFile, "\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+    MapperXmlDocument document = MapperXmlDocument.load(xmlFile.toUri().toURL());
+    Assertions.assertFalse(document.isPreparsed());
+    Configuration configuration = new Configuration();
+    document.parse(configuration);
+    Assertions.assertTrue(configuration.hasStatement("com.example.mapper.user.UserMapper.selectDatabaseName"));
+  }
+
+  @Test
+  void loadMapperXmlWhenPreparsedMapperXmlDoesNotExist() throws IOException {
+    Path directory = Files.createTempDirectory("mybatis-micronaut");
+    Path xmlFile = copyMapperXml(directory);
+
+    MapperXmlDocument document = MapperXmlDocument.load(xmlFile.toUri().toURL());
+    Assertions.assertFalse(document.isPreparsed());
+  }
+
+  private Path copyMapperXml(Path directory) throws IOException {
+    Path xmlFile = directory.resolve("UserMapper.xml");
+    try (InputStream in = getClass().getClassLoader()
+        .getResourceAsStream("com/example/mapper/user/UserMapper.xml")) {
+      Files.copy(in, xmlFile);
+    }
+    return xmlFile;
+  }
+
+}
@@ -17,18 +17,27 @@ package org.mybatis.micronaut;
 
 import javax.sql.DataSource;
 import java.io.IOException;
+import java.lang.reflect.Proxy;
 import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.stream.Collectors;
 
+import com.example.mapper.generated.GeneratedMapper;
 import com.example.mapper.mail.MailMapper;
 import com.example.mapper.phone.PhoneMapper;
 import com.example.mapper.user.UserMapper;
 import com.zaxxer.hikari.HikariDataSource;
 import io.micronaut.context.ApplicationContext;
 import io.micronaut.context.exceptions.BeanInstantiationException;
+import io.micronaut.context.exceptions.NoSuchBeanException;
 import io.micronaut.inject.qualifiers.Qualifiers;
+import org.apache.ibatis.annotations.One;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.Results;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.executor.Executor;
@@ -37,7 +46,9 @@ import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
 import org.apache.ibatis.mapping.DatabaseIdProvider;
 import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.FetchType;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.plugin.Interceptor;
 import org.apache.ibatis.plugin.Intercepts;
 import org.apache.ibatis.plugin.Invocation;
@@ -72,6 +83,7 @@ import org.mybatis.micronaut.typehandler.UUIDTypeHandler;
 import org.mybatis.micronaut.typehandler.city.CityTypeHandler;
 import org.mybatis.micronaut.typehandler.country.CountryTypeHandler;
 import org.mybatis.micronaut.typehandler.region.RegionTypeHandler;
+import org.mybatis.spring.SqlSessionTemplate;
 
 class MyBatisFactoryBeanTest {
 
@@ -103,6 +115,35 @@ class MyBatisFactoryBeanTest {
     }
   }
 
+  @Test
+  void whenMapperImplementationIsGeneratedShouldRegisterItAsMapperBean() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mapper-packages", new String[] {});
+    properties.put("mybatis.default.mappers", new Class[] { GeneratedMapper.class });
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      {
+        CityMapper mapper = context.getBean(CityMapper.class);
+        Assertions.assertEquals(CityMapper.class.getName() + "$MyBatisMapper", mapper.getClass().getName());
+        Assertions.assertEquals(1, mapper.select());
+        Assertions.assertEquals("DEFAULT", mapper.selectDatabaseName());
+      }
+      {
+        GeneratedMapper mapper = context.getBean(GeneratedMapper.class);
+        Assertions.assertEquals(GeneratedMapper.class.getName() + "$MyBatisMapper", mapper.getClass().getName());
+        Assertions.assertEquals("DEFAULT", mapper.selectDatabaseName());
+        Assertions.assertEquals(Optional.of("DEFAULT"), mapper.selectOptionalDatabaseName());
+        Assertions.assertEquals(Collections.singletonList("DEFAULT"), mapper.selectDatabaseNames());
+        Assertions.assertEquals(3, mapper.sum(1, 2));
+      }
+      {
+        // Mapper that has only xml based statements is not generated
+        RegionMapper mapper = context.getBean(RegionMapper.class);
+        Assertions.assertTrue(Proxy.isProxyClass(mapper.getClass()));
+        Assertions.assertEquals(3, mapper.select());
+      }
+    }
+  }
+
   @Test
   void whenMapperPackageIsSpecifyShouldScanOnlyFromSpecifiedPackage() {
     Map<String, Object> properties = new HashMap<>();
@@ -146,6 +187,68 @@ class MyBatisFactoryBeanTest {
     }
   }
 
+  @Test
+  void whenParallelMapperXmlParsingIsEnabledShouldApplyToSqlSessionFactory() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.parallel-mapper-xml-parsing", true);
+    properties.put("mybatis.default.mappers", new Class[] { UserMapper.class });
+    properties.put("mybatis.default.mapper-xml-base-paths",
+        new String[] { "META-INF/mappers/mail", "META-INF/mappers/phone" });
+    properties.put("mybatis.default.mapper-xml-files", new String[] { "MailMapper.xml", "PhoneMapper.xml" });
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      Assertions.assertTrue(context.getBean(MyBatisConfiguration.class).isParallelMapperXmlParsing());
+      SqlSessionFactory factory = context.getBean(SqlSessionFactory.class);
+      Assertions.assertEquals(6, factory.getConfiguration().getMapperRegistry().getMappers().size());
+      Assertions.assertTrue(factory.getConfiguration().getMapperRegistry().getMappers().contains(UserMapper.class));
+      Assertions.assertTrue(factory.getConfiguration().getMapperRegistry().getMappers().contains(MailMapper.class));
+      Assertions.assertTrue(factory.getConfiguration().getMapperRegistry().getMappers().contains(PhoneMapper.class));
+      Assertions.assertTrue(
+          factory.getConfiguration().hasStatement("com.example.mapper.user.UserMapper.selectDatabaseName"));
+    }
+  }
+
+  @Test
+  void whenParallelMapperXmlParsingIsEnabledShouldResolveForwardCrossNamespaceReferences() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.parallel-mapper-xml-parsing", true);
+    properties.put("mybatis.default.mapper-packages", new String[] {});
+    properties.put("mybatis.default.mapper-xml-base-paths", new String[] { "META-INF/mappers/crossref" });
+    // The 'crossref.First' references the 'crossref.Second' that declared later
+    properties.put("mybatis.default.mapper-xml-files", new String[] { "FirstMapper.xml", "SecondMapper.xml" });
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      Configuration configuration = context.getBean(SqlSessionFactory.class).getConfiguration();
+      MappedStatement statement = configuration.getMappedStatement("crossref.First.selectAll");
+      // cache-ref
+      Assertions.assertSame(configuration.getCache("crossref.Second"), statement.getCache());
+      // include refid
+      Assertions.assertEquals("SELECT id, name FROM city",
+          statement.getBoundSql(null).getSql().replaceAll("\\s+", " ").trim());
+      // resultMap extends
+      Assertions.assertEquals(new HashSet<>(Arrays.asList("id", "name")),
+          configuration.getResultMap("crossref.First.detail").getResultMappings().stream()
+              .map(ResultMapping::getProperty).collect(Collectors.toSet()));
+      Assertions.assertSame(configuration.getResultMap("crossref.First.detail"),
+          statement.getResultMaps().get(0));
+    }
+  }
+
+  @Test
+  void whenParallelMapperXmlParsingIsEnabledShouldFailOnUnresolvableReferenceAtStartup() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.parallel-mapper-xml-parsing", true);
+    properties.put("mybatis.default.mapper-packages", new String[] {});
+    properties.put("mybatis.default.mapper-xml-base-paths", new String[] { "META-INF/mappers/crossref" });
+    properties.put("mybatis.default.mapper-xml-files", new String[] { "BrokenMapper.xml" });
+    BeanInstantiationException exception = Assertions.assertThrows(BeanInstantiationException.class,
+        () -> ApplicationContext.build("default").properties(properties).start());
+    Throwable cause = exception;
+    while (cause != null && !(cause instanceof IncompleteElementException)) {
+      cause = cause.getCause();
+    }
+    Assertions.assertNotNull(cause, "The unresolvable reference should fail at startup.");
+    Assertions.assertTrue(cause.getMessage().contains("crossref.Missing.columns"));
+  }
+
   @Test
   void whenMapperXmlFilesNotFoundShouldThrowIllegalArgumentException() {
     Map<String, Object> properties = new HashMap<>();
@@ -211,6 +314,75 @@ class MyBatisFactoryBeanTest {
     }
   }
 
+  @Test
+  void whenExecutorTypesAreSpecifiedShouldConfigureSqlSessionTemplateAndMappersPerExecutorType() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mapper-packages", new String[] { "org.mybatis.micronaut.mapper.city" });
+    properties.put("mybatis.default.executor-types", new String[] { "REUSE", "BATCH" });
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      Assertions.assertEquals(ExecutorType.SIMPLE,
+          context.getBean(SqlSessionTemplate.class, Qualifiers.byName("default")).getExecutorType());
+      Assertions.assertEquals(ExecutorType.REUSE,
+          context.getBean(SqlSessionTemplate.class, Qualifiers.byName("default-reuse")).getExecutorType());
+      Assertions.assertEquals(ExecutorType.BATCH,
+          context.getBean(SqlSessionTemplate.class, Qualifiers.byName("default-batch")).getExecutorType());
+
+      CityMapper mapper = context.getBean(CityMapper.class, Qualifiers.byName("default-reuse"));
+      Assertions.assertNotSame(context.getBean(CityMapper.class, Qualifiers.byName("default")), mapper);
+      Assertions.assertEquals("DEFAULT", mapper.selectDatabaseName());
+    }
+  }
+
+  @Test
+  void whenTemplateNameIsSpecifiedShouldShareMappingModel() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mapper-packages",
+        new String[] { "org.mybatis.micronaut.mapper.city", "org.mybatis.micronaut.mapper.country" });
+    properties.put("mybatis.default.mapper-xml-base-paths", new String[] { "META-INF/mappers/mail" });
+    properties.put("mybatis.default.mapper-xml-files", new String[] { "MailMapper.xml" });
+    properties.put("mybatis.2nd.template-name", "default");
+    try (ApplicationContext context = ApplicationContext.build("default", "2nd").properties(properties).start()) {
+      Configuration template = context.getBean(SqlSessionFactory.class, Qualifiers.byName("default"))
+          .getConfiguration();
+      Configuration shared = context.getBean(SqlSessionFactory.class, Qualifiers.byName("2nd")).getConfiguration();
+      Assertions.assertNotSame(template, shared);
+      Assertions.assertEquals("2nd", shared.getEnvironment().getId());
+      Assertions.assertEquals(template.getMapperRegistry().getMappers(), shared.getMapperRegistry().getMappers());
+      // The statements are bound to each configuration, but the parsed sql and mappings are shared
+      String id = CityMapper.class.getName() + ".selectDatabaseName";
+      MappedStatement templateStatement = template.getMappedStatement(id);
+      MappedStatement sharedStatement = shared.getMappedStatement(id);
+      Assertions.assertSame(shared, sharedStatement.getConfiguration());
+      Assertions.assertSame(templateStatement.getSqlSource(), sharedStatement.getSqlSource());
+      Assertions.assertSame(templateStatement.getResultMaps(), sharedStatement.getResultMaps());
+      Assertions.assertSame(
+          template.getMappedStatement("com.example.mapper.mail.MailMapper.selectDatabaseName").getSqlSource(),
+          shared.getMappedStatement("com.example.mapper.mail.MailMapper.selectDatabaseName").getSqlSource());
+      Assertions.assertEquals("DEFAULT",
+          context.getBean(CityMapper.class, Qualifiers.byName("default")).selectDatabaseName());
+      Assertions.assertEquals("2ND", context.getBean(CityMapper.class, Qualifiers.byName("2nd")).selectDatabaseName());
+      Assertions.assertEquals("2ND",
+          context.getBean(CountryMapper.class, Qualifiers.byName("2nd")).selectDatabaseName());
+    }
+  }
+
+  @Test
+  void whenTemplateNameIsSpecifiedShouldLazyLoadFromOwnDataSource() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mapper-packages", new String[] { "org.mybatis.micronaut.mapper.country" });
+    properties.put("mybatis.default.mappers", new Class[] { LazyCountryMapper.class });
+    properties.put("mybatis.2nd.template-name", "default");
+    try (ApplicationContext context = ApplicationContext.build("default", "2nd").properties(properties).start()) {
+      // The nested query is executed after the session has been closed
+      LazyDatabaseName template = context.getBean(LazyCountryMapper.class, Qualifiers.byName("default"))
+          .selectLazyDatabaseName();
+      LazyDatabaseName shared = context.getBean(LazyCountryMapper.class, Qualifiers.byName("2nd"))
+          .selectLazyDatabaseName();
+      Assertions.assertEquals("2ND", shared.getDatabaseName());
+      Assertions.assertEquals("DEFAULT", template.getDatabaseName());
+    }
+  }
+
   @Test
   void whenSpecifyDataSourceNameShouldLookupSpecifiedDataSource() {
     Map<String, Object> properties = new HashMap<>();
@@ -256,6 +428,53 @@ class MyBatisFactoryBeanTest {
         .contains("No bean of type [javax.sql.DataSource] exists for the given qualifier: @Named('2nd')."));
   }
 
+  @Test
+  void whenLazyInitIsEnabledShouldConfigureSqlSessionFactoryOnFirstUse() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mapper-packages", new String[] {});
+    properties.put("mybatis.default.lazy-init", true);
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      Assertions.assertTrue(context.getBean(MyBatisConfiguration.class).isLazyInit());
+      LazySqlSessionFactory factory = (LazySqlSessionFactory) context.getBean(SqlSessionFactory.class);
+      Assertions.assertFalse(factory.isInitialized());
+      CityMapper mapper = context.getBean(CityMapper.class, Qualifiers.byName("default"));
+      Assertions.assertFalse(factory.isInitialized());
+      Assertions.assertEquals("DEFAULT", mapper.selectDatabaseName());
+      Assertions.assertTrue(factory.isInitialized());
+      Assertions.assertEquals(3, factory.getConfiguration().getMapperRegistry().getMappers().size());
+    }
+  }
+
+  @Test
+  void whenLazyInitIsEnabledShouldRegisterMapperBoundViaMapperXmlFile() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mapper-xml-base-paths", new String[] { "META-INF/mappers/mail" });
+    properties.put("mybatis.default.mapper-xml-files", new String[] { "MailMapper.xml" });
+    properties.put("mybatis.default.lazy-init", true);
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      LazySqlSessionFactory factory = (LazySqlSessionFactory) context.getBean(SqlSessionFactory.class);
+      Assertions.assertTrue(factory.getMapperTypes().contains(MailMapper.class));
+      MailMapper mapper = context.getBean(MailMapper.class, Qualifiers.byName("default"));
+      Assertions.assertFalse(factory.isInitialized());
+      Assertions.assertEquals("DEFAULT", mapper.selectDatabaseName());
+      Assertions.assertTrue(factory.isInitialized());
+    }
+  }
+
+  @Test
+  void whenLazyInitIsEnabledShouldNotLookupDataSourceOnStartup() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mapper-packages", new String[] {});
+    properties.put("mybatis.default.data-source-name", "2nd");
+    properties.put("mybatis.default.lazy-init", true);
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      SqlSessionFactory factory = context.getBean(SqlSessionFactory.class);
+      NoSuchBeanException exception = Assertions.assertThrows(NoSuchBeanException.class, factory::openSession);
+      Assertions.assertTrue(exception.getMessage()
+          .contains("No bean of type [javax.sql.DataSource] exists for the given qualifier: @Named('2nd')."));
+    }
+  }
+
   @Test
   void whenSpecifyMyBatisCoreConfigurationPropertyShouldApplyToSqlSessionFactory() {
     Map<String, Object> properties = new HashMap<>();
@@ -292,9 +511,10 @@ class MyBatisFactoryBeanTest {
       SqlSessionFactory factory = context.getBean(SqlSessionFactory.class);
       Assertions.assertEquals("default", factory.getConfiguration().getEnvironment().getId());
       Assertions.assertEquals(JavassistProxyFactory.class, factory.getConfiguration().getProxyFactory().getClass());
-      Assertions.assertEquals(DefaultReflectorFactory.class,
+      Assertions.assertEquals(IntrospectedReflectorFactory.class,
           factory.getConfiguration().getReflectorFactory().getClass());
-      Assertions.assertEquals(DefaultObjectFactory.class, factory.getConfiguration().getObjectFactory().getClass());
+      Assertions.assertEquals(IntrospectedObjectFactory.class,
+          factory.getConfiguration().getObjectFactory().getClass());
       Assertions.assertEquals(DefaultObjectWrapperFactory.class,
           factory.getConfiguration().getObjectWrapperFactory().getClass());
       Assertions.assertEquals(XMLLanguageDriver.class,
@@ -386,6 +606,23 @@ class MyBatisFactoryBeanTest {
     }
   }
 
+  @Test
+  void whenCachesAreSpecifiedShouldRegisterCachePerNamespace() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mapper-packages", new String[] {});
+    properties.put("mybatis.default.caches." + CityMapper.class.getName() + ".maximum-size", 100);
+    properties.put("mybatis.default.caches." + CityMapper.class.getName() + ".expire-after-write", "10m");
+    properties.put("mybatis.default.caches.countries.expire-after-access", "30s");
+    properties.put("mybatis.default.caches.regions.off-heap-size", "1MB");
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      Configuration configuration = context.getBean(SqlSessionFactory.class).getConfiguration();
+      Assertions.assertEquals(CaffeineCache.class, configuration.getCache(CityMapper.class.getName()).getClass());
+      Assertions.assertEquals(CaffeineCache.class, configuration.getCache("countries").getClass());
+      Assertions.assertEquals(TieredCache.class, configuration.getCache("regions").getClass());
+      Assertions.assertEquals(CityMapper.class.getName(), configuration.getCache(CityMapper.class.getName()).getId());
+    }
+  }
+
   @Test
   void normalForSqlSessionFactoryWithJdbcBasedTx() throws IOException, SQLException {
     Map<String, Object> properties = new HashMap<>();
@@ -404,6 +641,41 @@ class MyBatisFactoryBeanTest {
   private static class MyObjectFactory extends DefaultObjectFactory {
   }
 
+  interface LazyCountryMapper {
+
+    @Select("SELECT DATABASE()")
+    String selectDatabaseName();
+
+    @Select("SELECT 1 AS id")
+    @Results({ @Result(property = "id", column = "id"), @Result(property = "databaseName", column = "id",
+        one = @One(select = "selectDatabaseName", fetchType = FetchType.LAZY)) })
+    LazyDatabaseName selectLazyDatabaseName();
+
+  }
+
+  public static class LazyDatabaseName {
+
+    private int id;
+    private String databaseName;
+
+    public int getId() {
+      return id;
+    }
+
+    public void setId(int id) {
+      this.id = id;
+    }
+
+    public String getDatabaseName() {
+      return databaseName;
+    }
+
+    public void setDatabaseName(String databaseName) {
+      this.databaseName = databaseName;
+    }
+
+  }
+
   private static class MyObjectWrapperFactory extends DefaultObjectWrapperFactory {
   }
 
@@ -0,0 +1,246 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.context.env.Environment;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mybatis.micronaut.domain.City;
+import org.mybatis.micronaut.domain.Country;
+import org.mybatis.micronaut.domain.Entity;
+import org.mybatis.micronaut.domain.Region;
+import org.mybatis.micronaut.domain.Status;
+import org.mybatis.micronaut.mapper.city.CityMapper;
+import org.mybatis.micronaut.mapper.country.CountryMapper;
+import org.mybatis.micronaut.mapper.region.RegionMapper;
+import org.mybatis.micronaut.processor.MyBatisIndexProcessor;
+import org.mybatis.micronaut.typehandler.PathTypeHandler;
+import org.mybatis.micronaut.typehandler.UUIDTypeHandler;
+import org.mybatis.micronaut.typehandler.city.CityTypeHandler;
+import org.mybatis.micronaut.typehandler.country.CountryTypeHandler;
+import org.mybatis.micronaut.typehandler.region.RegionTypeHandler;
+
+class MyBatisIndexTest {
+
+  @Test
+  void findMappersFromIndex() {
+    try (ApplicationContext context = ApplicationContext.build().start()) {
+      MyBatisIndex index = MyBatisIndex.load(context.getEnvironment()).orElseThrow(IllegalStateException::new);
+      Collection<Class<?>> mappers = index.findMappers("org.mybatis.micronaut").orElseThrow(IllegalStateException::new);
+      Assertions.assertEquals(new HashSet<>(Arrays.asList(CityMapper.class, CountryMapper.class, RegionMapper.class)),
+          new HashSet<>(mappers));
+      Assertions.assertEquals(Arrays.asList(CityMapper.class),
+          index.findMappers("org.mybatis.micronaut.mapper.city").orElseThrow(IllegalStateException::new));
+      Assertions.assertFalse(index.findMappers("org.mybatis.micronaut.mapper.ci").isPresent());
+      Assertions.assertFalse(index.findMappers("com.example.mapper.user").isPresent());
+    }
+  }
+
+  @Test
+  void scanPackagesNotCoveredByIndexOnlyWhenEnabled() throws IOException {
+    Path mapperIndex = Files.createTempFile("mapper", ".index");
+    try (ApplicationContext context = ApplicationContext.build().start()) {
+      Files.write(mapperIndex, Collections.singletonList(CityMapper.class.getName()), StandardCharsets.UTF_8);
+      URL mapperIndexUrl = mapperIndex.toUri().toURL();
+      Environment environment = context.getEnvironment();
+      // The index that contains only the mapper under the 'city' package(as if the 'country' package is in other jar)
+      Environment partiallyIndexedEnvironment = (Environment) Proxy.newProxyInstance(getClass().getClassLoader(),
+          new Class<?>[] { Environment.class }, (proxy, method, args) -> {
+            if (method.getName().equals("getResources") && MyBatisIndexProcessor.MAPPER_INDEX.equals(args[0])) {
+              return Stream.of(mapperIndexUrl);
+            }
+            try {
+              return method.invoke(environment, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+          });
+      MyBatisConfiguration configuration = new MyBatisConfiguration(partiallyIndexedEnvironment);
+      configuration.setMapperPackages(
+          new String[] { "org.mybatis.micronaut.mapper.city", "org.mybatis.micronaut.mapper.country" });
+
+      // The index is authoritative by default
+      Assertions.assertEquals(Collections.singleton(CityMapper.class), new HashSet<>(configuration.findMappers()));
+
+      configuration.setScanUnindexedMapperPackages(true);
+      Assertions.assertEquals(new HashSet<>(Arrays.asList(CityMapper.class, CountryMapper.class)),
+          new HashSet<>(configuration.findMappers()));
+    } finally {
+      Files.delete(mapperIndex);
+    }
+  }
+
+  @Test
+  void loadIndexOncePerEnvironment() {
+    try (ApplicationContext context = ApplicationContext.build().start()) {
+      MyBatisIndex index = MyBatisIndex.load(context.getEnvironment()).orElseThrow(IllegalStateException::new);
+      Assertions.assertSame(index, MyBatisIndex.load(context.getEnvironment()).orElseThrow(IllegalStateException::new));
+    }
+  }
+
+  @Test
+  void findTypeAliasesFromIndex() {
+    try (ApplicationContext context = ApplicationContext.build().start()) {
+      MyBatisIndex index = MyBatisIndex.load(context.getEnvironment()).orElseThrow(IllegalStateException::new);
+      Assertions.assertEquals(new HashSet<>(Arrays.asList(City.class, Country.class, Region.class)),
+          new HashSet<>(index.findTypeAliases("org.mybatis.micronaut.domain", Entity.class)
+              .orElseThrow(IllegalStateException::new)));
+      Assertions.assertEquals(new HashSet<>(Arrays.asList(City.class, Country.class, Region.class, Status.class)),
+          new HashSet<>(index.findTypeAliases("org.mybatis.micronaut.domain", Object.class)
+              .orElseThrow(IllegalStateException::new)));
+      Assertions.assertFalse(index.findTypeAliases("com.example.domain", Object.class).isPresent());
+    }
+  }
+
+  @Test
+  void findTypeHandlersFromIndex() {
+    try (ApplicationContext context = ApplicationContext.build().start()) {
+      MyBatisIndex index = MyBatisIndex.load(context.getEnvironment()).orElseThrow(IllegalStateException::new);
+      Assertions.assertEquals(
+          new HashSet<>(Arrays.asList(CityTypeHandler.class, CountryTypeHandler.class, RegionTypeHandler.class,
+              UUIDTypeHandler.class, PathTypeHandler.class)),
+          new HashSet<>(
+              index.findTypeHandlers("org.mybatis.micronaut.typehandler").orElseThrow(IllegalStateException::new)));
+      Assertions.assertEquals(Arrays.asList(CityTypeHandler.class),
+          index.findTypeHandlers("org.mybatis.micronaut.typehandler.city").orElseThrow(IllegalStateException::new));
+      Assertions.assertTrue(
+          index.findTypeHandlers("org.mybatis.micronaut.domain").orElseThrow(IllegalStateException::new).isEmpty());
+    }
+  }
+
+  @Test
+  void generateNativeImageConfigs() throws IOException {
+    String reflectConfig = readResource(MyBatisIndexProcessor.NATIVE_IMAGE_DIRECTORY + "/reflect-config.json");
+    Assertions.assertTrue(reflectConfig.contains("\"" + CityMapper.class.getName() + "\""));
+    Assertions.assertTrue(reflectConfig.contains("\"" + UUIDTypeHandler.class.getName() + "\""));
+    String proxyConfig = readResource(MyBatisIndexProcessor.NATIVE_IMAGE_DIRECTORY + "/proxy-config.json");
+    Assertions.assertTrue(proxyConfig.contains("[ \"" + CityMapper.class.getName() + "\" ]"));
+    String resourceConfig = readResource(MyBatisIndexProcessor.NATIVE_IMAGE_DIRECTORY + "/resource-config.json");
+    Assertions.assertTrue(resourceConfig.contains("\\\\Qorg/mybatis/micronaut/mapper/region/RegionMapper.xml\\\\E"));
+    Assertions.assertTrue(resourceConfig.contains("\\\\Q" + MyBatisIndexProcessor.MAPPER_INDEX + "\\\\E"));
+    Assertions.assertTrue(resourceConfig.contains("\\\\Q" + MyBatisIndexProcessor.TYPE_INDEX + "\\\\E"));
+  }
+
+  @Test
+  void includeIndexesInStaticNativeImageConfig() throws IOException {
+    String resourceConfig = readResource(
+        "META-INF/native-image/org.mybatis.micronaut/mybatis-micronaut-config/resource-config.json");
+    Assertions.assertTrue(resourceConfig.contains("\\\\Q" + MyBatisIndexProcessor.MAPPER_INDEX + "\\\\E"));
+    Assertions.assertTrue(resourceConfig.contains("\\\\Q" + MyBatisIndexProcessor.TYPE_INDEX + "\\\\E"));
+  }
+
+  @Test
+  void mergeIndexesOnIncrementalCompilation() throws IOException {
+    Path sourceDir = Files.createTempDirectory("sources");
+    Path outputDir = Files.createTempDirectory("classes");
+    try {
+      Path fooMapper = writeSource(sourceDir, "FooMapper", "@org.apache.ibatis.annotations.Mapper"
+          + " public interface FooMapper { Foo find(); }");
+      Path foo = writeSource(sourceDir, "Foo", "public class Foo { }");
+      Path barMapper = writeSource(sourceDir, "BarMapper", "@org.apache.ibatis.annotations.Mapper"
+          + " public interface BarMapper { Bar find(); }");
+      Path bar = writeSource(sourceDir, "Bar", "public class Bar { }");
+
+      compile(outputDir, fooMapper, foo);
+      // Only changed sources are compiled on an incremental compilation
+      compile(outputDir, barMapper, bar);
+
+      String mapperIndex = new String(Files.readAllBytes(outputDir.resolve(MyBatisIndexProcessor.MAPPER_INDEX)),
+          StandardCharsets.UTF_8);
+      Assertions.assertEquals(Arrays.asList("com.example.inc.BarMapper", "com.example.inc.FooMapper"),
+          Arrays.asList(mapperIndex.trim().split("\n")));
+
+      Path nativeImageDir = outputDir.resolve(MyBatisIndexProcessor.NATIVE_IMAGE_DIRECTORY);
+      String reflectConfig = new String(Files.readAllBytes(nativeImageDir.resolve("reflect-config.json")),
+          StandardCharsets.UTF_8);
+      Assertions.assertTrue(reflectConfig.contains("\"com.example.inc.FooMapper\""));
+      Assertions.assertTrue(reflectConfig.contains("\"com.example.inc.Foo\""));
+      Assertions.assertTrue(reflectConfig.contains("\"com.example.inc.BarMapper\""));
+      Assertions.assertTrue(reflectConfig.contains("\"com.example.inc.Bar\""));
+      String proxyConfig = new String(Files.readAllBytes(nativeImageDir.resolve("proxy-config.json")),
+          StandardCharsets.UTF_8);
+      Assertions.assertTrue(proxyConfig.contains("[ \"com.example.inc.FooMapper\" ]"));
+      Assertions.assertTrue(proxyConfig.contains("[ \"com.example.inc.BarMapper\" ]"));
+      String resourceConfig = new String(Files.readAllBytes(nativeImageDir.resolve("resource-config.json")),
+          StandardCharsets.UTF_8);
+      Assertions.assertTrue(resourceConfig.contains("\\\\Qcom/example/inc/FooMapper.xml\\\\E"));
+      Assertions.assertTrue(resourceConfig.contains("\\\\Qcom/example/inc/BarMapper.xml\\\\E"));
+    } finally {
+      delete(sourceDir);
+      delete(outputDir);
+    }
+  }
+
+  private Path writeSource(Path sourceDir, String simpleName, String declaration) throws IOException {
+    Path source = sourceDir.resolve(simpleName + ".java");
+    Files.write(source, ("package com.example.inc; " + declaration).getBytes(StandardCharsets.UTF_8));
+    return source;
+  }
+
+  private void compile(Path outputDir, Path... sources) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    List<String> arguments = new ArrayList<>(Arrays.asList("-d", outputDir.toString(), "-classpath",
+        System.getProperty("java.class.path") + File.pathSeparator + outputDir, "-processor",
+        MyBatisIndexProcessor.class.getName(), "-Amybatis.mapperImplementation=false"));
+    Arrays.stream(sources).map(Path::toString).forEach(arguments::add);
+    Assertions.assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[0])));
+  }
+
+  private void delete(Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  private String readResource(String name) throws IOException {
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream(name)) {
+      Assertions.assertNotNull(in, name);
+      byte[] bytes = new byte[8192];
+      StringBuilder content = new StringBuilder();
+      int length;
+      while ((length = in.read(bytes)) != -1) {
+        content.append(new String(bytes, 0, length, StandardCharsets.UTF_8));
+      }
+      return content.toString();
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.context.ApplicationContext;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mybatis.micronaut.mapper.city.CityMapper;
+
+class MyBatisStartupReportTest {
+
+  @Test
+  void recordElapsedTimeOfEachPhase() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.type-alias-packages", new String[] { "org.mybatis.micronaut.domain" });
+    properties.put("mybatis.default.mapper-packages", new String[] { "org.mybatis.micronaut.mapper.city" });
+    properties.put("mybatis.default.mapper-xml-base-paths", new String[] { "META-INF/mappers/mail" });
+    properties.put("mybatis.default.mapper-xml-files", new String[] { "MailMapper.xml" });
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      context.getBean(SqlSessionFactory.class);
+      Collection<MyBatisStartupReport.FactoryReport> reports = context.getBean(MyBatisStartupEndpoint.class)
+          .getFactoryReports();
+      Assertions.assertEquals(1, reports.size());
+      MyBatisStartupReport.FactoryReport report = reports.iterator().next();
+      Assertions.assertEquals("default", report.getName());
+      Assertions.assertTrue(report.getTotalNanos() > 0);
+      Assertions.assertEquals(
+          Arrays.asList("type-aliases", "type-handlers", "factories", "interceptors", "language-drivers", "caches",
+              "database-id", "customizers", "mappers", "mapper-xml-files", "reactive-statements",
+              "bulk-insert-statements", "stale-while-revalidate-statements", "cache-invalidation"),
+          report.getPhases().stream().map(MyBatisStartupReport.PhaseReport::getName).collect(Collectors.toList()));
+      Assertions.assertTrue(report.getPhases().get(0).getDetails().containsKey("package:org.mybatis.micronaut.domain"));
+      Assertions.assertTrue(
+          report.getPhases().get(8).getDetails().containsKey("package:org.mybatis.micronaut.mapper.city"));
+      Assertions.assertTrue(report.getPhases().get(8).getDetails().containsKey("mapper:" + CityMapper.class.getName()));
+      List<String> xmlDetails = new ArrayList<>(report.getPhases().get(9).getDetails().keySet());
+      Assertions.assertEquals(1, xmlDetails.size());
+      Assertions.assertTrue(xmlDetails.get(0).startsWith("xml:"));
+      Assertions.assertTrue(xmlDetails.get(0).endsWith("META-INF/mappers/mail/MailMapper.xml"));
+    }
+  }
+
+  @Test
+  void bindElapsedTimeOfEachPhaseToMeterRegistry() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.lazy-init", true);
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      SimpleMeterRegistry registry = new SimpleMeterRegistry();
+      context.getBean(MyBatisStartupMetrics.class).bindTo(registry);
+      Assertions.assertNull(registry.find(MyBatisStartupMetrics.METRIC_NAME).tag("phase", "total").timeGauge());
+
+      // The lazy SqlSessionFactory is bound on first use
+      context.getBean(SqlSessionFactory.class).getConfiguration();
+      TimeGauge total = registry.find(MyBatisStartupMetrics.METRIC_NAME).tags("factory", "default", "phase", "total")
+          .timeGauge();
+      Assertions.assertNotNull(total);
+      Assertions.assertTrue(total.value(TimeUnit.NANOSECONDS) > 0);
+      Assertions.assertNotNull(registry.find(MyBatisStartupMetrics.METRIC_NAME).tag("phase", "mappers").timeGauge());
+    }
+  }
+
+}
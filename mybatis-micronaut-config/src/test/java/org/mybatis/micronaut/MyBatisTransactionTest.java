@@ -0,0 +1,220 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.inject.qualifiers.Qualifiers;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.micronaut.mapper.city.CityMapper;
+import org.mybatis.micronaut.service.MyBatisTransactionalCityService;
+
+class MyBatisTransactionTest {
+
+  private JdbcDataSource dataSource;
+  private MyBatisTransactionManager transactionManager;
+
+  @BeforeEach
+  void setup() throws SQLException {
+    dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:tx;DB_CLOSE_DELAY=-1");
+    dataSource.setUser("sa");
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("DROP TABLE IF EXISTS city");
+      statement.execute("CREATE TABLE city (id INT GENERATED BY DEFAULT AS IDENTITY, name VARCHAR(20))");
+    }
+    Configuration configuration = new Configuration(new Environment("tx", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(CityMapper.class);
+    configuration.addMapper(SessionCityMapper.class);
+    SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    transactionManager = new MyBatisTransactionManager("tx", sqlSessionFactory);
+  }
+
+  @Test
+  void commitAndRollbackViaAnnotation() throws SQLException {
+    try (ApplicationContext context = ApplicationContext.build("default").start()) {
+      context.registerSingleton(MyBatisTransactionManager.class, transactionManager, Qualifiers.byName("tx"));
+      MyBatisTransactionalCityService service = context.getBean(MyBatisTransactionalCityService.class);
+
+      service.create("Tokyo", () -> {
+      });
+      Assertions.assertEquals(1, countCities());
+      Assertions.assertThrows(IllegalStateException.class, () -> service.create("Osaka", () -> {
+        throw new IllegalStateException("test!");
+      }));
+      Assertions.assertEquals(1, countCities());
+      Assertions.assertFalse(transactionManager.isTransactionActive());
+
+      // The nested method joins the outer transaction
+      service.createTwice("Nagoya");
+      Assertions.assertEquals(3, countCities());
+    }
+  }
+
+  @Test
+  void rollbackNestedWriteWithinReadOnlyTransaction() throws SQLException {
+    try (ApplicationContext context = ApplicationContext.build("default").start()) {
+      context.registerSingleton(MyBatisTransactionManager.class, transactionManager, Qualifiers.byName("tx"));
+      MyBatisTransactionalCityService service = context.getBean(MyBatisTransactionalCityService.class);
+
+      // The read-write method joins the read-only transaction, and its write is rolled back with it
+      Assertions.assertThrows(IllegalStateException.class,
+          () -> transactionManager.executeInTransaction(true, () -> service.create("Tokyo", () -> {
+            throw new IllegalStateException("test!");
+          })));
+      Assertions.assertEquals(0, countCities());
+      Assertions.assertFalse(transactionManager.isTransactionActive());
+
+      // The read-only transaction is not an auto-commit session, so the writes are committed at the end
+      transactionManager.executeInTransaction(true, () -> service.createTwice("Osaka"));
+      Assertions.assertEquals(2, countCities());
+    }
+  }
+
+  @Test
+  void bindOneSqlSessionAndConnectionPerTransaction() throws SQLException {
+    String city = transactionManager.executeInTransaction(() -> {
+      SqlSession sqlSession = transactionManager.getCurrentSqlSession().orElseThrow(IllegalStateException::new);
+      sqlSession.getMapper(CityMapper.class).insert("Tokyo");
+      // The nested transaction joins the outer transaction
+      Assertions.assertSame(sqlSession.getConnection(), transactionManager.executeInTransaction(
+          () -> transactionManager.getCurrentSqlSession().map(SqlSession::getConnection).orElse(null)));
+      return "Tokyo";
+    });
+    Assertions.assertEquals("Tokyo", city);
+    Assertions.assertFalse(transactionManager.getCurrentSqlSession().isPresent());
+    Assertions.assertEquals(1, countCities());
+  }
+
+  @Test
+  void keepExceptionOfActionWhenRollbackFails() {
+    SqlSession sqlSession = (SqlSession) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { SqlSession.class }, (proxy, method, args) -> {
+          if (method.getName().equals("rollback")) {
+            throw new PersistenceException("rollback!");
+          }
+          return null;
+        });
+    SqlSessionFactory sqlSessionFactory = (SqlSessionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { SqlSessionFactory.class }, (proxy, method, args) -> sqlSession);
+    MyBatisTransactionManager manager = new MyBatisTransactionManager("failure", sqlSessionFactory);
+
+    IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+        () -> manager.executeInTransaction(() -> {
+          throw new IllegalStateException("test!");
+        }));
+    Assertions.assertEquals(1, e.getSuppressed().length);
+    Assertions.assertEquals("rollback!", e.getSuppressed()[0].getMessage());
+    Assertions.assertFalse(manager.isTransactionActive());
+  }
+
+  @Test
+  void shareSqlSessionViaTransactionalSqlSession() throws SQLException {
+    SessionCityMapper mapper = new TransactionalSqlSession(transactionManager).getMapper(SessionCityMapper.class);
+
+    // Each invocation is executed with a new auto-commit session outside of a transaction
+    mapper.insert("Tokyo");
+    Assertions.assertEquals(1, countCities());
+    mapper.updateVariable("Tokyo");
+    Assertions.assertNull(mapper.selectVariable());
+
+    // All invocations share the same session and connection within a transaction
+    String city = transactionManager.executeInTransaction(() -> {
+      mapper.updateVariable("Osaka");
+      mapper.insert("Osaka");
+      return mapper.selectVariable();
+    });
+    Assertions.assertEquals("Osaka", city);
+    Assertions.assertEquals(2, countCities());
+
+    Assertions.assertThrows(UnsupportedOperationException.class,
+        () -> new TransactionalSqlSession(transactionManager).commit());
+  }
+
+  @Test
+  void executeInBatchViaAnnotation() throws SQLException {
+    try (ApplicationContext context = ApplicationContext.build("default").start()) {
+      context.registerSingleton(MyBatisTransactionManager.class, transactionManager, Qualifiers.byName("tx"));
+      MyBatisTransactionalCityService service = context.getBean(MyBatisTransactionalCityService.class);
+      CityMapper mapper = GeneratedMapperSupport.getMapper(CityMapper.class,
+          MyBatisBatchScope.wrap(new TransactionalSqlSession(transactionManager),
+              transactionManager.getSqlSessionFactory()));
+
+      List<BatchResult> batchResults = service.createInBatch(() -> {
+        mapper.insert("Tokyo");
+        mapper.insert("Osaka"); // Flush on reaching the threshold
+        mapper.insert("Nagoya");
+        Assertions.assertEquals(1, mapper.select()); // Flush before select
+      });
+      Assertions.assertEquals(2, batchResults.size());
+      Assertions.assertEquals(Arrays.asList("Tokyo", "Osaka"), batchResults.get(0).getParameterObjects());
+      Assertions.assertArrayEquals(new int[] { 1, 1 }, batchResults.get(0).getUpdateCounts());
+      Assertions.assertEquals(Collections.singletonList("Nagoya"), batchResults.get(1).getParameterObjects());
+      Assertions.assertEquals(3, countCities());
+      Assertions.assertFalse(MyBatisBatchScope.current().isPresent());
+
+      Assertions.assertThrows(IllegalStateException.class, () -> service.createInBatch(() -> {
+        mapper.insert("Kyoto");
+        throw new IllegalStateException("test!");
+      }));
+      Assertions.assertEquals(3, countCities());
+    }
+  }
+
+  private int countCities() throws SQLException {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM city")) {
+      resultSet.next();
+      return resultSet.getInt(1);
+    }
+  }
+
+  interface SessionCityMapper {
+
+    @Insert("INSERT INTO city (name) VALUES (#{city})")
+    void insert(String city);
+
+    @Update("SET @CITY = #{city}")
+    void updateVariable(String city);
+
+    @Select("SELECT @CITY")
+    String selectVariable();
+
+  }
+
+}
@@ -0,0 +1,100 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.core.convert.ConversionService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class NamespaceCachesTest {
+
+  @Test
+  void registerCachePerNamespace() {
+    Map<String, Object> cities = new HashMap<>();
+    cities.put("maximumSize", 100);
+    cities.put("expire-after-write", "10m");
+    Map<String, Object> caches = new HashMap<>();
+    caches.put("cities", cities);
+    caches.put("countries", Collections.singletonMap("off-heap-size", "512KB"));
+    Map<String, Object> regions = new HashMap<>();
+    regions.put("soft-ttl", "1m");
+    regions.put("hardTtl", "10m");
+    caches.put("regions", regions);
+    Configuration configuration = new Configuration();
+    NamespaceCaches.install(configuration, caches, ConversionService.SHARED);
+    Assertions.assertEquals(CaffeineCache.class, configuration.getCache("cities").getClass());
+    Assertions.assertEquals(TieredCache.class, configuration.getCache("countries").getClass());
+    Assertions.assertEquals(RefreshingCache.class, configuration.getCache("regions").getClass());
+  }
+
+  @Test
+  void whenRefreshSettingsAreInvalidShouldThrowIllegalArgumentException() {
+    Map<String, Object> cities = new HashMap<>();
+    cities.put("soft-ttl", "10m");
+    cities.put("expire-after-write", "10m");
+    IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> NamespaceCaches.install(new Configuration(), Collections.singletonMap("cities", cities),
+            ConversionService.SHARED));
+    Assertions.assertEquals("The cache settings [soft-ttl, hard-ttl, negative-ttl] for 'cities' cannot be combined"
+        + " with 'expire-after-write', 'expire-after-access' and 'off-heap-size'.", e.getMessage());
+
+    e = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> NamespaceCaches.install(new Configuration(),
+            Collections.singletonMap("cities", Collections.singletonMap("soft-ttl", "10m")),
+            ConversionService.SHARED));
+    Assertions.assertEquals("The hard TTL for 'cities' should be greater than 0.", e.getMessage());
+  }
+
+  @Test
+  void whenSettingIsUnknownShouldThrowIllegalArgumentException() {
+    Configuration configuration = new Configuration();
+    IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> NamespaceCaches.install(configuration,
+            Collections.singletonMap("cities", Collections.singletonMap("maximum-weight", 100)),
+            ConversionService.SHARED));
+    Assertions.assertTrue(e.getMessage().startsWith("The cache setting 'cities.maximum-weight' is invalid."));
+  }
+
+  @Test
+  void whenSettingCannotConvertShouldThrowIllegalArgumentException() {
+    Configuration configuration = new Configuration();
+    IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> NamespaceCaches.install(configuration,
+            Collections.singletonMap("cities", Collections.singletonMap("maximumSize", "large")),
+            ConversionService.SHARED));
+    Assertions.assertEquals(
+        "The cache setting 'maximum-size' for 'cities' cannot convert to Long. value: large", e.getMessage());
+  }
+
+  @Test
+  void whenOffHeapSizeIsInvalidShouldThrowIllegalArgumentException() {
+    Configuration configuration = new Configuration();
+    IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> NamespaceCaches.install(configuration,
+            Collections.singletonMap("cities", Collections.singletonMap("off-heap-size", "1TB")),
+            ConversionService.SHARED));
+    Assertions.assertEquals(
+        "The cache setting 'off-heap-size' for 'cities' should be the number of bytes(such as 512MB). value: 1TB",
+        e.getMessage());
+  }
+
+}
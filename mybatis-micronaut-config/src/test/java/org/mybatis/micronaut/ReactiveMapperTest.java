@@ -0,0 +1,287 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.inject.qualifiers.Qualifiers;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.subscribers.TestSubscriber;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ReactiveMapperTest {
+
+  @Test
+  void executeReactiveMethodsOnReactiveExecutor() throws Exception {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mappers", new Class[] { ReactiveCountryMapper.class });
+    properties.put("mybatis.default.reactive-executor-size", 2);
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      ReactiveCountryMapper mapper = context.getBean(ReactiveCountryMapper.class);
+      Assertions.assertEquals(Arrays.asList(1, 2), mapper.selectNumbers().toList().blockingGet());
+      Assertions.assertTrue(mapper.selectNumbers().map(number -> Thread.currentThread().getName()).blockingFirst()
+          .startsWith("mybatis-reactive-default-"));
+      Assertions.assertEquals("DEFAULT", mapper.selectDatabaseNameAsSingle().blockingGet());
+      Assertions.assertEquals(Collections.singletonList("DEFAULT"), mapper.selectDatabaseNamesAsFuture().get());
+      Assertions.assertEquals(0, mapper.updateVariable("Japan").blockingGet().intValue());
+      // Non reactive methods are executed on the caller thread as usual
+      Assertions.assertEquals("DEFAULT", mapper.selectDatabaseName());
+
+      Assertions.assertEquals(2, context.getBean(ReactiveExecutor.class, Qualifiers.byName("default")).getSize());
+      Configuration configuration = context.getBean(SqlSessionFactory.class).getConfiguration();
+      Assertions.assertEquals(Integer.class, configuration.getMappedStatement(ReactiveCountryMapper.class.getName()
+          + ".selectNumbers" + ReactiveMapperHandler.STATEMENT_SUFFIX).getResultMaps().get(0).getType());
+    }
+  }
+
+  @Test
+  void streamRowsViaCursor() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mappers", new Class[] { StreamingCountryMapper.class });
+    properties.put("mybatis.default.reactive-executor-size", 1);
+    properties.put("mybatis.default.stream-fetch-size", 100);
+    properties.put("datasources.default.maximum-pool-size", 2);
+    properties.put("datasources.default.connection-timeout", 1000);
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      StreamingCountryMapper mapper = context.getBean(StreamingCountryMapper.class);
+      Assertions.assertEquals(100000L, mapper.selectRange(100000).count().blockingGet().longValue());
+      Assertions.assertEquals(Arrays.asList(1L, 2L, 3L), mapper.selectRange(100000).take(3).toList().blockingGet());
+      // The cursor and session are closed on cancellation(leaked connections would exhaust the pool)
+      for (int i = 0; i < 20; i++) {
+        Assertions.assertEquals(1L, mapper.selectRange(100000).blockingFirst().longValue());
+      }
+
+      Configuration configuration = context.getBean(SqlSessionFactory.class).getConfiguration();
+      Assertions.assertEquals(100, configuration.getMappedStatement(StreamingCountryMapper.class.getName()
+          + ".selectRange" + ReactiveMapperHandler.STATEMENT_SUFFIX).getFetchSize().intValue());
+      Assertions.assertNull(configuration.getMappedStatement(StreamingCountryMapper.class.getName() + ".selectRange")
+          .getFetchSize());
+    }
+  }
+
+  @Test
+  void cancelStatementOfCursorOnCancellation() {
+    AtomicInteger cancelCount = new AtomicInteger();
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:reactive-cancel;DB_CLOSE_DELAY=-1");
+    dataSource.setUser("sa");
+    Configuration configuration = new Configuration(new Environment("reactive-cancel", new JdbcTransactionFactory(),
+        recordCancel(dataSource, DataSource.class, cancelCount, null)));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      StreamingCountryMapper mapper = newReactiveMapper(configuration, executor);
+      Assertions.assertEquals(1L, mapper.selectRange(100000).blockingFirst().longValue());
+      Assertions.assertEquals(1, cancelCount.get());
+      // The stream that completes does not cancel the statement
+      Assertions.assertEquals(3L, mapper.selectRange(3).count().blockingGet().longValue());
+      Assertions.assertEquals(1, cancelCount.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void skipNullRowsWithinOneRequest() {
+    Configuration configuration = new Configuration(new Environment("reactive-null-rows",
+        new JdbcTransactionFactory(), new JdbcDataSource()));
+    configuration.addInterceptor(new NullRowsInterceptor());
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      TestSubscriber<Long> subscriber = newReactiveMapper(configuration, executor).selectRange(5).test(0);
+      // Each request receives a row even if null rows precede it
+      subscriber.request(1);
+      subscriber.awaitCount(1);
+      subscriber.request(1);
+      subscriber.awaitCount(2);
+      subscriber.request(1);
+      subscriber.awaitTerminalEvent();
+      subscriber.assertValues(1L, 2L).assertComplete();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static StreamingCountryMapper newReactiveMapper(Configuration configuration, ExecutorService executor) {
+    configuration.addMapper(StreamingCountryMapper.class);
+    ReactiveMapperHandler.addReactiveStatements(configuration, 100);
+    SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    // The streaming methods use only the session opened per stream
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    sqlSession.close();
+    return ReactiveMapperHandler.wrap(StreamingCountryMapper.class, sqlSession.getMapper(StreamingCountryMapper.class),
+        sqlSession, sqlSessionFactory, () -> executor);
+  }
+
+  private static <T> T recordCancel(Object target, Class<T> type, AtomicInteger cancelCount, Object statement) {
+    return type.cast(Proxy.newProxyInstance(ReactiveMapperTest.class.getClassLoader(), new Class<?>[] { type },
+        (proxy, method, args) -> {
+          if (method.getName().equals("cancel")) {
+            cancelCount.incrementAndGet();
+          }
+          if (statement != null && method.getName().equals("getStatement")) {
+            return statement;
+          }
+          Object result;
+          try {
+            result = method.invoke(target, args);
+          } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+          }
+          if (result instanceof Connection) {
+            return recordCancel(result, Connection.class, cancelCount, null);
+          }
+          if (result instanceof PreparedStatement) {
+            return recordCancel(result, PreparedStatement.class, cancelCount, null);
+          }
+          if (result instanceof ResultSet && proxy instanceof PreparedStatement) {
+            return recordCancel(result, ResultSet.class, cancelCount, proxy);
+          }
+          return result;
+        }));
+  }
+
+  interface ReactiveCountryMapper {
+
+    @Select("SELECT DATABASE()")
+    String selectDatabaseName();
+
+    @Select("SELECT 1 UNION ALL SELECT 2 ORDER BY 1")
+    Flowable<Integer> selectNumbers();
+
+    @Select("SELECT DATABASE()")
+    Single<String> selectDatabaseNameAsSingle();
+
+    @Select("SELECT DATABASE()")
+    CompletableFuture<List<String>> selectDatabaseNamesAsFuture();
+
+    @Update("SET @COUNTRY = #{country}")
+    Single<Integer> updateVariable(String country);
+
+  }
+
+  interface StreamingCountryMapper {
+
+    @Select("SELECT X FROM SYSTEM_RANGE(1, #{count})")
+    Flowable<Long> selectRange(long count);
+
+  }
+
+  @Intercepts(@Signature(type = Executor.class, method = "queryCursor", args = { MappedStatement.class,
+      Object.class, RowBounds.class }))
+  static class NullRowsInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) {
+      return new ListCursor(Arrays.asList(1L, null, 2L, null, null));
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+      // NOP
+    }
+
+  }
+
+  static class ListCursor implements Cursor<Object> {
+
+    private final List<Object> rows;
+    private boolean open = true;
+
+    ListCursor(List<Object> rows) {
+      this.rows = rows;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public boolean isConsumed() {
+      return false;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+      return -1;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+      return rows.iterator();
+    }
+
+    @Override
+    public void close() {
+      open = false;
+    }
+
+  }
+
+  @Test
+  void decideExecutorSizeFromPoolSize() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("datasources.default.maximum-pool-size", 4);
+    properties.put("mybatis.default.mapper-packages", new String[] { "org.mybatis.micronaut.mapper.country" });
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      Assertions.assertEquals(4, context.getBean(ReactiveExecutor.class, Qualifiers.byName("default")).getSize());
+    }
+  }
+
+}
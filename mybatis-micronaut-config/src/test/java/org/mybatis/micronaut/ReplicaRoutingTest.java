@@ -0,0 +1,152 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.inject.qualifiers.Qualifiers;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mybatis.micronaut.mapper.city.CityMapper;
+import org.mybatis.micronaut.service.MyBatisTransactionalCityService;
+
+class ReplicaRoutingTest {
+
+  @Test
+  void routeReadOnlyStatementsToReplicas() {
+    Map<String, Object> properties = new HashMap<>();
+    for (String replicaName : Arrays.asList("replica1", "replica2")) {
+      properties.put("datasources." + replicaName + ".url",
+          "jdbc:h2:mem:" + replicaName + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+      properties.put("datasources." + replicaName + ".username", "sa");
+      properties.put("datasources." + replicaName + ".password", "");
+      properties.put("datasources." + replicaName + ".driverClassName", "org.h2.Driver");
+    }
+    properties.put("mybatis.default.mappers", new Class[] { ReplicaCityMapper.class });
+    properties.put("mybatis.default.replica-data-source-names", new String[] { "replica1", "replica2" });
+    try (ApplicationContext context = ApplicationContext.build("default").properties(properties).start()) {
+      ReplicaCityMapper mapper = context.getBean(ReplicaCityMapper.class, Qualifiers.byName("default"));
+      Set<String> databaseNames = new HashSet<>();
+      for (int i = 0; i < 4; i++) {
+        databaseNames.add(mapper.selectDatabaseName());
+      }
+      Assertions.assertEquals(new HashSet<>(Arrays.asList("REPLICA1", "REPLICA2")), databaseNames);
+
+      SqlSessionFactory factory = context.getBean(SqlSessionFactory.class, Qualifiers.byName("default"));
+      // Registered after the last plugin phase
+      List<Interceptor> interceptors = factory.getConfiguration().getInterceptors();
+      Assertions.assertTrue(interceptors.get(interceptors.size() - 1) instanceof ReplicaRoutingInterceptor);
+      try (SqlSession session = factory.openSession()) {
+        ReplicaCityMapper sessionMapper = session.getMapper(ReplicaCityMapper.class);
+        Assertions.assertTrue(sessionMapper.selectDatabaseName().startsWith("REPLICA"));
+        // Stay on the primary after the first write
+        sessionMapper.updateVariable("Tokyo");
+        Assertions.assertEquals("DEFAULT", sessionMapper.selectDatabaseName());
+      }
+    }
+  }
+
+  @Test
+  void ejectReplicaThatFailsToGetConnection() {
+    AtomicInteger brokenInvocations = new AtomicInteger();
+    DataSource broken = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+          if (method.getName().equals("getConnection")) {
+            brokenInvocations.incrementAndGet();
+            throw new SQLException("Connection refused");
+          }
+          return method.getDeclaringClass() == Object.class ? method.invoke(this, args) : null;
+        });
+    ReplicaLoadBalancer loadBalancer = new ReplicaLoadBalancer(
+        Arrays.asList(broken, TestDataSources.newDataSource("replica")), Duration.ofMinutes(1));
+    Configuration configuration = new Configuration(new Environment("test",
+        new ReplicaRoutingTransactionFactory(new JdbcTransactionFactory(), loadBalancer, autoCommit -> autoCommit),
+        TestDataSources.newDataSource("primary")));
+    configuration.addInterceptor(new ReplicaRoutingInterceptor());
+    configuration.addMapper(CityMapper.class);
+    SqlSessionFactory factory = new SqlSessionFactoryBuilder().build(configuration);
+
+    for (int i = 0; i < 3; i++) {
+      try (SqlSession session = factory.openSession(true)) {
+        Assertions.assertEquals("REPLICA", session.getMapper(CityMapper.class).selectDatabaseName());
+      }
+    }
+    Assertions.assertEquals(1, brokenInvocations.get());
+    try (SqlSession session = factory.openSession()) {
+      // The session that is not auto-commit mode uses the primary
+      Assertions.assertEquals("PRIMARY", session.getMapper(CityMapper.class).selectDatabaseName());
+    }
+  }
+
+  @Test
+  void routeNonTransactionalAndReadOnlyCallsToReplicasWithJdbcBasedTx() {
+    ReplicaLoadBalancer loadBalancer = new ReplicaLoadBalancer(
+        Collections.singletonList(TestDataSources.newDataSource("replica")), Duration.ofMinutes(1));
+    Configuration configuration = new Configuration(new Environment("tx",
+        new ReplicaRoutingTransactionFactory(new JdbcTransactionFactory(), loadBalancer, autoCommit -> autoCommit),
+        TestDataSources.newDataSource("primary")));
+    configuration.addInterceptor(new ReplicaRoutingInterceptor());
+    configuration.addMapper(CityMapper.class);
+    MyBatisTransactionManager transactionManager = new MyBatisTransactionManager("tx",
+        new SqlSessionFactoryBuilder().build(configuration));
+    CityMapper mapper = new TransactionalSqlSession(transactionManager).getMapper(CityMapper.class);
+
+    // The call outside of a transaction is executed with an auto-commit session
+    Assertions.assertEquals("REPLICA", mapper.selectDatabaseName());
+    Assertions.assertEquals("PRIMARY", transactionManager.executeInTransaction(mapper::selectDatabaseName));
+    Assertions.assertEquals("REPLICA", transactionManager.executeInTransaction(true, mapper::selectDatabaseName));
+
+    try (ApplicationContext context = ApplicationContext.build("default").start()) {
+      context.registerSingleton(MyBatisTransactionManager.class, transactionManager, Qualifiers.byName("tx"));
+      MyBatisTransactionalCityService service = context.getBean(MyBatisTransactionalCityService.class);
+      Assertions.assertEquals("REPLICA", service.findDatabaseName());
+      // The read-only method joins the active transaction
+      Assertions.assertEquals("PRIMARY", transactionManager.executeInTransaction(service::findDatabaseName));
+    }
+  }
+
+  interface ReplicaCityMapper {
+
+    @Select("SELECT DATABASE()")
+    String selectDatabaseName();
+
+    @Update("SET @CITY = #{city}")
+    void updateVariable(String city);
+
+  }
+
+}
@@ -0,0 +1,132 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.context.exceptions.BeanInstantiationException;
+import io.micronaut.inject.qualifiers.Qualifiers;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ShardingTest {
+
+  @Test
+  void scatterGatherAndRouteByShardKey() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis.default.mapper-packages", new String[] { "org.mybatis.micronaut.mapper.city" });
+    properties.put("mybatis.default.mappers", new Class[] { ShardedCityMapper.class });
+    properties.put("mybatis.2nd.mapper-packages", new String[] { "org.mybatis.micronaut.mapper.city" });
+    properties.put("mybatis.2nd.mappers", new Class[] { ShardedCityMapper.class });
+    properties.put("mybatis-sharding.cities.shards", new String[] { "default", "2nd" });
+    try (ApplicationContext context = ApplicationContext.build("default", "2nd").properties(properties).start()) {
+      ShardRouter router = context.getBean(ShardRouter.class, Qualifiers.byName("cities"));
+      Assertions.assertEquals(Arrays.asList("default", "2nd"), router.getShardNames());
+
+      ShardedCityMapper mapper = context.getBean(ShardedCityMapper.class, Qualifiers.byName("cities"));
+      // Concatenate in shard order
+      Assertions.assertEquals(Arrays.asList("DEFAULT", "2ND"), mapper.selectDatabaseNames());
+      // Merge sorted results
+      Assertions.assertEquals(Arrays.asList("2ND", "DEFAULT"), mapper.selectSortedDatabaseNames());
+      // Route to a single shard
+      for (String city : Arrays.asList("Tokyo", "Osaka", "Nagoya", "Sapporo")) {
+        Assertions.assertEquals(router.route(city).toUpperCase(), mapper.selectDatabaseNameByCity(city));
+      }
+      // Numbers are summed
+      Assertions.assertEquals(2, mapper.select());
+      Assertions.assertEquals(6, mapper.sum(1, 2));
+      // A single result that returned by multiple shards is ambiguous
+      Assertions.assertThrows(TooManyResultsException.class, mapper::selectDatabaseName);
+      Assertions.assertEquals("Sharded mapper proxy for " + ShardedCityMapper.class.getName() + " on [default, 2nd]",
+          mapper.toString());
+    }
+  }
+
+  @Test
+  void whenShardsContainsGroupNameShouldFail() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("mybatis-sharding.default.shards", new String[] { "default" });
+    BeanInstantiationException exception = Assertions.assertThrows(BeanInstantiationException.class,
+        () -> ApplicationContext.build("default").properties(properties).start());
+    Assertions.assertTrue(
+        exception.getMessage().contains("The shards cannot contain the sharding group name 'default'."));
+  }
+
+  @Test
+  void routeEnumByName() {
+    ShardRouter router = new ShardRouter("test", Arrays.asList("shard1", "shard2", "shard3"));
+    Assertions.assertEquals("shard1", router.route(3));
+    Assertions.assertEquals("shard3", router.route(-1));
+    Assertions.assertEquals(router.route("SECONDS"), router.route(TimeUnit.SECONDS));
+  }
+
+  @Test
+  void routeSameNumberToSameShardRegardlessOfType() {
+    ShardRouter router = new ShardRouter("test", Arrays.asList("shard1", "shard2", "shard3"));
+    for (long value : new long[] { 0L, 1L, -1L, 7L, Integer.MAX_VALUE + 1L, Long.MIN_VALUE, Long.MAX_VALUE }) {
+      String shardName = router.route(value);
+      Assertions.assertEquals(shardName, router.route(BigInteger.valueOf(value)));
+      Assertions.assertEquals(shardName, router.route(BigDecimal.valueOf(value)));
+      Assertions.assertEquals(shardName, router.route(BigDecimal.valueOf(value).setScale(2)));
+      if (value == (int) value) {
+        Assertions.assertEquals(shardName, router.route((int) value));
+      }
+      if (value == (short) value) {
+        Assertions.assertEquals(shardName, router.route((short) value));
+      }
+      if (value == (double) value && Math.abs(value) < (1L << 53)) {
+        Assertions.assertEquals(shardName, router.route((double) value));
+      }
+    }
+    Assertions.assertEquals(router.route(new BigDecimal("1.5")), router.route(new BigDecimal("1.50")));
+    Assertions.assertEquals(router.route(new BigDecimal("1.5")), router.route(1.5d));
+    Assertions.assertEquals(router.route(new BigDecimal("1.5")), router.route(1.5f));
+  }
+
+  interface ShardedCityMapper {
+
+    @Select("SELECT 1")
+    int select();
+
+    @Select("SELECT DATABASE()")
+    String selectDatabaseName();
+
+    @Select("SELECT DATABASE()")
+    List<String> selectDatabaseNames();
+
+    @Select("SELECT DATABASE()")
+    @ShardMergeOrder
+    List<String> selectSortedDatabaseNames();
+
+    @Select("SELECT DATABASE()")
+    String selectDatabaseNameByCity(@ShardKey String city);
+
+    @Select("SELECT CAST(#{a} AS INT) + CAST(#{b} AS INT)")
+    int sum(@Param("a") int a, @Param("b") int b);
+
+  }
+
+}
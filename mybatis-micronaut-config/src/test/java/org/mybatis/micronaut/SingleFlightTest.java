@@ -0,0 +1,200 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+  @Test
+  void coalesceIdenticalConcurrentQueries() throws Exception {
+    BlockingSelectInterceptor blockingSelect = new BlockingSelectInterceptor();
+    SingleFlightInterceptor singleFlight = new SingleFlightInterceptor();
+    SqlSessionFactory sqlSessionFactory = newSqlSessionFactory(blockingSelect, singleFlight);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    SingleFlightRegistry registry = new SingleFlightRegistry();
+    new MyBatisSingleFlightMetrics(registry).bindTo(meterRegistry);
+    registry.register("single-flight", singleFlight);
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> {
+          try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            return sqlSession.getMapper(SingleFlightCityMapper.class).findName(1);
+          }
+        }));
+      }
+      // The leader is blocked until the followers are waiting for it
+      Assertions.assertTrue(blockingSelect.started.await(5, TimeUnit.SECONDS));
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (singleFlight.getWaitingCount() < 7) {
+        Assertions.assertTrue(System.nanoTime() < deadline);
+        TimeUnit.MILLISECONDS.sleep(10);
+      }
+
+      // Not coalesced within a write transaction
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        SingleFlightCityMapper mapper = sqlSession.getMapper(SingleFlightCityMapper.class);
+        mapper.update(1, "Osaka");
+        Assertions.assertEquals("Osaka", mapper.findName(1));
+        sqlSession.rollback();
+      }
+
+      blockingSelect.release.countDown();
+      for (Future<String> result : results) {
+        Assertions.assertEquals("Tokyo", result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Assertions.assertEquals(2, blockingSelect.count.get());
+    Assertions.assertEquals(1, singleFlight.getLeaderCount());
+    Assertions.assertEquals(7, singleFlight.getFollowerCount());
+    FunctionCounter followers = meterRegistry.find(MyBatisSingleFlightMetrics.METRIC_NAME)
+        .tags("factory", "single-flight", "role", "follower").functionCounter();
+    Assertions.assertNotNull(followers);
+    Assertions.assertEquals(7, followers.count());
+  }
+
+  @Test
+  void executeByItselfWhenLeaderDoesNotCompleteWithinTimeout() throws Exception {
+    BlockingSelectInterceptor blockingSelect = new BlockingSelectInterceptor();
+    SingleFlightInterceptor singleFlight = new SingleFlightInterceptor();
+    SqlSessionFactory sqlSessionFactory = newSqlSessionFactory(blockingSelect, singleFlight);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> leader = executor.submit(() -> {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+          return sqlSession.getMapper(SingleFlightCityMapper.class).findNameWithTimeout(1);
+        }
+      });
+      Assertions.assertTrue(blockingSelect.started.await(5, TimeUnit.SECONDS));
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        SingleFlightCityMapper mapper = sqlSession.getMapper(SingleFlightCityMapper.class);
+        // The follower stops waiting for the leader after the statement timeout
+        Assertions.assertEquals("Tokyo", mapper.findNameWithTimeout(1));
+        // The locking query is not coalesced
+        Assertions.assertEquals("Tokyo", mapper.findNameForUpdate(1));
+      }
+      blockingSelect.release.countDown();
+      Assertions.assertEquals("Tokyo", leader.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    Assertions.assertEquals(3, blockingSelect.count.get());
+    Assertions.assertEquals(1, singleFlight.getLeaderCount());
+    Assertions.assertEquals(0, singleFlight.getFollowerCount());
+    Assertions.assertEquals(0, singleFlight.getWaitingCount());
+  }
+
+  private static SqlSessionFactory newSqlSessionFactory(Interceptor... interceptors) throws SQLException {
+    DataSource dataSource = TestDataSources.newDataSource("single-flight");
+    TestDataSources.execute(dataSource, "DROP TABLE IF EXISTS city", "CREATE TABLE city (id INT, name VARCHAR(20))",
+        "INSERT INTO city VALUES (1, 'Tokyo')");
+    Configuration configuration = new Configuration(
+        new Environment("single-flight", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(SingleFlightCityMapper.class);
+    for (Interceptor interceptor : interceptors) {
+      configuration.addInterceptor(interceptor);
+    }
+    return new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  interface SingleFlightCityMapper {
+
+    @Select("SELECT name FROM city WHERE id = #{id}")
+    String findName(int id);
+
+    @Select("SELECT name FROM city WHERE id = #{id}")
+    @Options(timeout = 1)
+    String findNameWithTimeout(int id);
+
+    @Select("SELECT name FROM city WHERE id = #{id} FOR UPDATE")
+    String findNameForUpdate(int id);
+
+    @Update("UPDATE city SET name = #{name} WHERE id = #{id}")
+    void update(@Param("id") int id, @Param("name") String name);
+
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class,
+      Integer.class }))
+  static class BlockingSelectInterceptor implements Interceptor {
+
+    private final AtomicInteger count = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      StatementHandler statementHandler = (StatementHandler) invocation.getTarget();
+      if (statementHandler.getBoundSql().getSql().startsWith("SELECT") && count.getAndIncrement() == 0) {
+        started.countDown();
+        release.await(5, TimeUnit.SECONDS);
+      }
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+      // NOP
+    }
+
+  }
+
+}
@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SqlTableExtractorTest {
+
+  @Test
+  void extractTablesFromQueries() {
+    assertTables("SELECT c.id, co.name FROM city c INNER JOIN country co ON co.id = c.country_id WHERE c.id = ?",
+        "city", "country");
+    assertTables("select * from public.\"City\" as c, region r left outer join `Country` x on 1 = 1", "city",
+        "region", "country");
+    assertTables("SELECT * FROM (SELECT id FROM city) t WHERE EXISTS (SELECT 1 FROM [dbo].[Country])", "city",
+        "country");
+    assertTables("SELECT * FROM city WHERE name = 'from region' FOR UPDATE", "city");
+    assertTables("SELECT 1");
+  }
+
+  @Test
+  void extractTablesFromWrites() {
+    assertTables("INSERT INTO city (name) VALUES (?) ON DUPLICATE KEY UPDATE name = ?", "city");
+    assertTables("UPDATE city SET name = ? WHERE region_id = (SELECT id FROM region)", "city", "region");
+    assertTables("DELETE FROM city -- FROM country\n WHERE id = ? /* JOIN region */", "city");
+    assertTables("MERGE INTO city t USING staging s ON t.id = s.id WHEN MATCHED THEN UPDATE SET t.name = s.name",
+        "city", "staging");
+  }
+
+  private static void assertTables(String sql, String... tables) {
+    Assertions.assertEquals(tables.length == 0 ? Collections.emptySet() : new LinkedHashSet<>(Arrays.asList(tables)),
+        SqlTableExtractor.extract(sql));
+  }
+
+}
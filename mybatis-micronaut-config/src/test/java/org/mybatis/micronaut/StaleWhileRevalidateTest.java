@@ -0,0 +1,202 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.core.convert.ConversionService;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.annotations.CacheNamespace;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class StaleWhileRevalidateTest {
+
+  @Test
+  void serveStaleResultsWhileRefreshing() throws Exception {
+    DataSource dataSource = newDataSource();
+    SqlSessionFactory sqlSessionFactory = newSqlSessionFactory(dataSource);
+    RefreshingCache cache = (RefreshingCache) sqlSessionFactory.getConfiguration()
+        .getCache(RefreshingCityMapper.class.getName());
+
+    Assertions.assertEquals("Tokyo", select(sqlSessionFactory, mapper -> mapper.findName(1)));
+    TestDataSources.execute(dataSource, "UPDATE city SET name = 'Osaka' WHERE id = 1");
+    // Fresh
+    Assertions.assertEquals("Tokyo", select(sqlSessionFactory, mapper -> mapper.findName(1)));
+    // The statement without the annotation is not cached
+    Assertions.assertEquals("Osaka", select(sqlSessionFactory, mapper -> mapper.findNameWithoutCache(1)));
+
+    // Stale(the stale result is served and refreshed in the background)
+    TimeUnit.MILLISECONDS.sleep(300);
+    Assertions.assertEquals("Tokyo", select(sqlSessionFactory, mapper -> mapper.findName(1)));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (cache.getStats().loadSuccessCount() == 0 && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    Assertions.assertEquals("Osaka", select(sqlSessionFactory, mapper -> mapper.findName(1)));
+    Assertions.assertTrue(cache.getStaleHitCount() >= 1);
+    Assertions.assertEquals(1, cache.getStats().loadSuccessCount());
+  }
+
+  @Test
+  void refreshWithSnapshotOfParameter() throws Exception {
+    DataSource dataSource = newDataSource();
+    SqlSessionFactory sqlSessionFactory = newSqlSessionFactory(dataSource);
+    RefreshingCache cache = (RefreshingCache) sqlSessionFactory.getConfiguration()
+        .getCache(RefreshingCityMapper.class.getName());
+    TestDataSources.execute(dataSource, "INSERT INTO city VALUES (2, 'Kyoto')");
+
+    Map<String, Object> condition = new HashMap<>();
+    condition.put("id", 1);
+    CityCondition beanCondition = new CityCondition();
+    beanCondition.setId(1);
+    Assertions.assertEquals("Tokyo", select(sqlSessionFactory, mapper -> mapper.findNameByMap(condition)));
+    Assertions.assertEquals("Tokyo", select(sqlSessionFactory, mapper -> mapper.findNameByBean(beanCondition)));
+    TestDataSources.execute(dataSource, "UPDATE city SET name = 'Osaka' WHERE id = 1");
+
+    TimeUnit.MILLISECONDS.sleep(300);
+    Assertions.assertEquals("Tokyo", select(sqlSessionFactory, mapper -> mapper.findNameByMap(condition)));
+    Assertions.assertEquals("Tokyo", select(sqlSessionFactory, mapper -> mapper.findNameByBean(beanCondition)));
+    // The caller reuses the parameter objects after the calls
+    condition.put("id", 2);
+    beanCondition.setId(2);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (cache.getStats().loadSuccessCount() == 0 && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    // The map of immutable values is refreshed with its snapshot, and the mutable bean is not refreshed
+    condition.put("id", 1);
+    beanCondition.setId(1);
+    Assertions.assertEquals("Osaka", select(sqlSessionFactory, mapper -> mapper.findNameByMap(condition)));
+    Assertions.assertEquals("Tokyo", select(sqlSessionFactory, mapper -> mapper.findNameByBean(beanCondition)));
+    Assertions.assertEquals(1, cache.getStats().loadSuccessCount());
+  }
+
+  @Test
+  void cacheEmptyResultsWithNegativeTtl() throws Exception {
+    DataSource dataSource = newDataSource();
+    SqlSessionFactory sqlSessionFactory = newSqlSessionFactory(dataSource);
+
+    Assertions.assertEquals(Collections.emptyList(), select(sqlSessionFactory, mapper -> mapper.findNames(2)));
+    TestDataSources.execute(dataSource, "INSERT INTO city VALUES (2, 'Kyoto')");
+    Assertions.assertEquals(Collections.emptyList(), select(sqlSessionFactory, mapper -> mapper.findNames(2)));
+
+    // Write statements of the namespace flush the cache
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(RefreshingCityMapper.class).update(1, "Nagoya");
+      sqlSession.commit();
+    }
+    Assertions.assertEquals(Collections.singletonList("Kyoto"),
+        select(sqlSessionFactory, mapper -> mapper.findNames(2)));
+  }
+
+  @Test
+  void whenNamespaceHasOtherCacheShouldThrowBuilderException() {
+    Configuration configuration = new Configuration();
+    configuration.addMapper(CachedCityMapper.class);
+    BuilderException e = Assertions.assertThrows(BuilderException.class,
+        () -> StaleWhileRevalidateInterceptor.install(configuration, ConversionService.SHARED));
+    Assertions.assertTrue(e.getMessage().startsWith("The stale-while-revalidate statement '"));
+  }
+
+  private static DataSource newDataSource() throws SQLException {
+    DataSource dataSource = TestDataSources.newDataSource("swr");
+    TestDataSources.execute(dataSource, "DROP TABLE IF EXISTS city", "CREATE TABLE city (id INT, name VARCHAR(20))",
+        "INSERT INTO city VALUES (1, 'Tokyo')");
+    return dataSource;
+  }
+
+  private static SqlSessionFactory newSqlSessionFactory(DataSource dataSource) {
+    Configuration configuration = new Configuration(new Environment("swr", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(RefreshingCityMapper.class);
+    StaleWhileRevalidateInterceptor.install(configuration, ConversionService.SHARED);
+    return new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  private static <T> T select(SqlSessionFactory sqlSessionFactory, Function<RefreshingCityMapper, T> query) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return query.apply(sqlSession.getMapper(RefreshingCityMapper.class));
+    }
+  }
+
+  interface RefreshingCityMapper {
+
+    @Select("SELECT name FROM city WHERE id = #{id}")
+    @StaleWhileRevalidate(softTtl = "200ms", hardTtl = "1h")
+    String findName(int id);
+
+    @Select("SELECT name FROM city WHERE id = #{id}")
+    @StaleWhileRevalidate(hardTtl = "1h", negativeTtl = "1h")
+    List<String> findNames(int id);
+
+    @Select("SELECT name FROM city WHERE id = #{id}")
+    @StaleWhileRevalidate(softTtl = "200ms", hardTtl = "1h")
+    String findNameByMap(Map<String, Object> condition);
+
+    @Select("SELECT name FROM city WHERE id = #{id}")
+    @StaleWhileRevalidate(softTtl = "200ms", hardTtl = "1h")
+    String findNameByBean(CityCondition condition);
+
+    @Select("SELECT name FROM city WHERE id = #{id}")
+    String findNameWithoutCache(int id);
+
+    @Update("UPDATE city SET name = #{name} WHERE id = #{id}")
+    void update(@Param("id") int id, @Param("name") String name);
+
+  }
+
+  @CacheNamespace
+  interface CachedCityMapper {
+
+    @Select("SELECT name FROM city WHERE id = #{id}")
+    @StaleWhileRevalidate(hardTtl = "1h")
+    String findName(int id);
+
+  }
+
+  public static class CityCondition {
+
+    private int id;
+
+    public int getId() {
+      return id;
+    }
+
+    public void setId(int id) {
+      this.id = id;
+    }
+
+  }
+
+}
@@ -0,0 +1,235 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.annotations.CacheNamespace;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.scripting.defaults.RawSqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TableDependencyTest {
+
+  @Test
+  void invalidateOnlyEntriesThatDependOnWrittenTables() throws SQLException {
+    DataSource dataSource = TestDataSources.newDataSource("tables");
+    TestDataSources.execute(dataSource, "DROP VIEW IF EXISTS country_view", "DROP TABLE IF EXISTS city",
+        "DROP TABLE IF EXISTS country", "CREATE TABLE city (id INT, name VARCHAR(20))",
+        "CREATE TABLE country (id INT, name VARCHAR(20))", "CREATE VIEW country_view AS SELECT * FROM country",
+        "INSERT INTO city VALUES (1, 'Tokyo')", "INSERT INTO country VALUES (1, 'Japan')");
+    Configuration configuration = new Configuration(
+        new Environment("tables", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(CityCacheMapper.class);
+    configuration.addMapper(CountryCacheMapper.class);
+    TableDependencyInterceptor.install(configuration);
+    SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    Assertions.assertFalse(configuration.getMappedStatement(CityCacheMapper.class.getName() + ".updateCity")
+        .isFlushCacheRequired());
+
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Assertions.assertEquals("Tokyo", sqlSession.getMapper(CityCacheMapper.class).findCityName(1));
+      Assertions.assertEquals("Japan", sqlSession.getMapper(CityCacheMapper.class).findCountryName(1));
+      Assertions.assertEquals("Japan", sqlSession.getMapper(CountryCacheMapper.class).findName(1));
+    }
+    // Change the database without MyBatis to detect the cache hit
+    TestDataSources.execute(dataSource, "UPDATE city SET name = 'Osaka' WHERE id = 1");
+
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(CountryCacheMapper.class).updateCountry(1, "Nippon");
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      // The entry of other table remains in the same namespace
+      Assertions.assertEquals("Tokyo", sqlSession.getMapper(CityCacheMapper.class).findCityName(1));
+      // The entries of written table are removed from all namespaces
+      Assertions.assertEquals("Nippon", sqlSession.getMapper(CityCacheMapper.class).findCountryName(1));
+      Assertions.assertEquals("Nippon", sqlSession.getMapper(CountryCacheMapper.class).findName(1));
+    }
+
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(CityCacheMapper.class).updateCity(1, "Kyoto");
+      sqlSession.rollback();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Assertions.assertEquals("Tokyo", sqlSession.getMapper(CityCacheMapper.class).findCityName(1));
+      sqlSession.getMapper(CityCacheMapper.class).updateCity(1, "Kyoto");
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Assertions.assertEquals("Kyoto", sqlSession.getMapper(CityCacheMapper.class).findCityName(1));
+      Assertions.assertEquals("Nippon", sqlSession.getMapper(CountryCacheMapper.class).findName(1));
+    }
+
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      CityCacheMapper mapper = sqlSession.getMapper(CityCacheMapper.class);
+      mapper.updateCity(1, "Nagoya");
+      // The query of written table reads own write instead of the entry of the shared cache
+      Assertions.assertEquals("Nagoya", mapper.findCityName(1));
+      try (SqlSession otherSqlSession = sqlSessionFactory.openSession()) {
+        Assertions.assertEquals("Kyoto", otherSqlSession.getMapper(CityCacheMapper.class).findCityName(1));
+      }
+      sqlSession.rollback();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      // The rolled back write does not remain in the shared cache
+      Assertions.assertEquals("Kyoto", sqlSession.getMapper(CityCacheMapper.class).findCityName(1));
+    }
+  }
+
+  @Test
+  void flushCacheOnStatementsSharedWithConfigurationWithoutTableDependencies() throws SQLException {
+    DataSource dataSource = TestDataSources.newDataSource("shared-tables");
+    TestDataSources.execute(dataSource, "DROP TABLE IF EXISTS city", "CREATE TABLE city (id INT, name VARCHAR(20))",
+        "INSERT INTO city VALUES (1, 'Tokyo')");
+    Configuration template = new Configuration(new Environment("template", new JdbcTransactionFactory(), dataSource));
+    template.addMapper(CityCacheMapper.class);
+    TableDependencyInterceptor.install(template);
+    Configuration configuration = new Configuration(
+        new Environment("tenant", new JdbcTransactionFactory(), dataSource));
+    SharedMappingModel.share(template, configuration);
+    Configuration otherConfiguration = new Configuration(
+        new Environment("other", new JdbcTransactionFactory(), dataSource));
+    SharedMappingModel.share(template, otherConfiguration);
+    TableDependencyInterceptor.install(otherConfiguration);
+
+    String id = CityCacheMapper.class.getName() + ".updateCity";
+    Assertions.assertFalse(template.getMappedStatement(id).isFlushCacheRequired());
+    Assertions.assertTrue(configuration.getMappedStatement(id).isFlushCacheRequired());
+    Assertions.assertFalse(otherConfiguration.getMappedStatement(id).isFlushCacheRequired());
+    Assertions.assertTrue(otherConfiguration.getInterceptors().stream()
+        .anyMatch(TableDependencyInterceptor.class::isInstance));
+
+    SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Assertions.assertEquals("Tokyo", sqlSession.getMapper(CityCacheMapper.class).findCityName(1));
+    }
+    // Change the database without MyBatis to detect the cache hit
+    TestDataSources.execute(dataSource, "UPDATE city SET name = 'Osaka' WHERE id = 1");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      // The write statement flushes the cache of its namespace as declared
+      sqlSession.getMapper(CityCacheMapper.class).updateCity(2, "Kyoto");
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Assertions.assertEquals("Osaka", sqlSession.getMapper(CityCacheMapper.class).findCityName(1));
+    }
+  }
+
+  @Test
+  void evaluateSqlOncePerCachedQuery() throws SQLException {
+    DataSource dataSource = TestDataSources.newDataSource("evaluated-tables");
+    TestDataSources.execute(dataSource, "DROP TABLE IF EXISTS city", "CREATE TABLE city (id INT, name VARCHAR(20))",
+        "INSERT INTO city VALUES (1, 'Tokyo')");
+    Configuration configuration = new Configuration(
+        new Environment("evaluated", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(CityCacheMapper.class);
+    configuration.addInterceptor(new SingleFlightInterceptor());
+    TableDependencyInterceptor.install(configuration);
+    MappedStatement statement = configuration.getMappedStatement(CityCacheMapper.class.getName() + ".findCityName");
+    SqlSource sqlSource = statement.getSqlSource();
+    AtomicInteger evaluations = new AtomicInteger();
+    SystemMetaObject.forObject(statement).setValue("sqlSource", (SqlSource) parameter -> {
+      evaluations.incrementAndGet();
+      return sqlSource.getBoundSql(parameter);
+    });
+    SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Assertions.assertEquals("Tokyo", sqlSession.getMapper(CityCacheMapper.class).findCityName(1));
+    }
+    // The plugins and the CachingExecutor reuse the BoundSql(the BaseExecutor does not evaluate it again)
+    Assertions.assertEquals(1, evaluations.get());
+  }
+
+  @Test
+  void extractTablesOncePerStaticWriteStatement() throws SQLException {
+    DataSource dataSource = TestDataSources.newDataSource("static-tables");
+    TestDataSources.execute(dataSource, "DROP TABLE IF EXISTS city", "CREATE TABLE city (id INT, name VARCHAR(20))",
+        "INSERT INTO city VALUES (1, 'Tokyo')");
+    Configuration configuration = new Configuration(
+        new Environment("static", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(CityCacheMapper.class);
+    TableDependencyInterceptor.install(configuration);
+    MappedStatement statement = configuration.getMappedStatement(CityCacheMapper.class.getName() + ".updateCity");
+    AtomicInteger evaluations = new AtomicInteger();
+    SystemMetaObject.forObject(statement).setValue("sqlSource",
+        new RawSqlSource(configuration, "UPDATE city SET name = #{name} WHERE id = #{id}", null) {
+          @Override
+          public BoundSql getBoundSql(Object parameterObject) {
+            evaluations.incrementAndGet();
+            return super.getBoundSql(parameterObject);
+          }
+        });
+    SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      CityCacheMapper mapper = sqlSession.getMapper(CityCacheMapper.class);
+      Assertions.assertEquals("Tokyo", mapper.findCityName(1));
+      mapper.updateCity(1, "Osaka");
+      mapper.updateCity(1, "Kyoto");
+      sqlSession.commit();
+    }
+    // Once per write by the statement handler and only once by the interceptor
+    Assertions.assertEquals(3, evaluations.get());
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Assertions.assertEquals("Kyoto", sqlSession.getMapper(CityCacheMapper.class).findCityName(1));
+    }
+  }
+
+  @CacheNamespace
+  interface CityCacheMapper {
+
+    @Select("SELECT name FROM city WHERE id = #{id}")
+    String findCityName(int id);
+
+    @Select("SELECT name FROM country WHERE id = #{id}")
+    String findCountryName(int id);
+
+    @Update("UPDATE city SET name = #{name} WHERE id = #{id}")
+    void updateCity(@Param("id") int id, @Param("name") String name);
+
+  }
+
+  @CacheNamespace
+  interface CountryCacheMapper {
+
+    @Select("SELECT name FROM country_view WHERE id = #{id}")
+    @StatementTables("PUBLIC.COUNTRY")
+    String findName(int id);
+
+    @Update("UPDATE country SET name = #{name} WHERE id = #{id}")
+    void updateCountry(@Param("id") int id, @Param("name") String name);
+
+  }
+
+}
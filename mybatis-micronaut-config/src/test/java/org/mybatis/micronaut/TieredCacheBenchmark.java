@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.Cache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The JMH benchmark that compares the GC pause time between the {@link CaffeineCache}(on-heap) and the
+ * {@link TieredCache}(off-heap).
+ * <p>
+ * Each cache holds 100000 results(10 rows per result, a few hundred MB on the heap). The {@code fullGc} measures the
+ * time of a full GC that is proportional to the live objects on the heap, and the {@code read} measures the time of
+ * reading a cached result. You can run it via the {@link #main(String[])} on the test classpath, and it is recommended
+ * to add the {@code -prof gc} option for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g", "-XX:MaxDirectMemorySize=1g" })
+public class TieredCacheBenchmark {
+
+  private static final int RESULTS = 100_000;
+  private static final int ROWS_PER_RESULT = 10;
+
+  @Param({ "on-heap", "tiered" })
+  private String cacheType;
+
+  private Cache cache;
+
+  @Setup
+  public void setup() {
+    cache = "on-heap".equals(cacheType) ? new CaffeineCache("benchmark", RESULTS, null, null)
+        : new TieredCache("benchmark", 1_000, 1L << 30, null, null);
+    for (int i = 0; i < RESULTS; i++) {
+      List<Map<String, Object>> result = new ArrayList<>(ROWS_PER_RESULT);
+      for (int j = 0; j < ROWS_PER_RESULT; j++) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", i * ROWS_PER_RESULT + j);
+        row.put("name", "name-" + i + "-" + j);
+        row.put("description", "The reference data for benchmarking the second level cache " + i);
+        result.add(row);
+      }
+      cache.putObject(i, result);
+    }
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void fullGc() {
+    System.gc();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object read() {
+    return cache.getObject(ThreadLocalRandom.current().nextInt(RESULTS));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TieredCacheBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,100 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import io.micronaut.core.annotation.Introspected;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TieredCacheTest {
+
+  @Test
+  void promoteFromOffHeapTier() {
+    TieredCache cache = new TieredCache("cities", 1, 1 << 20, null, null);
+    cache.putObject("1", Arrays.asList(new Item("Tokyo"), new Item("Osaka")));
+    cache.putObject("2", Arrays.asList(new Item("Nagoya"), new Item("Kyoto")));
+    cache.cleanUp();
+
+    // One of them is evicted from the on-heap tier, and it is read from the off-heap tier
+    Assertions.assertEquals(Arrays.asList("Tokyo", "Osaka"), names(cache.getObject("1")));
+    Assertions.assertEquals(Arrays.asList("Nagoya", "Kyoto"), names(cache.getObject("2")));
+    Assertions.assertTrue(cache.getOffHeapStats().hitCount() >= 1);
+    Assertions.assertEquals(0, cache.getOffHeapStats().missCount());
+    Assertions.assertEquals(2, cache.getSize());
+    Assertions.assertTrue(cache.getOffHeapUsedBytes() > 0);
+
+    Assertions.assertNull(cache.getObject("3"));
+    Assertions.assertEquals(1, cache.getOffHeapStats().missCount());
+
+    // The null value that put by the TransactionalCache is treated as removing
+    cache.putObject("1", null);
+    Assertions.assertNull(cache.getObject("1"));
+
+    cache.clear();
+    Assertions.assertNull(cache.getObject("2"));
+    Assertions.assertEquals(0, cache.getOffHeapUsedBytes());
+  }
+
+  @Test
+  void evictOldestWhenOffHeapStoreIsFull() {
+    OffHeapStore store = new OffHeapStore(1024, null, null);
+    for (int i = 0; i < 10; i++) {
+      store.put(i, new byte[200], System.nanoTime());
+    }
+    Assertions.assertNull(store.get(0));
+    Assertions.assertNull(store.get(4));
+    Assertions.assertNotNull(store.get(5));
+    Assertions.assertNotNull(store.get(9));
+    Assertions.assertEquals(5, store.size());
+    Assertions.assertEquals(5, store.evictionCount());
+    Assertions.assertEquals(1000, store.usedBytes());
+
+    // The value that larger than the capacity is not stored
+    store.put(10, new byte[2048], System.nanoTime());
+    Assertions.assertNull(store.get(10));
+  }
+
+  private static List<String> names(Object value) {
+    return ((List<?>) value).stream().map(item -> ((Item) item).getName()).collect(Collectors.toList());
+  }
+
+  @Introspected
+  public static class Item {
+    private String name;
+
+    public Item() {
+      // NOP
+    }
+
+    private Item(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
+
+}
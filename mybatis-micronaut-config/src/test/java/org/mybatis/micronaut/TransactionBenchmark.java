@@ -0,0 +1,109 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut;
+
+import java.util.concurrent.TimeUnit;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.TransactionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.mybatis.micronaut.mapper.city.CityMapper;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The JMH benchmark that compares the Spring based transaction management with the {@link MyBatisTransactionManager}.
+ * <p>
+ * Each benchmark executes two statements within a transaction on the H2 in-memory database via the HikariCP. You can
+ * run it via the {@link #main(String[])} on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionBenchmark {
+
+  private HikariDataSource dataSource;
+  private TransactionTemplate springTransactionTemplate;
+  private CityMapper springMapper;
+  private MyBatisTransactionManager transactionManager;
+
+  @Setup
+  public void setup() {
+    dataSource = new HikariDataSource();
+    dataSource.setJdbcUrl("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+    dataSource.setUsername("sa");
+
+    springTransactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    springMapper = new SqlSessionTemplate(newSqlSessionFactory(new SpringManagedTransactionFactory()))
+        .getMapper(CityMapper.class);
+
+    transactionManager = new MyBatisTransactionManager("benchmark",
+        newSqlSessionFactory(new JdbcTransactionFactory()));
+  }
+
+  @TearDown
+  public void tearDown() {
+    dataSource.close();
+  }
+
+  private SqlSessionFactory newSqlSessionFactory(TransactionFactory transactionFactory) {
+    Configuration configuration = new Configuration(new Environment("benchmark", transactionFactory, dataSource));
+    configuration.addMapper(CityMapper.class);
+    return new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  @Benchmark
+  public int spring() {
+    return springTransactionTemplate
+        .execute(status -> springMapper.select() + springMapper.selectDatabaseName().length());
+  }
+
+  @Benchmark
+  public int mybatis() {
+    return transactionManager.executeInTransaction(() -> {
+      CityMapper mapper = transactionManager.getCurrentSqlSession().get().getMapper(CityMapper.class);
+      return mapper.select() + mapper.selectDatabaseName().length();
+    });
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TransactionBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
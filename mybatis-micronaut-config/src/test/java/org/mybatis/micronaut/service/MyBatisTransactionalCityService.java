@@ -0,0 +1,70 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut.service;
+
+import java.util.List;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.SqlSession;
+import org.mybatis.micronaut.MyBatisBatch;
+import org.mybatis.micronaut.MyBatisBatchScope;
+import org.mybatis.micronaut.MyBatisTransactionManager;
+import org.mybatis.micronaut.MyBatisTransactional;
+import org.mybatis.micronaut.mapper.city.CityMapper;
+
+@Singleton
+@MyBatisTransactional("tx")
+public class MyBatisTransactionalCityService {
+
+  private final MyBatisTransactionManager transactionManager;
+
+  MyBatisTransactionalCityService(@Named("tx") MyBatisTransactionManager transactionManager) {
+    this.transactionManager = transactionManager;
+  }
+
+  public SqlSession create(String city, Runnable anyProcessing) {
+    SqlSession sqlSession = transactionManager.getCurrentSqlSession().orElseThrow(IllegalStateException::new);
+    sqlSession.getMapper(CityMapper.class).insert(city);
+    anyProcessing.run();
+    return sqlSession;
+  }
+
+  public SqlSession createTwice(String city) {
+    SqlSession first = create(city, () -> {
+    });
+    SqlSession second = create(city, () -> {
+    });
+    if (first != second) {
+      throw new IllegalStateException("The nested method does not join the transaction.");
+    }
+    return first;
+  }
+
+  @MyBatisTransactional(value = "tx", readOnly = true)
+  public String findDatabaseName() {
+    SqlSession sqlSession = transactionManager.getCurrentSqlSession().orElseThrow(IllegalStateException::new);
+    return sqlSession.getMapper(CityMapper.class).selectDatabaseName();
+  }
+
+  @MyBatisBatch(value = "tx", flushEvery = 2)
+  public List<BatchResult> createInBatch(Runnable anyProcessing) {
+    anyProcessing.run();
+    return MyBatisBatchScope.current().orElseThrow(IllegalStateException::new).getBatchResults();
+  }
+
+}
@@ -57,6 +57,23 @@ public class SampleApplication implements Runnable {
       System.out.println(cityService.getCityById(chiba.getId()));
     }
 
+    {
+      City osaka = new City();
+      osaka.setName("Osaka");
+      osaka.setState("27");
+      osaka.setCountry("JP");
+
+      City kyoto = new City();
+      kyoto.setName("Kyoto");
+      kyoto.setState("26");
+      kyoto.setCountry("JP");
+
+      cityService.createCitiesInBulk(osaka, kyoto);
+
+      System.out.println(cityService.getCityById(osaka.getId()));
+      System.out.println(cityService.getCityById(kyoto.getId()));
+    }
+
     {
       City yokohama = new City();
       yokohama.setName("Yokohama");
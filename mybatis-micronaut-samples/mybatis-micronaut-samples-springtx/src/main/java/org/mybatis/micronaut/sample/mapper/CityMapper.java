@@ -15,7 +15,10 @@
  */
 package org.mybatis.micronaut.sample.mapper;
 
+import java.util.Collection;
+
 import org.apache.ibatis.annotations.*;
+import org.mybatis.micronaut.BulkInsert;
 import org.mybatis.micronaut.sample.domain.City;
 
 /**
@@ -33,4 +36,9 @@ public interface CityMapper {
   @Options(useGeneratedKeys = true, keyProperty = "id")
   void insert(City city);
 
+  @Insert("insert into city (name, state, country) values (#{name}, #{state}, #{country})")
+  @Options(useGeneratedKeys = true, keyProperty = "id")
+  @BulkInsert(chunkSize = 500)
+  int insertAll(Collection<City> cities);
+
 }
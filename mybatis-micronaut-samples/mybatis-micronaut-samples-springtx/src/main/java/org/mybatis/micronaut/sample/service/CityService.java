@@ -21,6 +21,7 @@ import java.util.Arrays;
 
 import io.micronaut.spring.tx.annotation.Transactional;
 import org.apache.ibatis.session.SqlSession;
+import org.mybatis.micronaut.MyBatisBatch;
 import org.mybatis.micronaut.sample.domain.City;
 import org.mybatis.micronaut.sample.mapper.CityMapper;
 
@@ -44,8 +45,13 @@ public class CityService {
     return cityMapper.findById(id);
   }
 
+  @MyBatisBatch(flushEvery = 500)
   public void createCities(City... cities) {
     Arrays.stream(cities).forEach(cityMapper::insert);
   }
 
+  public void createCitiesInBulk(City... cities) {
+    cityMapper.insertAll(Arrays.asList(cities));
+  }
+
 }
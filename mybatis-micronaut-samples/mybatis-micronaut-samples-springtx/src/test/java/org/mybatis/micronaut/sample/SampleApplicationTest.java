@@ -29,6 +29,8 @@ class SampleApplicationTest {
     Assertions.assertTrue(output.contains("1,San Francisco,CA,US"));
     Assertions.assertTrue(output.contains("2,Tokyo,13,JP"));
     Assertions.assertTrue(output.contains("3,Chiba,12,JP"));
+    Assertions.assertTrue(output.contains("4,Osaka,27,JP"));
+    Assertions.assertTrue(output.contains("5,Kyoto,26,JP"));
     Assertions.assertTrue(output.contains("Catch the org.apache.ibatis.exceptions.PersistenceException."));
     Assertions.assertTrue(output.contains("Yokohama = null"));
     Assertions.assertTrue(output.contains("Saitama = null"));
@@ -18,17 +18,15 @@ package org.mybatis.micronaut.sample;
 import javax.inject.Inject;
 
 import io.micronaut.configuration.picocli.PicocliRunner;
-import org.apache.ibatis.session.SqlSession;
-import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.micronaut.sample.domain.City;
-import org.mybatis.micronaut.sample.mapper.CityMapper;
+import org.mybatis.micronaut.sample.service.CityService;
 import picocli.CommandLine;
 
 @CommandLine.Command(name = "mybatis-micronaut-sample", mixinStandardHelpOptions = true)
 public class SampleApplication implements Runnable {
 
   @Inject
-  private SqlSessionFactory sqlSessionFactory;
+  private CityService cityService;
 
   public static void main(String[] args) throws Exception {
     PicocliRunner.run(SampleApplication.class, args);
@@ -36,11 +34,10 @@ public class SampleApplication implements Runnable {
 
   @Override
   public void run() {
-    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
-      CityMapper mapper = sqlSession.getMapper(CityMapper.class);
-      City city = mapper.findByState("CA");
-      System.out.println(city);
-    }
+    City city = cityService.getCityByState("CA");
+    System.out.println(city);
+
+    cityService.getCitiesByStates("CA", "NY").forEach(System.out::println);
   }
 
 }
@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.mybatis.micronaut.sample.service;
+
+import javax.inject.Singleton;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.mybatis.micronaut.MyBatisTransactional;
+import org.mybatis.micronaut.sample.domain.City;
+import org.mybatis.micronaut.sample.mapper.CityMapper;
+
+@Singleton
+@MyBatisTransactional(readOnly = true)
+public class CityService {
+
+  private final CityMapper cityMapper;
+
+  public CityService(CityMapper cityMapper) {
+    this.cityMapper = cityMapper;
+  }
+
+  public City getCityByState(String state) {
+    return cityMapper.findByState(state);
+  }
+
+  public List<City> getCitiesByStates(String... states) {
+    // All mapper calls share the SqlSession(and the connection) bound to the transaction
+    return Arrays.stream(states).map(cityMapper::findByState).collect(Collectors.toList());
+  }
+
+}
@@ -14,4 +14,5 @@
 --    limitations under the License.
 --
 
-insert into city (name, state, country) values ('San Francisco', 'CA', 'US');
\ No newline at end of file
+insert into city (name, state, country) values ('San Francisco', 'CA', 'US');
+insert into city (name, state, country) values ('New York', 'NY', 'US');
\ No newline at end of file
@@ -27,6 +27,7 @@ class SampleApplicationTest {
     SampleApplication.main(new String[] {});
     String output = outputCapture.toString();
     Assertions.assertTrue(output.contains("1,San Francisco,CA,US"));
+    Assertions.assertTrue(output.contains("2,New York,NY,US"));
   }
 
 }